@@ -0,0 +1,69 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.OIDGenerator;
+import com.dustintbrown.app.util.OIDStore;
+import com.dustintbrown.app.util.OIDTextWriter;
+import com.dustintbrown.app.util.PackedOIDStore;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible datasets shared by the benchmarks. Every dataset is drawn from {@link OIDGenerator}, the same
+ * distribution RandomOIDGenerator writes, so results line up with real test files.
+ *
+ * @author  Dustin Brown
+ */
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return                  size distinct generated OIDs
+     */
+    static PackedOIDStore store(int size, long seed) {
+        return new OIDGenerator(seed).generate(size);
+    }
+
+    /**
+     * Writes the store as text to a new temporary file that is deleted on exit.
+     */
+    static Path writeText(OIDStore store, String prefix) throws IOException {
+        Path file = Files.createTempFile(prefix, ".txt");
+        file.toFile().deleteOnExit();
+        try (OIDTextWriter writer = new OIDTextWriter(new FileOutputStream(file.toFile()))) {
+            store.scan(0, store.size(), writer::writeLine);
+        }
+        return file;
+    }
+
+    /**
+     * @return                  count OIDs picked at random from the store
+     */
+    static int[][] hits(OIDStore store, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][] returnMe = new int[count][];
+        for (int i = 0; i < count; i++) {
+            returnMe[i] = store.get(random.nextInt(store.size()));
+        }
+        return returnMe;
+    }
+
+    /**
+     * @return                  count generated OIDs that are not in the store
+     */
+    static int[][] misses(OIDStore store, int count, long seed) {
+        OIDGenerator generator = new OIDGenerator(seed);
+        int[][] returnMe = new int[count][];
+        for (int i = 0; i < count; ) {
+            int[] oid = generator.next();
+            if (!store.containsArcs(oid, 0, oid.length)) {
+                returnMe[i++] = oid;
+            }
+        }
+        return returnMe;
+    }
+}
@@ -0,0 +1,31 @@
+package com.dustintbrown.app.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar. Runs JMH with the given arguments and, unless -rf or -rff say otherwise,
+ * writes machine-readable results to jmh-result.json so runs can be compared between releases.
+ *
+ * @author  Dustin Brown
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        String format = "json";
+        int formatIndex = arguments.indexOf("-rf");
+        if (formatIndex < 0) {
+            arguments.add("-rf");
+            arguments.add(format);
+        } else if (formatIndex + 1 < arguments.size()) {
+            format = arguments.get(formatIndex + 1).toLowerCase();
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.add("-rff");
+            arguments.add("jmh-result." + format);
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,97 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.OIDCodec;
+import com.dustintbrown.app.util.OIDGenerator;
+import com.dustintbrown.app.util.OIDService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and formats a batch of generated OIDs. Scores are per OID.
+ *
+ * @author  Dustin Brown
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    private static final int BATCH = 4096;
+
+    @Param({"42"})
+    public long seed;
+
+    private int[][] oids;
+    private String[] text;
+    private byte[] lines;
+    private int[] lineEnds;
+    private final int[] arcs = new int[OIDGenerator.MAX_LENGTH];
+    private final byte[] formatted = new byte[OIDCodec.maxFormattedLength(OIDGenerator.MAX_LENGTH)];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OIDGenerator generator = new OIDGenerator(seed);
+        oids = new int[BATCH][];
+        text = new String[BATCH];
+        StringBuilder sb = new StringBuilder();
+        lineEnds = new int[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            oids[i] = generator.next();
+            text[i] = OIDService.parseOID(oids[i]);
+            sb.append(text[i]);
+            lineEnds[i] = sb.length();
+        }
+        lines = sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseBytes(Blackhole bh) {
+        int start = 0;
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(OIDCodec.parse(lines, start, lineEnds[i], arcs));
+            start = lineEnds[i];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseString(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(OIDService.parseOIDString(text[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatBytes(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(OIDCodec.format(oids[i], 0, oids[i].length, formatted, 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void formatString(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(OIDService.parseOID(oids[i]));
+        }
+    }
+}
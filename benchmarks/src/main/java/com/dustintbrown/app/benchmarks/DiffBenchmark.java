@@ -0,0 +1,82 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.OIDDiff;
+import com.dustintbrown.app.util.OIDGenerator;
+import com.dustintbrown.app.util.OIDService;
+import com.dustintbrown.app.util.PackedOIDStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs two generated text files that share all but a given percentage of their OIDs.
+ *
+ * @author  Dustin Brown
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4G", "-Xmx4G"})
+public class DiffBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"42"})
+    public long seed;
+
+    /** Percentage of OIDs removed from, and added to, the second file */
+    @Param({"1"})
+    public int changePercent;
+
+    private Path base;
+    private Path other;
+    private final OIDService service = new OIDService();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        PackedOIDStore store = BenchmarkData.store(size, seed);
+        base = BenchmarkData.writeText(store, "diff-bench-a");
+
+        SplittableRandom random = new SplittableRandom(seed + 4);
+        OIDGenerator extra = new OIDGenerator(seed + 5);
+        PackedOIDStore.Builder changed = new PackedOIDStore.Builder(size);
+        store.scan(0, store.size(), (arcs, off, len) -> {
+            if (random.nextInt(100) >= changePercent) {
+                changed.add(arcs, off, len);
+            }
+        });
+        for (int i = 0; i < size / 100 * changePercent; i++) {
+            changed.add(extra.next());
+        }
+        other = BenchmarkData.writeText(changed.build(), "diff-bench-b");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(base);
+        Files.deleteIfExists(other);
+    }
+
+    @Benchmark
+    public OIDDiff.Stats diffFiles() throws IOException {
+        return service.diffFiles(base.toString(), other.toString(), (change, arcs, len) -> { }, false);
+    }
+}
@@ -0,0 +1,63 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.OIDEncoder;
+import com.dustintbrown.app.util.PackedOIDStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes a whole store with the legacy boxed encoder and with {@link OIDEncoder}, sequentially and in parallel.
+ *
+ * @author  Dustin Brown
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4G", "-Xmx4G"})
+public class EncodeBenchmark {
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"42"})
+    public long seed;
+
+    private PackedOIDStore store;
+    private ForkJoinPool sequential;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = BenchmarkData.store(size, seed);
+        sequential = new ForkJoinPool(1);
+    }
+
+    @Benchmark
+    public Collection<byte[]> legacy() {
+        return LegacyEncoder.encode(store);
+    }
+
+    @Benchmark
+    public OIDEncoder.Encoded bulkSequential() {
+        return OIDEncoder.encodeAll(store, sequential);
+    }
+
+    @Benchmark
+    public OIDEncoder.Encoded bulkParallel() {
+        return OIDEncoder.encodeAll(store, ForkJoinPool.commonPool());
+    }
+}
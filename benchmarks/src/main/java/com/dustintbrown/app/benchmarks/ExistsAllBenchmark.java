@@ -0,0 +1,91 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.OIDMembership;
+import com.dustintbrown.app.util.OIDService;
+import com.dustintbrown.app.util.PackedOIDStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking a whole file of probes, half loaded and half not: one parsed, sorted merge join against a loop of
+ * independent exists calls.
+ *
+ * @author  Dustin Brown
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4G", "-Xmx4G"})
+public class ExistsAllBenchmark {
+    @Param({"10000000"})
+    public int size;
+
+    @Param({"1000000"})
+    public int probes;
+
+    @Param({"42"})
+    public long seed;
+
+    private PackedOIDStore store;
+    private byte[] text;
+    private String[] lines;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        store = BenchmarkData.store(size, seed);
+        int[][] hits = BenchmarkData.hits(store, probes / 2, seed + 1);
+        int[][] misses = BenchmarkData.misses(store, probes - probes / 2, seed + 2);
+        lines = new String[probes];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < probes; i++) {
+            lines[i] = OIDService.parseOID(i % 2 == 0 && i / 2 < hits.length ? hits[i / 2] : misses[i / 2]);
+            out.write(lines[i].getBytes(StandardCharsets.US_ASCII));
+            out.write('\n');
+        }
+        text = out.toByteArray();
+    }
+
+    @Benchmark
+    public int existsAll() throws IOException {
+        return OIDMembership.existsAll(store, new ByteArrayInputStream(text), null).getHitCount();
+    }
+
+    @Benchmark
+    public int existsAllParallel() throws IOException {
+        return OIDMembership.existsAll(store, new ByteArrayInputStream(text), ForkJoinPool.commonPool()).getHitCount();
+    }
+
+    /**
+     * What App did before: parse and look up every line on its own.
+     */
+    @Benchmark
+    public int existsEach() {
+        int returnMe = 0;
+        for (String line : lines) {
+            int[] arcs = OIDService.parseOIDString(line);
+            if (store.containsArcs(arcs, 0, arcs.length)) {
+                returnMe++;
+            }
+        }
+        return returnMe;
+    }
+}
@@ -0,0 +1,116 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.BlockOIDStore;
+import com.dustintbrown.app.util.OIDBloomFilter;
+import com.dustintbrown.app.util.OIDService;
+import com.dustintbrown.app.util.OIDSnapshot;
+import com.dustintbrown.app.util.OIDStorageMode;
+import com.dustintbrown.app.util.OIDStore;
+import com.dustintbrown.app.util.OIDTrie;
+import com.dustintbrown.app.util.PackedOIDStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of single exists lookups for OIDs that are and are not loaded, per storage layout, with and without
+ * a Bloom filter in front of misses. Sample mode reports percentiles as well as the mean.
+ *
+ * @author  Dustin Brown
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4G", "-Xmx4G"})
+public class ExistsBenchmark {
+    private static final int KEYS = 1 << 16;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"42"})
+    public long seed;
+
+    /** PACKED, TRIE, BLOCK or SNAPSHOT (memory mapped) */
+    @Param({"PACKED", "TRIE", "BLOCK", "SNAPSHOT"})
+    public String storage;
+
+    private OIDStore store;
+    private OIDBloomFilter filter;
+    private int[][] hits;
+    private int[][] misses;
+    private String[] hitText;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        PackedOIDStore packed = BenchmarkData.store(size, seed);
+        if ("SNAPSHOT".equals(storage)) {
+            Path file = Files.createTempFile("exists-bench", ".snap");
+            file.toFile().deleteOnExit();
+            OIDSnapshot.write(packed, file);
+            store = OIDSnapshot.open(file);
+        } else if (OIDStorageMode.valueOf(storage) == OIDStorageMode.BLOCK) {
+            store = BlockOIDStore.build(packed, BlockOIDStore.DEFAULT_BLOCK_SIZE);
+        } else {
+            store = OIDStorageMode.valueOf(storage) == OIDStorageMode.TRIE ? OIDTrie.build(packed) : packed;
+        }
+        filter = OIDBloomFilter.build(packed, 0.01);
+        hits = BenchmarkData.hits(packed, KEYS, seed + 1);
+        misses = BenchmarkData.misses(packed, KEYS, seed + 2);
+        hitText = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            hitText[i] = OIDService.parseOID(hits[i]);
+        }
+    }
+
+    private int nextKey() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean hit() {
+        int[] key = hits[nextKey()];
+        return store.containsArcs(key, 0, key.length);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        int[] key = misses[nextKey()];
+        return store.containsArcs(key, 0, key.length);
+    }
+
+    /**
+     * Misses behind a 1% Bloom filter, as OIDService.exists does when a filter is enabled.
+     */
+    @Benchmark
+    public boolean missFiltered() {
+        int[] key = misses[nextKey()];
+        return filter.mightContain(key, 0, key.length) && store.containsArcs(key, 0, key.length);
+    }
+
+    /**
+     * Same as OIDService.exists: parse the text, then look it up.
+     */
+    @Benchmark
+    public boolean hitText() {
+        return store.contains(OIDService.parseOIDString(hitText[nextKey()]));
+    }
+}
@@ -0,0 +1,71 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.OIDBulkImporter;
+import com.dustintbrown.app.util.OIDSnapshot;
+import com.dustintbrown.app.util.PackedOIDStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports a generated text file of OIDs, and opens the same OIDs from a binary snapshot. Each invocation loads
+ * the whole file; divide size by the score for OIDs per second.
+ *
+ * @author  Dustin Brown
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms6G", "-Xmx6G"})
+public class ImportBenchmark {
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"42"})
+    public long seed;
+
+    private Path text;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        PackedOIDStore store = BenchmarkData.store(size, seed);
+        text = BenchmarkData.writeText(store, "import-bench");
+        snapshot = Files.createTempFile("import-bench", ".snap");
+        snapshot.toFile().deleteOnExit();
+        OIDSnapshot.write(store, snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(text);
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public PackedOIDStore importText() throws IOException {
+        return new OIDBulkImporter().importFile(text.toString()).getStore();
+    }
+
+    @Benchmark
+    public int openSnapshot() throws IOException {
+        return OIDSnapshot.open(snapshot).size();
+    }
+}
@@ -0,0 +1,79 @@
+package com.dustintbrown.app.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Copy of the encoder OIDService used before {@link com.dustintbrown.app.util.OIDEncoder}, kept only as a
+ * baseline for {@link EncodeBenchmark}. It boxes every byte, decodes hex strings and loses order; its output
+ * is wrong for arcs of 128 and above 2^21.
+ *
+ * @author  Dustin Brown
+ */
+final class LegacyEncoder {
+    private final static Logger LOGGER = Logger.getLogger(LegacyEncoder.class.getName());
+
+    private LegacyEncoder() {
+    }
+
+    static Collection<byte[]> encode(Collection<int[]> oids) {
+        return oids.stream().map(LegacyEncoder::encodeOID).collect(Collectors.toSet());
+    }
+
+    private static byte[] encodeOID(int[] oid) {
+        ArrayList<Byte> data = new ArrayList<Byte>();
+        data.add((byte) 0x06);
+        data.add((byte) 0x00); //Placeholder for size of data
+
+        data.add((byte) (oid[0] * 40 + oid[1]));
+
+        for (int i = 2; i < oid.length; i++) {
+            if (oid[i] <= 128) {
+                data.add((byte) oid[i]);
+            } else if (oid[i] <= 16383) {
+                encodeTwoByteInt(data, oid[i]);
+            } else {
+                encodeFourByteInt(data, oid[i]);
+            }
+        }
+        data.set(1, (byte) (data.size() - 2));
+
+        byte[] returnMe = new byte[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            returnMe[i] = data.get(i);
+            LOGGER.finest(Integer.toHexString((0x000000FF & returnMe[i])));
+        }
+        return returnMe;
+    }
+
+    private static void encodeFourByteInt(ArrayList<Byte> data, int i) {
+        int step1 = i / 262144;
+        int txMg = 0x8 + step1;
+        int base = 262144 * step1;
+        int step2 = i - base;
+        int txMi = step2 / 16384;
+
+        String hexVal = "0x" + Integer.toString(txMg) + Integer.toString(txMi);
+        data.add((byte) Integer.decode(hexVal).intValue());
+
+        base = base + (txMi * 16384);
+        int step3 = i - base;
+        encodeTwoByteInt(data, step3);
+    }
+
+    private static void encodeTwoByteInt(ArrayList<Byte> data, int i) {
+        int step1 = i / 2048;
+        int txMg = 0x8 + Integer.decode("0x" + step1).intValue();
+        int base = 2048 * step1;
+        int step2 = i - base;
+        int txMi = step2 / 128;
+        base = base + (txMi * 128);
+        int step4 = i - base;
+
+        String hexVal = "0x" + txMg + Integer.toString(txMi, 16);
+        data.add((byte) Integer.decode(hexVal).intValue());
+        data.add((byte) step4);
+    }
+}
@@ -0,0 +1,106 @@
+package com.dustintbrown.app.benchmarks;
+
+import com.dustintbrown.app.util.BlockOIDStore;
+import com.dustintbrown.app.util.OIDSnapshot;
+import com.dustintbrown.app.util.OIDStore;
+import com.dustintbrown.app.util.OIDTrie;
+import com.dustintbrown.app.util.PackedOIDStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts and scans the OIDs under prefixes taken from loaded OIDs. The prefix length sets the selectivity:
+ * with generated data one arc matches about 1/16 of the store, two arcs 1/256 and three or more a handful.
+ *
+ * @author  Dustin Brown
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4G", "-Xmx4G"})
+public class PrefixBenchmark {
+    private static final int PREFIXES = 256;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"42"})
+    public long seed;
+
+    @Param({"1", "2", "3", "4"})
+    public int prefixLength;
+
+    @Param({"PACKED", "TRIE", "BLOCK", "SNAPSHOT"})
+    public String storage;
+
+    private OIDStore store;
+    private int[][] prefixes;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        PackedOIDStore packed = BenchmarkData.store(size, seed);
+        switch (storage) {
+            case "TRIE":
+                store = OIDTrie.build(packed);
+                break;
+            case "BLOCK":
+                store = BlockOIDStore.build(packed, BlockOIDStore.DEFAULT_BLOCK_SIZE);
+                break;
+            case "SNAPSHOT":
+                Path file = Files.createTempFile("prefix-bench", ".snap");
+                file.toFile().deleteOnExit();
+                OIDSnapshot.write(packed, file);
+                store = OIDSnapshot.open(file);
+                break;
+            default:
+                store = packed;
+        }
+        // Only OIDs long enough to have the full prefix, so every prefix matches at least one OID
+        prefixes = new int[PREFIXES][];
+        int[][] candidates = BenchmarkData.hits(packed, PREFIXES * 8, seed + 3);
+        int found = 0;
+        for (int i = 0; i < candidates.length && found < PREFIXES; i++) {
+            if (candidates[i].length >= prefixLength) {
+                prefixes[found++] = Arrays.copyOf(candidates[i], prefixLength);
+            }
+        }
+        prefixes = Arrays.copyOf(prefixes, found);
+    }
+
+    private int[] nextPrefix() {
+        next = next + 1 == prefixes.length ? 0 : next + 1;
+        return prefixes[next];
+    }
+
+    @Benchmark
+    public int count() {
+        int[] prefix = nextPrefix();
+        return store.prefixEnd(prefix, 0, prefix.length) - store.lowerBound(prefix, 0, prefix.length);
+    }
+
+    @Benchmark
+    public void scan(Blackhole bh) {
+        OIDStore matches = store.prefixRange(nextPrefix());
+        matches.scan(0, matches.size(), (arcs, off, len) -> bh.consume(arcs[off + len - 1]));
+    }
+}
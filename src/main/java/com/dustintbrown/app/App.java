@@ -1,13 +1,37 @@
 package com.dustintbrown.app;
 
+import com.dustintbrown.app.util.DiskOIDStore;
+import com.dustintbrown.app.util.OIDBulkImporter;
+import com.dustintbrown.app.util.OIDDelta;
+import com.dustintbrown.app.util.OIDDiff;
+import com.dustintbrown.app.util.OIDEncoder;
+import com.dustintbrown.app.util.OIDExporter;
+import com.dustintbrown.app.util.OIDLookupMode;
+import com.dustintbrown.app.util.OIDMembership;
+import com.dustintbrown.app.util.OIDPrefixCursor;
+import com.dustintbrown.app.util.OIDServer;
+import com.dustintbrown.app.util.OIDSetAlgebra;
 import com.dustintbrown.app.util.OIDService;
+import com.dustintbrown.app.util.OIDStorageMode;
+import com.dustintbrown.app.util.OIDTextWriter;
 
+import javax.management.JMException;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collection;
-import java.util.InputMismatchException;
-import java.util.Scanner;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -29,153 +53,412 @@ public class App {
             e.printStackTrace();
         }
 
+        String storage = System.getProperty("oid.storage");
+        if (storage != null) {
+            oidService.setStorageMode(OIDStorageMode.valueOf(storage.toUpperCase()));
+        }
+        oidService.setSharded(Boolean.getBoolean("oid.sharded"));
+        String lookup = System.getProperty("oid.lookup");
+        if (lookup != null) {
+            oidService.setLookupMode(OIDLookupMode.valueOf(lookup.toUpperCase()));
+        }
+        Long hashBudget = Long.getLong("oid.hash.budget");
+        if (hashBudget != null) {
+            oidService.setHashMemoryBudget(hashBudget);
+        }
+        String filter = System.getProperty("oid.filter.fpp");
+        if (filter != null) {
+            oidService.setFilterFalsePositiveRate(Double.parseDouble(filter));
+        }
+        try {
+            oidService.getMetrics().register(ManagementFactory.getPlatformMBeanServer(), "default", oidService);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register metrics MBeans: " + e.getMessage(), e);
+        }
+
+        if (args.length > 0 && "--server".equals(args[0])) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            runBatch(args.length > 1 ? args[1] : "-");
+            return;
+        }
+
         //
         // Show Menu
         //
-        showMenu();
+        try {
+            showMenu(new BufferedReader(new InputStreamReader(System.in)));
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Loads a file the way option 1 does: served in place with -Doid.disk, mapped if it is a snapshot and
+     * imported otherwise.
+     *
+     * @param service           service to load into
+     * @param filename          local file of OIDs or snapshot
+     * @return                  one line describing what was loaded
+     * @throws IOException      throws an exception if there are issues with the given file
+     */
+    static String load(OIDService service, String filename) throws IOException {
+        if (Boolean.getBoolean("oid.disk")) {
+            openSortedFile(service, filename);
+            return "Serving " + service.getOids().size() + " OIDs from " + filename + " in place.";
+        }
+        if (OIDService.isSnapshot(filename)) {
+            service.openSnapshot(filename);
+            return "Opened snapshot of " + service.getOids().size() + " OIDs.";
+        }
+        OIDBulkImporter.Result result = service.importOIDsFromFile(filename);
+        return "Loaded " + service.getOids().size() + " OIDs from " + result.getLines() + " lines."
+                + (result.getRejected() > 0 ? " " + result.getRejected() + " lines could not be parsed and were skipped." : "");
+    }
+
+    /**
+     * Serves a sorted file without loading it. The index interval and cache size can be set with
+     * -Doid.disk.interval and -Doid.disk.cache.
+     */
+    private static void openSortedFile(OIDService service, String filename) throws IOException {
+        service.openSortedFile(filename, Integer.getInteger("oid.disk.interval", DiskOIDStore.DEFAULT_INDEX_INTERVAL),
+                Integer.getInteger("oid.disk.cache", DiskOIDStore.DEFAULT_CACHE_BLOCKS));
     }
 
-    private static void showMenu() {
-        System.out.println("-------------------------");
-        System.out.println(" Choose an OID operation ");
-        System.out.println("-------------------------");
-        System.out.println("1 - Load OIDs from file");
-        System.out.println("2 - Load random OIDs");
-        System.out.println("3 - Write loaded OIDs to a file");
-        System.out.println("4 - Print loaded OIDs to the console");
-        System.out.println("5 - Check if OID exists in loaded data");
-        System.out.println("6 - Find OIDs in data matching a prefix");
-        System.out.println("7 - Encode loaded OIDs");
-        System.out.println("8 - Show diff between loaded OIDs and a given file");
-        System.out.println("9 - Quit");
-
-        Scanner scanner = new Scanner(System.in);
+    /**
+     * Loads the given file, if any, and answers lookups over HTTP until the process is stopped.
+     * Usage: App --server [port] [file]. Worker threads can be set with -Doid.server.threads.
+     */
+    private static void runServer(String[] args) {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        int threads = Integer.getInteger("oid.server.threads", OIDServer.DEFAULT_THREADS);
         try {
-            int choice = scanner.nextInt();
-            switch (choice) {
-                case 1:
-                    //
-                    // Import OIDs from a file
-                    //
-                    if (oidService.getOids().size() > 0) {
-                        System.out.println("WARNING: This will clear existing loaded OIDs");
-                    }
-                    try {
-                        System.out.println("Enter a filename");
-                        Scanner scanner1 = new Scanner(System.in);
-                        String filename = scanner1.nextLine();
-                        oidService.importOIDsFromFile(filename);
-                    } catch (FileNotFoundException e) {
-                        System.out.println("The specified file was not found.");
-                    } catch (IOException ex) {
-                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                    }
-                    break;
-                case 2:
-                    //
-                    // Load from random generation
-                    //
-                    if (oidService.getOids().size() > 0) {
-                        System.out.println("WARNING: This will clear existing loaded OIDs");
-                    }
-                    System.out.println("How many OIDs would you like to generate?");
-                    Scanner scanner2 = new Scanner(System.in);
-                    oidService.populateWithRandomOIDs(scanner2.nextInt());
-                    break;
-                case 3:
-                    //
-                    // Write OIDS to file
-                    //
-                    Scanner scanner3 = new Scanner(System.in);
-                    try {
-                        String filename = scanner3.nextLine();
-                        oidService.populateWithRandomOIDs(10);
-                        oidService.writeOIDsToFile(filename);
-                    } catch (Exception ex) {
-                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                    }
-                    break;
-                case 4:
-                    //
-                    // Print OIDs
-                    //
-                    OIDService.printOIDs(oidService.getOids());
-                    break;
-                case 5:
-                    //
-                    // Does OID exist
-                    //
-                    if (oidService.getOids().size() < 1) {
-                        System.out.println("You must first load OIDs.");
+            if (args.length > 2) {
+                load(oidService, args[2]);
+            }
+            OIDServer server = new OIDServer(oidService, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                    threads, OIDServer.DEFAULT_QUEUE_CAPACITY);
+            CountDownLatch stopped = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                stopped.countDown();
+            }));
+            server.start();
+            System.out.println("Serving " + oidService.getOids().size() + " OIDs on port " + server.getPort() + ".");
+            stopped.await();
+        } catch (FileNotFoundException e) {
+            System.out.println("The specified file was not found.");
+            System.exit(1);
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the commands of a script, one per line, and reports the time spent in each kind of command on stderr.
+     * Usage: App --batch file|-, where - reads the script from stdin. Exits with status 1 if any command failed.
+     * @see BatchRunner
+     */
+    private static void runBatch(String script) {
+        BatchRunner batch = new BatchRunner(oidService);
+        long failures;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                "-".equals(script) ? System.in : new FileInputStream(script), StandardCharsets.UTF_8), 1 << 16);
+             OIDTextWriter out = new OIDTextWriter(System.out, 1 << 16, false)) {
+            failures = batch.run(in, out);
+        } catch (FileNotFoundException e) {
+            System.out.println("The specified file was not found.");
+            System.exit(1);
+            return;
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+            System.exit(1);
+            return;
+        }
+        System.err.print(batch.report());
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the next answer to a prompt.
+     *
+     * @throws EOFException     if the input has ended
+     */
+    private static String readLine(BufferedReader in) throws IOException {
+        String returnMe = in.readLine();
+        if (returnMe == null) {
+            throw new EOFException("End of input");
+        }
+        return returnMe;
+    }
+
+    /**
+     * Shows the menu and runs the chosen operation until the user quits or the input ends. Every prompt reads
+     * from the same reader, so answers typed or piped ahead are not lost between prompts.
+     */
+    private static void showMenu(BufferedReader in) throws IOException {
+        while (true) {
+            System.out.println("-------------------------");
+            System.out.println(" Choose an OID operation ");
+            System.out.println("-------------------------");
+            System.out.println("1 - Load OIDs from file");
+            System.out.println("2 - Load random OIDs");
+            System.out.println("3 - Write loaded OIDs to a file");
+            System.out.println("4 - Print loaded OIDs to the console");
+            System.out.println("5 - Check if OID exists in loaded data");
+            System.out.println("6 - Find OIDs in data matching a prefix");
+            System.out.println("7 - Encode loaded OIDs");
+            System.out.println("8 - Show diff between loaded OIDs and a given file");
+            System.out.println("9 - Save loaded OIDs as a binary snapshot");
+            System.out.println("10 - Check every OID in a file against loaded data");
+            System.out.println("11 - Apply a +/- delta file to loaded OIDs");
+            System.out.println("12 - Show operation metrics");
+            System.out.println("13 - Combine OID files (union, intersection, difference or at least K)");
+            System.out.println("14 - Quit");
+
+            String line = in.readLine();
+            if (line == null) {
+                return;
+            }
+            try {
+                int choice = Integer.parseInt(line.trim());
+                switch (choice) {
+                    case 1:
+                        //
+                        // Import OIDs from a file
+                        //
+                        if (oidService.getOids().size() > 0) {
+                            System.out.println("WARNING: This will clear existing loaded OIDs");
+                        }
+                        try {
+                            System.out.println("Enter a filename");
+                            System.out.println(load(oidService, readLine(in)));
+                        } catch (FileNotFoundException e) {
+                            System.out.println("The specified file was not found.");
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                        }
+                        break;
+                    case 2:
+                        //
+                        // Load from random generation
+                        //
+                        if (oidService.getOids().size() > 0) {
+                            System.out.println("WARNING: This will clear existing loaded OIDs");
+                        }
+                        System.out.println("How many OIDs would you like to generate?");
+                        oidService.populateWithRandomOIDs(Integer.parseInt(readLine(in).trim()));
+                        break;
+                    case 3:
+                        //
+                        // Write OIDS to file
+                        //
+                        if (oidService.getOids().size() < 1) {
+                            System.out.println("You must first load OIDs.");
+                            break;
+                        }
+                        System.out.println("Enter a filename (ending in .gz to compress)");
+                        try {
+                            String filename = readLine(in);
+                            String sync = System.getProperty("oid.export.sync", OIDExporter.Sync.NONE.name());
+                            long bytes = oidService.writeOIDsToFile(filename, filename.endsWith(".gz"),
+                                    OIDExporter.Sync.valueOf(sync.toUpperCase()));
+                            System.out.println("Wrote " + oidService.getOids().size() + " OIDs (" + bytes + " bytes) to " + filename + ".");
+                        } catch (Exception ex) {
+                            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                        }
+                        break;
+                    case 4:
+                        //
+                        // Print OIDs
+                        //
+                        OIDService.printOIDs(oidService.getOids());
+                        break;
+                    case 5:
+                        //
+                        // Does OID exist
+                        //
+                        if (oidService.getOids().size() < 1) {
+                            System.out.println("You must first load OIDs.");
+                            break;
+                        }
+                        System.out.println("Enter OID to find");
+                        String oid = readLine(in);
+                        System.out.println("Does " + oid + " appear in the set: " + oidService.exists(oid));
+                        if (oidService.getFilter() != null) {
+                            System.out.println("Filter: " + oidService.getFilter());
+                        }
+                        break;
+                    case 6:
+                        //
+                        // Return all OIDs with matching prefix
+                        //
+                        System.out.println("Enter prefix to find");
+                        String prefix = readLine(in);
+                        OIDPrefixCursor cursor = oidService.prefixCursor(prefix);
+                        if (cursor.count() > 0) {
+                            System.out.println(cursor.count() + " matches found for '" + prefix + "'. Would you like to output them to the console? (y/n/page size)");
+                            String answer = readLine(in).trim();
+                            if (answer.startsWith("y")) {
+                                OIDService.printOIDs(cursor, Long.MAX_VALUE);
+                            } else if (answer.matches("\\d{1,9}")) {
+                                int pageSize = Math.max(1, Integer.parseInt(answer));
+                                OIDService.printOIDs(cursor, pageSize);
+                                while (cursor.hasNext()) {
+                                    System.out.println("Showing " + cursor.offset() + " of " + cursor.count() + ". Press enter for more or q to stop.");
+                                    if (readLine(in).startsWith("q")) {
+                                        break;
+                                    }
+                                    OIDService.printOIDs(cursor, pageSize);
+                                }
+                            }
+                        } else {
+                            System.out.println("No matches found.");
+                        }
+                        break;
+                    case 7:
+                        //
+                        // Encode Loaded OIDs
+                        //
+                        OIDEncoder.Encoded encoded = oidService.encodeAll();
+                        System.out.println(encoded.size() + " OIDs encoded into " + encoded.byteSize() + " bytes. Would you like to output them to the console in Hex? (y/n)");
+                        if (readLine(in).startsWith("y")) {
+                            OIDService.printEncodedOIDsInHex(encoded);
+                        }
+                        break;
+                    case 8:
+                        //
+                        // Generate diff
+                        //
+                        System.out.println("Enter filename A to load and diff");
+
+                        try {
+                            String filenameA = readLine(in);
+                            System.out.println("Enter filename B to load and diff");
+                            String filenameB = readLine(in);
+
+
+                            try (OIDTextWriter writer = new OIDTextWriter(System.out, 1 << 16, false)) {
+                                OIDDiff.Stats stats = oidService.diffFiles(filenameA, filenameB, OIDDiff.textSink(writer), false);
+                                writer.write(stats.getAdded() + " added, " + stats.getRemoved() + " removed, "
+                                        + stats.getUnchanged() + " unchanged\n");
+                            }
+                        } catch (FileNotFoundException e) {
+                            System.out.println("The specified file was not found.");
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                        }
+
                         break;
-                    }
-                    System.out.println("Enter OID to find");
-                    Scanner scanner5 = new Scanner(System.in);
-                    String oid = scanner5.nextLine();
-                    System.out.println("Does " + oid + " appear in the set: " + oidService.exists(oid));
-                    break;
-                case 6:
-                    //
-                    // Return all OIDs with matching prefix
-                    //
-                    System.out.println("Enter prefix to find");
-                    Scanner scanner6 = new Scanner(System.in);
-                    String prefix = scanner6.nextLine();
-                    Collection<int[]> matches = oidService.getOidsWithPrefix(prefix);
-                    if (matches.size() > 0) {
-                        System.out.println(matches.size() + " matches found for '" + prefix + "'. Would you like to output them to the console? (y/n)");
-                        Scanner scanner6a = new Scanner(System.in);
-                        if (scanner6a.nextLine().startsWith("y")) {
-                            OIDService.printOIDs(matches);
+                    case 9:
+                        //
+                        // Save a binary snapshot
+                        //
+                        System.out.println("Enter a filename for the snapshot");
+                        try {
+                            String filename = readLine(in);
+                            long bytes = oidService.saveSnapshot(filename);
+                            System.out.println("Saved " + oidService.getOids().size() + " OIDs in " + bytes + " bytes.");
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
                         }
-                    } else {
-                        System.out.println("No matches found.");
-                    }
-                    break;
-                case 7:
-                    //
-                    // Encode Loaded OIDs
-                    //
-                    Collection<byte[]> encoded = oidService.encode();
-                    System.out.println(encoded.size() + "Would you like to output them to the console in Hex? (y/n)");
-                    Scanner scanner6a = new Scanner(System.in);
-                    if (scanner6a.nextLine().startsWith("y")) {
-                        OIDService.printEncodedOIDsInHex(encoded);
-                    }
-                    break;
-                case 8:
-                    //
-                    // Generate diff
-                    //
-                    System.out.println("Enter filename A to load and diff");
-                    Scanner scanner7 = new Scanner(System.in);
-
-                    try {
-                        String filenameA = scanner7.nextLine();
-                        System.out.println("Enter filename B to load and diff");
-                        String filenameB = scanner7.nextLine();
-
-
-                        oidService.diffFiles(filenameA, filenameB).forEach(System.out::println);
-                    } catch (FileNotFoundException e) {
-                        System.out.println("The specified file was not found.");
-                    } catch (IOException ex) {
-                        LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
-                    }
-
-                    break;
-                case 9:
-                    // Perform "quit" case.
-                    System.exit(0);
-                default:
-                    // The user input an unexpected choice.
-                    System.out.println("Invalid choice. Please try again.");
-                    showMenu();
+                        break;
+                    case 10:
+                        //
+                        // Check a file of OIDs in one pass
+                        //
+                        System.out.println("Enter a filename of OIDs to check");
+                        try {
+                            String filename = readLine(in);
+                            OIDMembership.Result result = oidService.existsAll(filename);
+                            System.out.println(result.getHitCount() + " of " + result.getProbes() + " OIDs are loaded"
+                                    + (result.getMalformed().isEmpty() ? "." : ", " + result.getMalformed().cardinality() + " lines could not be parsed."));
+                            System.out.println("Enter a filename to write one result per line to, or leave blank to skip");
+                            String output = readLine(in);
+                            if (!output.isEmpty()) {
+                                try (OutputStream out = new FileOutputStream(output)) {
+                                    result.writeTo(out);
+                                }
+                            }
+                        } catch (FileNotFoundException e) {
+                            System.out.println("The specified file was not found.");
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                        }
+                        break;
+                    case 11:
+                        //
+                        // Apply changes without a reload
+                        //
+                        System.out.println("Enter a filename of + and - lines to apply");
+                        try {
+                            String filename = readLine(in);
+                            OIDDelta delta = oidService.applyDelta(filename);
+                            System.out.println("Applied " + delta + ", " + oidService.getOids().size() + " OIDs loaded"
+                                    + (delta.getRejected() == 0 ? "." : ", " + delta.getRejected() + " lines could not be parsed."));
+                        } catch (FileNotFoundException e) {
+                            System.out.println("The specified file was not found.");
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                        }
+                        break;
+                    case 12:
+                        //
+                        // Dump latency histograms and counters
+                        //
+                        System.out.print(oidService.getMetrics().report(oidService.getOids()));
+                        break;
+                    case 13:
+                        //
+                        // Set algebra across many files
+                        //
+                        System.out.println("Enter the filenames to combine, separated by spaces (the first is the base for a difference)");
+                        try {
+                            List<String> filenames = Arrays.asList(readLine(in).trim().split("\\s+"));
+                            System.out.println("Enter union, intersection, difference or the number of files an OID must be in");
+                            String selection = readLine(in).trim();
+                            OIDSetAlgebra.Operation operation;
+                            int k = 1;
+                            if (selection.matches("\\d{1,9}")) {
+                                operation = OIDSetAlgebra.Operation.AT_LEAST;
+                                k = Integer.parseInt(selection);
+                            } else {
+                                operation = OIDSetAlgebra.Operation.valueOf(selection.toUpperCase());
+                            }
+                            System.out.println("Are the files already sorted? (y/n)");
+                            boolean sorted = readLine(in).startsWith("y");
+                            System.out.println("Enter a filename to write the result to");
+                            String output = readLine(in);
+                            try (OIDTextWriter writer = new OIDTextWriter(new FileOutputStream(output))) {
+                                OIDSetAlgebra.Result result = oidService.combineFiles(filenames, operation, k, sorted, writer::writeLine);
+                                System.out.println("Wrote " + result + " to " + output + ".");
+                            }
+                        } catch (FileNotFoundException e) {
+                            System.out.println("The specified file was not found.");
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Invalid choice: " + e.getMessage());
+                        } catch (IOException ex) {
+                            LOGGER.log(Level.SEVERE, ex.getMessage(), ex);
+                        }
+                        break;
+                    case 14:
+                        // Perform "quit" case.
+                        return;
+                    default:
+                        // The user input an unexpected choice.
+                        System.out.println("Invalid choice. Please try again.");
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid choice. Please try again.");
             }
-        } catch(InputMismatchException ime){
-            System.out.println("Invalid choice. Please try again.");
+            System.out.println("");
         }
-        System.out.println("");
-        showMenu();
     }
 }
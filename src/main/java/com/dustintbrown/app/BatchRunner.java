@@ -0,0 +1,230 @@
+package com.dustintbrown.app;
+
+import com.dustintbrown.app.util.OIDDelta;
+import com.dustintbrown.app.util.OIDDiff;
+import com.dustintbrown.app.util.OIDExporter;
+import com.dustintbrown.app.util.OIDMembership;
+import com.dustintbrown.app.util.OIDPrefixCursor;
+import com.dustintbrown.app.util.OIDService;
+import com.dustintbrown.app.util.OIDSetAlgebra;
+import com.dustintbrown.app.util.OIDTextWriter;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs menu operations from a script instead of prompts, one command per line, so a pipeline can run millions of
+ * lookups in one JVM. The script is read through a single reader and every result goes through a single
+ * {@link OIDTextWriter}; the number of commands of each kind that succeeded and the time spent in them are kept for
+ * {@link #report()}, which counts failed and unknown commands separately.
+ *
+ * <pre>
+ * load FILE                         load OIDs or a snapshot, as option 1 does
+ * random N                          load N random OIDs
+ * exists OID                        true or false
+ * prefix-count PREFIX               number of OIDs starting with the prefix
+ * prefix PREFIX [LIMIT]             the OIDs starting with the prefix, one per line
+ * check FILE [OUTPUT]               check every OID in a file, optionally writing one result per line
+ * diff FILE_A FILE_B                +/- lines between two files, then the totals
+ * delta FILE                        apply a +/- delta file
+ * write FILE                        write loaded OIDs as text, compressed if FILE ends in .gz
+ * snapshot FILE                     save loaded OIDs as a binary snapshot
+ * combine OPERATION OUTPUT FILE...  union, intersection, difference or at least K of unsorted files
+ * combine-sorted ...                the same for files that are already sorted
+ * metrics                           operation metrics
+ * quit                              stop reading the script
+ * </pre>
+ *
+ * Blank lines and lines starting with # are skipped. A command that fails writes one line starting with "error: "
+ * and the script goes on.
+ *
+ * @author  Dustin Brown
+ */
+public final class BatchRunner {
+    private static final String[] NO_ARGS = new String[0];
+
+    private final OIDService oidService;
+    // Command name to (count, nanoseconds), in order of first use
+    private final Map<String, long[]> timings = new LinkedHashMap<>();
+    private long failures;
+
+    /**
+     * @param oidService        service the commands run against
+     */
+    public BatchRunner(OIDService oidService) {
+        this.oidService = oidService;
+    }
+
+    /**
+     * Runs every command of a script.
+     *
+     * @param in                script, one command per line
+     * @param out               receives the results; flushed before this returns
+     * @return                  number of commands that failed
+     * @throws IOException      if the script cannot be read or the results cannot be written
+     */
+    public long run(BufferedReader in, OIDTextWriter out) throws IOException {
+        long returnMe = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            String command = space < 0 ? line : line.substring(0, space);
+            String[] args = space < 0 ? NO_ARGS : line.substring(space + 1).trim().split("\\s+");
+            if ("quit".equals(command)) {
+                break;
+            }
+            final long start = System.nanoTime();
+            try {
+                execute(command, args, out);
+            } catch (FileNotFoundException e) {
+                out.write("error: file not found: " + e.getMessage() + "\n");
+                returnMe++;
+                continue;
+            } catch (IOException | RuntimeException e) {
+                out.write("error: " + e.getMessage() + "\n");
+                returnMe++;
+                continue;
+            }
+            // Only commands that succeeded are timed, so errors do not skew their throughput
+            long[] timing = timings.computeIfAbsent(command, c -> new long[2]);
+            timing[0]++;
+            timing[1] += System.nanoTime() - start;
+        }
+        out.flush();
+        failures += returnMe;
+        return returnMe;
+    }
+
+    private void execute(String command, String[] args, OIDTextWriter out) throws IOException {
+        switch (command) {
+            case "load":
+                out.write(App.load(oidService, arg(args, 0)) + "\n");
+                break;
+            case "random":
+                oidService.populateWithRandomOIDs(Integer.parseInt(arg(args, 0)));
+                out.write("Loaded " + oidService.getOids().size() + " OIDs.\n");
+                break;
+            case "exists":
+                out.write(oidService.exists(arg(args, 0)) ? "true\n" : "false\n");
+                break;
+            case "prefix-count":
+                out.write(oidService.countOidsWithPrefix(arg(args, 0)) + "\n");
+                break;
+            case "prefix": {
+                OIDPrefixCursor cursor = oidService.prefixCursor(arg(args, 0));
+                cursor.writeTo(out, args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE);
+                break;
+            }
+            case "check": {
+                OIDMembership.Result result = oidService.existsAll(arg(args, 0));
+                out.write(result.getHitCount() + " of " + result.getProbes() + " OIDs are loaded, "
+                        + result.getMalformed().cardinality() + " malformed\n");
+                if (args.length > 1) {
+                    try (OutputStream results = new FileOutputStream(args[1])) {
+                        result.writeTo(results);
+                    }
+                }
+                break;
+            }
+            case "diff": {
+                OIDDiff.Stats stats = oidService.diffFiles(arg(args, 0), arg(args, 1), OIDDiff.textSink(out), false);
+                out.write(stats.getAdded() + " added, " + stats.getRemoved() + " removed, "
+                        + stats.getUnchanged() + " unchanged\n");
+                break;
+            }
+            case "delta": {
+                OIDDelta delta = oidService.applyDelta(arg(args, 0));
+                out.write("Applied " + delta + ", " + oidService.getOids().size() + " OIDs loaded, "
+                        + delta.getRejected() + " rejected\n");
+                break;
+            }
+            case "write": {
+                String filename = arg(args, 0);
+                String sync = System.getProperty("oid.export.sync", OIDExporter.Sync.NONE.name());
+                long bytes = oidService.writeOIDsToFile(filename, filename.endsWith(".gz"),
+                        OIDExporter.Sync.valueOf(sync.toUpperCase()));
+                out.write("Wrote " + oidService.getOids().size() + " OIDs (" + bytes + " bytes) to " + filename + ".\n");
+                break;
+            }
+            case "snapshot": {
+                long bytes = oidService.saveSnapshot(arg(args, 0));
+                out.write("Saved " + oidService.getOids().size() + " OIDs in " + bytes + " bytes.\n");
+                break;
+            }
+            case "combine":
+            case "combine-sorted":
+                combine(args, "combine-sorted".equals(command), out);
+                break;
+            case "metrics":
+                out.write(oidService.getMetrics().report(oidService.getOids()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command);
+        }
+    }
+
+    private void combine(String[] args, boolean sorted, OIDTextWriter out) throws IOException {
+        String selection = arg(args, 0);
+        String output = arg(args, 1);
+        List<String> filenames = Arrays.asList(args).subList(2, Math.max(2, args.length));
+        if (filenames.isEmpty()) {
+            throw new IllegalArgumentException("No files to combine");
+        }
+        OIDSetAlgebra.Operation operation;
+        int k = 1;
+        if (selection.matches("\\d{1,9}")) {
+            operation = OIDSetAlgebra.Operation.AT_LEAST;
+            k = Integer.parseInt(selection);
+        } else {
+            operation = OIDSetAlgebra.Operation.valueOf(selection.toUpperCase());
+        }
+        try (OIDTextWriter writer = new OIDTextWriter(new FileOutputStream(output))) {
+            OIDSetAlgebra.Result result = oidService.combineFiles(filenames, operation, k, sorted, writer::writeLine);
+            out.write("Wrote " + result + " to " + output + ".\n");
+        }
+    }
+
+    private static String arg(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing argument " + (index + 1));
+        }
+        return args[index];
+    }
+
+    /**
+     * @return                  total number of commands that failed across every run
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return                  one line per kind of command that succeeded: count, total and mean time, and commands
+     *                          per second; then the number of failed commands, if any
+     */
+    public String report() {
+        StringBuilder returnMe = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : timings.entrySet()) {
+            long count = entry.getValue()[0];
+            long nanos = entry.getValue()[1];
+            returnMe.append(String.format(Locale.ROOT, "%-14s %10d commands %12.1f ms %12.1f us/command %14.0f/s%n",
+                    entry.getKey(), count, nanos / 1e6, nanos / 1e3 / count, count * 1e9 / Math.max(1, nanos)));
+        }
+        if (failures > 0) {
+            returnMe.append(String.format(Locale.ROOT, "%-14s %10d commands%n", "errors", failures));
+        }
+        return returnMe.toString();
+    }
+}
@@ -0,0 +1,245 @@
+package com.dustintbrown.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+/**
+ * Load generator for {@link com.dustintbrown.app.util.OIDServer}. Splits a file of OIDs into batches and posts
+ * them from several threads for a fixed time, then reports throughput and latency percentiles.
+ */
+public class OIDLoadClient {
+
+    private final static Logger LOGGER = Logger.getLogger(OIDLoadClient.class.getName());
+
+    /**
+     * Outcome of a load run. Latencies are per request, in microseconds.
+     */
+    public static final class Report {
+        private final long requests;
+        private final long oids;
+        private final long errors;
+        private final long millis;
+        private final long[] latencies;
+
+        Report(long requests, long oids, long errors, long millis, long[] latencies) {
+            this.requests = requests;
+            this.oids = oids;
+            this.errors = errors;
+            this.millis = millis;
+            this.latencies = latencies;
+            Arrays.sort(this.latencies);
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getOids() {
+            return oids;
+        }
+
+        /**
+         * @return                  requests that failed or were not answered with one line per OID
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @param fraction          percentile between 0 and 1, such as 0.99
+         * @return                  latency in microseconds that the given fraction of requests did not exceed
+         */
+        public long percentile(double fraction) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(fraction * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(1, millis) / 1000.0;
+            return String.format("%d requests (%d errors), %d OIDs in %.1f s: %.0f requests/s, %.0f OIDs/s, "
+                            + "latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                    requests, errors, oids, seconds, requests / seconds, oids / seconds,
+                    percentile(0.5) / 1000.0, percentile(0.99) / 1000.0, percentile(0.999) / 1000.0,
+                    percentile(1.0) / 1000.0);
+        }
+    }
+
+    /**
+     * Splits OID text into request bodies of batchSize lines each.
+     *
+     * @param text              OIDs, one per line
+     * @param batchSize         lines per body
+     * @return                  request bodies, the last one possibly shorter
+     */
+    public static List<byte[]> batches(byte[] text, int batchSize) {
+        List<byte[]> returnMe = new ArrayList<>();
+        int start = 0;
+        int lines = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] == '\n' && ++lines == batchSize) {
+                returnMe.add(Arrays.copyOfRange(text, start, i + 1));
+                start = i + 1;
+                lines = 0;
+            }
+        }
+        if (start < text.length) {
+            returnMe.add(Arrays.copyOfRange(text, start, text.length));
+        }
+        return returnMe;
+    }
+
+    /**
+     * Posts the batches round robin from the given number of threads until the duration has passed.
+     *
+     * @param endpoint          batch endpoint, such as http://localhost:8080/exists
+     * @param batches           request bodies, one OID per line
+     * @param threads           number of concurrent clients
+     * @param durationMillis    how long to keep sending
+     * @return                  throughput and latencies of every completed request
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public static Report run(URI endpoint, List<byte[]> batches, int threads, long durationMillis) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        int[] lineCounts = new int[batches.size()];
+        for (int b = 0; b < lineCounts.length; b++) {
+            lineCounts[b] = countLines(batches.get(b));
+        }
+        AtomicLong next = new AtomicLong();
+        AtomicLong oids = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[threads][];
+        int[] counts = new int[threads];
+        final long startTime = System.currentTimeMillis();
+        final long deadline = System.nanoTime() + durationMillis * 1_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            workers[t] = new Thread(() -> {
+                long[] mine = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    int b = (int) (next.getAndIncrement() % batches.size());
+                    HttpRequest request = HttpRequest.newBuilder(endpoint)
+                            .timeout(Duration.ofSeconds(30))
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(batches.get(b)))
+                            .build();
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        long micros = (System.nanoTime() - begin) / 1000;
+                        byte[] body = response.body();
+                        if (response.statusCode() != 200 || countLines(body) != lineCounts[b]) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == mine.length) {
+                            mine = Arrays.copyOf(mine, count * 2);
+                        }
+                        mine[count++] = micros;
+                        oids.addAndGet(lineCounts[b]);
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                latencies[worker] = mine;
+                counts[worker] = count;
+            }, "oid-load-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long millis = System.currentTimeMillis() - startTime;
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(latencies[t], 0, all, pos, counts[t]);
+            pos += counts[t];
+        }
+        return new Report(total, oids.get(), errors.get(), millis, all);
+    }
+
+    private static int countLines(byte[] text) {
+        int returnMe = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] == '\n') {
+                returnMe++;
+            }
+        }
+        if (text.length > 0 && text[text.length - 1] != '\n') {
+            returnMe++;
+        }
+        return returnMe;
+    }
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 2 || args.length > 5) {
+            System.out.println("Invalid Arguments. Must specify the endpoint and a file of OIDs to send, and optionally threads, seconds and batch size");
+            System.out.println("Usage: OIDLoadClient http://localhost:8080/exists ./1000-oids.txt [threads] [seconds] [batch]");
+            System.exit(1);
+        }
+
+        //
+        // Setup Logger
+        //
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            InputStream input = classLoader.getResourceAsStream("logger.properties");
+            LogManager.getLogManager().readConfiguration(input);
+        } catch (IOException e) {
+            LOGGER.severe(e.getMessage());
+            e.printStackTrace();
+        }
+
+        final URI endpoint = URI.create(args[0]);
+        final int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        final long seconds = args.length > 3 ? Long.parseLong(args[3]) : 30;
+        final int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+        try {
+            List<byte[]> batches = batches(Files.readAllBytes(Paths.get(args[1])), batchSize);
+            if (batches.isEmpty()) {
+                System.out.println("The file contains no OIDs.");
+                System.exit(1);
+            }
+            Object[] params = {endpoint, batches.size(), batchSize, threads, seconds};
+            LOGGER.log(Level.INFO, "Sending {1} batches of {2} OIDs to {0} from {3} threads for {4} seconds", params);
+            System.out.println(run(endpoint, batches, threads, seconds * 1000));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.dustintbrown.app;
 
-import com.dustintbrown.app.util.OIDService;
+import com.dustintbrown.app.util.OIDGenerator;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -13,14 +16,12 @@ public class RandomOIDGenerator {
     private final static Logger LOGGER = Logger.getLogger(RandomOIDGenerator.class.getName());
 
     public static void main(String[] args){
-        if(args==null || args.length!=2){
-            System.out.println("Invalid Arguments. Must specify number to create and output filename");
-            System.out.println("Usage: RandomOIDGenerator 1000 ./1000-oids.txt");
+        if(args==null || args.length<2 || args.length>3){
+            System.out.println("Invalid Arguments. Must specify number to create and output filename, and optionally a seed");
+            System.out.println("Usage: RandomOIDGenerator 1000 ./1000-oids.txt [seed]");
             System.exit(1);
         }
 
-        OIDService oidService = new OIDService();
-
         //
         // Setup Logger
         //
@@ -33,12 +34,15 @@ public class RandomOIDGenerator {
             e.printStackTrace();
         }
 
-        final int num = Integer.parseInt(args[0]);
+        final long num = Long.parseLong(args[0]);
         final String filename = args[1];
+        final long seed = args.length == 3 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        // Leave room for the merge buffers and the JVM itself
+        final long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+        LOGGER.log(Level.INFO, "Generating {0} OIDs with seed {1}", new Object[]{num, Long.toString(seed)});
 
         try {
-            oidService.populateWithRandomOIDs(num);
-            oidService.writeOIDsToFile(filename);
+            new OIDGenerator(seed).writeSorted(num, Paths.get(filename), memoryBudget, null, ForkJoinPool.commonPool());
         }catch (IOException e){
             LOGGER.log(Level.SEVERE,e.getMessage(),e);
             e.printStackTrace();
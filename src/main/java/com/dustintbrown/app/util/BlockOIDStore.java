@@ -0,0 +1,343 @@
+package com.dustintbrown.app.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link OIDStore} over front-coded blocks of varint encoded OIDs. Every block holds up to blockSize OIDs in
+ * order; each entry is (arcs shared with the previous entry, suffix length, suffix arcs) as unsigned varints,
+ * and the first entry of a block shares nothing so any block can be decoded on its own.
+ *
+ * Lookups binary search the block heads and then decode a single block. The bytes live in one or more
+ * {@link ByteBuffer} segments, which may be memory mapped (see {@link OIDSnapshot}) or built on the heap with
+ * {@link #build(OIDStore, int)}. Buffers are only read with absolute gets so a store can be shared between threads.
+ *
+ * @author  Dustin Brown
+ */
+public final class BlockOIDStore extends OIDStore {
+    /** Default number of OIDs per block for stores built on the heap */
+    public static final int DEFAULT_BLOCK_SIZE = 32;
+    // Size of the heap segments blocks are encoded into; the last one is trimmed
+    private static final int SEGMENT_SIZE = 1 << 24;
+
+    private final ByteBuffer[] segments;
+    // segment index in the high 32 bits and position within the segment in the low 32 bits, per block
+    private final long[] blocks;
+    private final int blockSize;
+    private final int size;
+    private final int maxLength;
+    private final long byteSize;
+    // Scratch cursor per thread for lookups, which never call out while using it; scans make their own since
+    // their consumer may run lookups on the same store
+    private final ThreadLocal<Cursor> cursors = ThreadLocal.withInitial(Cursor::new);
+
+    /**
+     * @param segments          buffers holding the encoded blocks; no block may span two segments
+     * @param blocks            (segment << 32 | position) of the first byte of each block
+     * @param blockSize         OIDs per block; only the last block may hold fewer
+     * @param size              total number of OIDs
+     * @param maxLength         largest number of arcs of any OID
+     * @param byteSize          total number of encoded bytes
+     */
+    BlockOIDStore(ByteBuffer[] segments, long[] blocks, int blockSize, int size, int maxLength, long byteSize) {
+        this.segments = segments;
+        this.blocks = blocks;
+        this.blockSize = blockSize;
+        this.size = size;
+        this.maxLength = maxLength;
+        this.byteSize = byteSize;
+    }
+
+    /**
+     * Front codes a sorted store into heap segments. Sorted OIDs mostly share all but their last arcs with their
+     * neighbour and most arcs fit a single varint byte, so this takes a fraction of the heap of a
+     * {@link PackedOIDStore}, at the cost of decoding part of a block per lookup.
+     *
+     * @param store             sorted OIDs to encode
+     * @param blockSize         OIDs per block; larger blocks are smaller but slower to search
+     * @return                  store holding the same OIDs
+     */
+    public static BlockOIDStore build(OIDStore store, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        // Blocks never span segments, so a segment must fit the largest possible block
+        long maxBlock = (long) blockSize * maxEntryLength(store.maxLength());
+        if (maxBlock > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Block size too large for OIDs of " + store.maxLength() + " arcs: " + blockSize);
+        }
+        int segmentSize = (int) Math.max(SEGMENT_SIZE, maxBlock);
+        long[] blocks = new long[(store.size() + blockSize - 1) / blockSize];
+        List<ByteBuffer> segments = new ArrayList<>();
+        int[] prev = new int[Math.max(1, store.maxLength())];
+        // current segment bytes, then (prevLen, count, pos) and the byte total of finished segments;
+        // small stores start with a small segment that grows up to the full segment size
+        byte[][] segment = {new byte[(int) Math.min(segmentSize, Math.max(maxBlock, (long) store.size() * 8))]};
+        int[] state = new int[3];
+        long[] finished = {0};
+        store.scan(0, store.size(), (arcs, off, len) -> {
+            int count = state[1];
+            if (count % blockSize == 0) {
+                if (segment[0].length - state[2] < maxBlock && segment[0].length < segmentSize) {
+                    segment[0] = Arrays.copyOf(segment[0], segmentSize);
+                } else if (segment[0].length - state[2] < maxBlock) {
+                    segments.add(ByteBuffer.wrap(Arrays.copyOf(segment[0], state[2])));
+                    finished[0] += state[2];
+                    segment[0] = new byte[segmentSize];
+                    state[2] = 0;
+                }
+                blocks[count / blockSize] = ((long) segments.size() << 32) | state[2];
+                state[0] = 0;
+            }
+            state[2] = putEntry(segment[0], state[2], prev, state[0], arcs, off, len);
+            System.arraycopy(arcs, off, prev, 0, len);
+            state[0] = len;
+            state[1] = count + 1;
+        });
+        segments.add(ByteBuffer.wrap(Arrays.copyOf(segment[0], state[2])));
+        return new BlockOIDStore(segments.toArray(new ByteBuffer[0]), blocks, blockSize, store.size(),
+                store.maxLength(), finished[0] + state[2]);
+    }
+
+    /**
+     * @return                  OIDs per block
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return                  number of encoded bytes, excluding the block index
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Appends one block entry for the OID in arcs[off, off + len) to dst. The caller must leave at least
+     * {@link #maxEntryLength(int)} bytes of room.
+     *
+     * @param dst               destination bytes
+     * @param pos               index in dst to start writing at
+     * @param prev              arcs of the previous OID in the block
+     * @param prevLen           number of arcs in the previous OID, or 0 for the first entry of a block
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @return                  index in dst just past the entry
+     */
+    static int putEntry(byte[] dst, int pos, int[] prev, int prevLen, int[] arcs, int off, int len) {
+        int shared = 0;
+        int limit = Math.min(prevLen, len);
+        while (shared < limit && prev[shared] == arcs[off + shared]) {
+            shared++;
+        }
+        pos = OIDRunFile.putVarInt(dst, pos, shared);
+        pos = OIDRunFile.putVarInt(dst, pos, len - shared);
+        for (int i = off + shared; i < off + len; i++) {
+            pos = OIDRunFile.putVarInt(dst, pos, arcs[i]);
+        }
+        return pos;
+    }
+
+    /**
+     * @param len               number of arcs
+     * @return                  largest number of bytes {@link #putEntry} can write for an OID with that many arcs
+     */
+    static int maxEntryLength(int len) {
+        return 5 * (len + 2);
+    }
+
+    /**
+     * Sequential decoder over the entries of a block. Arcs are decoded in place into path, which works because
+     * each entry only replaces the arcs after those it shares with the previous one.
+     */
+    private final class Cursor {
+        private final int[] path;
+        private ByteBuffer buffer;
+        private int pos;
+        private int length;
+
+        Cursor() {
+            this.path = new int[Math.max(1, maxLength)];
+        }
+
+        /**
+         * Positions the cursor at the head of the given block and decodes it.
+         */
+        void seek(int block) {
+            long location = blocks[block];
+            buffer = segments[(int) (location >>> 32)];
+            pos = (int) location;
+            next();
+        }
+
+        void next() {
+            int shared = readVarInt();
+            int suffix = readVarInt();
+            for (int i = shared; i < shared + suffix; i++) {
+                path[i] = readVarInt();
+            }
+            length = shared + suffix;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(pos++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Leaves the cursor on the OID at the given position.
+     */
+    private void moveTo(Cursor cursor, int index) {
+        checkIndex(index);
+        cursor.seek(index / blockSize);
+        for (int i = index % blockSize; i > 0; i--) {
+            cursor.next();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int length(int index) {
+        Cursor cursor = cursors.get();
+        moveTo(cursor, index);
+        return cursor.length;
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        // Earlier entries of the block may be longer than dst, so decode into scratch space
+        Cursor cursor = cursors.get();
+        moveTo(cursor, index);
+        System.arraycopy(cursor.path, 0, dst, 0, cursor.length);
+        return cursor.length;
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        Cursor cursor = cursors.get();
+        moveTo(cursor, index);
+        return OIDComp.compare(cursor.path, 0, cursor.length, key, off, len);
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        Cursor cursor = cursors.get();
+        moveTo(cursor, index);
+        return cursor.length >= len && OIDComp.compare(cursor.path, 0, len, prefix, off, len) == 0;
+    }
+
+    /**
+     * @return                  true once an OID sorts at or after the key, or past every OID starting with it
+     */
+    private static boolean reached(Cursor cursor, int[] key, int off, int len, boolean pastPrefix) {
+        int cmp = OIDComp.compare(cursor.path, 0, cursor.length, key, off, len);
+        if (!pastPrefix) {
+            return cmp >= 0;
+        }
+        return cmp > 0 && !(cursor.length >= len && OIDComp.compare(cursor.path, 0, len, key, off, len) == 0);
+    }
+
+    /**
+     * Finds the first position whose OID has {@link #reached} the key. Block heads are binary searched and one
+     * block is decoded. When the result is below size, the cursor is left on the OID at that position.
+     */
+    private int firstReached(Cursor cursor, int[] key, int off, int len, boolean pastPrefix) {
+        int lo = 0;
+        int hi = blocks.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            cursor.seek(mid);
+            if (reached(cursor, key, off, len, pastPrefix)) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        if (lo == 0) {
+            if (size > 0) {
+                cursor.seek(0);
+            }
+            return 0;
+        }
+        // The head of block lo - 1 has not reached the key, so the answer is in that block or heads block lo
+        int index = (lo - 1) * blockSize;
+        int end = Math.min(size, index + blockSize);
+        cursor.seek(lo - 1);
+        while (++index < end) {
+            cursor.next();
+            if (reached(cursor, key, off, len, pastPrefix)) {
+                return index;
+            }
+        }
+        if (end < size) {
+            cursor.seek(lo);
+        }
+        return end;
+    }
+
+    @Override
+    public int search(int[] key, int off, int len) {
+        Cursor cursor = cursors.get();
+        int index = firstReached(cursor, key, off, len, false);
+        if (index < size && OIDComp.compare(cursor.path, 0, cursor.length, key, off, len) == 0) {
+            return index;
+        }
+        return -index - 1;
+    }
+
+    @Override
+    public int lowerBound(int[] key, int off, int len) {
+        return firstReached(cursors.get(), key, off, len, false);
+    }
+
+    @Override
+    public int prefixEnd(int[] prefix, int off, int len) {
+        return firstReached(cursors.get(), prefix, off, len, true);
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return 8L * blocks.length + byteSize;
+    }
+
+    /**
+     * Decodes OIDs in order, one block after another, reusing a single path buffer.
+     */
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        if (from >= to) {
+            return;
+        }
+        Cursor cursor = new Cursor();
+        moveTo(cursor, from);
+        consumer.accept(cursor.path, 0, cursor.length);
+        for (int i = from + 1; i < to; i++) {
+            if (i % blockSize == 0) {
+                cursor.seek(i / blockSize);
+            } else {
+                cursor.next();
+            }
+            consumer.accept(cursor.path, 0, cursor.length);
+        }
+    }
+}
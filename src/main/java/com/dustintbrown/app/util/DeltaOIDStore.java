@@ -0,0 +1,332 @@
+package com.dustintbrown.app.util;
+
+import java.util.Arrays;
+
+/**
+ * {@link OIDStore} that overlays a small set of changes on a large base store without copying it. OIDs added
+ * since the base was loaded live in their own sorted store and removed base OIDs are remembered by position, so
+ * applying a delta costs time in proportion to the changes rather than to the base. Positions in the overlay are
+ * mapped onto the base and the added OIDs with binary searches over arrays as small as the changes themselves.
+ *
+ * Overlays do not nest: applying a delta to an overlay folds the old and new changes together over the same
+ * base. Once the changes grow large the overlay should be compacted by copying it into a plain store.
+ *
+ * @author  Dustin Brown
+ */
+public final class DeltaOIDStore extends OIDStore {
+    private static final int[] NONE = new int[0];
+
+    private final OIDStore base;
+    private final PackedOIDStore added;
+    // Base position each added OID sorts before, and its position in this store
+    private final int[] insertAt;
+    private final int[] addedAt;
+    // Sorted base positions that were removed, and for each the number of surviving base OIDs before it
+    private final int[] removed;
+    private final int[] survivorsBefore;
+    private final int size;
+
+    private DeltaOIDStore(OIDStore base, PackedOIDStore added, int[] removed) {
+        this.base = base;
+        this.added = added;
+        this.removed = removed;
+        this.size = base.size() - removed.length + added.size();
+        this.survivorsBefore = new int[removed.length];
+        for (int r = 0; r < removed.length; r++) {
+            survivorsBefore[r] = removed[r] - r;
+        }
+        this.insertAt = new int[added.size()];
+        this.addedAt = new int[added.size()];
+        int[] scratch = new int[Math.max(1, added.maxLength())];
+        for (int j = 0; j < insertAt.length; j++) {
+            int len = added.copyArcs(j, scratch);
+            insertAt[j] = base.lowerBound(scratch, 0, len);
+            addedAt[j] = j + insertAt[j] - countBelow(removed, insertAt[j]);
+        }
+    }
+
+    /**
+     * Applies a delta to a store. The result holds every OID of the store and of the delta's additions, less the
+     * delta's removals; additions that are already present and removals that are not are ignored.
+     *
+     * @param store             current OIDs, either a plain store or an earlier overlay
+     * @param delta             changes to apply
+     * @return                  overlay over the original base store
+     */
+    public static DeltaOIDStore apply(OIDStore store, OIDDelta delta) {
+        OIDStore base = store;
+        PackedOIDStore added = PackedOIDStore.EMPTY;
+        int[] removed = NONE;
+        if (store instanceof DeltaOIDStore) {
+            DeltaOIDStore overlay = (DeltaOIDStore) store;
+            base = overlay.base;
+            added = overlay.added;
+            removed = overlay.removed;
+        }
+        PackedOIDStore plus = delta.getAdded();
+        PackedOIDStore minus = delta.getRemoved();
+
+        // Earlier additions survive unless removed now; new additions are only kept if the base lacks them
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder(added.size() + plus.size());
+        added.scan(0, added.size(), (arcs, off, len) -> {
+            if (!minus.containsArcs(arcs, off, len)) {
+                builder.add(arcs, off, len);
+            }
+        });
+        final OIDStore from = base;
+        int[][] restored = {NONE};
+        int[] restoredCount = {0};
+        plus.scan(0, plus.size(), (arcs, off, len) -> {
+            int index = from.search(arcs, off, len);
+            if (index < 0) {
+                builder.add(arcs, off, len);
+            } else {
+                // Base OIDs that were removed earlier come back by dropping their removal
+                if (restoredCount[0] == restored[0].length) {
+                    restored[0] = grow(restored[0], restoredCount[0] + 1);
+                }
+                restored[0][restoredCount[0]++] = index;
+            }
+        });
+        int[] dropped = new int[minus.size()];
+        int droppedCount = 0;
+        int[] scratch = new int[Math.max(1, minus.maxLength())];
+        for (int i = 0; i < minus.size(); i++) {
+            int len = minus.copyArcs(i, scratch);
+            int index = base.search(scratch, 0, len);
+            if (index >= 0) {
+                dropped[droppedCount++] = index;
+            }
+        }
+        // Both lists come from sorted deltas, so they are already in base order
+        int[] nextRemoved = union(difference(removed, restored[0], restoredCount[0]), dropped, droppedCount);
+        return new DeltaOIDStore(base, builder.build(), nextRemoved);
+    }
+
+    /**
+     * @return                  store the changes are laid over
+     */
+    public OIDStore getBase() {
+        return base;
+    }
+
+    /**
+     * @return                  number of OIDs added to the base
+     */
+    public int getAddedCount() {
+        return added.size();
+    }
+
+    /**
+     * @return                  number of base OIDs removed
+     */
+    public int getRemovedCount() {
+        return removed.length;
+    }
+
+    /**
+     * @return                  number of base positions that were removed and are below the given position
+     */
+    private static int countBelow(int[] sorted, int value) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param oid               array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @return                  true if the OID is in the base and was removed by this overlay
+     */
+    public boolean isRemoved(int[] oid, int off, int len) {
+        if (removed.length == 0) {
+            return false;
+        }
+        int index = base.search(oid, off, len);
+        return index >= 0 && isRemoved(index);
+    }
+
+    private boolean isRemoved(int basePosition) {
+        int r = countBelow(removed, basePosition);
+        return r < removed.length && removed[r] == basePosition;
+    }
+
+    /**
+     * @param survivor          number of surviving base OIDs to skip
+     * @return                  base position of the next surviving OID, or the base size if there is none
+     */
+    private int basePosition(int survivor) {
+        return survivor + countBelow(survivorsBefore, survivor + 1);
+    }
+
+    /**
+     * @return                  base position of the OID at the given position, or -(added index) - 1 if it was added
+     */
+    private int resolve(int index) {
+        checkIndex(index);
+        int j = countBelow(addedAt, index);
+        if (j < addedAt.length && addedAt[j] == index) {
+            return -j - 1;
+        }
+        return basePosition(index - j);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int length(int index) {
+        int at = resolve(index);
+        return at < 0 ? added.length(-at - 1) : base.length(at);
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        int at = resolve(index);
+        return at < 0 ? added.copyArcs(-at - 1, dst) : base.copyArcs(at, dst);
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        int at = resolve(index);
+        return at < 0 ? added.compareAt(-at - 1, key, off, len) : base.compareAt(at, key, off, len);
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        int at = resolve(index);
+        return at < 0 ? added.startsWith(-at - 1, prefix, off, len) : base.startsWith(at, prefix, off, len);
+    }
+
+    @Override
+    public int maxLength() {
+        return Math.max(base.maxLength(), added.maxLength());
+    }
+
+    @Override
+    public long memoryUsage() {
+        return base.memoryUsage() + added.memoryUsage() + 8L * (insertAt.length + removed.length);
+    }
+
+    /**
+     * Exact lookups check the small added store and then the base, so they are as fast as the base's.
+     */
+    @Override
+    public boolean hasHashIndex() {
+        return base.hasHashIndex();
+    }
+
+    /**
+     * OIDs below the key are the surviving base OIDs below it plus the added OIDs below it.
+     */
+    @Override
+    public int lowerBound(int[] key, int off, int len) {
+        int b = base.lowerBound(key, off, len);
+        return b - countBelow(removed, b) + added.lowerBound(key, off, len);
+    }
+
+    @Override
+    public int prefixEnd(int[] prefix, int off, int len) {
+        int b = base.prefixEnd(prefix, off, len);
+        return b - countBelow(removed, b) + added.prefixEnd(prefix, off, len);
+    }
+
+    @Override
+    public int search(int[] key, int off, int len) {
+        int lo = lowerBound(key, off, len);
+        return containsArcs(key, off, len) ? lo : -lo - 1;
+    }
+
+    @Override
+    public boolean containsArcs(int[] oid, int off, int len) {
+        if (added.containsArcs(oid, off, len)) {
+            return true;
+        }
+        if (removed.length == 0) {
+            return base.containsArcs(oid, off, len);
+        }
+        // A hashed base settles misses without searching for their position
+        if (base.hasHashIndex() && !base.containsArcs(oid, off, len)) {
+            return false;
+        }
+        int index = base.search(oid, off, len);
+        return index >= 0 && !isRemoved(index);
+    }
+
+    /**
+     * Scans the base once, skipping removed OIDs and slipping added OIDs in before the base OID they sort before.
+     */
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        if (from >= to) {
+            return;
+        }
+        int firstAdded = countBelow(addedAt, from);
+        int endAdded = countBelow(addedAt, to);
+        int baseFrom = basePosition(from - firstAdded);
+        int baseTo = basePosition(to - endAdded);
+        // next added OID, next removed position and current base position
+        int[] cursor = {firstAdded, countBelow(removed, baseFrom), baseFrom};
+        base.scan(baseFrom, baseTo, (arcs, off, len) -> {
+            int position = cursor[2]++;
+            while (cursor[0] < endAdded && insertAt[cursor[0]] <= position) {
+                added.scan(cursor[0], ++cursor[0], consumer);
+            }
+            if (cursor[1] < removed.length && removed[cursor[1]] == position) {
+                cursor[1]++;
+                return;
+            }
+            consumer.accept(arcs, off, len);
+        });
+        added.scan(cursor[0], endAdded, consumer);
+    }
+
+    /**
+     * @return                  sorted values of a that are not among the first bCount values of b
+     */
+    private static int[] difference(int[] a, int[] b, int bCount) {
+        if (bCount == 0) {
+            return a;
+        }
+        int[] returnMe = new int[a.length];
+        int n = 0;
+        int j = 0;
+        for (int value : a) {
+            while (j < bCount && b[j] < value) {
+                j++;
+            }
+            if (j == bCount || b[j] != value) {
+                returnMe[n++] = value;
+            }
+        }
+        return Arrays.copyOf(returnMe, n);
+    }
+
+    /**
+     * @return                  sorted, distinct values of a and of the first bCount values of b
+     */
+    private static int[] union(int[] a, int[] b, int bCount) {
+        int[] returnMe = new int[a.length + bCount];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < bCount) {
+            int value = j == bCount || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (n == 0 || returnMe[n - 1] != value) {
+                returnMe[n++] = value;
+            }
+        }
+        return n == returnMe.length ? returnMe : Arrays.copyOf(returnMe, n);
+    }
+}
@@ -0,0 +1,404 @@
+package com.dustintbrown.app.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link OIDStore} served from a sorted text file in place, for sets too large for the heap in any layout. Opening
+ * the file reads it once to check the order and keep a sparse index: the byte offset and first OID of every
+ * indexInterval-th record. A lookup binary searches the index in memory, then reads and parses the one block of
+ * lines it points to with a positional read. Parsed blocks are kept in a small LRU cache so hot ranges are not
+ * read again; scans read blocks in order and bypass the cache so they do not evict it.
+ *
+ * Lines that are not valid OIDs are skipped. The file must be sorted and de-duplicated by {@link OIDComp} and must
+ * not change while it is open.
+ *
+ * @author  Dustin Brown
+ */
+public final class DiskOIDStore extends OIDStore implements Closeable {
+    private final static Logger LOGGER = Logger.getLogger(DiskOIDStore.class.getName());
+
+    /** Default number of records per indexed block; larger blocks shrink the index but make every miss read more */
+    public static final int DEFAULT_INDEX_INTERVAL = 128;
+    /** Default number of parsed blocks to keep */
+    public static final int DEFAULT_CACHE_BLOCKS = 4096;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int indexInterval;
+    // First OID of each block
+    private final PackedOIDStore heads;
+    // Byte offset of the first record of each block, plus the file length
+    private final long[] offsets;
+    private final int size;
+    private final int maxLength;
+    private final long rejected;
+    private final Map<Integer, Block> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private DiskOIDStore(Path path, FileChannel channel, int indexInterval, PackedOIDStore heads, long[] offsets,
+                         int size, int maxLength, long rejected, int cacheBlocks) {
+        this.path = path;
+        this.channel = channel;
+        this.indexInterval = indexInterval;
+        this.heads = heads;
+        this.offsets = offsets;
+        this.size = size;
+        this.maxLength = maxLength;
+        this.rejected = rejected;
+        this.cache = new LinkedHashMap<Integer, Block>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+                return size() > cacheBlocks;
+            }
+        };
+    }
+
+    /**
+     * Opens a sorted text file with the default index interval and cache size.
+     * @see #open(Path, int, int)
+     */
+    public static DiskOIDStore open(Path path) throws IOException {
+        return open(path, DEFAULT_INDEX_INTERVAL, DEFAULT_CACHE_BLOCKS);
+    }
+
+    /**
+     * Reads a sorted text file once to build its sparse index. Only the index is kept on the heap.
+     *
+     * @param path              text file with one OID per line, sorted by {@link OIDComp}
+     * @param indexInterval     records per indexed block
+     * @param cacheBlocks       number of parsed blocks to keep; 0 reads every lookup from the file
+     * @return                  store reading from the file
+     * @throws IOException      if the file cannot be read, is not sorted or holds more OIDs than a store can address
+     */
+    public static DiskOIDStore open(Path path, int indexInterval, int cacheBlocks) throws IOException {
+        if (indexInterval < 1) {
+            throw new IllegalArgumentException("Index interval must be positive: " + indexInterval);
+        }
+        final long startTime = System.currentTimeMillis();
+        PackedOIDStore.Builder heads = new PackedOIDStore.Builder();
+        long[] offsets = new long[16];
+        int[] prev = new int[16];
+        int prevLen = -1;
+        int size = 0;
+        int maxLength = 0;
+        long rejected = 0;
+        try (OIDLineReader reader = new OIDLineReader(new FileInputStream(path.toFile()), BUFFER_SIZE)) {
+            while (reader.nextLine()) {
+                int len = reader.parse(0);
+                if (len < 0) {
+                    rejected++;
+                    continue;
+                }
+                int[] arcs = reader.arcs();
+                if (prevLen >= 0 && OIDComp.compare(prev, 0, prevLen, arcs, 0, len) >= 0) {
+                    throw new IOException(path + " is not sorted and de-duplicated at line " + reader.lineNumber());
+                }
+                if (size == Integer.MAX_VALUE) {
+                    throw new IOException(path + " holds more OIDs than a store can address");
+                }
+                if (size % indexInterval == 0) {
+                    int block = size / indexInterval;
+                    if (block + 1 >= offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[block] = reader.lineOffset();
+                    heads.add(arcs, 0, len);
+                }
+                if (len > prev.length) {
+                    prev = new int[Math.max(len, prev.length * 2)];
+                }
+                System.arraycopy(arcs, 0, prev, 0, len);
+                prevLen = len;
+                maxLength = Math.max(maxLength, len);
+                size++;
+            }
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        int blocks = (size + indexInterval - 1) / indexInterval;
+        offsets = Arrays.copyOf(offsets, blocks + 1);
+        offsets[blocks] = channel.size();
+        // Heads were added in order, so building only trims the builder
+        DiskOIDStore returnMe = new DiskOIDStore(path, channel, indexInterval, heads.build(), offsets, size, maxLength,
+                rejected, cacheBlocks);
+        Object[] params = {size, path, returnMe.memoryUsage(), System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "Indexed {0} OIDs in {1} ({2} bytes of index) in {3} milliseconds.", params);
+        if (rejected > 0) {
+            LOGGER.log(Level.WARNING, "Skipped {0} lines that were not valid OIDs", rejected);
+        }
+        return returnMe;
+    }
+
+    /**
+     * OIDs of one block parsed into a flat array.
+     */
+    private static final class Block {
+        private final int[] arcs;
+        // Start of each OID in arcs, plus the end of the last
+        private final int[] starts;
+
+        Block(int[] arcs, int[] starts) {
+            this.arcs = arcs;
+            this.starts = starts;
+        }
+
+        int compare(int j, int[] key, int off, int len) {
+            return OIDComp.compare(arcs, starts[j], starts[j + 1] - starts[j], key, off, len);
+        }
+
+        boolean startsWith(int j, int[] prefix, int off, int len) {
+            return starts[j + 1] - starts[j] >= len && OIDComp.compare(arcs, starts[j], len, prefix, off, len) == 0;
+        }
+
+        int lowerBound(int[] key, int off, int len) {
+            int lo = 0;
+            int hi = starts.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, key, off, len) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        int prefixEnd(int[] prefix, int off, int len) {
+            int lo = lowerBound(prefix, off, len);
+            int hi = starts.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (startsWith(mid, prefix, off, len)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * @return                  the parsed block, from the cache if it is there
+     */
+    private Block block(int block) {
+        synchronized (cache) {
+            Block returnMe = cache.get(block);
+            if (returnMe != null) {
+                hits.increment();
+                return returnMe;
+            }
+        }
+        misses.increment();
+        // Read outside the lock; two threads missing on the same block both read it, which is harmless
+        Block returnMe = read(block);
+        synchronized (cache) {
+            cache.put(block, returnMe);
+        }
+        return returnMe;
+    }
+
+    /**
+     * Reads and parses one block from the file.
+     */
+    private Block read(int block) {
+        long start = offsets[block];
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[block + 1] - start));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException(path + " was truncated since it was opened");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = buffer.array();
+        int count = Math.min(indexInterval, size - block * indexInterval);
+        int[] starts = new int[count + 1];
+        int[] arcs = new int[count * 8];
+        int[] scratch = new int[Math.max(1, maxLength)];
+        int found = 0;
+        for (int lineStart = 0; lineStart < bytes.length && found < count; ) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            // Longer lines than any valid OID come back as TOO_MANY_ARCS and are skipped like malformed ones
+            int len = OIDCodec.parse(bytes, lineStart, lineEnd, scratch);
+            if (len >= 0) {
+                int at = starts[found];
+                if (at + len > arcs.length) {
+                    arcs = grow(arcs, at + len);
+                }
+                System.arraycopy(scratch, 0, arcs, at, len);
+                starts[++found] = at + len;
+            }
+            lineStart = next;
+        }
+        if (found != count) {
+            throw new UncheckedIOException(new IOException(path + " changed since it was opened"));
+        }
+        return new Block(arcs, starts);
+    }
+
+    /**
+     * @return                  the file being served
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return                  records per indexed block
+     */
+    public int getIndexInterval() {
+        return indexInterval;
+    }
+
+    /**
+     * @return                  number of lines skipped because they were not valid OIDs
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return                  size of the file in bytes
+     */
+    public long getByteSize() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * @return                  number of lookups answered from a cached block
+     */
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return                  number of lookups that read a block from the file
+     */
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int length(int index) {
+        checkIndex(index);
+        Block block = block(index / indexInterval);
+        int j = index % indexInterval;
+        return block.starts[j + 1] - block.starts[j];
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        checkIndex(index);
+        Block block = block(index / indexInterval);
+        int j = index % indexInterval;
+        int len = block.starts[j + 1] - block.starts[j];
+        System.arraycopy(block.arcs, block.starts[j], dst, 0, len);
+        return len;
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        checkIndex(index);
+        return block(index / indexInterval).compare(index % indexInterval, key, off, len);
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        checkIndex(index);
+        return block(index / indexInterval).startsWith(index % indexInterval, prefix, off, len);
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public long memoryUsage() {
+        long returnMe = heads.memoryUsage() + 8L * offsets.length;
+        synchronized (cache) {
+            for (Block block : cache.values()) {
+                returnMe += 4L * (block.arcs.length + block.starts.length);
+            }
+        }
+        return returnMe;
+    }
+
+    @Override
+    public int lowerBound(int[] key, int off, int len) {
+        // The first block whose head is not below the key starts at or after the answer; the block before it
+        // holds the answer unless every one of its OIDs is below the key
+        int block = heads.lowerBound(key, off, len);
+        if (block == 0) {
+            return 0;
+        }
+        return (block - 1) * indexInterval + block(block - 1).lowerBound(key, off, len);
+    }
+
+    @Override
+    public int prefixEnd(int[] prefix, int off, int len) {
+        int block = heads.prefixEnd(prefix, off, len);
+        if (block == 0) {
+            return 0;
+        }
+        return (block - 1) * indexInterval + block(block - 1).prefixEnd(prefix, off, len);
+    }
+
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        for (int index = from; index < to; ) {
+            int b = index / indexInterval;
+            Block block;
+            synchronized (cache) {
+                block = cache.get(b);
+            }
+            if (block == null) {
+                block = read(b);
+            }
+            int end = Math.min(to - b * indexInterval, block.starts.length - 1);
+            for (int j = index - b * indexInterval; j < end; j++) {
+                consumer.accept(block.arcs, block.starts[j], block.starts[j + 1] - block.starts[j]);
+            }
+            index = b * indexInterval + end;
+        }
+    }
+
+    /**
+     * Closes the file. The store must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
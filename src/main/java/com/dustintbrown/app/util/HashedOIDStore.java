@@ -0,0 +1,202 @@
+package com.dustintbrown.app.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Sorted {@link OIDStore} with an open addressing hash index in front of its exact lookups. The index is one long
+ * per slot holding a 32-bit fingerprint of the {@link OIDHash} and the position of the OID in the store, so a
+ * lookup hashes the arcs, probes a slot or two and compares the arcs at a single position instead of searching.
+ * Every other query, and the order of the OIDs, is left to the store underneath.
+ *
+ * @author  Dustin Brown
+ */
+public final class HashedOIDStore extends OIDStore {
+    /** Largest share of slots in use; linear probing stays short below it */
+    static final double LOAD_FACTOR = 0.7;
+    // OIDs hashed per parallel build task
+    private static final int RANGE_SIZE = 1 << 16;
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final OIDStore base;
+    // fingerprint in the high 32 bits and position + 1 in the low 32 bits, or 0 if the slot is empty
+    private final long[] slots;
+
+    private HashedOIDStore(OIDStore base, long[] slots) {
+        this.base = base;
+        this.slots = slots;
+    }
+
+    /**
+     * @param size              number of OIDs
+     * @return                  heap bytes the index for that many OIDs takes
+     */
+    public static long indexBytes(int size) {
+        return 8L * slotCount(size);
+    }
+
+    private static int slotCount(int size) {
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, (long) Math.ceil(size / LOAD_FACTOR)));
+    }
+
+    /**
+     * Hashes every OID of the store into a new index. Ranges of the store are hashed on their own tasks and claim
+     * slots with compare and set, so the build scales with the pool.
+     *
+     * @param store             sorted OIDs
+     * @param pool              pool to hash ranges on, or null to build on the calling thread
+     * @return                  store answering exact lookups from the index
+     */
+    public static HashedOIDStore build(OIDStore store, ForkJoinPool pool) {
+        if (store instanceof HashedOIDStore) {
+            return (HashedOIDStore) store;
+        }
+        int n = store.size();
+        if (n / LOAD_FACTOR > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many OIDs for a hash index: " + n);
+        }
+        long[] slots = new long[slotCount(n)];
+        if (pool == null || n <= RANGE_SIZE) {
+            insertRange(store, slots, 0, n);
+        } else {
+            ArrayDeque<ForkJoinTask<?>> tasks = new ArrayDeque<>();
+            for (int from = 0; from < n; from += RANGE_SIZE) {
+                final int start = from;
+                final int end = Math.min(n, from + RANGE_SIZE);
+                tasks.add(pool.submit(() -> insertRange(store, slots, start, end)));
+            }
+            // Joining orders every slot write before the index is published
+            tasks.forEach(ForkJoinTask::join);
+        }
+        return new HashedOIDStore(store, slots);
+    }
+
+    private static void insertRange(OIDStore store, long[] slots, int from, int to) {
+        store.scan(from, to, new ArcConsumer<RuntimeException>() {
+            private int position = from;
+
+            @Override
+            public void accept(int[] arcs, int off, int len) {
+                long h = OIDHash.hash(arcs, off, len);
+                long entry = (h << 32) | (position++ + 1L);
+                // Positions are distinct, so an entry only has to find an empty slot
+                for (int slot = home(h, slots.length); ; slot = slot + 1 == slots.length ? 0 : slot + 1) {
+                    if ((long) SLOTS.getVolatile(slots, slot) == 0 && SLOTS.compareAndSet(slots, slot, 0L, entry)) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Picks the first slot from the high 32 bits; the fingerprint comes from the low 32 bits.
+     */
+    private static int home(long h, int slotCount) {
+        return (int) (((h >>> 32) * slotCount) >>> 32);
+    }
+
+    /**
+     * @return                  position of the OID, or -1 if it is not in the store
+     */
+    private int find(int[] key, int off, int len) {
+        long h = OIDHash.hash(key, off, len);
+        int fingerprint = (int) h;
+        for (int slot = home(h, slots.length); ; slot = slot + 1 == slots.length ? 0 : slot + 1) {
+            long entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if ((int) (entry >>> 32) == fingerprint) {
+                int position = (int) entry - 1;
+                if (base.compareAt(position, key, off, len) == 0) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return                  sorted store the index points into
+     */
+    public OIDStore getBase() {
+        return base;
+    }
+
+    /**
+     * @return                  heap bytes taken by the index alone
+     */
+    public long getIndexBytes() {
+        return 8L * slots.length;
+    }
+
+    @Override
+    public boolean hasHashIndex() {
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return base.size();
+    }
+
+    @Override
+    public int length(int index) {
+        return base.length(index);
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        return base.copyArcs(index, dst);
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        return base.compareAt(index, key, off, len);
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        return base.startsWith(index, prefix, off, len);
+    }
+
+    @Override
+    public int maxLength() {
+        return base.maxLength();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return base.memoryUsage() + getIndexBytes();
+    }
+
+    @Override
+    public int search(int[] key, int off, int len) {
+        int position = find(key, off, len);
+        // Only misses need the insertion point
+        return position >= 0 ? position : base.search(key, off, len);
+    }
+
+    @Override
+    public boolean containsArcs(int[] oid, int off, int len) {
+        return find(oid, off, len) >= 0;
+    }
+
+    @Override
+    public int lowerBound(int[] key, int off, int len) {
+        return base.lowerBound(key, off, len);
+    }
+
+    @Override
+    public int prefixEnd(int[] prefix, int off, int len) {
+        return base.prefixEnd(prefix, off, len);
+    }
+
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        base.scan(from, to, consumer);
+    }
+}
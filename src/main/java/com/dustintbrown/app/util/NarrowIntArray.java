@@ -0,0 +1,92 @@
+package com.dustintbrown.app.util;
+
+/**
+ * Read-only int array kept in blocks of 32 values, each block as its smallest value plus fixed-width unsigned
+ * offsets from it in as few bytes as its largest offset needs. Runs of close values, such as the arcs of one trie
+ * level or positions that grow slowly, take one or two bytes per value, and reads stay a couple of array loads.
+ *
+ * @author  Dustin Brown
+ */
+final class NarrowIntArray {
+    private static final int BLOCK_SHIFT = 5;
+    private static final int BLOCK = 1 << BLOCK_SHIFT;
+
+    private final int length;
+    // Smallest value, first byte in data and bytes per offset of each block
+    private final int[] base;
+    private final int[] start;
+    private final byte[] width;
+    private final byte[] data;
+
+    /**
+     * @param values            values to copy
+     * @param length            number of values to copy from the start of the array
+     */
+    NarrowIntArray(int[] values, int length) {
+        this.length = length;
+        int blocks = (length + BLOCK - 1) >>> BLOCK_SHIFT;
+        this.base = new int[blocks];
+        this.start = new int[blocks];
+        this.width = new byte[blocks];
+        long total = 0;
+        for (int b = 0; b < blocks; b++) {
+            int from = b << BLOCK_SHIFT;
+            int to = Math.min(length, from + BLOCK);
+            int min = values[from];
+            int max = values[from];
+            for (int i = from + 1; i < to; i++) {
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            long range = (long) max - min;
+            int w = range == 0 ? 0 : range < (1 << 8) ? 1 : range < (1 << 16) ? 2 : range < (1 << 24) ? 3 : 4;
+            base[b] = min;
+            width[b] = (byte) w;
+            start[b] = (int) total;
+            total += (long) w * (to - from);
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many values for a narrow array: " + length);
+            }
+        }
+        this.data = new byte[(int) total];
+        for (int i = 0; i < length; i++) {
+            int b = i >>> BLOCK_SHIFT;
+            int w = width[b];
+            // Unsigned offset; the int subtraction wraps back in get
+            int offset = values[i] - base[b];
+            int p = start[b] + (i & (BLOCK - 1)) * w;
+            for (int k = 0; k < w; k++) {
+                data[p + k] = (byte) (offset >>> (8 * k));
+            }
+        }
+    }
+
+    int get(int index) {
+        int b = index >>> BLOCK_SHIFT;
+        int p = start[b] + (index & (BLOCK - 1)) * width[b];
+        switch (width[b]) {
+            case 0:
+                return base[b];
+            case 1:
+                return base[b] + (data[p] & 0xFF);
+            case 2:
+                return base[b] + ((data[p] & 0xFF) | (data[p + 1] & 0xFF) << 8);
+            case 3:
+                return base[b] + ((data[p] & 0xFF) | (data[p + 1] & 0xFF) << 8 | (data[p + 2] & 0xFF) << 16);
+            default:
+                return base[b] + ((data[p] & 0xFF) | (data[p + 1] & 0xFF) << 8 | (data[p + 2] & 0xFF) << 16
+                        | data[p + 3] << 24);
+        }
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * @return                  heap bytes taken by the values
+     */
+    long memoryUsage() {
+        return data.length + 4L * base.length + 4L * start.length + width.length;
+    }
+}
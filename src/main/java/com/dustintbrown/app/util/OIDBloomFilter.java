@@ -0,0 +1,178 @@
+package com.dustintbrown.app.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Blocked Bloom filter over a set of OIDs, used to answer most misses without searching the store. Each OID sets
+ * k bits inside one 512-bit block chosen by its {@link OIDHash}, so a lookup touches a single cache line. The
+ * filter never reports a loaded OID as missing; an OID that is not loaded passes with about the configured
+ * false positive rate.
+ *
+ * The filter is safe to share between threads. After it is built it only changes through {@link #add}, which
+ * only sets bits and is called by a single writer at a time, so concurrent readers never miss an OID that was
+ * already there. It also counts its queries so the share of lookups it settles and the observed false positive
+ * rate can be monitored.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDBloomFilter {
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+    // Blocked filters need a little more space than classic ones to reach the same false positive rate
+    private static final double BLOCK_OVERHEAD = 1.2;
+
+    private final long[] words;
+    private final int blocks;
+    private final int hashes;
+    private final double falsePositiveRate;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    private OIDBloomFilter(int blocks, int hashes, double falsePositiveRate) {
+        this.words = new long[blocks * BLOCK_WORDS];
+        this.blocks = blocks;
+        this.hashes = hashes;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Builds a filter holding every OID of the store.
+     *
+     * @param store             OIDs to add
+     * @param falsePositiveRate target share of absent OIDs that pass the filter, between 0 and 1 exclusive
+     * @return                  filter sized for the store
+     */
+    public static OIDBloomFilter build(OIDStore store, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        double ln2 = Math.log(2);
+        double bitsPerOid = -Math.log(falsePositiveRate) / (ln2 * ln2);
+        int hashes = (int) Math.max(1, Math.min(16, Math.round(bitsPerOid * ln2)));
+        long bits = (long) Math.ceil(Math.max(1, store.size()) * bitsPerOid * BLOCK_OVERHEAD);
+        long blocks = (bits + BLOCK_BITS - 1) / BLOCK_BITS;
+        if (blocks * BLOCK_WORDS > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Filter too large for " + store.size() + " OIDs at rate " + falsePositiveRate);
+        }
+        OIDBloomFilter returnMe = new OIDBloomFilter((int) blocks, hashes, falsePositiveRate);
+        store.scan(0, store.size(), returnMe::add);
+        return returnMe;
+    }
+
+    /**
+     * Adds an OID. Bits are only ever set, so readers racing with a single writer at worst miss the OID being
+     * added; callers publish the store holding it after adding it here.
+     */
+    void add(int[] arcs, int off, int len) {
+        long h = OIDHash.hash(arcs, off, len);
+        int base = block(h) * BLOCK_WORDS;
+        int h1 = (int) h;
+        int h2 = (h1 >>> 16) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            words[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Picks a block from the high 32 bits; positions within the block come from the low 32 bits.
+     */
+    private int block(long h) {
+        return (int) (((h >>> 32) * blocks) >>> 32);
+    }
+
+    /**
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @return                  false if the OID is certainly not in the set, true if it may be
+     */
+    public boolean mightContain(int[] arcs, int off, int len) {
+        queries.increment();
+        long h = OIDHash.hash(arcs, off, len);
+        int base = block(h) * BLOCK_WORDS;
+        int h1 = (int) h;
+        int h2 = (h1 >>> 16) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            if ((words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                rejected.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that an OID passed the filter but was not found, for {@link #getObservedFalsePositiveRate()}.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * @return                  configured false positive rate
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * @return                  number of bit positions set per OID
+     */
+    public int getHashes() {
+        return hashes;
+    }
+
+    /**
+     * @return                  bytes used by the filter bits
+     */
+    public long memoryUsage() {
+        return 8L * words.length;
+    }
+
+    /**
+     * @return                  lookups checked against the filter
+     */
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    /**
+     * @return                  lookups the filter answered on its own as not loaded
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return                  lookups that passed the filter but were not loaded
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * @return                  share of lookups the filter answered on its own
+     */
+    public double getRejectRate() {
+        long q = getQueries();
+        return q == 0 ? 0 : (double) getRejected() / q;
+    }
+
+    /**
+     * @return                  share of absent OIDs that passed the filter
+     */
+    public double getObservedFalsePositiveRate() {
+        long fp = getFalsePositives();
+        long absent = fp + getRejected();
+        return absent == 0 ? 0 : (double) fp / absent;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d queries, %.1f%% rejected by the filter, false positive rate %.4f (target %.4f), %d bytes",
+                getQueries(), 100 * getRejectRate(), getObservedFalsePositiveRate(), falsePositiveRate, memoryUsage());
+    }
+}
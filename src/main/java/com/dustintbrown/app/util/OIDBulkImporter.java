@@ -0,0 +1,385 @@
+package com.dustintbrown.app.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Imports a text file of OIDs (one per line, x.y.z format) by memory mapping it, cutting it into
+ * newline-aligned chunks and parsing the bytes of every chunk straight into arcs on a fork-join pool.
+ * Each chunk is sorted into its own {@link PackedOIDStore} and the chunks are merged at the end.
+ *
+ * A gzip file is imported through a pipeline instead: members are inflated into pooled buffers on threads of
+ * their own (see {@link OIDGzipDecoder}), the calling thread cuts each buffer at its first and last newline, and
+ * the whole lines in between are parsed on the pool while the next buffers are inflated. The few lines cut in
+ * two are joined and parsed once the file has been read.
+ *
+ * @author  Dustin Brown
+ */
+public class OIDBulkImporter {
+    private final static Logger LOGGER = Logger.getLogger(OIDBulkImporter.class.getName());
+
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final long MAX_CHUNK_SIZE = 64L << 20;
+    private static final int AVERAGE_LINE_LENGTH = 24;
+
+    /**
+     * Outcome of an import: the loaded store and what was read to produce it.
+     */
+    public static final class Result {
+        private final PackedOIDStore store;
+        private final long lines;
+        private final long rejected;
+        private final long bytes;
+        private final long millis;
+
+        Result(PackedOIDStore store, long lines, long rejected, long bytes, long millis) {
+            this.store = store;
+            this.lines = lines;
+            this.rejected = rejected;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+
+        public PackedOIDStore getStore() {
+            return store;
+        }
+
+        /**
+         * @return                  number of lines read, including rejected ones
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * @return                  number of lines that could not be parsed as an OID
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return                  number of bytes of text read, after inflating a gzip file
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+
+    public OIDBulkImporter() {
+        this(ForkJoinPool.commonPool(), 0);
+    }
+
+    /**
+     * @param pool              pool used to parse and merge chunks
+     * @param chunkSize         bytes per chunk, or 0 to size chunks from the file size and pool parallelism
+     */
+    public OIDBulkImporter(ForkJoinPool pool, long chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports the given file.
+     *
+     * @param filename          text filename representing a location on the local disk
+     * @return                  the sorted store and import statistics
+     * @throws IOException      throws an exception if there are issues with the given file
+     */
+    public Result importFile(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        final long startTime = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (OIDGzipDecoder.isGzip(channel)) {
+                return importGzip(filename, channel, startTime);
+            }
+            long fileSize = channel.size();
+            List<ChunkTask> tasks = new ArrayList<>();
+            long[] bounds = chunkBounds(channel, fileSize);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                tasks.add(new ChunkTask(channel, bounds[i], bounds[i + 1]));
+            }
+            LOGGER.log(Level.FINE, "Parsing {0} in {1} chunks", new Object[]{filename, tasks.size()});
+            tasks.forEach(pool::execute);
+
+            List<PackedOIDStore> parts = new ArrayList<>(tasks.size());
+            long lines = 0;
+            long rejected = 0;
+            for (ChunkTask task : tasks) {
+                parts.add(task.join());
+                lines += task.lines;
+                rejected += task.rejected;
+            }
+            PackedOIDStore store = PackedOIDStore.merge(parts, pool);
+            final long endTime = System.currentTimeMillis();
+            if (rejected > 0) {
+                LOGGER.log(Level.WARNING, "Rejected {0} of {1} lines in {2}", new Object[]{rejected, lines, filename});
+            }
+            return new Result(store, lines, rejected, fileSize, endTime - startTime);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename);
+        }
+    }
+
+    /**
+     * Inflates, splits and parses a gzip file as three pipelined stages. At most a couple of parse tasks per
+     * worker are in flight, so inflating never runs more than a bounded number of buffers ahead of parsing.
+     */
+    private Result importGzip(String filename, FileChannel channel, long startTime) throws IOException {
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<BufferTask> inFlight = new ArrayDeque<>();
+        List<PackedOIDStore> parts = new ArrayList<>();
+        long[] counts = new long[2];
+        // Lines cut between two buffers, joined back together
+        byte[] edges = new byte[1024];
+        int edgesLength = 0;
+        long members;
+        long bytes;
+        try (OIDGzipDecoder decoder = new OIDGzipDecoder(channel, pool.getParallelism())) {
+            try {
+                for (OIDGzipDecoder.Chunk chunk; (chunk = decoder.next()) != null; ) {
+                    byte[] buffer = chunk.bytes;
+                    int first = 0;
+                    while (first < chunk.length && buffer[first] != '\n') {
+                        first++;
+                    }
+                    if (first == chunk.length) {
+                        edges = append(edges, edgesLength, buffer, 0, chunk.length);
+                        edgesLength += chunk.length;
+                        decoder.release(buffer);
+                        continue;
+                    }
+                    int last = chunk.length - 1;
+                    while (buffer[last] != '\n') {
+                        last--;
+                    }
+                    // The head ends the line cut at the end of the last buffer and the tail starts the next one
+                    edges = append(edges, edgesLength, buffer, 0, first + 1);
+                    edgesLength += first + 1;
+                    edges = append(edges, edgesLength, buffer, last + 1, chunk.length - last - 1);
+                    edgesLength += chunk.length - last - 1;
+                    if (last == first) {
+                        decoder.release(buffer);
+                        continue;
+                    }
+                    BufferTask task = new BufferTask(buffer, first + 1, last + 1, decoder.getBytes() - chunk.length, decoder);
+                    pool.execute(task);
+                    inFlight.add(task);
+                    if (inFlight.size() >= window) {
+                        collect(inFlight.poll(), parts, counts);
+                    }
+                }
+                while (!inFlight.isEmpty()) {
+                    collect(inFlight.poll(), parts, counts);
+                }
+            } finally {
+                // Nothing is collected after a failure, but buffers already handed out still have to be parsed
+                inFlight.forEach(ForkJoinTask::quietlyJoin);
+            }
+            members = decoder.getMembers();
+            bytes = decoder.getBytes();
+        }
+        BufferTask edgeTask = new BufferTask(edges, 0, edgesLength, 0, null);
+        pool.invoke(edgeTask);
+        collect(edgeTask, parts, counts);
+        PackedOIDStore store = PackedOIDStore.merge(parts, pool);
+        final long endTime = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "Inflated {0} gzip members of {1} into {2} bytes", new Object[]{members, filename, bytes});
+        if (counts[1] > 0) {
+            LOGGER.log(Level.WARNING, "Rejected {0} of {1} lines in {2}", new Object[]{counts[1], counts[0], filename});
+        }
+        return new Result(store, counts[0], counts[1], bytes, endTime - startTime);
+    }
+
+    private static void collect(BufferTask task, List<PackedOIDStore> parts, long[] counts) {
+        parts.add(task.join());
+        counts[0] += task.lines;
+        counts[1] += task.rejected;
+    }
+
+    private static byte[] append(byte[] dst, int dstLength, byte[] src, int from, int length) {
+        if (dstLength + length > dst.length) {
+            dst = Arrays.copyOf(dst, Math.max(dst.length * 2, dstLength + length));
+        }
+        System.arraycopy(src, from, dst, dstLength, length);
+        return dst;
+    }
+
+    /**
+     * Picks chunk boundaries so that every chunk ends just after a newline (or at the end of the file).
+     */
+    private long[] chunkBounds(FileChannel channel, long fileSize) throws IOException {
+        long target = chunkSize > 0 ? chunkSize
+                : Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, fileSize / (pool.getParallelism() * 4L)));
+        long[] bounds = new long[16];
+        int count = 0;
+        bounds[count++] = 0;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long pos = 0;
+        while (pos < fileSize) {
+            long next = pos + target;
+            if (next >= fileSize) {
+                next = fileSize;
+            } else {
+                next = nextLineStart(channel, next, fileSize, probe);
+            }
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+            }
+            bounds[count++] = next;
+            pos = next;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static long nextLineStart(FileChannel channel, long pos, long fileSize, ByteBuffer probe) throws IOException {
+        while (pos < fileSize) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Parses lines of text into a sorted store, counting the lines read and rejected.
+     */
+    private abstract static class ParseTask extends RecursiveTask<PackedOIDStore> {
+        private static final long serialVersionUID = 1L;
+
+        long lines = 0;
+        long rejected = 0;
+
+        /**
+         * Parses every line of buffer[from, to), including a last line without a newline.
+         *
+         * @param offset            position of buffer[0] in the text, for logging
+         */
+        PackedOIDStore parse(ByteBuffer buffer, int from, int to, long offset) {
+            PackedOIDStore.Builder builder = new PackedOIDStore.Builder((to - from) / AVERAGE_LINE_LENGTH);
+            int[] arcs = new int[64];
+            int lineStart = from;
+            while (lineStart < to) {
+                int lineEnd = lineStart;
+                while (lineEnd < to && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                    contentEnd--;
+                }
+                lines++;
+                int len = OIDCodec.parse(buffer, lineStart, contentEnd, arcs);
+                while (len == OIDCodec.TOO_MANY_ARCS) {
+                    arcs = Arrays.copyOf(arcs, arcs.length * 2);
+                    len = OIDCodec.parse(buffer, lineStart, contentEnd, arcs);
+                }
+                if (len > 0) {
+                    builder.add(arcs, 0, len);
+                } else {
+                    if (rejected == 0) {
+                        LOGGER.log(Level.FINE, "Rejected line at byte {0}", offset + lineStart);
+                    }
+                    rejected++;
+                }
+                lineStart = lineEnd + 1;
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Maps and parses one chunk of the file into a sorted store.
+     */
+    private static final class ChunkTask extends ParseTask {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected PackedOIDStore compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to map bytes " + start + "-" + end, e);
+            }
+            return parse(buffer, 0, buffer.limit(), start);
+        }
+    }
+
+    /**
+     * Parses whole lines of an inflated buffer and hands the buffer back to the decoder.
+     */
+    private static final class BufferTask extends ParseTask {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] bytes;
+        private final int from;
+        private final int to;
+        private final long offset;
+        private final OIDGzipDecoder decoder;
+
+        /**
+         * @param offset            position of bytes[0] in the inflated text
+         * @param decoder           decoder the buffer came from, or null if it is not pooled
+         */
+        BufferTask(byte[] bytes, int from, int to, long offset, OIDGzipDecoder decoder) {
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+            this.offset = offset;
+            this.decoder = decoder;
+        }
+
+        @Override
+        protected PackedOIDStore compute() {
+            try {
+                return parse(ByteBuffer.wrap(bytes), from, to, offset);
+            } finally {
+                if (decoder != null) {
+                    decoder.release(bytes);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.dustintbrown.app.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation free conversion between dotted OID text (x.y.z) and arcs. Parsers read a range of bytes or
+ * chars into a caller supplied int[] and report bad input through a negative return value instead of an
+ * exception, so bulk loaders can reject millions of lines cheaply. Formatters write digits straight into a
+ * caller supplied byte[] or StringBuilder.
+ *
+ * Arcs are non-negative 32-bit signed integers, matching what {@link Integer#parseInt(String)} accepted before.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDCodec {
+    /** Returned by the parsers when the text is empty, has a bad character, a misplaced dot or an arc past 2^31-1 */
+    public static final int MALFORMED = -1;
+    /** Returned by the parsers when the destination array is too small to hold every arc */
+    public static final int TOO_MANY_ARCS = -2;
+    /** Largest number of bytes a single formatted arc and its separator can take */
+    public static final int MAX_ARC_CHARS = 11;
+
+    private OIDCodec() {
+    }
+
+    /**
+     * Parses the OID in src[from, to).
+     *
+     * @param src               text bytes (ASCII)
+     * @param from              index of the first byte
+     * @param to                index just past the last byte
+     * @param dst               receives the arcs starting at index 0
+     * @return                  number of arcs, {@link #MALFORMED} or {@link #TOO_MANY_ARCS}
+     */
+    public static int parse(byte[] src, int from, int to, int[] dst) {
+        if (from >= to) {
+            return MALFORMED;
+        }
+        int count = 0;
+        long value = 0;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            int c = src[i];
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    return MALFORMED;
+                }
+                digits = true;
+            } else if (c == '.' && digits) {
+                if (count == dst.length) {
+                    return TOO_MANY_ARCS;
+                }
+                dst[count++] = (int) value;
+                value = 0;
+                digits = false;
+            } else {
+                return MALFORMED;
+            }
+        }
+        return finish(dst, count, value, digits);
+    }
+
+    /**
+     * Parses the OID between absolute positions from and to of the buffer. The buffer's position is not changed.
+     *
+     * @param src               text bytes (ASCII)
+     * @param from              absolute index of the first byte
+     * @param to                absolute index just past the last byte
+     * @param dst               receives the arcs starting at index 0
+     * @return                  number of arcs, {@link #MALFORMED} or {@link #TOO_MANY_ARCS}
+     */
+    public static int parse(ByteBuffer src, int from, int to, int[] dst) {
+        if (src.hasArray()) {
+            return parse(src.array(), src.arrayOffset() + from, src.arrayOffset() + to, dst);
+        }
+        if (from >= to) {
+            return MALFORMED;
+        }
+        int count = 0;
+        long value = 0;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            int c = src.get(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    return MALFORMED;
+                }
+                digits = true;
+            } else if (c == '.' && digits) {
+                if (count == dst.length) {
+                    return TOO_MANY_ARCS;
+                }
+                dst[count++] = (int) value;
+                value = 0;
+                digits = false;
+            } else {
+                return MALFORMED;
+            }
+        }
+        return finish(dst, count, value, digits);
+    }
+
+    /**
+     * Parses the OID in src[from, to).
+     *
+     * @param src               text
+     * @param from              index of the first char
+     * @param to                index just past the last char
+     * @param dst               receives the arcs starting at index 0
+     * @return                  number of arcs, {@link #MALFORMED} or {@link #TOO_MANY_ARCS}
+     */
+    public static int parse(CharSequence src, int from, int to, int[] dst) {
+        if (from >= to) {
+            return MALFORMED;
+        }
+        int count = 0;
+        long value = 0;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            char c = src.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE) {
+                    return MALFORMED;
+                }
+                digits = true;
+            } else if (c == '.' && digits) {
+                if (count == dst.length) {
+                    return TOO_MANY_ARCS;
+                }
+                dst[count++] = (int) value;
+                value = 0;
+                digits = false;
+            } else {
+                return MALFORMED;
+            }
+        }
+        return finish(dst, count, value, digits);
+    }
+
+    private static int finish(int[] dst, int count, long value, boolean digits) {
+        if (!digits) {
+            // empty text or a trailing dot
+            return MALFORMED;
+        }
+        if (count == dst.length) {
+            return TOO_MANY_ARCS;
+        }
+        dst[count++] = (int) value;
+        return count;
+    }
+
+    /**
+     * @param arcCount          number of arcs
+     * @return                  upper bound on the bytes needed to format an OID with that many arcs
+     */
+    public static int maxFormattedLength(int arcCount) {
+        return arcCount * MAX_ARC_CHARS;
+    }
+
+    /**
+     * Formats arcs as dotted text into dst. The caller must leave at least
+     * {@link #maxFormattedLength(int)} bytes of room.
+     *
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @param dst               destination bytes
+     * @param pos               index in dst to start writing at
+     * @return                  index in dst just past the last byte written
+     */
+    public static int format(int[] arcs, int off, int len, byte[] dst, int pos) {
+        for (int i = 0; i < len; i++) {
+            if (i > 0) {
+                dst[pos++] = '.';
+            }
+            pos = formatArc(arcs[off + i], dst, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * Appends arcs as dotted text to the given builder.
+     *
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @param sb                destination
+     * @return                  the given builder
+     */
+    public static StringBuilder format(int[] arcs, int off, int len, StringBuilder sb) {
+        for (int i = 0; i < len; i++) {
+            if (i > 0) {
+                sb.append('.');
+            }
+            sb.append(arcs[off + i]);
+        }
+        return sb;
+    }
+
+    private static int formatArc(int value, byte[] dst, int pos) {
+        if (value < 10 && value >= 0) {
+            dst[pos] = (byte) ('0' + value);
+            return pos + 1;
+        }
+        long v = value & 0xFFFFFFFFL;
+        int digits = 1;
+        for (long t = v / 10; t > 0; t /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            dst[i] = (byte) ('0' + (int) (v % 10));
+            v /= 10;
+        }
+        return end;
+    }
+}
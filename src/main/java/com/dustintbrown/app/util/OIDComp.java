@@ -5,13 +5,30 @@ import java.util.Comparator;
 public class OIDComp implements Comparator<int[]> {
     @Override
     public int compare(int[] left, int[] right) {
-        for (int i = 0, j = 0; i < left.length && j < right.length; i++, j++) {
-            int a = left[i];
-            int b = right[j];
+        return compare(left, 0, left.length, right, 0, right.length);
+    }
+
+    /**
+     * Compares two OIDs stored as ranges of larger int arrays. Arcs are compared one at a time and a
+     * shorter OID sorts before any OID it is a prefix of. Every store in this package orders by this method.
+     *
+     * @param left              array holding the left OID
+     * @param leftOff           index of the first arc of the left OID
+     * @param leftLen           number of arcs in the left OID
+     * @param right             array holding the right OID
+     * @param rightOff          index of the first arc of the right OID
+     * @param rightLen          number of arcs in the right OID
+     * @return                  negative, zero or positive as left is less than, equal to or greater than right
+     */
+    public static int compare(int[] left, int leftOff, int leftLen, int[] right, int rightOff, int rightLen) {
+        int len = Math.min(leftLen, rightLen);
+        for (int i = 0; i < len; i++) {
+            int a = left[leftOff + i];
+            int b = right[rightOff + i];
             if (a != b) {
-                return a - b;
+                return Integer.compare(a, b);
             }
         }
-        return left.length - right.length;
+        return leftLen - rightLen;
     }
 }
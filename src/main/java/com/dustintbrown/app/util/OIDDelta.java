@@ -0,0 +1,132 @@
+package com.dustintbrown.app.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A parsed change set in the format {@link OIDDiff#textSink} and {@link OIDService#diffCollections} emit: "+ oid"
+ * adds an OID, "- oid" removes one and lines without a marker are unchanged OIDs, which are ignored. When the same
+ * OID appears more than once the last line wins, so reading several deltas back to back is the same as applying
+ * them one after another.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDDelta {
+    private final PackedOIDStore added;
+    private final PackedOIDStore removed;
+    private final long lines;
+    private final long rejected;
+
+    private OIDDelta(PackedOIDStore added, PackedOIDStore removed, long lines, long rejected) {
+        this.added = added;
+        this.removed = removed;
+        this.lines = lines;
+        this.rejected = rejected;
+    }
+
+    /**
+     * Reads a delta, keeping only the last change for each OID.
+     *
+     * @param in                delta text; not closed
+     * @return                  sorted OIDs to add and to remove, never overlapping
+     * @throws IOException      if the stream fails
+     */
+    public static OIDDelta read(InputStream in) throws IOException {
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        byte[] changes = new byte[1024];
+        OIDLineReader reader = new OIDLineReader(in);
+        long lines = 0;
+        long rejected = 0;
+        while (reader.nextLine()) {
+            lines++;
+            int start = reader.lineStart();
+            int lineLength = reader.lineEnd() - start;
+            byte marker = lineLength > 0 ? reader.buffer()[start] : 0;
+            if (marker != OIDDiff.ADDED && marker != OIDDiff.REMOVED) {
+                // Unchanged OIDs and blank lines carry no change
+                continue;
+            }
+            int len = lineLength > 1 && reader.buffer()[start + 1] == ' ' ? reader.parse(2) : OIDCodec.MALFORMED;
+            if (len < 0) {
+                rejected++;
+                continue;
+            }
+            if (builder.size() == changes.length) {
+                changes = Arrays.copyOf(changes, changes.length * 2);
+            }
+            changes[builder.size()] = marker;
+            builder.add(reader.arcs(), 0, len);
+        }
+
+        // The builder sorts and merges repeats; later lines overwrite the change recorded for their OID
+        int[] positions = new int[builder.size()];
+        PackedOIDStore all = builder.build(positions);
+        byte[] last = new byte[all.size()];
+        for (int i = 0; i < positions.length; i++) {
+            last[positions[i]] = changes[i];
+        }
+        PackedOIDStore.Builder addedBuilder = new PackedOIDStore.Builder();
+        PackedOIDStore.Builder removedBuilder = new PackedOIDStore.Builder();
+        int[] index = {0};
+        all.scan(0, all.size(), (arcs, off, len) -> {
+            (last[index[0]++] == OIDDiff.ADDED ? addedBuilder : removedBuilder).add(arcs, off, len);
+        });
+        return new OIDDelta(addedBuilder.build(), removedBuilder.build(), lines, rejected);
+    }
+
+    /**
+     * @return                  sorted OIDs to add
+     */
+    public PackedOIDStore getAdded() {
+        return added;
+    }
+
+    /**
+     * @return                  sorted OIDs to remove
+     */
+    public PackedOIDStore getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return                  number of lines read
+     */
+    public long getLines() {
+        return lines;
+    }
+
+    /**
+     * @return                  number of +/- lines that were not valid OIDs
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return                  true if the delta changes nothing
+     */
+    public boolean isEmpty() {
+        return added.size() == 0 && removed.size() == 0;
+    }
+
+    /**
+     * Writes the delta back out as "- oid" lines followed by "+ oid" lines, which {@link #read} turns into the
+     * same delta.
+     *
+     * @param out               stream receiving the text; not closed
+     * @throws IOException      if the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        try (OIDTextWriter writer = new OIDTextWriter(out, 1 << 16, false)) {
+            removed.scan(0, removed.size(), (arcs, off, len) -> writer.writeLine("- ", arcs, off, len));
+            added.scan(0, added.size(), (arcs, off, len) -> writer.writeLine("+ ", arcs, off, len));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added.size() + " -" + removed.size();
+    }
+}
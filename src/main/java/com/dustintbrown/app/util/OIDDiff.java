@@ -0,0 +1,122 @@
+package com.dustintbrown.app.util;
+
+import java.io.IOException;
+
+/**
+ * Streaming diff of two sorted {@link OIDSource}s. Both inputs are walked once in {@link OIDComp} order
+ * and only one OID from each is held at a time, so memory does not depend on input size.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDDiff {
+    public static final char ADDED = '+';
+    public static final char REMOVED = '-';
+    public static final char UNCHANGED = ' ';
+
+    private OIDDiff() {
+    }
+
+    /**
+     * Receives diff lines in sorted order.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @param change            {@link #ADDED}, {@link #REMOVED} or {@link #UNCHANGED}
+         * @param arcs              arcs of the OID, only valid during the call
+         * @param len               number of arcs
+         * @throws IOException      if the sink fails to write
+         */
+        void accept(char change, int[] arcs, int len) throws IOException;
+    }
+
+    /**
+     * Counts of each kind of line produced by a diff.
+     */
+    public static final class Stats {
+        private long added;
+        private long removed;
+        private long unchanged;
+
+        public long getAdded() {
+            return added;
+        }
+
+        public long getRemoved() {
+            return removed;
+        }
+
+        public long getUnchanged() {
+            return unchanged;
+        }
+
+        @Override
+        public String toString() {
+            return "+" + added + " -" + removed + " =" + unchanged;
+        }
+    }
+
+    /**
+     * Diffs other against base. OIDs only in base are {@link #REMOVED}, OIDs only in other are {@link #ADDED}.
+     *
+     * @param base              sorted base input
+     * @param other             sorted input compared against the base
+     * @param sink              receives the changes
+     * @param includeUnchanged  if true OIDs in both inputs are also sent to the sink
+     * @return                  number of lines of each kind
+     * @throws IOException      if an input or the sink fails
+     */
+    public static Stats diff(OIDSource base, OIDSource other, Sink sink, boolean includeUnchanged) throws IOException {
+        Stats stats = new Stats();
+        boolean hasBase = base.next();
+        boolean hasOther = other.next();
+        while (hasBase || hasOther) {
+            int c;
+            if (!hasBase) {
+                c = 1;
+            } else if (!hasOther) {
+                c = -1;
+            } else {
+                c = OIDComp.compare(base.arcs(), 0, base.length(), other.arcs(), 0, other.length());
+            }
+            if (c < 0) {
+                sink.accept(REMOVED, base.arcs(), base.length());
+                stats.removed++;
+                hasBase = base.next();
+            } else if (c > 0) {
+                sink.accept(ADDED, other.arcs(), other.length());
+                stats.added++;
+                hasOther = other.next();
+            } else {
+                if (includeUnchanged) {
+                    sink.accept(UNCHANGED, base.arcs(), base.length());
+                }
+                stats.unchanged++;
+                hasBase = base.next();
+                hasOther = other.next();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Sink writing lines in the format used by {@link OIDService#diffCollections}: "+ oid", "- oid" or "oid".
+     *
+     * @param writer            destination
+     * @return                  sink writing to the given writer
+     */
+    public static Sink textSink(OIDTextWriter writer) {
+        return (change, arcs, len) -> {
+            switch (change) {
+                case ADDED:
+                    writer.writeLine("+ ", arcs, 0, len);
+                    break;
+                case REMOVED:
+                    writer.writeLine("- ", arcs, 0, len);
+                    break;
+                default:
+                    writer.writeLine(arcs, 0, len);
+            }
+        };
+    }
+}
@@ -0,0 +1,272 @@
+package com.dustintbrown.app.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * BER/DER encoder for OIDs. Each OID becomes tag 0x06, a definite length (short form below 128 bytes,
+ * long form above) and the subidentifiers as base-128 big-endian groups with the high bit set on every
+ * byte but the last. The first subidentifier is arc0 * 40 + arc1 and may itself take several bytes.
+ *
+ * Bulk encoding sizes every OID first, then writes all of them into one contiguous buffer in parallel,
+ * with an offsets index to find each encoding. Nothing is allocated per OID.
+ *
+ * @author  Dustin Brown
+ * @see <a href="https://docs.microsoft.com/en-us/windows/win32/seccertenroll/about-object-identifier">About Object Identifier</a>
+ */
+public final class OIDEncoder {
+    public static final byte OID_TAG = 0x06;
+    // OIDs encoded per task in bulk operations
+    private static final int RANGE_SIZE = 1 << 16;
+
+    private OIDEncoder() {
+    }
+
+    /**
+     * All encodings of a store in one buffer. Encoding i occupies bytes offset(i) until offset(i + 1).
+     */
+    public static final class Encoded {
+        private final byte[] data;
+        private final int[] offsets;
+
+        Encoded(byte[] data, int[] offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        public int size() {
+            return offsets.length - 1;
+        }
+
+        /**
+         * @return                  read-only view of every encoding back to back
+         */
+        public ByteBuffer buffer() {
+            return ByteBuffer.wrap(data).asReadOnlyBuffer();
+        }
+
+        public int offset(int index) {
+            return offsets[index];
+        }
+
+        public int length(int index) {
+            return offsets[index + 1] - offsets[index];
+        }
+
+        /**
+         * @param index             position of the OID
+         * @return                  copy of the encoding of the OID at the given position
+         */
+        public byte[] get(int index) {
+            byte[] returnMe = new byte[length(index)];
+            System.arraycopy(data, offsets[index], returnMe, 0, returnMe.length);
+            return returnMe;
+        }
+
+        /**
+         * @return                  total number of encoded bytes
+         */
+        public int byteSize() {
+            return offsets[offsets.length - 1];
+        }
+    }
+
+    /**
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @return                  bytes needed by the complete encoding (tag, length and contents)
+     */
+    public static int encodedLength(int[] arcs, int off, int len) {
+        int content = contentLength(arcs, off, len);
+        return 1 + lengthOfLength(content) + content;
+    }
+
+    /**
+     * Encodes one OID into dst. A single arc OID is encoded as if its second arc were 0.
+     *
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @param dst               destination, with at least {@link #encodedLength(int[], int, int)} bytes free at pos
+     * @param pos               index in dst to start writing at
+     * @return                  index in dst just past the encoding
+     */
+    public static int encode(int[] arcs, int off, int len, byte[] dst, int pos) {
+        int content = contentLength(arcs, off, len);
+        dst[pos++] = OID_TAG;
+        if (content < 0x80) {
+            dst[pos++] = (byte) content;
+        } else {
+            int bytes = lengthOfLength(content) - 1;
+            dst[pos++] = (byte) (0x80 | bytes);
+            for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+                dst[pos++] = (byte) (content >>> shift);
+            }
+        }
+        if (len == 0) {
+            return pos;
+        }
+        pos = putBase128(firstSubidentifier(arcs, off, len), dst, pos);
+        for (int i = off + 2; i < off + len; i++) {
+            pos = putBase128(arcs[i] & 0xFFFFFFFFL, dst, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * @param oid               OID formatted as int[]
+     * @return                  the complete encoding of the OID
+     */
+    public static byte[] encode(int[] oid) {
+        byte[] returnMe = new byte[encodedLength(oid, 0, oid.length)];
+        encode(oid, 0, oid.length, returnMe, 0);
+        return returnMe;
+    }
+
+    /**
+     * Encodes every OID of a store into one buffer, splitting the work across the pool.
+     *
+     * @param store             OIDs to encode
+     * @param pool              pool to encode ranges on
+     * @return                  encodings in store order with an offsets index
+     */
+    public static Encoded encodeAll(OIDStore store, ForkJoinPool pool) {
+        int n = store.size();
+        int[] offsets = new int[n + 1];
+        // Pass 1: size every OID, written as lengths shifted one slot so a prefix sum turns them into offsets
+        runRanges(n, pool, (from, to) -> store.scan(from, to, new OIDStore.ArcConsumer<RuntimeException>() {
+            private int i = from;
+
+            @Override
+            public void accept(int[] arcs, int off, int len) {
+                offsets[++i] = encodedLength(arcs, off, len);
+            }
+        }));
+        long total = 0;
+        for (int i = 1; i <= n; i++) {
+            total += offsets[i];
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Encoded OIDs exceed 2GB; stream them to a channel instead");
+            }
+            offsets[i] = (int) total;
+        }
+        // Pass 2: encode every range straight into its slice of the shared array
+        byte[] data = new byte[(int) total];
+        runRanges(n, pool, (from, to) -> store.scan(from, to, new OIDStore.ArcConsumer<RuntimeException>() {
+            private int pos = offsets[from];
+
+            @Override
+            public void accept(int[] arcs, int off, int len) {
+                pos = encode(arcs, off, len, data, pos);
+            }
+        }));
+        return new Encoded(data, offsets);
+    }
+
+    /**
+     * Encodes every OID of a store and writes the encodings back to back to a channel. Ranges are encoded in
+     * parallel into their own buffers and written in order, with a bounded number of ranges in flight.
+     *
+     * @param store             OIDs to encode
+     * @param channel           destination, written from its current position
+     * @param pool              pool to encode ranges on
+     * @return                  number of bytes written
+     * @throws IOException      if the channel fails
+     */
+    public static long writeAll(OIDStore store, FileChannel channel, ForkJoinPool pool) throws IOException {
+        int n = store.size();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<ByteBuffer>> inFlight = new ArrayDeque<>();
+        long written = 0;
+        for (int from = 0; from < n || !inFlight.isEmpty(); ) {
+            while (from < n && inFlight.size() < window) {
+                final int start = from;
+                final int end = Math.min(n, from + RANGE_SIZE);
+                inFlight.add(pool.submit(() -> encodeRange(store, start, end)));
+                from = end;
+            }
+            ByteBuffer next = inFlight.poll().join();
+            while (next.hasRemaining()) {
+                written += channel.write(next);
+            }
+        }
+        return written;
+    }
+
+    private static ByteBuffer encodeRange(OIDStore store, int from, int to) {
+        byte[][] buffer = {new byte[64 * (to - from)]};
+        int[] pos = {0};
+        store.scan(from, to, (arcs, off, len) -> {
+            int needed = encodedLength(arcs, off, len);
+            if (pos[0] + needed > buffer[0].length) {
+                byte[] bigger = new byte[Math.max(buffer[0].length * 2, pos[0] + needed)];
+                System.arraycopy(buffer[0], 0, bigger, 0, pos[0]);
+                buffer[0] = bigger;
+            }
+            pos[0] = encode(arcs, off, len, buffer[0], pos[0]);
+        });
+        return ByteBuffer.wrap(buffer[0], 0, pos[0]);
+    }
+
+    @FunctionalInterface
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private static void runRanges(int n, ForkJoinPool pool, RangeTask task) {
+        if (pool == null || n <= RANGE_SIZE) {
+            task.run(0, n);
+            return;
+        }
+        ArrayDeque<ForkJoinTask<?>> tasks = new ArrayDeque<>();
+        for (int from = 0; from < n; from += RANGE_SIZE) {
+            final int start = from;
+            final int end = Math.min(n, from + RANGE_SIZE);
+            tasks.add(pool.submit(() -> task.run(start, end)));
+        }
+        tasks.forEach(ForkJoinTask::join);
+    }
+
+    private static long firstSubidentifier(int[] arcs, int off, int len) {
+        long second = len > 1 ? arcs[off + 1] & 0xFFFFFFFFL : 0;
+        return (arcs[off] & 0xFFFFFFFFL) * 40 + second;
+    }
+
+    private static int contentLength(int[] arcs, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int returnMe = base128Length(firstSubidentifier(arcs, off, len));
+        for (int i = off + 2; i < off + len; i++) {
+            returnMe += base128Length(arcs[i] & 0xFFFFFFFFL);
+        }
+        return returnMe;
+    }
+
+    private static int lengthOfLength(int content) {
+        if (content < 0x80) {
+            return 1;
+        }
+        int bytes = (32 - Integer.numberOfLeadingZeros(content) + 7) / 8;
+        return 1 + bytes;
+    }
+
+    private static int base128Length(long value) {
+        int bits = 64 - Long.numberOfLeadingZeros(value | 1);
+        return (bits + 6) / 7;
+    }
+
+    private static int putBase128(long value, byte[] dst, int pos) {
+        int groups = base128Length(value);
+        for (int shift = (groups - 1) * 7; shift > 0; shift -= 7) {
+            dst[pos++] = (byte) (0x80 | ((value >>> shift) & 0x7F));
+        }
+        dst[pos++] = (byte) (value & 0x7F);
+        return pos;
+    }
+}
@@ -0,0 +1,150 @@
+package com.dustintbrown.app.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a store as text, one dotted OID per line, with formatting spread across a pool. Contiguous ranges of the
+ * store are formatted (and optionally compressed) on workers into pooled direct buffers, and the calling thread
+ * writes the buffers to a {@link FileChannel} in order, with a bounded number of ranges in flight.
+ *
+ * Compressed output is a series of gzip members, one per range, so ranges compress in parallel too. Concatenated
+ * members are a valid gzip file that gzip and {@link java.util.zip.GZIPInputStream} read back as one stream.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDExporter {
+    /** Bytes of formatted text per range, and the capacity of each pooled buffer */
+    static final int CHUNK_SIZE = 1 << 22;
+    /** Bytes written between syncs under {@link Sync#PERIODIC} */
+    static final long SYNC_INTERVAL = 1L << 26;
+
+    /**
+     * When written data is forced to the storage device.
+     */
+    public enum Sync {
+        /** Never; the OS writes the data back in its own time */
+        NONE,
+        /** Once, after the last byte is written */
+        ON_CLOSE,
+        /** Every {@link #SYNC_INTERVAL} bytes and after the last byte, which bounds the dirty pages built up */
+        PERIODIC
+    }
+
+    private OIDExporter() {
+    }
+
+    /**
+     * Writes the store to a file, creating or replacing it.
+     *
+     * @param store             OIDs to write, in order
+     * @param path              destination file
+     * @param gzip              true to compress the output
+     * @param sync              when to force the data to disk
+     * @param pool              pool to format ranges on
+     * @return                  number of bytes written
+     * @throws IOException      if the file cannot be written
+     */
+    public static long write(OIDStore store, Path path, boolean gzip, Sync sync, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return write(store, channel, gzip, sync, pool);
+        }
+    }
+
+    /**
+     * Writes the store to a channel from its current position.
+     * @see #write(OIDStore, Path, boolean, Sync, ForkJoinPool)
+     */
+    public static long write(OIDStore store, FileChannel channel, boolean gzip, Sync sync, ForkJoinPool pool) throws IOException {
+        int n = store.size();
+        // Ranges are cut by OID count so that the longest possible lines of a range still fit one chunk
+        int rangeSize = Math.max(1, CHUNK_SIZE / (OIDCodec.maxFormattedLength(store.maxLength()) + 1));
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        ArrayDeque<ForkJoinTask<ByteBuffer>> inFlight = new ArrayDeque<>();
+        long written = 0;
+        long unsynced = 0;
+        try {
+            for (int from = 0; from < n || !inFlight.isEmpty(); ) {
+                while (from < n && inFlight.size() < window) {
+                    final int start = from;
+                    final int end = (int) Math.min(n, (long) from + rangeSize);
+                    inFlight.add(pool.submit(() -> formatRange(store, start, end, gzip, buffers)));
+                    from = end;
+                }
+                ByteBuffer next = inFlight.poll().join();
+                while (next.hasRemaining()) {
+                    int bytes = channel.write(next);
+                    written += bytes;
+                    unsynced += bytes;
+                }
+                if (next.isDirect()) {
+                    next.clear();
+                    buffers.add(next);
+                }
+                if (sync == Sync.PERIODIC && unsynced >= SYNC_INTERVAL) {
+                    channel.force(false);
+                    unsynced = 0;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // Nothing is written after a failure, but ranges already submitted still have to finish
+            inFlight.forEach(ForkJoinTask::quietlyJoin);
+        }
+        if (sync != Sync.NONE) {
+            channel.force(true);
+        }
+        return written;
+    }
+
+    /**
+     * Formats one range into a pooled buffer, compressing it as a gzip member if asked to.
+     *
+     * @return                  buffer flipped for reading; a heap buffer if the result did not fit a pooled one
+     */
+    private static ByteBuffer formatRange(OIDStore store, int from, int to, boolean gzip,
+                                          ConcurrentLinkedQueue<ByteBuffer> buffers) {
+        byte[] text = new byte[(int) Math.min(CHUNK_SIZE, (long) (to - from) * (OIDCodec.maxFormattedLength(store.maxLength()) + 1))];
+        int[] pos = {0};
+        store.scan(from, to, (arcs, off, len) -> {
+            int p = OIDCodec.format(arcs, off, len, text, pos[0]);
+            text[p++] = '\n';
+            pos[0] = p;
+        });
+        byte[] bytes = text;
+        int length = pos[0];
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed, 1 << 16)) {
+                out.write(text, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bytes = compressed.toByteArray();
+            length = bytes.length;
+        }
+        if (length > CHUNK_SIZE) {
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+        ByteBuffer returnMe = buffers.poll();
+        if (returnMe == null) {
+            returnMe = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+        returnMe.put(bytes, 0, length);
+        returnMe.flip();
+        return returnMe;
+    }
+}
@@ -0,0 +1,230 @@
+package com.dustintbrown.app.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sorts a text file of OIDs in bounded memory. Lines are parsed into a {@link PackedOIDStore.Builder} until
+ * the memory budget is used up, the batch is sorted and spilled to a temporary run file, and at the end the
+ * runs are merged back into one sorted, de-duplicated {@link OIDSource}. Inputs that fit in one batch never
+ * touch the disk.
+ *
+ * @author  Dustin Brown
+ */
+public class OIDExternalSorter {
+    private final static Logger LOGGER = Logger.getLogger(OIDExternalSorter.class.getName());
+
+    /** Default heap a single sort may use for its in-memory batch */
+    public static final long DEFAULT_MEMORY_BUDGET = 128L << 20;
+    // A batch costs its builder pages and position index, then the sorted copy and sort buffers
+    private static final int BYTES_PER_ARC = 12;
+    // Most runs merged at once; more are first merged into intermediate runs to bound open files
+    private static final int MAX_FAN_IN = 128;
+
+    private final long memoryBudget;
+    private final Path tempDir;
+
+    public OIDExternalSorter() {
+        this(DEFAULT_MEMORY_BUDGET, null);
+    }
+
+    /**
+     * @param memoryBudget      approximate heap bytes one batch may use
+     * @param tempDir           directory for run files, or null for the system temp directory
+     */
+    public OIDExternalSorter(long memoryBudget, Path tempDir) {
+        this.memoryBudget = memoryBudget;
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Sorts the OIDs in the given text file.
+     *
+     * @param filename          local file with one OID per line
+     * @return                  sorted source; closing it deletes its run files
+     * @throws IOException      if the file cannot be read or runs cannot be written
+     */
+    public Sorted sort(String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            return sort(in);
+        }
+    }
+
+    /**
+     * Sorts the OIDs read from the given stream. The stream is not closed.
+     *
+     * @param in                text with one OID per line
+     * @return                  sorted source; closing it deletes its run files
+     * @throws IOException      if the stream cannot be read or runs cannot be written
+     */
+    public Sorted sort(InputStream in) throws IOException {
+        long arcBudget = Math.max(1024, memoryBudget / BYTES_PER_ARC);
+        List<Path> runs = new ArrayList<>();
+        long lines = 0;
+        long rejected = 0;
+        try {
+            OIDLineReader reader = new OIDLineReader(in);
+            PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+            long batchArcs = 0;
+            while (reader.nextLine()) {
+                lines++;
+                int len = reader.parse(0);
+                if (len < 0) {
+                    rejected++;
+                    continue;
+                }
+                builder.add(reader.arcs(), 0, len);
+                batchArcs += len + 2;
+                if (batchArcs >= arcBudget) {
+                    runs.add(spill(builder.build()));
+                    builder = new PackedOIDStore.Builder();
+                    batchArcs = 0;
+                }
+            }
+            PackedOIDStore last = builder.build();
+            if (runs.isEmpty()) {
+                return new Sorted(OIDSource.of(last), runs, lines, rejected);
+            }
+            if (last.size() > 0) {
+                runs.add(spill(last));
+            }
+            reduceRuns(runs);
+            List<OIDSource> readers = new ArrayList<>(runs.size());
+            for (Path run : runs) {
+                readers.add(new OIDRunFile.Reader(run));
+            }
+            LOGGER.log(Level.FINE, "Merging {0} sorted runs", runs.size());
+            return new Sorted(new OIDMergeSource(readers), runs, lines, rejected);
+        } catch (IOException | RuntimeException e) {
+            deleteAll(runs);
+            throw e;
+        }
+    }
+
+    /**
+     * @return                  a new empty run file in the temp directory
+     */
+    Path newRun() throws IOException {
+        return tempDir == null ? Files.createTempFile("oid-run", ".bin") : Files.createTempFile(tempDir, "oid-run", ".bin");
+    }
+
+    /**
+     * Writes a sorted batch to a new run file.
+     */
+    Path spill(OIDStore batch) throws IOException {
+        Path run = newRun();
+        OIDRunFile.write(batch, run);
+        LOGGER.log(Level.FINE, "Spilled {0} OIDs to {1}", new Object[]{batch.size(), run});
+        return run;
+    }
+
+    /**
+     * Merges groups of runs into intermediate runs until at most {@link #MAX_FAN_IN} remain. Merged runs are
+     * deleted and replaced in the list.
+     */
+    void reduceRuns(List<Path> runs) throws IOException {
+        while (runs.size() > MAX_FAN_IN) {
+            List<Path> group = new ArrayList<>(runs.subList(0, MAX_FAN_IN));
+            runs.subList(0, MAX_FAN_IN).clear();
+            runs.add(mergeRuns(group));
+        }
+    }
+
+    private Path mergeRuns(List<Path> group) throws IOException {
+        Path merged = newRun();
+        List<OIDSource> readers = new ArrayList<>(group.size());
+        try {
+            for (Path run : group) {
+                readers.add(new OIDRunFile.Reader(run));
+            }
+            try (OIDMergeSource source = new OIDMergeSource(readers);
+                 OIDRunFile.Writer writer = new OIDRunFile.Writer(merged)) {
+                while (source.next()) {
+                    writer.write(source.arcs(), 0, source.length());
+                }
+            }
+        } finally {
+            deleteAll(group);
+        }
+        return merged;
+    }
+
+    static void deleteAll(List<Path> runs) {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to delete " + run, e);
+            }
+        }
+    }
+
+    /**
+     * Sorted output of {@link #sort(String)}.
+     */
+    public static final class Sorted implements OIDSource {
+        private final OIDSource source;
+        private final List<Path> runs;
+        private final long lines;
+        private final long rejected;
+
+        Sorted(OIDSource source, List<Path> runs, long lines, long rejected) {
+            this.source = source;
+            this.runs = runs;
+            this.lines = lines;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            return source.next();
+        }
+
+        @Override
+        public int[] arcs() {
+            return source.arcs();
+        }
+
+        @Override
+        public int length() {
+            return source.length();
+        }
+
+        /**
+         * @return                  lines read from the input
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * @return                  lines that were not valid OIDs and were skipped
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /**
+         * @return                  number of runs spilled to disk
+         */
+        public int getRunCount() {
+            return runs.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                source.close();
+            } finally {
+                deleteAll(runs);
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.dustintbrown.app.util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates random OIDs with the distribution used by {@link OIDService#populateWithRandomOIDs(int)} and
+ * {@link com.dustintbrown.app.RandomOIDGenerator}: 2 to 9 arcs, the first two between 0 and 15, middle arcs
+ * biased toward small values and a wider last arc. A generator created with a seed always produces the same
+ * sequence, so test and benchmark data can be reproduced.
+ *
+ * @author  Dustin Brown
+ */
+public class OIDGenerator {
+    private final static Logger LOGGER = Logger.getLogger(OIDGenerator.class.getName());
+
+    /** Largest number of arcs in a generated OID */
+    public static final int MAX_LENGTH = 9;
+    // Draws per independently seeded chunk; fixed so results do not depend on the number of threads
+    private static final int CHUNK_SIZE = 1 << 18;
+    // Heap per drawn OID while a batch is built and merged: builder pages and index, then the merged copy
+    private static final int BYTES_PER_OID = 96;
+
+    private final SplittableRandom rand;
+
+    /**
+     * @param seed              seed for the random sequence
+     */
+    public OIDGenerator(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    /**
+     * @param rand              random source to draw from; not shared with other threads
+     */
+    public OIDGenerator(SplittableRandom rand) {
+        this.rand = rand;
+    }
+
+    /**
+     * Generates a single OID between the length 2 and 9 into dst.
+     *
+     * @param dst               destination, at least {@link #MAX_LENGTH} long
+     * @return                  number of arcs written
+     */
+    public int next(int[] dst) {
+        // First 2 sections are 0-15
+        // each section after is biased toward 0, the last one with a larger scope
+        int length = rand.nextInt(8) + 2;
+        for (int i = 0; i < length; i++) {
+            if (i < 2) {
+                dst[i] = rand.nextInt(16);
+            } else if (i == length - 1) {
+                //last item should have a larger scope to be more realistic
+                dst[i] = generateBiasedPositiveInt(65000, 4096);
+            } else {
+                //middle numbers should be biased toward 0 give the way these numbers appear in the wild.
+                dst[i] = generateBiasedPositiveInt(255 * i, 128);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return                  int array containing 2-9 items representing an OID
+     */
+    public int[] next() {
+        int[] scratch = new int[MAX_LENGTH];
+        int length = next(scratch);
+        int[] returnMe = new int[length];
+        System.arraycopy(scratch, 0, returnMe, 0, length);
+        return returnMe;
+    }
+
+    /**
+     * Generates exactly num distinct OIDs on the calling thread.
+     * @see #generate(int, ForkJoinPool)
+     */
+    public PackedOIDStore generate(int num) {
+        return generate(num, null);
+    }
+
+    /**
+     * Generates exactly num distinct OIDs. Draws are made in fixed size chunks, each from its own random split
+     * off this generator in order, so the result depends on the seed and num but not on the pool. Chunks are
+     * sorted independently and merged, which also drops duplicates; generation keeps topping up until enough
+     * distinct OIDs exist.
+     *
+     * @param num               number of distinct OIDs
+     * @param pool              pool to draw and merge chunks on, or null to use the calling thread
+     * @return                  sorted store of the generated OIDs
+     */
+    public PackedOIDStore generate(int num, ForkJoinPool pool) {
+        PackedOIDStore generated = PackedOIDStore.EMPTY;
+        while (generated.size() < num) {
+            PackedOIDStore batch = draw(num - generated.size(), pool);
+            generated = generated.size() == 0 ? batch : PackedOIDStore.merge(Arrays.asList(generated, batch), pool);
+        }
+        return generated;
+    }
+
+    /**
+     * Writes exactly num distinct OIDs to a text file in sorted order using about memoryBudget bytes of heap, so
+     * corpora far larger than memory can be built. Batches are drawn in parallel, sorted and spilled to run files,
+     * the runs are merged into one de-duplicated run, and missing OIDs are topped up the same way. Finally a uniform
+     * selection of exactly num of the distinct OIDs is written out.
+     *
+     * For a given seed, num and memory budget the output is always the same, whatever the size of the pool.
+     *
+     * @param num               number of distinct OIDs to write
+     * @param file              text file to create or replace
+     * @param memoryBudget      approximate heap bytes one batch may use
+     * @param tempDir           directory for run files, or null for the system temp directory
+     * @param pool              pool to draw batches on, or null to use the calling thread
+     * @throws IOException      if the output or run files cannot be written
+     */
+    public void writeSorted(long num, Path file, long memoryBudget, Path tempDir, ForkJoinPool pool) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        OIDExternalSorter sorter = new OIDExternalSorter(memoryBudget, tempDir);
+        int batchSize = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1024, memoryBudget / BYTES_PER_OID));
+        List<Path> runs = new ArrayList<>();
+        Path merged = null;
+        try {
+            long distinct = 0;
+            long draws = num;
+            while (distinct < num) {
+                for (long done = 0; done < draws; done += batchSize) {
+                    runs.add(sorter.spill(draw((int) Math.min(batchSize, draws - done), pool)));
+                }
+                if (merged != null) {
+                    runs.add(merged);
+                }
+                sorter.reduceRuns(runs);
+                merged = sorter.newRun();
+                distinct = mergeRuns(runs, merged);
+                Object[] params = {draws, distinct, num};
+                LOGGER.log(Level.INFO, "Drew {0} OIDs, {1} of {2} distinct OIDs so far", params);
+                // Ask for twice the shortfall so one more round is usually enough
+                draws = 2 * (num - distinct);
+            }
+            writeSelection(merged, distinct, num, file);
+        } finally {
+            if (merged != null) {
+                runs.add(merged);
+            }
+            OIDExternalSorter.deleteAll(runs);
+        }
+        Object[] params = {num, file, System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "Wrote {0} OIDs to {1} in {2} milliseconds.", params);
+    }
+
+    /**
+     * Draws count OIDs in chunks of {@link #CHUNK_SIZE} and returns them sorted and de-duplicated.
+     */
+    private PackedOIDStore draw(int count, ForkJoinPool pool) {
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++) {
+            randoms[i] = rand.split();
+        }
+        PackedOIDStore[] parts = new PackedOIDStore[chunks];
+        IntConsumer task = i -> {
+            int n = Math.min(CHUNK_SIZE, count - i * CHUNK_SIZE);
+            OIDGenerator generator = new OIDGenerator(randoms[i]);
+            int[] scratch = new int[MAX_LENGTH];
+            PackedOIDStore.Builder builder = new PackedOIDStore.Builder(n);
+            for (int j = 0; j < n; j++) {
+                builder.add(scratch, 0, generator.next(scratch));
+            }
+            parts[i] = builder.build();
+        };
+        if (pool == null || chunks == 1) {
+            for (int i = 0; i < chunks; i++) {
+                task.accept(i);
+            }
+        } else {
+            ArrayDeque<ForkJoinTask<?>> tasks = new ArrayDeque<>();
+            for (int i = 0; i < chunks; i++) {
+                final int chunk = i;
+                tasks.add(pool.submit(() -> task.accept(chunk)));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        }
+        return chunks == 1 ? parts[0] : PackedOIDStore.merge(Arrays.asList(parts), pool);
+    }
+
+    /**
+     * Merges the runs into one de-duplicated run and deletes them.
+     *
+     * @return                  number of distinct OIDs written to target
+     */
+    private static long mergeRuns(List<Path> runs, Path target) throws IOException {
+        List<OIDSource> readers = new ArrayList<>(runs.size());
+        try {
+            for (Path run : runs) {
+                readers.add(new OIDRunFile.Reader(run));
+            }
+            try (OIDMergeSource source = new OIDMergeSource(readers);
+                 OIDRunFile.Writer writer = new OIDRunFile.Writer(target)) {
+                while (source.next()) {
+                    writer.write(source.arcs(), 0, source.length());
+                }
+                return writer.count();
+            }
+        } finally {
+            OIDExternalSorter.deleteAll(runs);
+            runs.clear();
+        }
+    }
+
+    /**
+     * Streams the merged run to text, keeping exactly num of its distinct OIDs by selection sampling: each OID is
+     * kept with probability (still needed) / (still unread), which picks a uniform subset in one pass.
+     */
+    private void writeSelection(Path merged, long distinct, long num, Path file) throws IOException {
+        SplittableRandom selector = rand.split();
+        try (OIDRunFile.Reader reader = new OIDRunFile.Reader(merged);
+             OIDTextWriter writer = new OIDTextWriter(new FileOutputStream(file.toFile()))) {
+            long needed = num;
+            for (long unread = distinct; needed > 0 && reader.next(); unread--) {
+                if (selector.nextLong(unread) < needed) {
+                    writer.writeLine(reader.arcs(), 0, reader.length());
+                    needed--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an int below the max value that is biased toward lower numbers.
+     *
+     * @param max               the largest value returned
+     * @param bias_threshold    the int to base the threshold calculation
+     * @return                  int less than max biased toward lower numbers
+     */
+    private int generateBiasedPositiveInt(int max, int bias_threshold){
+        if(max<0){
+            return 0;
+        }else if(bias_threshold > max){
+            bias_threshold = max;
+        }
+        int cnt = 1;
+        int next = 0;
+        while(cnt<6){ //basically a poor man's weighting toward numbers lower than start_max
+            next = rand.nextInt(max);
+            if(next<(bias_threshold*cnt)){
+                break;
+            }
+            cnt++;
+        }
+        return next;
+    }
+}
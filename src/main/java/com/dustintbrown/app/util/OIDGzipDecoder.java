@@ -0,0 +1,427 @@
+package com.dustintbrown.app.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates a gzip file into pooled byte buffers on threads of its own and hands them out in file order. Files of
+ * several members (as written by {@link OIDExporter}, pigz -i or bgzip) are inflated a member per thread: every
+ * offset that looks like a member header starts a speculative task, and the output of a task is only used once
+ * the member before it turns out to end exactly there. A header pattern inside compressed data therefore costs a
+ * wasted task, never a wrong result. A single member file is inflated on one thread, ahead of its reader.
+ *
+ * Each member may only inflate a couple of buffers ahead of the reader, so memory is bounded by the number of
+ * threads however large the file is.
+ *
+ * @author  Dustin Brown
+ */
+final class OIDGzipDecoder implements Closeable {
+    /** Capacity of each buffer of inflated bytes */
+    static final int BUFFER_SIZE = 1 << 22;
+    // Buffers a member may fill before its reader gets to it
+    private static final int MEMBER_QUEUE = 2;
+    // Compressed bytes read at a time, and looked through for headers per call while a member is being read
+    private static final int READ_SIZE = 1 << 16;
+    private static final int SCAN_STEP = 4 * READ_SIZE;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /**
+     * Inflated bytes. Hand the buffer back with {@link #release(byte[])} once it has been read.
+     */
+    static final class Chunk {
+        final byte[] bytes;
+        final int length;
+
+        Chunk(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+    }
+
+    // Queued by a member after its last chunk, once its end or error is set
+    private static final Chunk END = new Chunk(null, 0);
+
+    private final FileChannel channel;
+    private final long size;
+    private final int window;
+    private final ExecutorService threads;
+    private final BlockingQueue<byte[]> free;
+    // Members started ahead of the one being read, in file order
+    private final ArrayDeque<Member> ahead = new ArrayDeque<>();
+    private final byte[] scanBuffer = new byte[READ_SIZE];
+    // Next offset to look for a header from
+    private long scanned;
+    // Offset the member after the last one read must start at
+    private long expected;
+    private Member current;
+    private long members;
+    private long bytes;
+
+    /**
+     * @param channel           gzip file; read with positional reads only
+     * @param parallelism       number of members inflated ahead of the one being read
+     * @throws IOException      if the size of the file cannot be read
+     */
+    OIDGzipDecoder(FileChannel channel, int parallelism) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = Math.max(1, parallelism);
+        this.free = new ArrayBlockingQueue<>((window + 1) * (MEMBER_QUEUE + 2));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.threads = Executors.newFixedThreadPool(window + 1, r -> {
+            Thread t = new Thread(r, "oid-gunzip-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param channel           file to check
+     * @return                  true if the file starts with the gzip magic bytes
+     * @throws IOException      if the file cannot be read
+     */
+    static boolean isGzip(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(2);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            // keep reading
+        }
+        return magic.position() == 2 && magic.get(0) == 0x1f && (magic.get(1) & 0xFF) == 0x8b;
+    }
+
+    /**
+     * @return                  next inflated bytes in file order, or null after the last member
+     * @throws IOException      if the file is not gzip, is truncated or fails its checks
+     */
+    Chunk next() throws IOException {
+        try {
+            while (true) {
+                if (current == null) {
+                    // Headers before the end of the last member read are inside it
+                    scanned = Math.max(scanned, expected);
+                    if (ahead.isEmpty()) {
+                        start(nextHeader(size));
+                    }
+                    Member member = ahead.poll();
+                    if (member == null || member.start > expected) {
+                        if (member != null) {
+                            member.cancel();
+                        }
+                        if (expected == 0) {
+                            throw new IOException("Not in GZIP format");
+                        }
+                        // Like GZIPInputStream, bytes after the last member that do not start another are ignored
+                        return null;
+                    }
+                    if (member.start < expected) {
+                        member.cancel();
+                        continue;
+                    }
+                    current = member;
+                    members++;
+                }
+                topUp();
+                Chunk chunk = current.queue.take();
+                if (chunk != END) {
+                    bytes += chunk.length;
+                    return chunk;
+                }
+                Member done = current;
+                current = null;
+                if (done.error != null) {
+                    throw done.error;
+                }
+                expected = done.end;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating");
+        }
+    }
+
+    /**
+     * @param buffer            buffer of a chunk that has been read
+     */
+    void release(byte[] buffer) {
+        free.offer(buffer);
+    }
+
+    /**
+     * @return                  number of members read so far
+     */
+    long getMembers() {
+        return members;
+    }
+
+    /**
+     * @return                  number of inflated bytes handed out so far
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        if (current != null) {
+            current.cancel();
+        }
+        ahead.forEach(Member::cancel);
+        threads.shutdownNow();
+    }
+
+    /**
+     * Starts members at the next headers until the window is full, looking through a bounded number of bytes so
+     * the reader is not held up by a long member with no headers inside it.
+     */
+    private void topUp() throws IOException {
+        long limit = Math.min(size, scanned + SCAN_STEP);
+        while (ahead.size() < window && scanned < limit) {
+            start(nextHeader(limit));
+        }
+    }
+
+    private void start(long header) {
+        if (header >= 0) {
+            Member member = new Member(header);
+            ahead.add(member);
+            threads.execute(member);
+        }
+    }
+
+    /**
+     * @return                  offset of the next possible member header before the limit, or -1 if there is none
+     */
+    private long nextHeader(long limit) throws IOException {
+        while (scanned < limit) {
+            int n = readAt(scanned, scanBuffer, (int) Math.min(scanBuffer.length, limit - scanned + 3));
+            int count = (int) Math.min(n - 3, limit - scanned);
+            for (int i = 0; i < count; i++) {
+                // Magic, deflate and no reserved flags
+                if (scanBuffer[i] == 0x1f && (scanBuffer[i + 1] & 0xFF) == 0x8b && scanBuffer[i + 2] == 8
+                        && (scanBuffer[i + 3] & 0xE0) == 0) {
+                    long returnMe = scanned + i;
+                    scanned = returnMe + 1;
+                    return returnMe;
+                }
+            }
+            if (count <= 0) {
+                // Too few bytes left for a header
+                break;
+            }
+            scanned += count;
+        }
+        scanned = Math.max(scanned, limit);
+        return -1;
+    }
+
+    private int readAt(long position, byte[] dst, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(dst, 0, Math.min(dst.length, length));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Inflates the member starting at one offset, if there is one there.
+     */
+    private final class Member implements Runnable {
+        final long start;
+        final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(MEMBER_QUEUE);
+        volatile boolean cancelled;
+        // Set before END is queued
+        long end;
+        IOException error;
+
+        Member(long start) {
+            this.start = start;
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (Chunk chunk; (chunk = queue.poll()) != null; ) {
+                if (chunk != END) {
+                    release(chunk.bytes);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                inflate();
+            } catch (DataFormatException e) {
+                error = new IOException("Corrupt gzip member at byte " + start + ": " + e.getMessage(), e);
+            } catch (IOException e) {
+                error = e;
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                put(END);
+            } catch (InterruptedException e) {
+                // Closed
+            }
+        }
+
+        /**
+         * @return                  false if the member was cancelled while waiting for room
+         */
+        private boolean put(Chunk chunk) throws InterruptedException {
+            while (!queue.offer(chunk, 10, TimeUnit.MILLISECONDS)) {
+                if (cancelled) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void inflate() throws IOException, DataFormatException, InterruptedException {
+            Input in = new Input(start);
+            if (in.read() != 0x1f || in.read() != 0x8b || in.read() != 8) {
+                throw new IOException("Not in GZIP format at byte " + start);
+            }
+            int flags = in.read();
+            in.skip(6);
+            if ((flags & FEXTRA) != 0) {
+                in.skip(in.read() | (in.read() << 8));
+            }
+            if ((flags & FNAME) != 0) {
+                while (in.read() != 0) {
+                    // skip the name
+                }
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (in.read() != 0) {
+                    // skip the comment
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                in.skip(2);
+            }
+            Inflater inflater = new Inflater(true);
+            CRC32 crc = new CRC32();
+            long total = 0;
+            try {
+                byte[] out = buffer();
+                int length = 0;
+                while (!inflater.finished()) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (inflater.needsInput()) {
+                        in.feed(inflater);
+                    } else if (inflater.needsDictionary()) {
+                        throw new DataFormatException("Preset dictionaries are not supported");
+                    }
+                    length += inflater.inflate(out, length, out.length - length);
+                    if (length == out.length || (inflater.finished() && length > 0)) {
+                        crc.update(out, 0, length);
+                        total += length;
+                        if (!put(new Chunk(out, length))) {
+                            return;
+                        }
+                        out = inflater.finished() ? null : buffer();
+                        length = 0;
+                    }
+                }
+                if (out != null) {
+                    release(out);
+                }
+                in.unread(inflater.getRemaining());
+            } finally {
+                inflater.end();
+            }
+            if (in.readIntLE() != crc.getValue() || in.readIntLE() != (total & 0xFFFFFFFFL)) {
+                throw new IOException("Corrupt gzip member at byte " + start + ": checksum or size mismatch");
+            }
+            end = in.position();
+        }
+
+        private byte[] buffer() {
+            byte[] returnMe = free.poll();
+            return returnMe != null ? returnMe : new byte[BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Compressed bytes of one member, read from the file a block at a time.
+     */
+    private final class Input {
+        private final byte[] data = new byte[READ_SIZE];
+        // File offset of data[0]
+        private long base;
+        private int off;
+        private int len;
+
+        Input(long start) {
+            this.base = start;
+        }
+
+        int read() throws IOException {
+            if (off == len) {
+                fill();
+            }
+            return data[off++] & 0xFF;
+        }
+
+        void skip(int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                read();
+            }
+        }
+
+        long readIntLE() throws IOException {
+            return read() | (read() << 8) | (read() << 16) | ((long) read() << 24);
+        }
+
+        /**
+         * Hands every buffered byte to the inflater, reading more first if none are left.
+         */
+        void feed(Inflater inflater) throws IOException {
+            if (off == len) {
+                fill();
+            }
+            inflater.setInput(data, off, len - off);
+            off = len;
+        }
+
+        /**
+         * @param n                 bytes handed to the inflater that it did not use
+         */
+        void unread(int n) {
+            off -= n;
+        }
+
+        long position() {
+            return base + off;
+        }
+
+        private void fill() throws IOException {
+            base += len;
+            off = 0;
+            len = readAt(base, data, data.length);
+            if (len == 0) {
+                throw new EOFException("Unexpected end of gzip input at byte " + base);
+            }
+        }
+    }
+}
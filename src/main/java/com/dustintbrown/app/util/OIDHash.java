@@ -0,0 +1,43 @@
+package com.dustintbrown.app.util;
+
+/**
+ * 64-bit hash of an OID computed straight from its arcs, for filters and hash indexes. Equal arcs always hash the
+ * same, whichever array or offset they are held in.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDHash {
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private OIDHash() {
+    }
+
+    /**
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @return                  well mixed 64-bit hash of the arcs
+     */
+    public static long hash(int[] arcs, int off, int len) {
+        long h = SEED ^ len;
+        for (int i = off; i < off + len; i++) {
+            h ^= Long.rotateLeft((arcs[i] & 0xFFFFFFFFL) * C1, 31) * C2;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Murmur3 finalizer: every input bit affects every output bit.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
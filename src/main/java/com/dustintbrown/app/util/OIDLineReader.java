@@ -0,0 +1,153 @@
+package com.dustintbrown.app.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits a byte stream into lines without creating Strings. The current line is exposed as a range of the
+ * internal buffer and can be handed to {@link OIDCodec}. Both \n and \r\n line endings are accepted.
+ *
+ * @author  Dustin Brown
+ */
+public class OIDLineReader implements Closeable {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int limit = 0;
+    private int next = 0;
+    private int lineStart = 0;
+    private int lineEnd = 0;
+    private long lineNumber = 0;
+    // Stream offset of buffer[0]
+    private long discarded = 0;
+    private boolean eof = false;
+    private int[] arcs = new int[64];
+
+    public OIDLineReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public OIDLineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return                  false at the end of the stream
+     * @throws IOException      if the stream fails
+     */
+    public boolean nextLine() throws IOException {
+        int scan = next;
+        while (true) {
+            while (scan < limit) {
+                if (buffer[scan] == '\n') {
+                    setLine(next, scan);
+                    next = scan + 1;
+                    return true;
+                }
+                scan++;
+            }
+            if (eof) {
+                if (next < limit) {
+                    setLine(next, limit);
+                    next = limit;
+                    return true;
+                }
+                return false;
+            }
+            // Keep the partial line, make room and read more
+            int pending = limit - next;
+            discarded += next;
+            if (next > 0) {
+                System.arraycopy(buffer, next, buffer, 0, pending);
+            } else if (pending == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            next = 0;
+            limit = pending;
+            scan = pending;
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+
+    private void setLine(int start, int end) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        lineStart = start;
+        lineEnd = end;
+        lineNumber++;
+    }
+
+    /**
+     * @return                  buffer holding the current line
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return                  index in {@link #buffer()} of the first byte of the current line
+     */
+    public int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return                  index in {@link #buffer()} just past the current line, excluding the line ending
+     */
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * @return                  offset in the stream of the first byte of the current line
+     */
+    public long lineOffset() {
+        return discarded + lineStart;
+    }
+
+    /**
+     * @return                  1-based number of the current line
+     */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Parses the current line, starting skip bytes in, as an OID into {@link #arcs()}.
+     *
+     * @param skip              bytes at the start of the line to ignore (for example a "+ " marker)
+     * @return                  number of arcs, or {@link OIDCodec#MALFORMED}
+     */
+    public int parse(int skip) {
+        int len = OIDCodec.parse(buffer, lineStart + skip, lineEnd, arcs);
+        while (len == OIDCodec.TOO_MANY_ARCS) {
+            arcs = new int[arcs.length * 2];
+            len = OIDCodec.parse(buffer, lineStart + skip, lineEnd, arcs);
+        }
+        return len;
+    }
+
+    /**
+     * @return                  arcs filled by the last call to {@link #parse(int)}
+     */
+    public int[] arcs() {
+        return arcs;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
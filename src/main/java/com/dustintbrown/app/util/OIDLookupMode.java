@@ -0,0 +1,16 @@
+package com.dustintbrown.app.util;
+
+/**
+ * How {@link OIDService} answers exact lookups such as exists. Prefix and ordered queries always use the sorted
+ * store, which the hash index points into, so there is no mode without it.
+ *
+ * @author  Dustin Brown
+ */
+public enum OIDLookupMode {
+    /** Binary search (or trie walk) in the sorted store. No extra memory. */
+    SORTED,
+    /** Open addressing hash index over the sorted store, about 11.5 bytes per OID. See {@link HashedOIDStore}. */
+    HASHED,
+    /** {@link #HASHED} when the index fits the configured memory budget, {@link #SORTED} otherwise. */
+    AUTO
+}
@@ -0,0 +1,261 @@
+package com.dustintbrown.app.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks many OIDs against a store at once. The probes are sorted and de-duplicated, then joined with the store in a
+ * single forward pass: each probe gallops ahead from where the previous one stopped, so dense probe sets cost a few
+ * comparisons each and sparse ones log(gap) instead of a full binary search. The parallel variant cuts the sorted
+ * probes into ranges and joins each range independently. A store with a hash index skips all of that and looks each
+ * probe up as it is read.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDMembership {
+    private final static Logger LOGGER = Logger.getLogger(OIDMembership.class.getName());
+
+    // Distinct probes per parallel task; a multiple of 64 so tasks never share a word of the hit bitmap
+    private static final int RANGE_SIZE = 1 << 14;
+
+    private OIDMembership() {
+    }
+
+    /**
+     * Outcome of checking a stream of probes, indexed by 0-based probe line.
+     */
+    public static final class Result {
+        private final BitSet hits;
+        private final BitSet malformed;
+        private final int probes;
+        private final int distinct;
+        private final long millis;
+
+        Result(BitSet hits, BitSet malformed, int probes, int distinct, long millis) {
+            this.hits = hits;
+            this.malformed = malformed;
+            this.probes = probes;
+            this.distinct = distinct;
+            this.millis = millis;
+        }
+
+        /**
+         * @return                  bit i is set if probe line i is loaded
+         */
+        public BitSet getHits() {
+            return hits;
+        }
+
+        /**
+         * @return                  bit i is set if probe line i is not a valid OID
+         */
+        public BitSet getMalformed() {
+            return malformed;
+        }
+
+        /**
+         * @return                  number of probe lines read
+         */
+        public int getProbes() {
+            return probes;
+        }
+
+        /**
+         * @return                  number of distinct valid probes, or of all valid probes if they were looked up in a
+         *                          hash index without being sorted
+         */
+        public int getDistinct() {
+            return distinct;
+        }
+
+        public int getHitCount() {
+            return hits.cardinality();
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * Writes one line per probe in input order: 1 if loaded, 0 if not and ? if it is not a valid OID.
+         *
+         * @param out               stream receiving the lines; not closed
+         * @throws IOException      if the stream fails
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            try (OIDTextWriter writer = new OIDTextWriter(out, 1 << 16, false)) {
+                for (int i = 0; i < probes; i++) {
+                    writer.write(hits.get(i) ? "1\n" : malformed.get(i) ? "?\n" : "0\n");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one OID per line and checks every line against the store.
+     *
+     * @param store             loaded OIDs
+     * @param probes            text with one OID per line; not closed
+     * @param pool              pool to join ranges of probes on, or null to use the calling thread
+     * @return                  hit and malformed bitmaps in input order
+     * @throws IOException      if the stream fails
+     */
+    public static Result existsAll(OIDStore store, InputStream probes, ForkJoinPool pool) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        if (store.hasHashIndex()) {
+            return existsAllHashed(store, probes, startTime);
+        }
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        BitSet malformed = new BitSet();
+        OIDLineReader reader = new OIDLineReader(probes);
+        int lines = 0;
+        while (reader.nextLine()) {
+            int len = reader.parse(0);
+            if (len < 0) {
+                malformed.set(lines);
+            } else {
+                builder.add(reader.arcs(), 0, len);
+            }
+            if (++lines == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many probes: " + lines);
+            }
+        }
+
+        // positions maps each valid probe, in input order, to its place among the sorted distinct probes
+        int[] positions = new int[builder.size()];
+        PackedOIDStore sorted = builder.build(positions);
+        BitSet sortedHits = existsAll(store, sorted, pool);
+
+        BitSet hits = new BitSet(lines);
+        int valid = 0;
+        for (int i = 0; i < lines; i++) {
+            if (!malformed.get(i) && sortedHits.get(positions[valid++])) {
+                hits.set(i);
+            }
+        }
+        Result returnMe = new Result(hits, malformed, lines, sorted.size(), System.currentTimeMillis() - startTime);
+        Object[] params = {lines, sorted.size(), store.size(), returnMe.getHitCount(), returnMe.getMillis()};
+        LOGGER.log(Level.FINE, "Checked {0} probes ({1} distinct) against {2} OIDs: {3} hits in {4} milliseconds.", params);
+        return returnMe;
+    }
+
+    /**
+     * Looks every probe up in the store's hash index as it is read, which needs no sorting and no copy of the
+     * probes. Repeated probes are looked up again, so they are all counted as distinct.
+     */
+    private static Result existsAllHashed(OIDStore store, InputStream probes, long startTime) throws IOException {
+        BitSet hits = new BitSet();
+        BitSet malformed = new BitSet();
+        OIDLineReader reader = new OIDLineReader(probes);
+        int lines = 0;
+        int valid = 0;
+        while (reader.nextLine()) {
+            int len = reader.parse(0);
+            if (len < 0) {
+                malformed.set(lines);
+            } else {
+                valid++;
+                if (store.containsArcs(reader.arcs(), 0, len)) {
+                    hits.set(lines);
+                }
+            }
+            if (++lines == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Too many probes: " + lines);
+            }
+        }
+        Result returnMe = new Result(hits, malformed, lines, valid, System.currentTimeMillis() - startTime);
+        Object[] params = {lines, store.size(), returnMe.getHitCount(), returnMe.getMillis()};
+        LOGGER.log(Level.FINE, "Looked up {0} probes in the hash index of {1} OIDs: {2} hits in {3} milliseconds.", params);
+        return returnMe;
+    }
+
+    /**
+     * Checks sorted probes against the store with a merge join.
+     *
+     * @param store             loaded OIDs
+     * @param probes            sorted, distinct probes
+     * @param pool              pool to join ranges of probes on, or null to use the calling thread
+     * @return                  bit i is set if probe i is in the store
+     */
+    public static BitSet existsAll(OIDStore store, OIDStore probes, ForkJoinPool pool) {
+        int m = probes.size();
+        long[] words = new long[(m + 63) >>> 6];
+        if (pool == null || m <= RANGE_SIZE) {
+            join(store, probes, 0, m, 0, words);
+            return BitSet.valueOf(words);
+        }
+        // Aim for a few ranges per worker, but keep ranges large enough to amortize their first search
+        int rangeSize = (int) Math.max(RANGE_SIZE, ((long) m / (pool.getParallelism() * 4L) + 63) & ~63L);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < m; from += rangeSize) {
+            final int pFrom = from;
+            final int pTo = (int) Math.min(m, (long) from + rangeSize);
+            tasks.add(pool.submit(() -> {
+                int[] first = probes.get(pFrom);
+                join(store, probes, pFrom, pTo, store.lowerBound(first, 0, first.length), words);
+            }));
+        }
+        tasks.forEach(ForkJoinTask::join);
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Joins probes [pFrom, pTo) with the store from position sFrom on, setting bits in words for every hit.
+     */
+    private static void join(OIDStore store, OIDStore probes, int pFrom, int pTo, int sFrom, long[] words) {
+        int size = store.size();
+        int[] cursor = {sFrom, pFrom};
+        probes.scan(pFrom, pTo, (arcs, off, len) -> {
+            int s = gallop(store, cursor[0], size, arcs, off, len);
+            int p = cursor[1]++;
+            if (s < size && store.compareAt(s, arcs, off, len) == 0) {
+                words[p >>> 6] |= 1L << p;
+                s++;
+            }
+            cursor[0] = s;
+        });
+    }
+
+    /**
+     * Finds the first position in [from, to) whose OID is not less than the key, probing 1, 2, 4... positions
+     * ahead before binary searching the last step.
+     */
+    private static int gallop(OIDStore store, int from, int to, int[] key, int off, int len) {
+        if (from >= to || store.compareAt(from, key, off, len) >= 0) {
+            return from;
+        }
+        // Invariant: the OID at lo sorts before the key, hi is past the answer or equal to to
+        int lo = from;
+        int step = 1;
+        while (true) {
+            int probe = lo + step;
+            if (probe >= to || probe < 0) {
+                break;
+            }
+            if (store.compareAt(probe, key, off, len) >= 0) {
+                to = probe;
+                break;
+            }
+            lo = probe;
+            step <<= 1;
+        }
+        int hi = to;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (store.compareAt(mid, key, off, len) < 0) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return hi;
+    }
+}
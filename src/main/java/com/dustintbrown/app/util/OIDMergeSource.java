@@ -0,0 +1,148 @@
+package com.dustintbrown.app.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Heap based k-way merge of sorted {@link OIDSource}s. Every call to {@link #next()} yields the next
+ * distinct OID across all inputs once, and records which inputs contained it.
+ *
+ * @author  Dustin Brown
+ */
+public class OIDMergeSource implements OIDSource {
+    private final OIDSource[] sources;
+    private final int[] heap;
+    private int heapSize = 0;
+    private final int[] matched;
+    private int matchCount = 0;
+    private int[] arcs = new int[32];
+    private int length = 0;
+
+    /**
+     * @param sources           sorted inputs; they are closed when this source is closed
+     * @throws IOException      if an input fails while reading its first OID
+     */
+    public OIDMergeSource(List<? extends OIDSource> sources) throws IOException {
+        this.sources = sources.toArray(new OIDSource[0]);
+        this.heap = new int[this.sources.length];
+        this.matched = new int[this.sources.length];
+        for (int i = 0; i < this.sources.length; i++) {
+            if (this.sources[i].next()) {
+                heap[heapSize++] = i;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        matchCount = 0;
+        if (heapSize == 0) {
+            return false;
+        }
+        OIDSource top = sources[heap[0]];
+        length = top.length();
+        if (length > arcs.length) {
+            arcs = new int[Math.max(length, arcs.length * 2)];
+        }
+        System.arraycopy(top.arcs(), 0, arcs, 0, length);
+
+        // Pull every input whose current OID equals the one just taken
+        while (heapSize > 0) {
+            int s = heap[0];
+            OIDSource source = sources[s];
+            if (OIDComp.compare(source.arcs(), 0, source.length(), arcs, 0, length) != 0) {
+                break;
+            }
+            if (matchCount == 0 || matched[matchCount - 1] != s) {
+                matched[matchCount++] = s;
+            }
+            if (!source.next()) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(0);
+        }
+        Arrays.sort(matched, 0, matchCount);
+        return true;
+    }
+
+    /**
+     * @return                  number of inputs that contained the current OID
+     */
+    public int matchCount() {
+        return matchCount;
+    }
+
+    /**
+     * @param i                 0 to {@link #matchCount()} - 1
+     * @return                  index of the i-th input (in ascending order) that contained the current OID
+     */
+    public int matched(int i) {
+        return matched[i];
+    }
+
+    /**
+     * @param source            index of an input
+     * @return                  true if that input contained the current OID
+     */
+    public boolean contains(int source) {
+        return Arrays.binarySearch(matched, 0, matchCount, source) >= 0;
+    }
+
+    @Override
+    public int[] arcs() {
+        return arcs;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && compare(heap[left], heap[smallest]) < 0) {
+                smallest = left;
+            }
+            if (right < heapSize && compare(heap[right], heap[smallest]) < 0) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            int tmp = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = tmp;
+            i = smallest;
+        }
+    }
+
+    private int compare(int a, int b) {
+        OIDSource left = sources[a];
+        OIDSource right = sources[b];
+        int c = OIDComp.compare(left.arcs(), 0, left.length(), right.arcs(), 0, right.length());
+        // ties go to the lower input so matches are found in input order
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (OIDSource source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
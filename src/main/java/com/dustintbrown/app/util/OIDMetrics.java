@@ -0,0 +1,369 @@
+package com.dustintbrown.app.util;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for every {@link OIDService} operation. Recording an operation costs two
+ * {@link System#nanoTime()} calls and a few uncontended adds, so it is left on for lookups as well as bulk work.
+ *
+ * Every operation is published as an MXBean named com.dustintbrown.app:type=OIDService,name=...,operation=...
+ * next to a summary bean for the service, see {@link #register(MBeanServer, String, OIDService)}.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDMetrics {
+
+    /**
+     * Operations that are timed. Records are OIDs loaded, checked, listed or written; bytes are file or encoding
+     * sizes where there are any.
+     */
+    public enum Operation {
+        LOAD, EXISTS, EXISTS_ALL, PREFIX, ENCODE, DIFF, COMBINE, WRITE, SNAPSHOT, DELTA;
+
+        /**
+         * @return                  name used in reports and object names
+         */
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Latency histogram with log-linear buckets in the style of HdrHistogram: every power of two is split into
+     * {@link #SUB_BUCKETS} equal buckets, so any recorded value is reported within 1/16 of its true value from a
+     * nanosecond up to centuries, in a fixed array of under a thousand counters.
+     */
+    public static final class Histogram {
+        static final int SUB_BITS = 4;
+        static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * @param value             non-negative value, such as a latency in nanoseconds
+         */
+        public void record(long value) {
+            long v = Math.max(0, value);
+            counts.incrementAndGet(bucket(v));
+            count.increment();
+            sum.add(v);
+            max.accumulate(v);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * @return                  largest value that falls into the bucket
+         */
+        static long highestInBucket(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long sub = SUB_BUCKETS + bucket % SUB_BUCKETS;
+            return ((sub + 1) << shift) - 1;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * @param fraction          percentile between 0 and 1, such as 0.99
+         * @return                  value that the given fraction of recorded values did not exceed, within 1/16
+         */
+        public long percentile(double fraction) {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * n));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += counts.get(b);
+                if (seen >= rank) {
+                    return Math.min(highestInBucket(b), max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /**
+     * JMX view of one operation. Latencies are in microseconds.
+     */
+    public interface OperationMXBean {
+        long getCount();
+        long getFailures();
+        long getRecords();
+        long getBytes();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+        double getRecordsPerSecond();
+        double getBytesPerSecond();
+    }
+
+    /**
+     * JMX view of the service as a whole.
+     */
+    public interface ServiceMXBean {
+        int getLoadedOids();
+        long getMemoryUsage();
+        double getBytesPerOid();
+        String getStorageMode();
+        long getParseFailures();
+    }
+
+    /**
+     * Counters for one operation.
+     */
+    public static final class OperationMetrics implements OperationMXBean {
+        private final Histogram latency = new Histogram();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * @return                  latencies in nanoseconds
+         */
+        public Histogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        @Override
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public long getRecords() {
+            return records.sum();
+        }
+
+        @Override
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return latency.getMean() / 1e3;
+        }
+
+        @Override
+        public double getP50Micros() {
+            return latency.percentile(0.5) / 1e3;
+        }
+
+        @Override
+        public double getP99Micros() {
+            return latency.percentile(0.99) / 1e3;
+        }
+
+        @Override
+        public double getP999Micros() {
+            return latency.percentile(0.999) / 1e3;
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return latency.getMax() / 1e3;
+        }
+
+        /**
+         * @return                  records per second spent in the operation, not per wall clock second
+         */
+        @Override
+        public double getRecordsPerSecond() {
+            long nanos = latency.getSum();
+            return nanos == 0 ? 0 : records.sum() * 1e9 / nanos;
+        }
+
+        @Override
+        public double getBytesPerSecond() {
+            long nanos = latency.getSum();
+            return nanos == 0 ? 0 : bytes.sum() * 1e9 / nanos;
+        }
+    }
+
+    private final Map<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+    private final LongAdder parseFailures = new LongAdder();
+
+    public OIDMetrics() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationMetrics());
+        }
+    }
+
+    /**
+     * @return                  start time to pass to {@link #record}
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a completed operation.
+     *
+     * @param operation         what was done
+     * @param startNanos        value of {@link #start()} when the operation began
+     * @param records           number of OIDs handled
+     * @param bytes             number of bytes read or written, or 0
+     */
+    public void record(Operation operation, long startNanos, long records, long bytes) {
+        OperationMetrics metrics = operations.get(operation);
+        metrics.latency.record(System.nanoTime() - startNanos);
+        if (records != 0) {
+            metrics.records.add(records);
+        }
+        if (bytes != 0) {
+            metrics.bytes.add(bytes);
+        }
+    }
+
+    /**
+     * Records an operation that threw, so failures are counted without skewing latencies.
+     *
+     * @param operation         what was attempted
+     */
+    public void recordFailure(Operation operation) {
+        operations.get(operation).failures.increment();
+    }
+
+    /**
+     * @param count             number of lines or strings that were not valid OIDs
+     */
+    public void recordParseFailures(long count) {
+        parseFailures.add(count);
+    }
+
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    /**
+     * @param operation         operation to look up
+     * @return                  its live counters
+     */
+    public OperationMetrics get(Operation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * Registers one MXBean per operation and a summary bean for the service. Beans that are already registered
+     * under the same name are replaced.
+     *
+     * @param server            usually {@link java.lang.management.ManagementFactory#getPlatformMBeanServer()}
+     * @param name              distinguishes services within one JVM
+     * @param service           service the summary bean reports on
+     * @throws JMException      if a bean cannot be registered
+     */
+    public void register(MBeanServer server, String name, OIDService service) throws JMException {
+        String prefix = "com.dustintbrown.app:type=OIDService,name=" + ObjectName.quote(name);
+        registerReplacing(server, new ObjectName(prefix), new ServiceMXBean() {
+            @Override
+            public int getLoadedOids() {
+                return service.getOids().size();
+            }
+
+            @Override
+            public long getMemoryUsage() {
+                return service.getOids().memoryUsage();
+            }
+
+            @Override
+            public double getBytesPerOid() {
+                OIDStore store = service.getOids();
+                return store.size() == 0 ? 0 : (double) store.memoryUsage() / store.size();
+            }
+
+            @Override
+            public String getStorageMode() {
+                return service.getStorageMode().name();
+            }
+
+            @Override
+            public long getParseFailures() {
+                return parseFailures.sum();
+            }
+        });
+        for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet()) {
+            registerReplacing(server, new ObjectName(prefix + ",operation=" + entry.getKey().label()), entry.getValue());
+        }
+    }
+
+    private static void registerReplacing(MBeanServer server, ObjectName objectName, Object bean) throws JMException {
+        try {
+            server.registerMBean(bean, objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            server.unregisterMBean(objectName);
+            server.registerMBean(bean, objectName);
+        }
+    }
+
+    /**
+     * Formats every operation that has run as a table, followed by the memory used per loaded OID.
+     *
+     * @param store             loaded OIDs, for the heap estimate
+     * @return                  multi-line report
+     */
+    public String report(OIDStore store) {
+        StringBuilder returnMe = new StringBuilder(String.format("%-10s %9s %6s %12s %10s %10s %10s %10s %12s %12s%n",
+                "operation", "count", "failed", "records", "p50 us", "p99 us", "p99.9 us", "max us", "records/s", "MB/s"));
+        for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet()) {
+            OperationMetrics m = entry.getValue();
+            if (m.getCount() == 0 && m.getFailures() == 0) {
+                continue;
+            }
+            returnMe.append(String.format(Locale.ROOT, "%-10s %9d %6d %12d %10.1f %10.1f %10.1f %10.1f %12.0f %12.1f%n",
+                    entry.getKey().label(), m.getCount(), m.getFailures(), m.getRecords(), m.getP50Micros(),
+                    m.getP99Micros(), m.getP999Micros(), m.getMaxMicros(), m.getRecordsPerSecond(),
+                    m.getBytesPerSecond() / (1 << 20)));
+        }
+        returnMe.append(String.format(Locale.ROOT, "parse failures %d, %d OIDs loaded in %d bytes (%.1f bytes per OID)%n",
+                getParseFailures(), store.size(), store.memoryUsage(),
+                store.size() == 0 ? 0.0 : (double) store.memoryUsage() / store.size()));
+        return returnMe.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.dustintbrown.app.util;
+
+import java.io.IOException;
+
+/**
+ * Pages through the OIDs starting with a prefix without materializing them. The matching range is found with two
+ * binary searches when the cursor is opened, so counting is free and every page starts with one more search at
+ * most; pages are views or are streamed straight to a writer, so memory stays constant however many OIDs match.
+ *
+ * A cursor reads from the store it was opened on. To page across reloads, keep the last OID of a page and open a
+ * new cursor positioned {@link #after(int[])} it.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDPrefixCursor {
+    private final OIDStore store;
+    private final int from;
+    private final int to;
+    private int position;
+
+    private OIDPrefixCursor(OIDStore store, int from, int to) {
+        this.store = store;
+        this.from = from;
+        this.to = to;
+        this.position = from;
+    }
+
+    /**
+     * @param store             sorted OIDs
+     * @param prefix            OID prefix formatted as int[]; empty matches every OID
+     * @return                  cursor before the first matching OID
+     */
+    public static OIDPrefixCursor open(OIDStore store, int[] prefix) {
+        return new OIDPrefixCursor(store, store.lowerBound(prefix, 0, prefix.length),
+                store.prefixEnd(prefix, 0, prefix.length));
+    }
+
+    /**
+     * @return                  number of matching OIDs, answered from the index
+     */
+    public int count() {
+        return to - from;
+    }
+
+    /**
+     * @return                  number of matching OIDs after the cursor
+     */
+    public int remaining() {
+        return to - position;
+    }
+
+    public boolean hasNext() {
+        return position < to;
+    }
+
+    /**
+     * @return                  index of the next OID among the matches
+     */
+    public int offset() {
+        return position - from;
+    }
+
+    /**
+     * Moves the cursor to the given index among the matches.
+     *
+     * @param offset            number of matches to skip from the first; clamped to the number of matches
+     * @return                  this cursor
+     */
+    public OIDPrefixCursor seek(long offset) {
+        position = (int) Math.max(from, Math.min(to, from + offset));
+        return this;
+    }
+
+    /**
+     * Moves the cursor just past the given OID, which need not be loaded any more.
+     *
+     * @param oid               last OID of the previous page
+     * @return                  this cursor
+     */
+    public OIDPrefixCursor after(int[] oid) {
+        int index = store.lowerBound(oid, 0, oid.length);
+        if (index < store.size() && store.compareAt(index, oid, 0, oid.length) == 0) {
+            index++;
+        }
+        position = Math.max(from, Math.min(to, index));
+        return this;
+    }
+
+    /**
+     * Returns the next page and moves past it.
+     *
+     * @param limit             largest number of OIDs to return
+     * @return                  view of up to limit OIDs, empty once the matches are exhausted
+     */
+    public OIDStore next(int limit) {
+        int end = position + Math.min(Math.max(0, limit), to - position);
+        OIDStore returnMe = store.subList(position, end);
+        position = end;
+        return returnMe;
+    }
+
+    /**
+     * Formats the next OIDs to a writer, one per line, and moves past them.
+     *
+     * @param writer            destination; flushed by the caller
+     * @param limit             largest number of OIDs to write
+     * @return                  number of OIDs written
+     * @throws IOException      if the writer fails
+     */
+    public int writeTo(OIDTextWriter writer, long limit) throws IOException {
+        int end = (int) Math.min(to, position + Math.max(0, Math.min(limit, Integer.MAX_VALUE)));
+        int returnMe = end - position;
+        store.scan(position, end, writer::writeLine);
+        position = end;
+        return returnMe;
+    }
+}
@@ -0,0 +1,154 @@
+package com.dustintbrown.app.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Temporary binary file of sorted OIDs used by external sorts. Each OID is written as a varint arc count
+ * followed by one varint per arc, which keeps typical OIDs to a handful of bytes.
+ *
+ * @author  Dustin Brown
+ */
+final class OIDRunFile {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private OIDRunFile() {
+    }
+
+    /**
+     * Writes a sorted store to the given path.
+     *
+     * @param store             OIDs to write, in order
+     * @param path              file to create or replace
+     * @throws IOException      if the file cannot be written
+     */
+    static void write(OIDStore store, Path path) throws IOException {
+        try (Writer writer = new Writer(path)) {
+            store.scan(0, store.size(), writer::write);
+        }
+    }
+
+    /**
+     * Buffered varint writer for run files.
+     */
+    static final class Writer implements Closeable {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int pos = 0;
+        private long count = 0;
+
+        Writer(Path path) throws IOException {
+            this.out = new FileOutputStream(path.toFile());
+        }
+
+        void write(int[] arcs, int off, int len) throws IOException {
+            if (pos + 5 * (len + 1) > buffer.length) {
+                out.write(buffer, 0, pos);
+                pos = 0;
+            }
+            pos = putVarInt(buffer, pos, len);
+            for (int i = off; i < off + len; i++) {
+                pos = putVarInt(buffer, pos, arcs[i]);
+            }
+            count++;
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                out.write(buffer, 0, pos);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Streams a run file back as an {@link OIDSource}.
+     */
+    static final class Reader implements OIDSource {
+        private final InputStream in;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int pos = 0;
+        private int limit = 0;
+        private int[] arcs = new int[32];
+        private int length = 0;
+
+        Reader(Path path) throws IOException {
+            this.in = new FileInputStream(path.toFile());
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (pos == limit && !fill()) {
+                return false;
+            }
+            length = readVarInt();
+            if (length > arcs.length) {
+                arcs = new int[Math.max(length, arcs.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                arcs[i] = readVarInt();
+            }
+            return true;
+        }
+
+        private boolean fill() throws IOException {
+            int read = in.read(buffer);
+            if (read <= 0) {
+                return false;
+            }
+            pos = 0;
+            limit = read;
+            return true;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (pos == limit && !fill()) {
+                    throw new EOFException("Truncated run file");
+                }
+                byte b = buffer[pos++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        @Override
+        public int[] arcs() {
+            return arcs;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    static int putVarInt(byte[] dst, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[pos++] = (byte) value;
+        return pos;
+    }
+}
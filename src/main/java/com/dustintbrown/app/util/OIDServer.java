@@ -0,0 +1,250 @@
+package com.dustintbrown.app.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP front end for an {@link OIDService}, so other local processes can query the loaded OIDs.
+ *
+ * Lookups are batched: the body of a POST holds one OID per line and the response holds one answer per line in
+ * the same order, all answered from a single loaded store even if a reload happens meanwhile. A batch body is read
+ * in full (up to {@link #MAX_BATCH_BYTES}) before answering starts, so a client that sends its whole request before
+ * reading cannot deadlock against the server; answers and prefix listings are streamed as they are produced.
+ * <pre>
+ * POST /exists          OIDs          -&gt; 1 if loaded, 0 if not
+ * POST /prefix/count    prefixes      -&gt; number of loaded OIDs starting with the prefix
+ * GET  /prefix/list?prefix=1.3.6[&amp;limit=n][&amp;offset=n|&amp;after=oid]  -&gt; matching OIDs, streamed in sorted order
+ * POST /encode          OIDs          -&gt; BER encoding in lowercase hex
+ * GET  /stats                         -&gt; number of loaded OIDs, the storage mode and filter counters
+ * </pre>
+ * A line that is not a valid OID is answered with "?", and a listing without a prefix lists every OID. Requests
+ * run on a fixed number of worker threads with a bounded queue; when the queue is full the accepting thread runs
+ * the request itself, which stops it taking new connections until a worker frees up, so overload turns into back
+ * pressure instead of unbounded queueing.
+ *
+ * @author  Dustin Brown
+ */
+public class OIDServer implements Closeable {
+    private final static Logger LOGGER = Logger.getLogger(OIDServer.class.getName());
+
+    /** Default number of worker threads */
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+    /** Default number of requests waiting for a worker */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    /** Largest accepted batch body, about two million OIDs */
+    public static final int MAX_BATCH_BYTES = 64 << 20;
+    private static final String TEXT = "text/plain; charset=US-ASCII";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OIDService service;
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Binds to the loopback interface with the default thread and queue sizes.
+     * @see #OIDServer(OIDService, InetSocketAddress, int, int)
+     */
+    public OIDServer(OIDService service, int port) throws IOException {
+        this(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Binds the server; call {@link #start()} to begin answering requests.
+     *
+     * @param service           service holding the OIDs to query
+     * @param address           address to listen on; port 0 picks a free port
+     * @param threads           number of worker threads
+     * @param queueCapacity     number of accepted requests that may wait for a worker
+     * @throws IOException      if the address cannot be bound
+     */
+    public OIDServer(OIDService service, InetSocketAddress address, int threads, int queueCapacity) throws IOException {
+        this.service = service;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "oid-server-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.server = HttpServer.create(address, queueCapacity);
+        server.setExecutor(executor);
+        server.createContext("/exists", batch((body, out) -> {
+            // Sorting the batch and merge joining it beats a binary search per line; the workers are the parallelism
+            service.existsAll(new ByteArrayInputStream(body), null).writeTo(out);
+        }));
+        server.createContext("/prefix/count", batch((body, out) -> {
+            try (OIDTextWriter writer = new OIDTextWriter(out, BUFFER_SIZE, false)) {
+                service.countOidsWithPrefix(new ByteArrayInputStream(body), writer);
+            }
+        }));
+        server.createContext("/encode", batch((body, out) -> {
+            try (OIDTextWriter writer = new OIDTextWriter(out, BUFFER_SIZE, false)) {
+                service.encode(new ByteArrayInputStream(body), writer);
+            }
+        }));
+        server.createContext("/prefix/list", this::handlePrefixList);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Starts answering requests in the background.
+     */
+    public void start() {
+        server.start();
+        Object[] params = {Integer.toString(getPort()), executor.getCorePoolSize()};
+        LOGGER.log(Level.INFO, "OID server listening on port {0} with {1} worker threads.", params);
+    }
+
+    /**
+     * @return                  port the server is bound to
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, gives running requests a second to finish and stops the workers.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers every line of a POST body with one line, all from the same loaded store.
+     */
+    private interface BatchResponder {
+        void respond(byte[] body, OutputStream out) throws IOException;
+    }
+
+    private HttpHandler batch(BatchResponder responder) {
+        return exchange -> {
+            try {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendError(exchange, 405, "Use POST with one OID per line");
+                    return;
+                }
+                byte[] body;
+                try (InputStream in = exchange.getRequestBody()) {
+                    body = in.readNBytes(MAX_BATCH_BYTES + 1);
+                }
+                if (body.length > MAX_BATCH_BYTES) {
+                    send(exchange, 413, "Batches are limited to " + MAX_BATCH_BYTES + " bytes\n");
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", TEXT);
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    responder.respond(body, out);
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    private void handlePrefixList(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use GET");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String prefix = query.get("prefix");
+            OIDPrefixCursor cursor;
+            long limit;
+            try {
+                // No prefix lists every OID
+                cursor = service.prefixCursor(prefix == null ? "" : prefix);
+                limit = query.containsKey("limit") ? Long.parseLong(query.get("limit")) : Long.MAX_VALUE;
+                if (query.containsKey("after")) {
+                    cursor.after(OIDService.parseOIDString(query.get("after")));
+                } else if (query.containsKey("offset")) {
+                    cursor.seek(Long.parseLong(query.get("offset")));
+                }
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "Expected ?prefix=<oid>[&limit=<n>][&offset=<n>|&after=<oid>]");
+                return;
+            }
+            // The total lets a client size its paging before reading any OIDs
+            exchange.getResponseHeaders().set("Content-Type", TEXT);
+            exchange.getResponseHeaders().set("X-Match-Count", Integer.toString(cursor.count()));
+            exchange.sendResponseHeaders(200, 0);
+            try (OIDTextWriter writer = new OIDTextWriter(exchange.getResponseBody(), BUFFER_SIZE, true)) {
+                cursor.writeTo(writer, limit);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            OIDStore store = service.getOids();
+            String body = "size " + store.size() + "\nstorage " + service.getStorageMode() + "\n";
+            OIDBloomFilter filter = service.getFilter();
+            if (filter != null) {
+                body += "filter.queries " + filter.getQueries() + "\nfilter.rejected " + filter.getRejected()
+                        + "\nfilter.falsePositives " + filter.getFalsePositives() + "\nfilter.bytes " + filter.memoryUsage() + "\n";
+            }
+            send(exchange, 200, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        // Unread request bytes would otherwise be taken for the next request on the connection
+        try (InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        send(exchange, status, message + "\n");
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @param rawQuery          URL encoded query string, or null
+     * @return                  parameter values by name; later values replace earlier ones
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> returnMe = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return returnMe;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            returnMe.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return returnMe;
+    }
+}
@@ -1,103 +1,313 @@
 package com.dustintbrown.app.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
- * Service to manage OIDs in an internal TreeSet
+ * Service to manage OIDs in an internal sorted {@link OIDStore}
+ *
+ * The service is safe to share between threads. Loaded OIDs are held in an immutable store published through a
+ * volatile field, together with the optional filter built from it: every query reads the field once and works on
+ * that store alone, so it never sees a mix of two loads and never blocks. Loads and storage mode changes build the
+ * new store off to the side and then swap it in while holding a lock that only other writers contend for.
+ *
+ * Deltas are applied as an overlay on the loaded store, so their cost follows the size of the delta. Once a snapshot
+ * has been saved or opened, every applied delta is also appended to a log next to it before it becomes visible, and
+ * opening the snapshot again replays that log.
  *
  * @author  Dustin Brown
  */
 public class OIDService {
-    private static SplittableRandom rand = new SplittableRandom();
     private final static Logger LOGGER = Logger.getLogger(OIDService.class.getName());
 
-    private TreeSet<int[]> oids = new TreeSet<>(new OIDComp());
+    /** Suffix of the delta log kept next to a snapshot */
+    public static final String DELTA_LOG_SUFFIX = ".log";
+    // Overlays are folded into a plain store once they change this many OIDs, or an eighth of the base if larger
+    private static final int MIN_COMPACT_CHANGES = 1 << 12;
+
+    private volatile Loaded loaded = new Loaded(PackedOIDStore.EMPTY, null);
+    private volatile OIDStorageMode storageMode = OIDStorageMode.PACKED;
+    private volatile boolean sharded = false;
+    private volatile double filterFalsePositiveRate = 0;
+    private volatile OIDLookupMode lookupMode = OIDLookupMode.SORTED;
+    private volatile long hashMemoryBudget = Runtime.getRuntime().maxMemory() / 8;
+    // Serializes swaps so a storage mode change cannot be lost to a concurrent load
+    private final Object swapLock = new Object();
+    // Log of deltas applied since the snapshot the loaded OIDs came from, or null; guarded by swapLock
+    private Path deltaLog;
+    // Seeds random loads; guarded by swapLock
+    private final SplittableRandom rand = new SplittableRandom();
+    private final OIDMetrics metrics = new OIDMetrics();
+
+    /**
+     * A store together with the filter built from it. They are swapped as one so a filter never answers for
+     * OIDs it was not built from.
+     */
+    private static final class Loaded {
+        private final OIDStore store;
+        private final OIDBloomFilter filter;
 
-    public TreeSet<int[]> getOids() {
-        return oids;
+        Loaded(OIDStore store, OIDBloomFilter filter) {
+            this.store = store;
+            this.filter = filter;
+        }
     }
 
     /**
-     * Set internal collection to given OIDs as Strings
-     *
-     * @param collection
+     * @return                  latency histograms and counters for every operation of this service
      */
-    public void populateWithOIDs(Collection<String> collection){
-        oids.clear();
-        collection.forEach(oid ->{
-            oids.add(parseOIDString(oid));
-        });
+    public OIDMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return                  the currently loaded OIDs; the store never changes, later loads replace it
+     */
+    public OIDStore getOids() {
+        return loaded.store;
+    }
+
+    /**
+     * @return                  the filter in front of {@link #exists(String)} for the loaded OIDs, or null if disabled
+     */
+    public OIDBloomFilter getFilter() {
+        return loaded.filter;
+    }
+
+    public double getFilterFalsePositiveRate() {
+        return filterFalsePositiveRate;
     }
 
     /**
+     * Enables a Bloom filter in front of exists lookups so most misses never search the store. The filter is
+     * rebuilt for the loaded OIDs now and after every load.
+     * @see OIDBloomFilter
      *
-     * @param num
+     * @param falsePositiveRate target share of absent OIDs that still search the store, or 0 to disable the filter
      */
-    public void populateWithRandomOIDs(int num) {
-        long startTime = System.currentTimeMillis();
-        LOGGER.log(Level.INFO, "Starting generation of {0} oids.", num);
-        oids.clear();
-        while (oids.size() < num) {
-            oids.add(generateSingleOID());
+    public void setFilterFalsePositiveRate(double falsePositiveRate) {
+        if (falsePositiveRate != 0 && !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be 0 or between 0 and 1: " + falsePositiveRate);
         }
-        long endTme = System.currentTimeMillis();
-        LOGGER.log(Level.INFO, "Finished generation of oids in {0}ms.",(endTme-startTime));
+        synchronized (swapLock) {
+            this.filterFalsePositiveRate = falsePositiveRate;
+            OIDStore current = loaded.store;
+            loaded = new Loaded(current, buildFilter(current));
+        }
+    }
+
+    /**
+     * @param store             freshly loaded OIDs
+     * @return                  filter for the store at the configured rate, or null if filtering is disabled
+     */
+    private OIDBloomFilter buildFilter(OIDStore store) {
+        double rate = filterFalsePositiveRate;
+        if (rate <= 0) {
+            return null;
+        }
+        final long startTime = System.currentTimeMillis();
+        OIDBloomFilter returnMe = OIDBloomFilter.build(store, rate);
+        Object[] params = {store.size(), returnMe.memoryUsage(), System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "Built filter for {0} OIDs ({1} bytes) in {2} milliseconds.", params);
+        return returnMe;
+    }
+
+    public OIDStorageMode getStorageMode() {
+        return storageMode;
     }
 
     /**
-     * generates a single OID between the length 2 and 10 32-bit integers. Each segment of the OID is
-     * stored in an int[].
+     * Chooses how OIDs are held after the next load. Already loaded OIDs are converted immediately.
      *
-     * @return                  int array containing 2-10 items representing an OID
+     * @param storageMode       layout to use for loaded OIDs
      */
-    private int[] generateSingleOID() {
-        // First 2 sections are 0-15
-        // 3-10 total sections
-        // each section after  is a random number from 0-Integer.MAX_VALUE
-        int length = rand.nextInt(8) + 2;
-        int[] returnMe = new int[length];
-        for (int i = 0; i < length; i++) {
-            if (i < 2) {
-                returnMe[i] = (rand.nextInt(16));
-            } else if(i==length-1) {
-                //last item should have a larger scope to be more realistic
-                returnMe[i] = generateBiasedPositiveInt(65000,4096);
-            }else{
-                //middle numbers should be biased toward 0 give the way these numbers appear in the wild.
-                returnMe[i] = generateBiasedPositiveInt(255 * i,128);
+    public void setStorageMode(OIDStorageMode storageMode) {
+        synchronized (swapLock) {
+            this.storageMode = storageMode;
+            Loaded current = loaded;
+            if (current.store.size() > 0) {
+                // Same OIDs in another layout, so the filter still applies
+                loaded = new Loaded(toStorageMode(current.store), current.filter);
             }
         }
-        return returnMe;
+    }
+
+    public boolean isSharded() {
+        return sharded;
     }
 
     /**
-     * Returns an int below the max value that is biased toward lower numbers.
+     * Chooses whether loaded OIDs are split into shards by their first two arcs, each built on its own task in
+     * the configured storage mode. Already loaded OIDs are converted immediately.
+     * @see ShardedOIDStore
      *
-     * @param max               the largest value returned
-     * @param bias_threshold    the int to base the threshold calculation
-     * @return                  int less than max biased toward lower numbers
+     * @param sharded           true to shard loaded OIDs
      */
-    private int generateBiasedPositiveInt(int max, int bias_threshold){
-        if(max<0){
-            return 0;
-        }else if(bias_threshold > max){
-            bias_threshold = max;
+    public void setSharded(boolean sharded) {
+        synchronized (swapLock) {
+            this.sharded = sharded;
+            Loaded current = loaded;
+            if (current.store.size() > 0) {
+                loaded = new Loaded(toStorageMode(current.store), current.filter);
+            }
         }
-        int cnt = 1;
-        int next = 0;
-        while(cnt<6){ //basically a poor man's weighting toward numbers lower than start_max
-            next = rand.nextInt(max);
-            if(next<(bias_threshold*cnt)){
-                break;
+    }
+
+    public OIDLookupMode getLookupMode() {
+        return lookupMode;
+    }
+
+    /**
+     * Chooses how exact lookups are answered. Already loaded OIDs get or lose their hash index immediately; an
+     * overlay of applied deltas is compacted first, since positions in it move with every delta.
+     * @see HashedOIDStore
+     *
+     * @param lookupMode        whether exists lookups go through a hash index
+     */
+    public void setLookupMode(OIDLookupMode lookupMode) {
+        synchronized (swapLock) {
+            this.lookupMode = lookupMode;
+            Loaded current = loaded;
+            if (current.store instanceof DeltaOIDStore) {
+                loaded = new Loaded(toStorageMode(current.store), current.filter);
+            } else if (current.store.size() > 0) {
+                loaded = new Loaded(withLookupMode(unhashed(current.store), current.store), current.filter);
             }
-            cnt++;
         }
-        return next;
+    }
+
+    public long getHashMemoryBudget() {
+        return hashMemoryBudget;
+    }
+
+    /**
+     * @param hashMemoryBudget  largest hash index, in bytes, that {@link OIDLookupMode#AUTO} builds; applies from the next load
+     */
+    public void setHashMemoryBudget(long hashMemoryBudget) {
+        this.hashMemoryBudget = hashMemoryBudget;
+    }
+
+    /**
+     * Converts freshly loaded OIDs into the configured storage mode, builds their filter and makes both visible
+     * to readers.
+     *
+     * @param store             sorted OIDs built off to the side
+     * @return                  the store now being served
+     */
+    private OIDStore install(OIDStore store) {
+        synchronized (swapLock) {
+            OIDStore returnMe = toStorageMode(store);
+            loaded = new Loaded(returnMe, buildFilter(returnMe));
+            // Deltas logged against a snapshot no longer describe these OIDs
+            deltaLog = null;
+            return returnMe;
+        }
+    }
+
+    /**
+     * Converts a freshly loaded store into the configured storage mode and lookup mode.
+     *
+     * @param loaded            sorted OIDs
+     * @return                  the same OIDs in the configured layout
+     */
+    private OIDStore toStorageMode(OIDStore loaded) {
+        final long startTime = System.currentTimeMillis();
+        OIDStorageMode mode = storageMode;
+        OIDStore sorted = unhashed(loaded);
+        OIDStore returnMe;
+        if (!sharded) {
+            returnMe = mode.convert(sorted);
+        } else if (sorted instanceof ShardedOIDStore && ((ShardedOIDStore) sorted).getStorageMode() == mode) {
+            returnMe = sorted;
+        } else {
+            returnMe = ShardedOIDStore.build(sorted, mode, ForkJoinPool.commonPool());
+        }
+        if (returnMe != sorted) {
+            Object[] params = {storageMode, sorted.memoryUsage(), returnMe.memoryUsage(), System.currentTimeMillis() - startTime};
+            LOGGER.log(Level.INFO, "Converted OIDs to {0} storage: {1} bytes -> {2} bytes in {3} milliseconds.", params);
+        }
+        return withLookupMode(returnMe, loaded);
+    }
+
+    /**
+     * @return                  the sorted store under a hash index, or the store itself if it has none
+     */
+    private static OIDStore unhashed(OIDStore store) {
+        return store instanceof HashedOIDStore ? ((HashedOIDStore) store).getBase() : store;
+    }
+
+    /**
+     * Puts a hash index in front of a sorted store if the lookup mode asks for one.
+     *
+     * @param sorted            sorted OIDs without an index
+     * @param previous          store served until now, whose index is reused if it was built over the same store
+     * @return                  the store to serve
+     */
+    private OIDStore withLookupMode(OIDStore sorted, OIDStore previous) {
+        OIDLookupMode mode = lookupMode;
+        long bytes = HashedOIDStore.indexBytes(sorted.size());
+        if (mode == OIDLookupMode.SORTED || sorted.size() == 0) {
+            return sorted;
+        }
+        if (mode == OIDLookupMode.AUTO && bytes > hashMemoryBudget) {
+            Object[] params = {bytes, hashMemoryBudget};
+            LOGGER.log(Level.INFO, "A hash index would take {0} bytes, over the budget of {1}; lookups search the sorted OIDs.", params);
+            return sorted;
+        }
+        if (previous instanceof HashedOIDStore && ((HashedOIDStore) previous).getBase() == sorted) {
+            return previous;
+        }
+        final long startTime = System.currentTimeMillis();
+        HashedOIDStore returnMe = HashedOIDStore.build(sorted, ForkJoinPool.commonPool());
+        Object[] params = {sorted.size(), returnMe.getIndexBytes(), System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "Built hash index for {0} OIDs ({1} bytes) in {2} milliseconds.", params);
+        return returnMe;
+    }
+
+    /**
+     * Set internal collection to given OIDs as Strings
+     *
+     * @param collection
+     */
+    public void populateWithOIDs(Collection<String> collection){
+        final long start = OIDMetrics.start();
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder(collection.size());
+        collection.forEach(oid ->{
+            builder.add(parseOIDString(oid));
+        });
+        OIDStore loaded = install(builder.build());
+        metrics.record(OIDMetrics.Operation.LOAD, start, loaded.size(), 0);
+    }
+
+    /**
+     * Replaces the loaded OIDs with num distinct random OIDs.
+     * @see OIDGenerator
+     *
+     * @param num               number of OIDs to generate
+     */
+    public void populateWithRandomOIDs(int num) {
+        final long start = OIDMetrics.start();
+        long startTime = System.currentTimeMillis();
+        LOGGER.log(Level.INFO, "Starting generation of {0} oids.", num);
+        SplittableRandom seed;
+        synchronized (swapLock) {
+            seed = rand.split();
+        }
+        OIDStore loaded = install(new OIDGenerator(seed).generate(num, ForkJoinPool.commonPool()));
+        metrics.record(OIDMetrics.Operation.LOAD, start, loaded.size(), 0);
+        long endTme = System.currentTimeMillis();
+        LOGGER.log(Level.INFO, "Finished generation of oids in {0}ms.",(endTme-startTime));
     }
 
     /**
@@ -106,65 +316,62 @@ public class OIDService {
      * @param oidsToPrint       Collection of int[] represented OIDs
      */
     public static void printOIDs(Collection<int[]> oidsToPrint){
-        oidsToPrint.forEach(oid -> {
-            System.out.println(OIDService.parseOID(oid));
-        });
+        try (OIDTextWriter writer = new OIDTextWriter(System.out, 1 << 16, false)) {
+            if (oidsToPrint instanceof OIDStore) {
+                OIDStore store = (OIDStore) oidsToPrint;
+                store.scan(0, store.size(), writer::writeLine);
+            } else {
+                for (int[] oid : oidsToPrint) {
+                    writer.writeLine(oid, 0, oid.length);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
     }
 
     /**
-     * Imports the given file name to the oids data structure in this class. File should contain
-     * one OID per line represented as x.y.z.a.b.c where each segment between the periods is a 32-bit integer.
+     * Prints the next OIDs of a prefix cursor to stdout and moves the cursor past them.
      *
-     * @param filename          text filename representing a location on the local disk
-     * @throws IOException      throws an exception if there are issues with the given file
+     * @param cursor            cursor to read from
+     * @param limit             largest number of OIDs to print
      */
-    public void importOIDsFromFile(String filename) throws IOException {
-        loadOIDsFromFile(oids, filename, false);
+    public static void printOIDs(OIDPrefixCursor cursor, long limit) {
+        try (OIDTextWriter writer = new OIDTextWriter(System.out, 1 << 16, false)) {
+            cursor.writeTo(writer, limit);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
     }
 
     /**
-     * Reads a given file name and inserts each OID into the given collection as either String or int[].
-     * File should contain one OID per line represented as x.y.z.a.b.c where each segment between the periods
-     * is a 32-bit integer.
+     * Imports the given file name to the oids data structure in this class. File should contain
+     * one OID per line represented as x.y.z.a.b.c where each segment between the periods is a 32-bit integer.
+     * The file is memory mapped and parsed in parallel; lines that are not valid OIDs are skipped and counted.
+     * A gzip file is inflated, split and parsed in pipelined stages instead, without being written out first.
      *
-     * @param c                 collection to add found OIDs from the file
-     * @param filename          local file to read OIDs from
-     * @param asString          if true the OIDs are added as a String. Otherwise they are added as int[]
+     * @param filename          text filename representing a location on the local disk
+     * @return                  import statistics including the number of rejected lines
      * @throws IOException      throws an exception if there are issues with the given file
      */
-    private void loadOIDsFromFile(Collection c, String filename, boolean asString) throws IOException{
+    public OIDBulkImporter.Result importOIDsFromFile(String filename) throws IOException {
         LOGGER.log(Level.INFO, "Importing OIDs from file: {0}", filename);
-        final long startTime = System.currentTimeMillis();
-        int record_count = 0;
-        try (final BufferedReader myReader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = myReader.readLine()) != null) {
-                try {
-                    if(asString){
-                        c.add(line);
-                    }else {
-                        c.add(parseOIDString(line));
-                    }
-                    record_count++;
-                    if (record_count % 1000000 == 0) {
-                        LOGGER.log(Level.FINE, "Read {0} records.", record_count);
-                    }
-                } catch (Exception e){
-                    // Fails if a line can't be read
-                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
-                    e.printStackTrace();
-                }
-            }
-        }
-        final long endTime = System.currentTimeMillis();
-        Object[] params = {c.size(), endTime - startTime};
-        LOGGER.log(Level.INFO, "Read {0} OIDs from file. Operation completed in {1} milliseconds.", params);
+        final long start = OIDMetrics.start();
+        OIDBulkImporter.Result result = new OIDBulkImporter().importFile(filename);
+        OIDStore loaded = install(result.getStore());
+        metrics.record(OIDMetrics.Operation.LOAD, start, result.getLines(), result.getBytes());
+        metrics.recordParseFailures(result.getRejected());
+        Object[] params = {loaded.size(), result.getRejected(), result.getMillis()};
+        LOGGER.log(Level.INFO, "Read {0} OIDs from file ({1} rejected). Operation completed in {2} milliseconds.", params);
+        return result;
     }
 
     /**
      * Loads OIDs from two different files and compares them. Files should contain
      * one OID per line represented as x.y.z.a.b.c where each segment between the periods is a 32-bit integer.
      * Filename1 is considered the base file and the diff results are returned as a +/- to that collection.
+     * Every line of both files ends up in the returned collection; use
+     * {@link #diffFiles(String, String, OIDDiff.Sink, boolean)} to stream large diffs instead.
      *
      * @param filename1         local file to read OIDs from
      * @param filename2         local file to read OIDs from
@@ -173,61 +380,351 @@ public class OIDService {
      */
     public Collection<String> diffFiles(String filename1, String filename2) throws IOException {
         ArrayList<String> returnMe = new ArrayList<>();
-        HashSet<String> setA = new HashSet<>();
-        HashSet<String> setB = new HashSet<>();
-        loadOIDsFromFile(setA, filename1,true);
-        loadOIDsFromFile(setB, filename2,true);
+        StringBuilder line = new StringBuilder();
+        diffFiles(filename1, filename2, (change, arcs, len) -> {
+            line.setLength(0);
+            if (change != OIDDiff.UNCHANGED) {
+                line.append(change).append(' ');
+            }
+            returnMe.add(OIDCodec.format(arcs, 0, len, line).toString());
+        }, true);
+        return returnMe;
+    }
+
+    /**
+     * Streams the diff of two OID files to a sink in sorted order. Each file is sorted externally in bounded
+     * memory (spilling sorted runs to temporary files when needed) and the two sorted streams are merged,
+     * so neither file is ever held in memory. Filename1 is the base: OIDs only in it are reported as removed.
+     *
+     * @param filename1         base file
+     * @param filename2         file compared against the base
+     * @param sink              receives each diff line
+     * @param includeUnchanged  if true OIDs present in both files are also sent to the sink
+     * @return                  counts of added, removed and unchanged OIDs
+     * @throws IOException      throws an exception if there are issues with the given files
+     */
+    public OIDDiff.Stats diffFiles(String filename1, String filename2, OIDDiff.Sink sink, boolean includeUnchanged) throws IOException {
+        LOGGER.log(Level.INFO, "Diffing {0} against {1}", new Object[]{filename2, filename1});
+        final long start = OIDMetrics.start();
+        final long startTime = System.currentTimeMillis();
+        OIDExternalSorter sorter = new OIDExternalSorter();
+        OIDDiff.Stats stats;
+        try (OIDExternalSorter.Sorted base = sorter.sort(filename1);
+             OIDExternalSorter.Sorted other = sorter.sort(filename2)) {
+            stats = OIDDiff.diff(base, other, sink, includeUnchanged);
+            metrics.recordParseFailures(base.getRejected() + other.getRejected());
+            if (base.getRejected() + other.getRejected() > 0) {
+                Object[] params = {base.getRejected(), other.getRejected()};
+                LOGGER.log(Level.WARNING, "Skipped {0} and {1} lines that were not valid OIDs", params);
+            }
+        }
+        metrics.record(OIDMetrics.Operation.DIFF, start, stats.getAdded() + stats.getRemoved() + stats.getUnchanged(), 0);
+        final long endTime = System.currentTimeMillis();
+        Object[] params = {stats, endTime - startTime};
+        LOGGER.log(Level.INFO, "Diff {0} completed in {1} milliseconds.", params);
+        return stats;
+    }
 
-        return diffCollections(setA, setB);
+    /**
+     * Combines any number of OID files in one pass and streams the selected OIDs to a sink in sorted order.
+     * Unsorted files are sorted externally first, sharing one memory budget between them; files already sorted
+     * are read as they are.
+     * @see OIDSetAlgebra
+     *
+     * @param filenames         local files with one OID per line; the first is the base for a difference
+     * @param operation         which OIDs to emit
+     * @param k                 minimum number of files an OID must be in for {@link OIDSetAlgebra.Operation#AT_LEAST}
+     * @param sorted            true if every file is already sorted, which fails on a file that is not
+     * @param sink              receives the selected OIDs
+     * @return                  counts of distinct and emitted OIDs
+     * @throws IOException      throws an exception if there are issues with the given files
+     */
+    public OIDSetAlgebra.Result combineFiles(List<String> filenames, OIDSetAlgebra.Operation operation, int k,
+                                             boolean sorted, OIDStore.ArcConsumer<IOException> sink) throws IOException {
+        final long start = OIDMetrics.start();
+        final long startTime = System.currentTimeMillis();
+        OIDExternalSorter sorter = new OIDExternalSorter(OIDExternalSorter.DEFAULT_MEMORY_BUDGET / Math.max(1, filenames.size()), null);
+        List<OIDSource> inputs = new ArrayList<>(filenames.size());
+        OIDSetAlgebra.Result returnMe;
+        try {
+            for (String filename : filenames) {
+                inputs.add(sorted ? OIDSource.ofSortedLines(new FileInputStream(filename)) : sorter.sort(filename));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (OIDSource input : inputs) {
+                input.close();
+            }
+            metrics.recordFailure(OIDMetrics.Operation.COMBINE);
+            throw e;
+        }
+        try {
+            returnMe = OIDSetAlgebra.combine(inputs, operation, k, sink);
+        } catch (IOException | RuntimeException e) {
+            metrics.recordFailure(OIDMetrics.Operation.COMBINE);
+            throw e;
+        }
+        metrics.record(OIDMetrics.Operation.COMBINE, start, returnMe.getDistinct(), 0);
+        Object[] params = {operation, filenames.size(), returnMe, System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "{0} of {1} files kept {2} in {3} milliseconds.", params);
+        return returnMe;
     }
 
     /**
      * Loads OIDs from two different collections and compares them. Collections should contain
      * OIDs represented as x.y.z.a.b.c Strings where each segment between the periods is a 32-bit integer.
      * CollectionA is considered the base data and the diff results are returned as a +/- to that collection.
+     * Neither collection is modified.
      *
-     * @param collectionA
-     * @param collectionB
-     * @return
+     * @param collectionA       base OIDs
+     * @param collectionB       OIDs compared against the base
+     * @return                  Collection of Strings representing the diff
      */
     public Collection<String> diffCollections(Collection<String> collectionA, Collection<String> collectionB) {
         ArrayList<String> returnMe = new ArrayList<>();
+        Set<String> setA = collectionA instanceof Set ? (Set<String>) collectionA : new HashSet<>(collectionA);
+        Set<String> setB = collectionB instanceof Set ? (Set<String>) collectionB : new HashSet<>(collectionB);
         collectionA.forEach(oid ->{
-            if(collectionB.contains(oid)){
+            if(setB.contains(oid)){
                 returnMe.add(oid);
             }else{
                 returnMe.add("- " + oid);
             }
         });
-        collectionB.removeAll(collectionA); //leaves collectionB with only additions
-        collectionB.forEach(oid -> returnMe.add( "+ " + oid));
+        collectionB.forEach(oid -> {
+            if (!setA.contains(oid)) {
+                returnMe.add("+ " + oid);
+            }
+        });
         return returnMe;
     }
 
     /**
-     * Utility function used to write oids as Strings to a file.
+     * Utility function used to write oids as Strings to a file. A name ending in ".gz" is compressed.
+     * @see #writeOIDsToFile(String, boolean, OIDExporter.Sync)
      *
      * @param filename          local file to write OIDs
      * @throws IOException      throws an exception if there are issues with the given file
      */
     public void writeOIDsToFile(String filename) throws IOException {
-        FileWriter fileWriter = new FileWriter(filename);
-        try(PrintWriter printWriter = new PrintWriter(fileWriter)){
-            oids.forEach(oid -> printWriter.println(parseOID(oid)));
+        writeOIDsToFile(filename, filename.endsWith(".gz"), OIDExporter.Sync.NONE);
+    }
+
+    /**
+     * Writes the loaded OIDs as text, one per line in sorted order. Ranges are formatted in parallel and written
+     * in order.
+     * @see OIDExporter
+     *
+     * @param filename          local file to write OIDs
+     * @param gzip              true to compress the file
+     * @param sync              when to force the written data to disk
+     * @return                  size of the file in bytes
+     * @throws IOException      throws an exception if there are issues with the given file
+     */
+    public long writeOIDsToFile(String filename, boolean gzip, OIDExporter.Sync sync) throws IOException {
+        final long start = OIDMetrics.start();
+        final long startTime = System.currentTimeMillis();
+        OIDStore current = loaded.store;
+        long returnMe = OIDExporter.write(current, Paths.get(filename), gzip, sync, ForkJoinPool.commonPool());
+        metrics.record(OIDMetrics.Operation.WRITE, start, current.size(), returnMe);
+        Object[] params = {current.size(), returnMe, System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "Wrote {0} OIDs ({1} bytes) in {2} milliseconds.", params);
+        return returnMe;
+    }
+
+    /**
+     * Saves the loaded OIDs as a binary snapshot that {@link #openSnapshot(String)} can map back in seconds.
+     * @see OIDSnapshot
+     *
+     * @param filename          local file to write the snapshot to
+     * @return                  size of the snapshot in bytes
+     * @throws IOException      throws an exception if there are issues with the given file
+     */
+    public long saveSnapshot(String filename) throws IOException {
+        final long start = OIDMetrics.start();
+        final long startTime = System.currentTimeMillis();
+        OIDStore current;
+        long returnMe;
+        // Held throughout so no delta lands between the snapshot and the start of its empty log
+        synchronized (swapLock) {
+            current = loaded.store;
+            returnMe = OIDSnapshot.write(current, Paths.get(filename));
+            deltaLog = Paths.get(filename + DELTA_LOG_SUFFIX);
+            Files.deleteIfExists(deltaLog);
+        }
+        metrics.record(OIDMetrics.Operation.SNAPSHOT, start, current.size(), returnMe);
+        Object[] params = {current.size(), returnMe, System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "Saved snapshot of {0} OIDs ({1} bytes) in {2} milliseconds.", params);
+        return returnMe;
+    }
+
+    /**
+     * Replaces the loaded OIDs with a read-only, memory mapped snapshot. Lookups run directly against the
+     * mapping; the configured storage mode is not applied, so nothing is decoded up front unless a hash index is
+     * configured. Deltas logged since the snapshot was saved are replayed on top of it.
+     *
+     * @param filename          snapshot written by {@link #saveSnapshot(String)}
+     * @throws IOException      throws an exception if the file is missing or not a snapshot
+     */
+    public void openSnapshot(String filename) throws IOException {
+        final long start = OIDMetrics.start();
+        try {
+            BlockOIDStore mapped = OIDSnapshot.open(Paths.get(filename));
+            synchronized (swapLock) {
+                OIDStore served = withLookupMode(mapped, null);
+                loaded = new Loaded(served, buildFilter(served));
+                deltaLog = Paths.get(filename + DELTA_LOG_SUFFIX);
+                if (Files.exists(deltaLog)) {
+                    // Later entries win when read back to back, so the whole log replays as one delta
+                    OIDDelta replay;
+                    try (InputStream in = new FileInputStream(deltaLog.toFile())) {
+                        replay = OIDDelta.read(in);
+                    }
+                    applyLocked(replay);
+                    Object[] params = {replay, deltaLog};
+                    LOGGER.log(Level.INFO, "Replayed delta {0} from {1}.", params);
+                }
+            }
+            metrics.record(OIDMetrics.Operation.LOAD, start, mapped.size(), mapped.getByteSize());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename);
+        }
+    }
+
+    /**
+     * Serves a sorted file in place instead of loading it, for sets too large for the heap. A snapshot is mapped as
+     * by {@link #openSnapshot(String)}; a text file keeps only a sparse index on the heap and reads blocks of lines
+     * from disk as lookups need them. The configured storage mode is not applied, but the lookup mode is.
+     * @see DiskOIDStore
+     *
+     * @param filename          snapshot, or text file sorted and de-duplicated by {@link OIDComp}
+     * @param indexInterval     records per indexed block of a text file
+     * @param cacheBlocks       number of parsed blocks of a text file to keep
+     * @throws IOException      throws an exception if the file is missing, unreadable or not sorted
+     */
+    public void openSortedFile(String filename, int indexInterval, int cacheBlocks) throws IOException {
+        if (isSnapshot(filename)) {
+            openSnapshot(filename);
+            return;
+        }
+        final long start = OIDMetrics.start();
+        // The previous store is not closed here because readers may still hold it
+        DiskOIDStore disk = DiskOIDStore.open(Paths.get(filename), indexInterval, cacheBlocks);
+        metrics.recordParseFailures(disk.getRejected());
+        synchronized (swapLock) {
+            OIDStore served = withLookupMode(disk, null);
+            loaded = new Loaded(served, buildFilter(served));
+            deltaLog = null;
+        }
+        metrics.record(OIDMetrics.Operation.LOAD, start, disk.size(), disk.getByteSize());
+    }
+
+    /**
+     * Applies a file of "+ oid" and "- oid" lines to the loaded OIDs without reloading them. Lines without a
+     * marker are ignored, so the output of a diff can be applied as is.
+     * @see OIDDelta
+     *
+     * @param filename          local file of changes
+     * @return                  the changes that were applied
+     * @throws IOException      throws an exception if there are issues with the given file or the delta log
+     */
+    public OIDDelta applyDelta(String filename) throws IOException {
+        LOGGER.log(Level.INFO, "Applying delta from file: {0}", filename);
+        OIDDelta delta;
+        try (InputStream in = new FileInputStream(filename)) {
+            delta = OIDDelta.read(in);
+        }
+        metrics.recordParseFailures(delta.getRejected());
+        if (delta.getRejected() > 0) {
+            LOGGER.log(Level.WARNING, "Skipped {0} lines that were not valid OIDs", delta.getRejected());
+        }
+        applyDelta(delta);
+        return delta;
+    }
+
+    /**
+     * Adds and removes OIDs in the loaded set. Work is proportional to the delta: the loaded store is overlaid,
+     * not copied, until the overlay grows past an eighth of it. The delta is appended to the snapshot's log, if
+     * there is one, before readers can see it.
+     *
+     * @param delta             changes to apply
+     * @throws IOException      throws an exception if the delta log cannot be written
+     */
+    public void applyDelta(OIDDelta delta) throws IOException {
+        if (delta.isEmpty()) {
+            return;
+        }
+        final long start = OIDMetrics.start();
+        final long startTime = System.currentTimeMillis();
+        OIDStore current;
+        synchronized (swapLock) {
+            if (deltaLog != null) {
+                try (FileOutputStream out = new FileOutputStream(deltaLog.toFile(), true)) {
+                    delta.writeTo(out);
+                    out.getFD().sync();
+                }
+            }
+            current = applyLocked(delta);
+        }
+        metrics.record(OIDMetrics.Operation.DELTA, start, delta.getAdded().size() + delta.getRemoved().size(), 0);
+        Object[] params = {delta, current.size(), System.currentTimeMillis() - startTime};
+        LOGGER.log(Level.INFO, "Applied delta {0}, {1} OIDs loaded. Operation completed in {2} milliseconds.", params);
+    }
+
+    /**
+     * Overlays the delta on the loaded OIDs, compacting the overlay when it has grown large. Caller holds swapLock.
+     *
+     * @return                  the store now being served
+     */
+    private OIDStore applyLocked(OIDDelta delta) {
+        Loaded current = loaded;
+        DeltaOIDStore overlay = DeltaOIDStore.apply(current.store, delta);
+        int changes = overlay.getAddedCount() + overlay.getRemovedCount();
+        if (changes > Math.max(MIN_COMPACT_CHANGES, overlay.getBase().size() / 8)) {
+            OIDStore compacted = toStorageMode(overlay);
+            loaded = new Loaded(compacted, buildFilter(compacted));
+            return compacted;
+        }
+        OIDBloomFilter filter = current.filter;
+        if (filter != null) {
+            // Removed OIDs stay in the filter and cost a search when asked for; exists does not count them as
+            // false positives
+            PackedOIDStore added = delta.getAdded();
+            added.scan(0, added.size(), filter::add);
+        }
+        loaded = new Loaded(overlay, filter);
+        return overlay;
+    }
+
+    /**
+     * @param filename          local file
+     * @return                  true if the file is a binary snapshot rather than text
+     * @throws IOException      throws an exception if the file cannot be read
+     */
+    public static boolean isSnapshot(String filename) throws IOException {
+        try {
+            return OIDSnapshot.isSnapshot(Paths.get(filename));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filename);
         }
     }
 
     /**
-     * Utility function to convert OIDs as a String to int[]
+     * Utility function to convert OIDs as a String to int[]. Bulk paths should use {@link OIDCodec} directly.
      *
      * @param oid               OID formatted String
      * @return                  OID formatted as int[]
+     * @throws NumberFormatException if the String is not a dotted list of non-negative 32-bit integers
      */
     public static int[] parseOIDString(String oid) {
-        String[] parts = oid.split("\\.");
-        int[] returnMe = new int[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            returnMe[i] = Integer.parseInt(parts[i]);
+        int arcs = 1;
+        for (int i = 0; i < oid.length(); i++) {
+            if (oid.charAt(i) == '.') {
+                arcs++;
+            }
+        }
+        int[] returnMe = new int[arcs];
+        if (OIDCodec.parse(oid, 0, oid.length(), returnMe) != arcs) {
+            throw new NumberFormatException("Invalid OID: \"" + oid + "\"");
         }
         return returnMe;
     }
@@ -239,14 +736,7 @@ public class OIDService {
      * @return                  OID formatted String
      */
     public static String parseOID(int[] oid) {
-        String returnMe = "";
-        for (int i = 0; i < oid.length; i++) {
-            returnMe += oid[i];
-            if (i < oid.length - 1) {
-                returnMe += ".";
-            }
-        }
-        return returnMe;
+        return OIDCodec.format(oid, 0, oid.length, new StringBuilder(oid.length * 4)).toString();
     }
 
     /**
@@ -256,7 +746,147 @@ public class OIDService {
      * @return                  true/false if given item exists in the collection
      */
     public boolean exists(String oid) {
-        return oids.contains(parseOIDString(oid));
+        return exists(parseCounted(oid, OIDMetrics.Operation.EXISTS));
+    }
+
+    private boolean exists(int[] arcs) {
+        return exists(arcs, 0, arcs.length);
+    }
+
+    /**
+     * Parses an OID given to a query, counting it as a failed operation if it is not valid.
+     */
+    private int[] parseCounted(String oid, OIDMetrics.Operation operation) {
+        try {
+            return parseOIDString(oid);
+        } catch (NumberFormatException e) {
+            metrics.recordParseFailures(1);
+            metrics.recordFailure(operation);
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if the given arcs are loaded. When a filter is enabled it answers most misses on its own.
+     *
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @return                  true/false if the OID exists in the collection
+     */
+    public boolean exists(int[] arcs, int off, int len) {
+        final long start = OIDMetrics.start();
+        Loaded current = loaded;
+        OIDBloomFilter filter = current.filter;
+        boolean returnMe = false;
+        if (filter == null || filter.mightContain(arcs, off, len)) {
+            returnMe = current.store.containsArcs(arcs, off, len);
+            // OIDs removed by an overlay are still in the filter, which was right to pass them
+            if (!returnMe && filter != null && !(current.store instanceof DeltaOIDStore
+                    && ((DeltaOIDStore) current.store).isRemoved(arcs, off, len))) {
+                filter.recordFalsePositive();
+            }
+        }
+        metrics.record(OIDMetrics.Operation.EXISTS, start, 1, 0);
+        return returnMe;
+    }
+
+    /**
+     * Checks every OID in a file, one per line, against the loaded OIDs with one sorted merge join instead of a
+     * lookup per line.
+     * @see OIDMembership
+     *
+     * @param filename          local file of OIDs to check
+     * @return                  hit and malformed bitmaps indexed by line
+     * @throws IOException      throws an exception if there are issues with the given file
+     */
+    public OIDMembership.Result existsAll(String filename) throws IOException {
+        LOGGER.log(Level.INFO, "Checking OIDs from file: {0}", filename);
+        OIDMembership.Result returnMe;
+        try (InputStream in = new FileInputStream(filename)) {
+            returnMe = existsAll(in);
+        }
+        Object[] params = {returnMe.getHitCount(), returnMe.getProbes(), returnMe.getMillis()};
+        LOGGER.log(Level.INFO, "{0} of {1} OIDs found. Operation completed in {2} milliseconds.", params);
+        return returnMe;
+    }
+
+    /**
+     * Checks every OID in a stream, one per line, against the loaded OIDs.
+     *
+     * @param probes            text with one OID per line; not closed
+     * @return                  hit and malformed bitmaps indexed by line
+     * @throws IOException      throws an exception if the stream fails
+     */
+    public OIDMembership.Result existsAll(InputStream probes) throws IOException {
+        return existsAll(probes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Checks every OID in a stream, one per line, against the loaded OIDs.
+     *
+     * @param probes            text with one OID per line; not closed
+     * @param pool              pool to join ranges of probes on, or null to use the calling thread
+     * @return                  hit and malformed bitmaps indexed by line
+     * @throws IOException      throws an exception if the stream fails
+     */
+    public OIDMembership.Result existsAll(InputStream probes, ForkJoinPool pool) throws IOException {
+        final long start = OIDMetrics.start();
+        OIDMembership.Result returnMe = OIDMembership.existsAll(loaded.store, probes, pool);
+        metrics.record(OIDMetrics.Operation.EXISTS_ALL, start, returnMe.getProbes(), 0);
+        metrics.recordParseFailures(returnMe.getMalformed().cardinality());
+        return returnMe;
+    }
+
+    /**
+     * Counts the OIDs that match a given prefix without visiting them.
+     *
+     * @param prefix            String prefix to compare OIDs in the collection
+     * @return                  number of OIDs starting with the prefix
+     */
+    public int countOidsWithPrefix(String prefix) {
+        final long start = OIDMetrics.start();
+        int[] arcs = parseCounted(prefix, OIDMetrics.Operation.PREFIX);
+        // O(log n) on sorted arrays, O(prefix length) on a trie
+        OIDStore current = loaded.store;
+        int returnMe = current.prefixEnd(arcs, 0, arcs.length) - current.lowerBound(arcs, 0, arcs.length);
+        metrics.record(OIDMetrics.Operation.PREFIX, start, 0, 0);
+        return returnMe;
+    }
+
+    /**
+     * Counts the OIDs under every prefix in a stream, one per line, all against the same loaded OIDs.
+     *
+     * @param prefixes          text with one prefix per line; not closed
+     * @param out               receives one count per line, or "?" for a malformed line; not flushed
+     * @return                  number of lines answered
+     * @throws IOException      throws an exception if the stream or the writer fails
+     */
+    public long countOidsWithPrefix(InputStream prefixes, OIDTextWriter out) throws IOException {
+        final long start = OIDMetrics.start();
+        OIDStore current = loaded.store;
+        long[] lines = answerLines(prefixes, out, (arcs, len) -> {
+            out.write(Integer.toString(current.prefixEnd(arcs, 0, len) - current.lowerBound(arcs, 0, len)));
+            out.write("\n");
+        });
+        metrics.record(OIDMetrics.Operation.PREFIX, start, lines[0], 0);
+        metrics.recordParseFailures(lines[1]);
+        return lines[0];
+    }
+
+    /**
+     * Opens a cursor over the OIDs that match a given prefix, for counting or paging through them without
+     * materializing the matches. The cursor keeps reading the store loaded when it was opened.
+     *
+     * @param prefix            String prefix to compare OIDs in the collection; empty matches every OID
+     * @return                  cursor before the first matching OID
+     */
+    public OIDPrefixCursor prefixCursor(String prefix) {
+        final long start = OIDMetrics.start();
+        int[] arcs = prefix.isEmpty() ? new int[0] : parseCounted(prefix, OIDMetrics.Operation.PREFIX);
+        OIDPrefixCursor returnMe = OIDPrefixCursor.open(loaded.store, arcs);
+        metrics.record(OIDMetrics.Operation.PREFIX, start, 0, 0);
+        return returnMe;
     }
 
     /**
@@ -266,72 +896,122 @@ public class OIDService {
      * @return                  Collection of matching OIDs as int[]
      */
     public Collection<int[]> getOidsWithPrefix(String prefix) {
-        int[] start = parseOIDString(prefix);
-        int[] end = Arrays.copyOf(start, start.length + 1);
-        end[end.length - 1] = Integer.MAX_VALUE;
-        LOGGER.log(Level.INFO, "Searching for {0}", prefix);
+        final long begin = OIDMetrics.start();
+        int[] start = parseCounted(prefix, OIDMetrics.Operation.PREFIX);
+        LOGGER.log(Level.FINE, "Searching for {0}", prefix);
         final long startTime = System.currentTimeMillis();
-        Set<int[]> returnMe = oids.subSet(start, end);
+        List<int[]> returnMe = loaded.store.prefixRange(start);
+        metrics.record(OIDMetrics.Operation.PREFIX, begin, returnMe.size(), 0);
         final long endTime = System.currentTimeMillis();
         Object[] params = {returnMe.size(), (endTime - startTime)};
-        LOGGER.log(Level.INFO, "Found {0} results in {1} milliseconds", params);
+        LOGGER.log(Level.FINE, "Found {0} results in {1} milliseconds", params);
         return returnMe;
     }
 
     /**
-     * Encodes the loaded OIDs and returns them as a Collection of byte[].
-     * @see #encodeOID(int[])
+     * Encodes the loaded OIDs and returns them as a Collection of byte[] in sorted order.
+     * @see OIDEncoder
      *
-     * @return
+     * @return                  one BER encoding per loaded OID
      */
     public Collection<byte[]> encode() {
-        LOGGER.log(Level.INFO, "Encoding {0} OIDs", oids.size());
-        Collection<byte[]> returnMe = oids.stream().map(this::encodeOID).collect(Collectors.toSet());
-        LOGGER.info("Finished Encoding");
+        OIDEncoder.Encoded encoded = encodeAll();
+        List<byte[]> returnMe = new ArrayList<>(encoded.size());
+        for (int i = 0; i < encoded.size(); i++) {
+            returnMe.add(encoded.get(i));
+        }
         return returnMe;
+    }
 
+    /**
+     * Encodes the loaded OIDs into one contiguous buffer, in parallel.
+     * @see OIDEncoder#encodeAll(OIDStore, java.util.concurrent.ForkJoinPool)
+     *
+     * @return                  every encoding back to back with an offsets index
+     */
+    public OIDEncoder.Encoded encodeAll() {
+        OIDStore current = loaded.store;
+        LOGGER.log(Level.INFO, "Encoding {0} OIDs", current.size());
+        final long start = OIDMetrics.start();
+        final long startTime = System.currentTimeMillis();
+        OIDEncoder.Encoded returnMe = OIDEncoder.encodeAll(current, ForkJoinPool.commonPool());
+        metrics.record(OIDMetrics.Operation.ENCODE, start, returnMe.size(), returnMe.byteSize());
+        final long endTime = System.currentTimeMillis();
+        Object[] params = {returnMe.byteSize(), endTime - startTime};
+        LOGGER.log(Level.INFO, "Finished Encoding {0} bytes in {1} milliseconds", params);
+        return returnMe;
     }
 
     /**
-     * Encodes an int[] formatted OID to binary based on the below method
-     * First Byte 0x06
-     * Second Byte length of value
-     * Next Bytes are the encoded value based on https://docs.microsoft.com/en-us/windows/win32/seccertenroll/about-object-identifier?redirectedfrom=MSDN
+     * Encodes every OID in a stream, one per line, whether it is loaded or not.
      *
-     * @param oid               int[] formatted OID
-     * @return                  byte[] encded OID
+     * @param oids              text with one OID per line; not closed
+     * @param out               receives the BER encoding of each line in lowercase hex, or "?" for a malformed
+     *                          line; not flushed
+     * @return                  number of lines answered
+     * @throws IOException      throws an exception if the stream or the writer fails
      */
-    private byte[] encodeOID(int[] oid) {
-        // First Byte 0x06
-        // Second Byte length of value
-        // Next Bytes are the encoded value based on https://docs.microsoft.com/en-us/windows/win32/seccertenroll/about-object-identifier?redirectedfrom=MSDN
-        ArrayList<Byte> data = new ArrayList<Byte>();
-        data.add((byte) 0x06);
-        data.add((byte) 0x00); //Placeholder for size of data
+    public long encode(InputStream oids, OIDTextWriter out) throws IOException {
+        final long start = OIDMetrics.start();
+        byte[][] scratch = {new byte[256]};
+        long[] bytes = {0};
+        long[] lines = answerLines(oids, out, (arcs, len) -> {
+            int length = OIDEncoder.encodedLength(arcs, 0, len);
+            if (scratch[0].length < length) {
+                scratch[0] = new byte[length];
+            }
+            out.writeHexLine(scratch[0], 0, OIDEncoder.encode(arcs, 0, len, scratch[0], 0));
+            bytes[0] += length;
+        });
+        metrics.record(OIDMetrics.Operation.ENCODE, start, lines[0], bytes[0]);
+        metrics.recordParseFailures(lines[1]);
+        return lines[0];
+    }
 
-        data.add((byte) (oid[0] * 40 + oid[1]));
+    /**
+     * Answer to one well formed line of a batch.
+     */
+    private interface LineAnswer {
+        void answer(int[] arcs, int len) throws IOException;
+    }
 
-        for (int i = 2; i < oid.length; i++) {
-            //encode each int
-            if (oid[i] <= 128) {
-                //single byte encoding
-                data.add((byte) oid[i]);
-            } else if (oid[i] <= 16383) {
-                encodeTwoByteInt(data, oid[i]);
+    /**
+     * Answers every line of a stream with one line, writing "?" for a line that is not a valid OID.
+     *
+     * @return                  number of lines, then number of malformed lines
+     */
+    private static long[] answerLines(InputStream in, OIDTextWriter out, LineAnswer answer) throws IOException {
+        long[] returnMe = new long[2];
+        OIDLineReader reader = new OIDLineReader(in);
+        while (reader.nextLine()) {
+            int len = reader.parse(0);
+            if (len < 0) {
+                out.write("?\n");
+                returnMe[1]++;
             } else {
-                encodeFourByteInt(data, oid[i]);
+                answer.answer(reader.arcs(), len);
             }
+            returnMe[0]++;
         }
-        data.set(1, (byte) (data.size() - 2));
+        return returnMe;
+    }
 
-        //This is stupid. Need a better way.
-        byte[] returnMe = new byte[data.size()];
-        for (int i = 0; i < data.size(); i++) {
-            returnMe[i] = data.get(i);
-            LOGGER.finest(Integer.toHexString((0x000000FF & returnMe[i])));
+    /**
+     * Encodes the loaded OIDs straight to a file without holding all encodings in memory.
+     *
+     * @param filename          local file to write the encodings to, back to back
+     * @return                  number of bytes written
+     * @throws IOException      throws an exception if there are issues with the given file
+     */
+    public long encodeToFile(String filename) throws IOException {
+        final long start = OIDMetrics.start();
+        OIDStore current = loaded.store;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long returnMe = OIDEncoder.writeAll(current, channel, ForkJoinPool.commonPool());
+            metrics.record(OIDMetrics.Operation.ENCODE, start, current.size(), returnMe);
+            return returnMe;
         }
-
-        return returnMe;
     }
 
     /**
@@ -349,43 +1029,19 @@ public class OIDService {
     }
 
     /**
-     * Private utility function to aide in encoding OIDs
+     * Prints bulk encoded OIDs as Hex, one byte per line like {@link #printEncodedOIDsInHex(Collection)}.
      *
-     * @param data
-     * @param i
+     * @param encoded           encodings to print
      */
-    private void encodeFourByteInt(ArrayList<Byte> data, int i) {
-        int step1 = i / 262144;
-        int txMg = 0x8 + step1;
-        int base = 262144 * step1;
-        int step2 = i - base;
-        int txMi = step2 / 16384;
-
-        String hexVal = "0x" + Integer.toString(txMg) + Integer.toString(txMi);
-        data.add((byte) Integer.decode(hexVal).intValue());
-
-        base = base + (txMi * 16384);
-        int step3 = i - base;
-        encodeTwoByteInt(data, step3);
+    public static void printEncodedOIDsInHex(OIDEncoder.Encoded encoded) {
+        try (OIDTextWriter writer = new OIDTextWriter(System.out, 1 << 16, false)) {
+            ByteBuffer buffer = encoded.buffer();
+            while (buffer.hasRemaining()) {
+                writer.write(Integer.toHexString(buffer.get() & 0xFF));
+                writer.write("\n");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+        }
     }
-
-    /**
-     * Private utility function to aide in encoding OIDs
-     *
-     * @param data
-     * @param i
-     */
-    private void encodeTwoByteInt(ArrayList<Byte> data, int i) {
-        int step1 = i / 2048;
-        int txMg = 0x8 + Integer.decode("0x" + step1).intValue();
-        int base = 2048 * step1;
-        int step2 = i - base;
-        int txMi = step2 / 128;
-        base = base + (txMi * 128);
-        int step4 = i - base;
-
-        String hexVal = "0x" + txMg + Integer.toString(txMi, 16);
-        data.add((byte) Integer.decode(hexVal).intValue());
-        data.add((byte) step4);
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+package com.dustintbrown.app.util;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Set operations across any number of sorted {@link OIDSource}s in one pass. The inputs are merged through an
+ * {@link OIDMergeSource}, which yields each distinct OID once together with the inputs holding it, so every
+ * operation costs one heap step per input OID and memory does not depend on the size of the inputs.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDSetAlgebra {
+
+    /**
+     * Which OIDs of the merged inputs are emitted.
+     */
+    public enum Operation {
+        /** OIDs in any input */
+        UNION,
+        /** OIDs in every input */
+        INTERSECTION,
+        /** OIDs in the first input and in no other */
+        DIFFERENCE,
+        /** OIDs in at least k inputs */
+        AT_LEAST;
+
+        /**
+         * @param merged            merge positioned on an OID
+         * @param inputs            number of inputs
+         * @param k                 minimum number of inputs for {@link #AT_LEAST}
+         * @return                  true if the current OID belongs to the result
+         */
+        boolean accepts(OIDMergeSource merged, int inputs, int k) {
+            switch (this) {
+                case UNION:
+                    return true;
+                case INTERSECTION:
+                    return merged.matchCount() == inputs;
+                case DIFFERENCE:
+                    return merged.matchCount() == 1 && merged.matched(0) == 0;
+                default:
+                    return merged.matchCount() >= k;
+            }
+        }
+    }
+
+    /**
+     * Counts gathered while combining inputs.
+     */
+    public static final class Result {
+        // Number of distinct OIDs found in exactly i inputs
+        private final long[] presence;
+        private long emitted;
+
+        Result(int inputs) {
+            this.presence = new long[inputs + 1];
+        }
+
+        /**
+         * @return                  number of distinct OIDs across all inputs
+         */
+        public long getDistinct() {
+            long returnMe = 0;
+            for (long count : presence) {
+                returnMe += count;
+            }
+            return returnMe;
+        }
+
+        /**
+         * @return                  number of OIDs sent to the sink
+         */
+        public long getEmitted() {
+            return emitted;
+        }
+
+        /**
+         * @param inputs            number of inputs, from 1 to the number combined
+         * @return                  number of distinct OIDs found in exactly that many inputs
+         */
+        public long getPresence(int inputs) {
+            return presence[inputs];
+        }
+
+        @Override
+        public String toString() {
+            return emitted + " of " + getDistinct() + " distinct OIDs";
+        }
+    }
+
+    private OIDSetAlgebra() {
+    }
+
+    /**
+     * Combines sorted inputs and sends the selected OIDs to a sink in sorted order.
+     *
+     * @param inputs            sorted inputs; they are all closed before this returns
+     * @param operation         which OIDs to emit
+     * @param k                 minimum number of inputs an OID must be in for {@link Operation#AT_LEAST}; ignored otherwise
+     * @param sink              receives the selected OIDs
+     * @return                  counts of distinct and emitted OIDs
+     * @throws IOException      if an input or the sink fails
+     */
+    public static Result combine(List<? extends OIDSource> inputs, Operation operation, int k,
+                                 OIDStore.ArcConsumer<IOException> sink) throws IOException {
+        if (operation == Operation.AT_LEAST && k < 1) {
+            inputs.forEach(OIDSetAlgebra::closeQuietly);
+            throw new IllegalArgumentException("At least one input must hold each OID: " + k);
+        }
+        int n = inputs.size();
+        Result returnMe = new Result(n);
+        OIDMergeSource opened;
+        try {
+            opened = new OIDMergeSource(inputs);
+        } catch (IOException | RuntimeException e) {
+            inputs.forEach(OIDSetAlgebra::closeQuietly);
+            throw e;
+        }
+        try (OIDMergeSource merged = opened) {
+            while (merged.next()) {
+                returnMe.presence[merged.matchCount()]++;
+                if (operation.accepts(merged, n, k)) {
+                    sink.accept(merged.arcs(), 0, merged.length());
+                    returnMe.emitted++;
+                }
+            }
+        }
+        return returnMe;
+    }
+
+    private static void closeQuietly(OIDSource source) {
+        try {
+            source.close();
+        } catch (IOException e) {
+            // Already failing
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.dustintbrown.app.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compact binary snapshot of a sorted OID set that can be opened without parsing or sorting anything.
+ *
+ * Layout (big endian):
+ * <pre>
+ * header   64 bytes: magic "OIDSNAP1", version, block size, OID count, max length, block count,
+ *                    data offset, data length, index offset
+ * data     front-coded blocks of varint arcs, see {@link BlockOIDStore}
+ * index    one long per block: offset of the block from the start of the data
+ * </pre>
+ * Opening a snapshot maps the data read-only and reads only the header and the sparse block index into the
+ * heap, so lookups run directly against the mapping and the OS pages data in as it is touched.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDSnapshot {
+    private final static Logger LOGGER = Logger.getLogger(OIDSnapshot.class.getName());
+
+    /** "OIDSNAP1" in ASCII */
+    public static final long MAGIC = 0x4F4944534E415031L;
+    public static final int VERSION = 1;
+    /** Default number of OIDs per block; larger blocks are smaller on disk but slower to search */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+    static final int HEADER_SIZE = 64;
+    // Largest region mapped by one MappedByteBuffer
+    static final long MAX_SEGMENT = 1L << 30;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private OIDSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot with the default block size.
+     * @see #write(OIDStore, Path, int)
+     */
+    public static long write(OIDStore store, Path path) throws IOException {
+        return write(store, path, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Writes a snapshot of the given store. The file is written next to the destination and moved into place
+     * once complete, so an existing snapshot (even one that is currently mapped) is never left half written.
+     *
+     * @param store             sorted OIDs to save
+     * @param path              snapshot file to create or replace
+     * @param blockSize         OIDs per block
+     * @return                  size of the snapshot in bytes
+     * @throws IOException      if the file cannot be written
+     */
+    public static long write(OIDStore store, Path path, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        int blockCount = (store.size() + blockSize - 1) / blockSize;
+        long size;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            DataWriter data = new DataWriter(channel, blockSize, blockCount, store.maxLength());
+            store.scan(0, store.size(), data);
+            data.flush();
+            long dataLength = data.written;
+
+            ByteBuffer buffer = data.buffer;
+            for (long offset : data.index) {
+                if (buffer.remaining() < Long.BYTES) {
+                    writeFully(channel, buffer);
+                }
+                buffer.putLong(offset);
+            }
+            writeFully(channel, buffer);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(blockSize)
+                    .putInt(store.size())
+                    .putInt(store.maxLength())
+                    .putInt(blockCount)
+                    .putInt(0)
+                    .putLong(HEADER_SIZE)
+                    .putLong(dataLength)
+                    .putLong(HEADER_SIZE + dataLength);
+            header.rewind();
+            channel.write(header, 0);
+            channel.force(true);
+            size = channel.size();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    /**
+     * Front codes OIDs into a reusable buffer and writes full buffers to the channel.
+     */
+    private static final class DataWriter implements OIDStore.ArcConsumer<IOException> {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final byte[] bytes = buffer.array();
+        private final int blockSize;
+        private final long[] index;
+        private final int[] prev;
+        private int prevLen = 0;
+        private int count = 0;
+        private long written = 0;
+
+        DataWriter(FileChannel channel, int blockSize, int blockCount, int maxLength) {
+            this.channel = channel;
+            this.blockSize = blockSize;
+            this.index = new long[blockCount];
+            this.prev = new int[Math.max(1, maxLength)];
+        }
+
+        @Override
+        public void accept(int[] arcs, int off, int len) throws IOException {
+            if (buffer.position() + BlockOIDStore.maxEntryLength(len) > bytes.length) {
+                flush();
+            }
+            if (count % blockSize == 0) {
+                index[count / blockSize] = written + buffer.position();
+                prevLen = 0;
+            }
+            buffer.position(BlockOIDStore.putEntry(bytes, buffer.position(), prev, prevLen, arcs, off, len));
+            System.arraycopy(arcs, off, prev, 0, len);
+            prevLen = len;
+            count++;
+        }
+
+        void flush() throws IOException {
+            written += buffer.position();
+            writeFully(channel, buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @param path              file to check
+     * @return                  true if the file starts with the snapshot magic number
+     * @throws IOException      if the file cannot be read
+     */
+    public static boolean isSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Long.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // keep reading
+            }
+            return !magic.hasRemaining() && magic.getLong(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Opens a snapshot read-only. Only the header and block index are read; the data is memory mapped.
+     *
+     * @param path              snapshot file
+     * @return                  store backed by the mapped file
+     * @throws IOException      if the file cannot be read or is not a valid snapshot
+     */
+    public static BlockOIDStore open(Path path) throws IOException {
+        return open(path, MAX_SEGMENT);
+    }
+
+    static BlockOIDStore open(Path path, long maxSegment) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException("Not an OID snapshot: " + path);
+            }
+            int version = header.getInt(8);
+            if (version != VERSION) {
+                throw new IOException("Unsupported OID snapshot version " + version + ": " + path);
+            }
+            int blockSize = header.getInt(12);
+            int size = header.getInt(16);
+            int maxLength = header.getInt(20);
+            int blockCount = header.getInt(24);
+            long dataOffset = header.getLong(32);
+            long dataLength = header.getLong(40);
+            long indexOffset = header.getLong(48);
+            if (blockSize < 1 || size < 0 || blockCount != (size + blockSize - 1) / blockSize
+                    || indexOffset + (long) blockCount * Long.BYTES > channel.size()) {
+                throw new IOException("Corrupt OID snapshot header: " + path);
+            }
+
+            ByteBuffer indexBuffer = ByteBuffer.allocate(blockCount * Long.BYTES);
+            readFully(channel, indexBuffer, indexOffset);
+            long[] blocks = new long[blockCount];
+            indexBuffer.asLongBuffer().get(blocks);
+
+            // Cut the data into mappable segments at block boundaries, then rewrite each index entry as
+            // (segment, position within segment)
+            List<ByteBuffer> segments = new ArrayList<>();
+            long segmentStart = 0;
+            for (int b = 0; b < blockCount; b++) {
+                long start = blocks[b];
+                long end = b + 1 < blockCount ? blocks[b + 1] : dataLength;
+                if (end - segmentStart > maxSegment && start > segmentStart) {
+                    segments.add(channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + segmentStart, start - segmentStart));
+                    segmentStart = start;
+                }
+                if (end - segmentStart > maxSegment) {
+                    throw new IOException("Block " + b + " is too large to map: " + path);
+                }
+                blocks[b] = ((long) segments.size() << 32) | (start - segmentStart);
+            }
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + segmentStart, dataLength - segmentStart));
+
+            ByteBuffer[] mapped = segments.toArray(new ByteBuffer[0]);
+            Object[] params = {size, path, mapped.length, System.currentTimeMillis() - startTime};
+            LOGGER.log(Level.INFO, "Opened snapshot of {0} OIDs from {1} in {2} segments in {3} milliseconds.", params);
+            return new BlockOIDStore(mapped, blocks, blockSize, size, maxLength, dataLength);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Truncated OID snapshot");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,121 @@
+package com.dustintbrown.app.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Forward-only stream of OIDs in {@link OIDComp} order without duplicates. Sources let diff and merge
+ * operations work on inputs far larger than the heap: only the current OID is held at any time.
+ *
+ * @author  Dustin Brown
+ */
+public interface OIDSource extends Closeable {
+
+    /**
+     * Moves to the next OID.
+     *
+     * @return                  false once the source is exhausted
+     * @throws IOException      if the underlying input fails
+     */
+    boolean next() throws IOException;
+
+    /**
+     * @return                  arcs of the current OID starting at index 0. Only valid until the next call to {@link #next()}.
+     */
+    int[] arcs();
+
+    /**
+     * @return                  number of arcs in the current OID
+     */
+    int length();
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * @param store             sorted store to stream
+     * @return                  source visiting every OID of the store in order
+     */
+    static OIDSource of(OIDStore store) {
+        return new OIDSource() {
+            private int[] arcs = new int[Math.max(1, store.maxLength())];
+            private int position = -1;
+            private int length = 0;
+
+            @Override
+            public boolean next() {
+                if (position + 1 >= store.size()) {
+                    position = store.size();
+                    return false;
+                }
+                length = store.copyArcs(++position, arcs);
+                return true;
+            }
+
+            @Override
+            public int[] arcs() {
+                return arcs;
+            }
+
+            @Override
+            public int length() {
+                return length;
+            }
+        };
+    }
+
+    /**
+     * Streams text that is already sorted, without sorting or holding it. Lines that are not valid OIDs and
+     * repeats of the line above are skipped.
+     *
+     * @param in                text with one OID per line in {@link OIDComp} order; closed when the source is closed
+     * @return                  source visiting every distinct OID of the text in order
+     */
+    static OIDSource ofSortedLines(InputStream in) {
+        OIDLineReader reader = new OIDLineReader(in);
+        return new OIDSource() {
+            private int[] arcs = new int[32];
+            private int length = -1;
+
+            @Override
+            public boolean next() throws IOException {
+                while (reader.nextLine()) {
+                    int len = reader.parse(0);
+                    if (len < 0) {
+                        continue;
+                    }
+                    int c = length < 0 ? 1 : OIDComp.compare(reader.arcs(), 0, len, arcs, 0, length);
+                    if (c < 0) {
+                        throw new IOException("Input is not sorted at line " + reader.lineNumber());
+                    }
+                    if (c > 0) {
+                        if (len > arcs.length) {
+                            arcs = new int[Math.max(len, arcs.length * 2)];
+                        }
+                        System.arraycopy(reader.arcs(), 0, arcs, 0, len);
+                        length = len;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public int[] arcs() {
+                return arcs;
+            }
+
+            @Override
+            public int length() {
+                return Math.max(0, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.dustintbrown.app.util;
+
+/**
+ * How {@link OIDService} holds loaded OIDs in memory.
+ *
+ * @author  Dustin Brown
+ */
+public enum OIDStorageMode {
+    /** Every arc in one sorted primitive arena. Fastest scans, 4 bytes per arc. See {@link PackedOIDStore}. */
+    PACKED,
+    /** Arc trie with first-OID positions per node. Shared prefixes are stored once and prefix counts are O(prefix length). See {@link OIDTrie}. */
+    TRIE,
+    /** Front-coded blocks of varint arcs on the heap. Smallest, but lookups decode part of a block. See {@link BlockOIDStore}. */
+    BLOCK,
+    /** Short OIDs as sorted 64 or 128-bit keys compared in one or two steps, longer ones packed. See {@link TieredOIDStore}. */
+    TIERED;
+
+    /**
+     * @param sorted            sorted OIDs in any layout
+     * @return                  the same OIDs in this layout; the store itself if it already is
+     */
+    public OIDStore convert(OIDStore sorted) {
+        switch (this) {
+            case TRIE:
+                return sorted instanceof OIDTrie ? sorted : OIDTrie.build(sorted);
+            case BLOCK:
+                return sorted instanceof BlockOIDStore ? sorted : BlockOIDStore.build(sorted, BlockOIDStore.DEFAULT_BLOCK_SIZE);
+            case TIERED:
+                return sorted instanceof TieredOIDStore ? sorted : TieredOIDStore.build(sorted);
+            case PACKED:
+            default:
+                return sorted instanceof PackedOIDStore ? sorted : new PackedOIDStore.Builder(sorted.size()).addAll(sorted).build();
+        }
+    }
+}
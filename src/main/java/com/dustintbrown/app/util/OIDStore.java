@@ -0,0 +1,333 @@
+package com.dustintbrown.app.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable, sorted and de-duplicated set of OIDs addressed by position. Ordering always matches
+ * {@link OIDComp}. Implementations decide how arcs are laid out in memory; the base class provides
+ * binary search, prefix ranges and a {@link List} view so existing callers can keep iterating int[]s.
+ *
+ * @author  Dustin Brown
+ */
+public abstract class OIDStore extends AbstractList<int[]> implements RandomAccess {
+
+    /**
+     * Callback used to visit OIDs in order without allocating an int[] per OID. The given array
+     * must not be retained or modified by the consumer.
+     *
+     * @param <E>               checked exception the consumer may throw
+     */
+    @FunctionalInterface
+    public interface ArcConsumer<E extends Exception> {
+        void accept(int[] arcs, int off, int len) throws E;
+    }
+
+    /**
+     * @param index             position of the OID
+     * @return                  number of arcs in the OID at the given position
+     */
+    public abstract int length(int index);
+
+    /**
+     * Copies the arcs of the OID at the given position into dst starting at index 0.
+     *
+     * @param index             position of the OID
+     * @param dst               destination, at least {@link #maxLength()} long
+     * @return                  number of arcs copied
+     */
+    public abstract int copyArcs(int index, int[] dst);
+
+    /**
+     * Compares the OID at the given position with a key using {@link OIDComp} ordering.
+     *
+     * @param index             position of the OID
+     * @param key               array holding the key arcs
+     * @param off               index of the first key arc
+     * @param len               number of key arcs
+     * @return                  negative, zero or positive as the stored OID is less than, equal to or greater than the key
+     */
+    public abstract int compareAt(int index, int[] key, int off, int len);
+
+    /**
+     * @param index             position of the OID
+     * @param prefix            array holding the prefix arcs
+     * @param off               index of the first prefix arc
+     * @param len               number of prefix arcs
+     * @return                  true if the OID at the given position starts with the prefix
+     */
+    public abstract boolean startsWith(int index, int[] prefix, int off, int len);
+
+    /**
+     * @return                  the largest number of arcs of any OID in the store
+     */
+    public abstract int maxLength();
+
+    /**
+     * @return                  estimated number of heap (or mapped) bytes used by the store
+     */
+    public abstract long memoryUsage();
+
+    @Override
+    public int[] get(int index) {
+        checkIndex(index);
+        int[] returnMe = new int[length(index)];
+        copyArcs(index, returnMe);
+        return returnMe;
+    }
+
+    /**
+     * Binary search for an exact OID.
+     *
+     * @param key               array holding the key arcs
+     * @param off               index of the first key arc
+     * @param len               number of key arcs
+     * @return                  position of the key, or (-(insertion point) - 1) if it is not in the store
+     */
+    public int search(int[] key, int off, int len) {
+        int lo = lowerBound(key, off, len);
+        if (lo < size() && compareAt(lo, key, off, len) == 0) {
+            return lo;
+        }
+        return -lo - 1;
+    }
+
+    /**
+     * @param key               array holding the key arcs
+     * @param off               index of the first key arc
+     * @param len               number of key arcs
+     * @return                  position of the first OID that is greater than or equal to the key
+     */
+    public int lowerBound(int[] key, int off, int len) {
+        int lo = 0;
+        int hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareAt(mid, key, off, len) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param prefix            array holding the prefix arcs
+     * @param off               index of the first prefix arc
+     * @param len               number of prefix arcs
+     * @return                  position just past the last OID that starts with the prefix
+     */
+    public int prefixEnd(int[] prefix, int off, int len) {
+        // Every OID starting with the prefix sorts at or after the prefix itself and they are contiguous.
+        int lo = lowerBound(prefix, off, len);
+        int hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (startsWith(mid, prefix, off, len)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param oid               array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @return                  true if the OID is in the store
+     */
+    public boolean containsArcs(int[] oid, int off, int len) {
+        return search(oid, off, len) >= 0;
+    }
+
+    /**
+     * @return                  true if exact lookups are answered from a hash index instead of a search, so probing
+     *                          once per OID beats sorting a batch of probes first
+     */
+    public boolean hasHashIndex() {
+        return false;
+    }
+
+    /**
+     * Returns every OID starting with the given prefix as a view backed by this store. The view's
+     * size is known without iterating it.
+     *
+     * @param prefix            OID prefix formatted as int[]
+     * @return                  sorted view of the matching OIDs
+     */
+    public OIDStore prefixRange(int[] prefix) {
+        int from = lowerBound(prefix, 0, prefix.length);
+        int to = prefixEnd(prefix, 0, prefix.length);
+        return subList(from, to);
+    }
+
+    /**
+     * Visits OIDs in order from position from (inclusive) to to (exclusive).
+     *
+     * @param from              first position to visit
+     * @param to                position to stop at
+     * @param consumer          callback receiving each OID
+     * @param <E>               checked exception the consumer may throw
+     * @throws E                rethrown from the consumer
+     */
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        int[] scratch = new int[Math.max(1, maxLength())];
+        for (int i = from; i < to; i++) {
+            consumer.accept(scratch, 0, copyArcs(i, scratch));
+        }
+    }
+
+    /**
+     * Returns a view of the OIDs between the given positions. The view is itself an {@link OIDStore} so it can
+     * be searched and scanned without copying.
+     */
+    @Override
+    public OIDStore subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size());
+        }
+        return new Slice(this, fromIndex, toIndex);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof int[])) {
+            return -1;
+        }
+        int[] oid = (int[]) o;
+        int index = search(oid, 0, oid.length);
+        return index < 0 ? -1 : index;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        // Stores never hold duplicates
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OIDStore)) {
+            return false;
+        }
+        OIDStore other = (OIDStore) o;
+        if (other.size() != size()) {
+            return false;
+        }
+        int[] scratch = new int[Math.max(1, maxLength())];
+        for (int i = 0; i < size(); i++) {
+            int len = copyArcs(i, scratch);
+            if (other.compareAt(i, scratch, 0, len) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int[] hash = {1};
+        scan(0, size(), (arcs, off, len) -> {
+            int h = 1;
+            for (int i = off; i < off + len; i++) {
+                h = 31 * h + arcs[i];
+            }
+            hash[0] = 31 * hash[0] + h;
+        });
+        return hash[0];
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", maxLength=" + maxLength() + "]";
+    }
+
+    static int[] grow(int[] array, int minCapacity) {
+        int newCapacity = Math.max(minCapacity, array.length + (array.length >> 1) + 16);
+        return Arrays.copyOf(array, newCapacity);
+    }
+
+    /**
+     * Read-only window over a range of another store.
+     */
+    private static final class Slice extends OIDStore {
+        private final OIDStore base;
+        private final int from;
+        private final int size;
+
+        Slice(OIDStore base, int from, int to) {
+            this.base = base;
+            this.from = from;
+            this.size = to - from;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int length(int index) {
+            checkIndex(index);
+            return base.length(from + index);
+        }
+
+        @Override
+        public int copyArcs(int index, int[] dst) {
+            checkIndex(index);
+            return base.copyArcs(from + index, dst);
+        }
+
+        @Override
+        public int compareAt(int index, int[] key, int off, int len) {
+            return base.compareAt(from + index, key, off, len);
+        }
+
+        @Override
+        public boolean startsWith(int index, int[] prefix, int off, int len) {
+            return base.startsWith(from + index, prefix, off, len);
+        }
+
+        @Override
+        public int maxLength() {
+            return base.maxLength();
+        }
+
+        @Override
+        public long memoryUsage() {
+            return 0;
+        }
+
+        @Override
+        public <E extends Exception> void scan(int start, int end, ArcConsumer<E> consumer) throws E {
+            base.scan(from + start, from + end, consumer);
+        }
+
+        @Override
+        public OIDStore subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+                throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size);
+            }
+            return new Slice(base, from + fromIndex, from + toIndex);
+        }
+    }
+}
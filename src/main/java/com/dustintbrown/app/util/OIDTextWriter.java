@@ -0,0 +1,132 @@
+package com.dustintbrown.app.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable sink that formats OIDs as dotted text lines straight into one byte buffer and hands
+ * full buffers to an {@link OutputStream}. Nothing is allocated per OID.
+ *
+ * @author  Dustin Brown
+ */
+public class OIDTextWriter implements Closeable, Flushable {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final boolean closeStream;
+    private byte[] buffer;
+    private int pos = 0;
+
+    /**
+     * @param out               stream receiving the text; closed when this writer is closed
+     */
+    public OIDTextWriter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE, true);
+    }
+
+    /**
+     * @param out               stream receiving the text
+     * @param bufferSize        bytes buffered before writing to the stream
+     * @param closeStream       if false, closing this writer only flushes (useful for System.out)
+     */
+    public OIDTextWriter(OutputStream out, int bufferSize, boolean closeStream) {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 64)];
+        this.closeStream = closeStream;
+    }
+
+    /**
+     * Writes the OID followed by a newline.
+     *
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @throws IOException      if the underlying stream fails
+     */
+    public void writeLine(int[] arcs, int off, int len) throws IOException {
+        writeLine(null, arcs, off, len);
+    }
+
+    /**
+     * Writes the OID preceded by a short ASCII marker (such as "+ ") and followed by a newline.
+     *
+     * @param marker            ASCII text written before the OID, or null
+     * @param arcs              array holding the OID arcs
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @throws IOException      if the underlying stream fails
+     */
+    public void writeLine(String marker, int[] arcs, int off, int len) throws IOException {
+        int markerLength = marker == null ? 0 : marker.length();
+        ensure(markerLength + OIDCodec.maxFormattedLength(len) + 1);
+        for (int i = 0; i < markerLength; i++) {
+            buffer[pos++] = (byte) marker.charAt(i);
+        }
+        pos = OIDCodec.format(arcs, off, len, buffer, pos);
+        buffer[pos++] = '\n';
+    }
+
+    /**
+     * Writes bytes as lowercase hex digits followed by a newline.
+     *
+     * @param bytes             array holding the bytes
+     * @param off               index of the first byte
+     * @param len               number of bytes
+     * @throws IOException      if the underlying stream fails
+     */
+    public void writeHexLine(byte[] bytes, int off, int len) throws IOException {
+        ensure(2 * len + 1);
+        for (int i = off; i < off + len; i++) {
+            buffer[pos++] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            buffer[pos++] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        buffer[pos++] = '\n';
+    }
+
+    /**
+     * Writes raw ASCII text without a newline.
+     *
+     * @param text              ASCII text
+     * @throws IOException      if the underlying stream fails
+     */
+    public void write(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            ensure(1);
+            buffer[pos++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void ensure(int room) throws IOException {
+        if (pos + room > buffer.length) {
+            flushBuffer();
+            if (room > buffer.length) {
+                buffer = new byte[room];
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (closeStream) {
+            out.close();
+        }
+    }
+}
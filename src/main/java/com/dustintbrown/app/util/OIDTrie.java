@@ -0,0 +1,404 @@
+package com.dustintbrown.app.util;
+
+import java.util.Arrays;
+
+/**
+ * {@link OIDStore} laid out as an arc trie. Each node stands for one arc below its parent, so a prefix
+ * shared by millions of OIDs (1.3.6.1.4.1) is stored once. Nodes are numbered breadth first which keeps
+ * the children of a node contiguous and sorted by arc; lookups binary search those children one arc at a
+ * time and never compare whole OIDs.
+ *
+ * Every node also records the sorted position of the first OID under it. The OIDs under a node end where those
+ * of its next sibling start, or where its parent's end for a last child, so counting the OIDs under a prefix
+ * costs one walk down the trie regardless of how many match. Arcs, positions and child offsets are kept in
+ * {@link NarrowIntArray}s, which take a byte or two per node since breadth first numbering keeps close values
+ * together.
+ *
+ * @author  Dustin Brown
+ */
+public final class OIDTrie extends OIDStore {
+    private static final int ROOT = 0;
+
+    // arc leading into each node; unused for the root
+    private final NarrowIntArray arc;
+    // children of node k are the nodes firstChild[k] until firstChild[k + 1]
+    private final NarrowIntArray firstChild;
+    // sorted position of the first OID under each node
+    private final NarrowIntArray rank;
+    // bit per node, set when the path to the node is itself an OID
+    private final long[] terminal;
+    private final int nodes;
+    private final int size;
+    private final int maxLength;
+
+    private OIDTrie(NarrowIntArray arc, NarrowIntArray firstChild, NarrowIntArray rank, long[] terminal, int nodes,
+                    int size, int maxLength) {
+        this.arc = arc;
+        this.firstChild = firstChild;
+        this.rank = rank;
+        this.terminal = terminal;
+        this.nodes = nodes;
+        this.size = size;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Builds a trie from a sorted store in one sequential pass. Nodes at the same depth are created in sorted
+     * order, and so are the children of consecutive parents, which is what allows breadth first numbering
+     * without a queue.
+     *
+     * @param sorted            OIDs to index
+     * @return                  trie holding the same OIDs
+     */
+    public static OIDTrie build(OIDStore sorted) {
+        int levels = sorted.maxLength() + 1;
+        Level[] level = new Level[levels + 1];
+        for (int d = 0; d <= levels; d++) {
+            level[d] = new Level();
+        }
+        level[0].add(0, 0, 0);
+
+        int[] path = new int[levels];
+        int[] prev = new int[Math.max(1, sorted.maxLength())];
+        int[] prevLen = {0};
+        int[] position = {0};
+        sorted.scan(0, sorted.size(), (arcs, off, len) -> {
+            int common = 0;
+            int limit = Math.min(len, prevLen[0]);
+            while (common < limit && arcs[off + common] == prev[common]) {
+                common++;
+            }
+            for (int d = common; d < len; d++) {
+                // node for arc d lives on level d + 1; its children will be appended to level d + 2
+                path[d + 1] = level[d + 1].add(arcs[off + d], position[0], level[d + 2].size);
+            }
+            level[len].setTerminal(path[len]);
+            System.arraycopy(arcs, off, prev, 0, len);
+            prevLen[0] = len;
+            position[0]++;
+        });
+
+        int nodes = 0;
+        int[] base = new int[levels + 2];
+        for (int d = 0; d <= levels; d++) {
+            base[d] = nodes;
+            nodes += level[d].size;
+        }
+        base[levels + 1] = nodes;
+
+        int[] arc = new int[nodes];
+        int[] firstChild = new int[nodes + 1];
+        int[] rank = new int[nodes];
+        long[] terminal = new long[(nodes + 63) >>> 6];
+        for (int d = 0; d <= levels; d++) {
+            Level l = level[d];
+            System.arraycopy(l.arc, 0, arc, base[d], l.size);
+            System.arraycopy(l.rank, 0, rank, base[d], l.size);
+            int childBase = d < levels ? base[d + 1] : nodes;
+            for (int i = 0; i < l.size; i++) {
+                firstChild[base[d] + i] = childBase + l.firstChild[i];
+                if ((l.terminal[i >>> 6] & (1L << i)) != 0) {
+                    int node = base[d] + i;
+                    terminal[node >>> 6] |= 1L << node;
+                }
+            }
+            level[d] = null;
+        }
+        firstChild[nodes] = nodes;
+        return new OIDTrie(new NarrowIntArray(arc, nodes), new NarrowIntArray(firstChild, nodes + 1),
+                new NarrowIntArray(rank, nodes), terminal, nodes, position[0], sorted.maxLength());
+    }
+
+    /**
+     * Nodes of one depth while building.
+     */
+    private static final class Level {
+        int[] arc = new int[16];
+        int[] rank = new int[16];
+        int[] firstChild = new int[16];
+        long[] terminal = new long[1];
+        int size = 0;
+
+        int add(int arcValue, int rankValue, int childStart) {
+            if (size == arc.length) {
+                arc = grow(arc, size + 1);
+                rank = Arrays.copyOf(rank, arc.length);
+                firstChild = Arrays.copyOf(firstChild, arc.length);
+                terminal = Arrays.copyOf(terminal, (arc.length + 63) >>> 6);
+            }
+            arc[size] = arcValue;
+            rank[size] = rankValue;
+            firstChild[size] = childStart;
+            return size++;
+        }
+
+        void setTerminal(int i) {
+            terminal[i >>> 6] |= 1L << i;
+        }
+    }
+
+    private boolean isTerminal(int node) {
+        return (terminal[node >>> 6] & (1L << node)) != 0;
+    }
+
+    /**
+     * @return                  the child of node whose arc is the given value, or -1
+     */
+    private int child(int node, int value) {
+        int lo = firstChild.get(node);
+        int hi = firstChild.get(node + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int a = arc.get(mid);
+            if (a < value) {
+                lo = mid + 1;
+            } else if (a > value) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return                  the child of node whose subtree holds the OID at the given sorted position
+     */
+    private int childByRank(int node, int position) {
+        int lo = firstChild.get(node);
+        int hi = firstChild.get(node + 1) - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (rank.get(mid) <= position) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return                  sorted position after the last OID under a child of parent, where the OIDs under
+     *                          parent end at parentEnd
+     */
+    private int end(int parent, int child, int parentEnd) {
+        return child + 1 < firstChild.get(parent + 1) ? rank.get(child + 1) : parentEnd;
+    }
+
+    /**
+     * @return                  sorted positions of the first OID under the node reached by following the key arcs
+     *                          from the root, in the high half, and of the OID after its last, in the low half;
+     *                          -1 if there is no such node
+     */
+    private long range(int[] key, int off, int len) {
+        int node = ROOT;
+        int end = size;
+        for (int d = 0; d < len; d++) {
+            int next = child(node, key[off + d]);
+            if (next < 0) {
+                return -1;
+            }
+            end = end(node, next, end);
+            node = next;
+        }
+        return (long) rank.get(node) << 32 | end;
+    }
+
+    /**
+     * @return                  the node reached by following the key arcs from the root, or -1
+     */
+    private int find(int[] key, int off, int len) {
+        int node = ROOT;
+        for (int d = 0; d < len && node >= 0; d++) {
+            node = child(node, key[off + d]);
+        }
+        return node;
+    }
+
+    /**
+     * @return                  the terminal node holding the OID at the given sorted position
+     */
+    private int nodeAt(int index, int[] path) {
+        checkIndex(index);
+        int node = ROOT;
+        int depth = 0;
+        while (!(isTerminal(node) && rank.get(node) == index)) {
+            node = childByRank(node, index);
+            if (path != null) {
+                path[depth] = arc.get(node);
+            }
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * Number of OIDs that start with the given prefix, found with one walk down the trie.
+     *
+     * @param prefix            array holding the prefix arcs
+     * @param off               index of the first prefix arc
+     * @param len               number of prefix arcs
+     * @return                  number of matching OIDs
+     */
+    public int countPrefix(int[] prefix, int off, int len) {
+        long range = range(prefix, off, len);
+        return range < 0 ? 0 : (int) range - (int) (range >>> 32);
+    }
+
+    /**
+     * @return                  number of trie nodes, excluding the root
+     */
+    public int nodeCount() {
+        return nodes - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int length(int index) {
+        return nodeAt(index, null);
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        return nodeAt(index, dst);
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        checkIndex(index);
+        int node = ROOT;
+        int depth = 0;
+        while (!(isTerminal(node) && rank.get(node) == index)) {
+            node = childByRank(node, index);
+            if (depth == len) {
+                return 1;
+            }
+            int a = arc.get(node);
+            if (a != key[off + depth]) {
+                return Integer.compare(a, key[off + depth]);
+            }
+            depth++;
+        }
+        return depth - len;
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        long range = range(prefix, off, len);
+        return range >= 0 && index >= (int) (range >>> 32) && index < (int) range;
+    }
+
+    @Override
+    public int search(int[] key, int off, int len) {
+        int node = find(key, off, len);
+        if (node >= 0 && isTerminal(node)) {
+            return rank.get(node);
+        }
+        return -lowerBound(key, off, len) - 1;
+    }
+
+    @Override
+    public int lowerBound(int[] key, int off, int len) {
+        int node = ROOT;
+        int end = size;
+        for (int d = 0; d < len; d++) {
+            int value = key[off + d];
+            int lo = firstChild.get(node);
+            int last = firstChild.get(node + 1);
+            int hi = last;
+            // first child whose arc is not below the key arc
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (arc.get(mid) < value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo == last) {
+                return end;
+            }
+            if (arc.get(lo) != value) {
+                return rank.get(lo);
+            }
+            end = end(node, lo, end);
+            node = lo;
+        }
+        return rank.get(node);
+    }
+
+    @Override
+    public int prefixEnd(int[] prefix, int off, int len) {
+        long range = range(prefix, off, len);
+        return range < 0 ? lowerBound(prefix, off, len) : (int) range;
+    }
+
+    @Override
+    public boolean containsArcs(int[] oid, int off, int len) {
+        int node = find(oid, off, len);
+        return node >= 0 && isTerminal(node);
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return arc.memoryUsage() + firstChild.memoryUsage() + rank.memoryUsage() + 8L * terminal.length;
+    }
+
+    /**
+     * Depth first walk from the OID at position from, rebuilding each OID in one reused path buffer.
+     */
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        if (from >= to) {
+            return;
+        }
+        checkIndex(from);
+        int[] path = new int[Math.max(1, maxLength)];
+        int[] stack = new int[maxLength + 1];
+        stack[0] = ROOT;
+        int depth = 0;
+        int node = ROOT;
+        while (!(isTerminal(node) && rank.get(node) == from)) {
+            node = childByRank(node, from);
+            path[depth++] = arc.get(node);
+            stack[depth] = node;
+        }
+        int remaining = to - from;
+        while (true) {
+            consumer.accept(path, 0, depth);
+            if (--remaining == 0) {
+                return;
+            }
+            // Next OID in order: the leftmost terminal below node, else below the next sibling up the stack
+            int first = firstChild.get(node);
+            if (first < firstChild.get(node + 1)) {
+                node = first;
+                path[depth++] = arc.get(node);
+                stack[depth] = node;
+            } else {
+                while (node + 1 >= firstChild.get(stack[depth - 1] + 1)) {
+                    depth--;
+                    node = stack[depth];
+                }
+                node = node + 1;
+                path[depth - 1] = arc.get(node);
+                stack[depth] = node;
+            }
+            while (!isTerminal(node)) {
+                node = firstChild.get(node);
+                path[depth++] = arc.get(node);
+                stack[depth] = node;
+            }
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package com.dustintbrown.app.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * {@link OIDStore} keeping every arc of every OID in one primitive int[] arena, sorted by {@link OIDComp},
+ * with an offsets array marking where each OID starts. Compared to a TreeSet&lt;int[]&gt; this drops the
+ * tree node, the array header and the pointers per OID, leaving 4 bytes per arc plus 4 bytes per OID.
+ *
+ * @author  Dustin Brown
+ */
+public final class PackedOIDStore extends OIDStore {
+    public static final PackedOIDStore EMPTY = new PackedOIDStore(new int[0], new int[]{0}, 0, 0);
+
+    private final int[] arcs;
+    private final int[] offsets;
+    private final int size;
+    private final int maxLength;
+
+    private PackedOIDStore(int[] arcs, int[] offsets, int size, int maxLength) {
+        this.arcs = arcs;
+        this.offsets = offsets;
+        this.size = size;
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int length(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @param index             position of the OID
+     * @return                  index of the first arc of the OID in {@link #arcs()}
+     */
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @return                  the backing arena. Callers must treat it as read-only.
+     */
+    int[] arcs() {
+        return arcs;
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        int start = offsets[index];
+        int len = offsets[index + 1] - start;
+        System.arraycopy(arcs, start, dst, 0, len);
+        return len;
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        int start = offsets[index];
+        return OIDComp.compare(arcs, start, offsets[index + 1] - start, key, off, len);
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        int start = offsets[index];
+        if (offsets[index + 1] - start < len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (arcs[start + i] != prefix[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public long memoryUsage() {
+        return 4L * arcs.length + 4L * offsets.length;
+    }
+
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        for (int i = from; i < to; i++) {
+            int start = offsets[i];
+            consumer.accept(arcs, start, offsets[i + 1] - start);
+        }
+    }
+
+    /**
+     * Merges several stores into one, dropping OIDs present in more than one input.
+     *
+     * @param parts             sorted stores to merge
+     * @return                  a single store holding the union of the inputs
+     */
+    public static PackedOIDStore merge(List<PackedOIDStore> parts) {
+        return merge(parts, null);
+    }
+
+    /**
+     * Merges several stores into one, dropping OIDs present in more than one input. When a pool is given the
+     * key space is cut into ranges at splitters sampled from the largest input and every range is merged by its
+     * own task straight into the shared output arrays, so peak memory stays at the inputs plus one output.
+     *
+     * @param parts             sorted stores to merge
+     * @param pool              pool to merge ranges on, or null to merge on the calling thread
+     * @return                  a single store holding the union of the inputs
+     */
+    public static PackedOIDStore merge(List<PackedOIDStore> parts, ForkJoinPool pool) {
+        long totalArcs = 0;
+        long totalOids = 0;
+        int maxLength = 0;
+        PackedOIDStore largest = EMPTY;
+        for (PackedOIDStore part : parts) {
+            totalArcs += part.offsets[part.size];
+            totalOids += part.size;
+            maxLength = Math.max(maxLength, part.maxLength);
+            if (part.size > largest.size) {
+                largest = part;
+            }
+        }
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        if (totalOids == 0) {
+            return EMPTY;
+        }
+        if (totalArcs > Integer.MAX_VALUE - 8 || totalOids > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many OIDs to merge into a single store: " + totalOids);
+        }
+
+        PackedOIDStore[] stores = parts.toArray(new PackedOIDStore[0]);
+        int k = stores.length;
+        int ranges = pool == null ? 1 : (int) Math.max(1, Math.min(pool.getParallelism() * 4L, totalOids / 4096));
+
+        // bounds[r][p] is the first position of part p that belongs to range r
+        int[][] bounds = new int[ranges + 1][k];
+        for (int r = 1; r < ranges; r++) {
+            int split = (int) ((long) largest.size * r / ranges);
+            int splitStart = largest.offsets[split];
+            int splitLen = largest.offsets[split + 1] - splitStart;
+            for (int p = 0; p < k; p++) {
+                bounds[r][p] = stores[p].lowerBound(largest.arcs, splitStart, splitLen);
+            }
+        }
+        for (int p = 0; p < k; p++) {
+            bounds[ranges][p] = stores[p].size;
+        }
+
+        // Each range writes from the position it would start at if no duplicates existed
+        int[] arcs = new int[(int) totalArcs];
+        int[] offsets = new int[(int) totalOids + 1];
+        int[] oidStart = new int[ranges + 1];
+        int[] arcStart = new int[ranges + 1];
+        for (int r = 0; r <= ranges; r++) {
+            for (int p = 0; p < k; p++) {
+                oidStart[r] += bounds[r][p];
+                arcStart[r] += stores[p].offsets[bounds[r][p]];
+            }
+        }
+
+        long[] written = new long[ranges];
+        if (pool == null || ranges == 1) {
+            written[0] = mergeRange(stores, bounds[0], bounds[1], arcs, offsets, oidStart[0], arcStart[0]);
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(ranges);
+            for (int r = 0; r < ranges; r++) {
+                final int range = r;
+                tasks.add(pool.submit(() -> {
+                    written[range] = mergeRange(stores, bounds[range], bounds[range + 1],
+                            arcs, offsets, oidStart[range], arcStart[range]);
+                }));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        }
+
+        // Close the gaps left by duplicates, shifting each range left
+        int size = 0;
+        int arcPos = 0;
+        for (int r = 0; r < ranges; r++) {
+            int count = (int) (written[r] >>> 32);
+            int rangeArcs = (int) written[r];
+            int srcArc = arcStart[r];
+            int shift = srcArc - arcPos;
+            if (shift != 0) {
+                System.arraycopy(arcs, srcArc, arcs, arcPos, rangeArcs);
+            }
+            for (int i = 0; i < count; i++) {
+                offsets[size + i] = offsets[oidStart[r] + i] - shift;
+            }
+            size += count;
+            arcPos += rangeArcs;
+        }
+        offsets[size] = arcPos;
+
+        if (arcs.length - arcPos > arcs.length / 8) {
+            // Only worth another copy when many duplicates were dropped
+            return new PackedOIDStore(Arrays.copyOf(arcs, arcPos), Arrays.copyOf(offsets, size + 1), size, maxLength);
+        }
+        return new PackedOIDStore(arcs, offsets, size, maxLength);
+    }
+
+    /**
+     * K-way merge of one key range of every part into the output arrays.
+     *
+     * @return                  number of OIDs written in the high 32 bits and number of arcs written in the low 32 bits
+     */
+    private static long mergeRange(PackedOIDStore[] stores, int[] from, int[] to,
+                                   int[] arcs, int[] offsets, int oidPos, int arcPos) {
+        int k = stores.length;
+        int[] cursor = Arrays.copyOf(from, k);
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int p = 0; p < k; p++) {
+            if (cursor[p] < to[p]) {
+                heap[heapSize++] = p;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, stores, cursor);
+        }
+
+        int firstOid = oidPos;
+        int firstArc = arcPos;
+        while (heapSize > 0) {
+            int p = heap[0];
+            PackedOIDStore store = stores[p];
+            int start = store.offsets[cursor[p]];
+            int len = store.offsets[cursor[p] + 1] - start;
+            boolean duplicate = oidPos > firstOid
+                    && OIDComp.compare(arcs, offsets[oidPos - 1], arcPos - offsets[oidPos - 1], store.arcs, start, len) == 0;
+            if (!duplicate) {
+                System.arraycopy(store.arcs, start, arcs, arcPos, len);
+                offsets[oidPos++] = arcPos;
+                arcPos += len;
+            }
+            if (++cursor[p] == to[p]) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, 0, stores, cursor);
+        }
+        return ((long) (oidPos - firstOid) << 32) | (arcPos - firstArc);
+    }
+
+    private static void siftDown(int[] heap, int heapSize, int i, PackedOIDStore[] stores, int[] cursor) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && compareHeads(stores, cursor, heap[left], heap[smallest]) < 0) {
+                smallest = left;
+            }
+            if (right < heapSize && compareHeads(stores, cursor, heap[right], heap[smallest]) < 0) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            int tmp = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = tmp;
+            i = smallest;
+        }
+    }
+
+    private static int compareHeads(PackedOIDStore[] stores, int[] cursor, int a, int b) {
+        PackedOIDStore left = stores[a];
+        PackedOIDStore right = stores[b];
+        int ls = left.offsets[cursor[a]];
+        int rs = right.offsets[cursor[b]];
+        return OIDComp.compare(left.arcs, ls, left.offsets[cursor[a] + 1] - ls,
+                right.arcs, rs, right.offsets[cursor[b] + 1] - rs);
+    }
+
+    /**
+     * Accumulates OIDs in any order and produces a sorted, de-duplicated {@link PackedOIDStore}.
+     * Arcs are appended to fixed size pages so growing never copies what has already been added.
+     * Not thread safe; parallel loaders use one builder per worker and {@link #merge(List)} the results.
+     */
+    public static final class Builder {
+        private static final int PAGE_SHIFT = 20;
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+        private static final int INSERTION_SORT_THRESHOLD = 24;
+        private static final int[] KEY_BITS = {7, 8, 16, 16, 16};
+
+        // Each record in a page is [length, arc0, arc1, ...]
+        private int[][] pages = new int[4][];
+        private int pageCount = 0;
+        private int pagePos = 0;
+        private int pageLimit = 0;
+        private int[] starts;
+        private int size = 0;
+        private int maxLength = 0;
+        private boolean sorted = true;
+
+        public Builder() {
+            this(1024);
+        }
+
+        /**
+         * @param expectedSize      number of OIDs expected, used to size the position index
+         */
+        public Builder(int expectedSize) {
+            starts = new int[Math.max(16, expectedSize)];
+        }
+
+        /**
+         * @param oid               OID formatted as int[]
+         * @return                  this builder
+         */
+        public Builder add(int[] oid) {
+            return add(oid, 0, oid.length);
+        }
+
+        /**
+         * Copies the given arcs into the builder.
+         *
+         * @param src               array holding the OID arcs
+         * @param off               index of the first arc
+         * @param len               number of arcs
+         * @return                  this builder
+         */
+        public Builder add(int[] src, int off, int len) {
+            if (len + 1 > PAGE_SIZE) {
+                throw new IllegalArgumentException("OID has too many arcs: " + len);
+            }
+            if (pagePos + len + 1 > pageLimit) {
+                newPage(len + 1);
+            }
+            if (size == starts.length) {
+                starts = grow(starts, size + 1);
+            }
+            int[] page = pages[pageCount - 1];
+            int start = ((pageCount - 1) << PAGE_SHIFT) | pagePos;
+            page[pagePos] = len;
+            System.arraycopy(src, off, page, pagePos + 1, len);
+            pagePos += len + 1;
+
+            if (sorted && size > 0 && compareRecords(starts[size - 1], start) >= 0) {
+                sorted = false;
+            }
+            starts[size++] = start;
+            maxLength = Math.max(maxLength, len);
+            return this;
+        }
+
+        /**
+         * Adds every OID of an existing store.
+         *
+         * @param store             OIDs to copy into this builder
+         * @return                  this builder
+         */
+        public Builder addAll(OIDStore store) {
+            store.scan(0, store.size(), this::add);
+            return this;
+        }
+
+        /**
+         * @return                  number of OIDs added so far, including duplicates
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Sorts and de-duplicates the added OIDs into a new store. The builder should be discarded afterwards.
+         *
+         * @return                  sorted store holding each distinct OID once
+         */
+        public PackedOIDStore build() {
+            return build(null);
+        }
+
+        /**
+         * Sorts and de-duplicates like {@link #build()}, also reporting where each added OID ended up.
+         *
+         * @param positions         receives, for the i-th OID added, its index in the returned store; may be null
+         * @return                  sorted store holding each distinct OID once
+         */
+        public PackedOIDStore build(int[] positions) {
+            if (size == 0) {
+                return EMPTY;
+            }
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            // Sorted keys, when there are any, settle most duplicate checks without touching the records
+            long[] keys = sorted ? null : sortOrder(order);
+
+            // First pass counts what survives de-duplication so the arena is allocated exactly once
+            int unique = 0;
+            long uniqueArcs = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || !sameRecord(keys, order, i)) {
+                    unique++;
+                    uniqueArcs += recordLength(starts[order[i]]);
+                }
+            }
+            if (uniqueArcs > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many arcs for a single store: " + uniqueArcs);
+            }
+
+            int[] arcs = new int[(int) uniqueArcs];
+            int[] offsets = new int[unique + 1];
+            int n = 0;
+            int arcPos = 0;
+            for (int i = 0; i < size; i++) {
+                int start = starts[order[i]];
+                if (i > 0 && sameRecord(keys, order, i)) {
+                    if (positions != null) {
+                        positions[order[i]] = n - 1;
+                    }
+                    continue;
+                }
+                if (positions != null) {
+                    positions[order[i]] = n;
+                }
+                int[] page = pages[start >>> PAGE_SHIFT];
+                int pos = start & PAGE_MASK;
+                int len = page[pos];
+                System.arraycopy(page, pos + 1, arcs, arcPos, len);
+                offsets[n++] = arcPos;
+                arcPos += len;
+            }
+            offsets[n] = arcPos;
+            return new PackedOIDStore(arcs, offsets, n, maxLength);
+        }
+
+        private void newPage(int minSize) {
+            if (pageCount == pages.length) {
+                pages = Arrays.copyOf(pages, pages.length * 2);
+            }
+            if (pageCount >= (1 << (31 - PAGE_SHIFT))) {
+                throw new IllegalStateException("Builder is full after " + size + " OIDs");
+            }
+            // Small builders start with small pages; pages double up to PAGE_SIZE
+            int pageSize = Math.max(minSize, Math.min(PAGE_SIZE, 1024 << Math.min(pageCount, 10)));
+            pages[pageCount++] = new int[pageSize];
+            pagePos = 0;
+            pageLimit = pageSize;
+        }
+
+        private int recordLength(int start) {
+            return pages[start >>> PAGE_SHIFT][start & PAGE_MASK];
+        }
+
+        private int compareRecords(int a, int b) {
+            int[] pa = pages[a >>> PAGE_SHIFT];
+            int[] pb = pages[b >>> PAGE_SHIFT];
+            int oa = a & PAGE_MASK;
+            int ob = b & PAGE_MASK;
+            return OIDComp.compare(pa, oa + 1, pa[oa], pb, ob + 1, pb[ob]);
+        }
+
+        /**
+         * @return                  true if the records at sorted positions i - 1 and i hold the same OID
+         */
+        private boolean sameRecord(long[] keys, int[] order, int i) {
+            if (keys != null && keys[i - 1] != keys[i]) {
+                return false;
+            }
+            return compareRecords(starts[order[i - 1]], starts[order[i]]) == 0;
+        }
+
+        private int compareOrder(int a, int b) {
+            return compareRecords(starts[a], starts[b]);
+        }
+
+        /**
+         * Packs the leading arcs of a record into a key that orders like {@link OIDComp}: 7 bits for the first
+         * arc, 8 for the second and 16 for each of the next three. Each field holds 0 for a missing arc, 1 for a
+         * negative arc and arc + 2 otherwise; a field that saturates ends the key, because the arcs after it no
+         * longer decide the order. Different keys therefore order their records, and equal keys need a full compare.
+         */
+        private long sortKey(int start) {
+            int[] page = pages[start >>> PAGE_SHIFT];
+            int pos = (start & PAGE_MASK) + 1;
+            int len = page[pos - 1];
+            long key = 0;
+            int shift = 63;
+            for (int i = 0; i < KEY_BITS.length && i < len; i++) {
+                shift -= KEY_BITS[i];
+                long max = (1L << KEY_BITS[i]) - 1;
+                int arc = page[pos + i];
+                long field = arc < 0 ? 1 : Math.min(arc + 2L, max);
+                key |= field << shift;
+                if (field == 1 || field == max) {
+                    break;
+                }
+            }
+            return key;
+        }
+
+        private int compareSorted(long[] keys, int[] order, int a, int b) {
+            if (keys[a] != keys[b]) {
+                return keys[a] < keys[b] ? -1 : 1;
+            }
+            return compareOrder(order[a], order[b]);
+        }
+
+        /**
+         * Bottom-up merge sort of record numbers. Every record number travels with its {@link #sortKey}, so most
+         * comparisons read two adjacent longs instead of two records scattered over the pages. Stable.
+         *
+         * @return                  sort keys, in the sorted order
+         */
+        private long[] sortOrder(int[] order) {
+            int n = order.length;
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = sortKey(starts[order[i]]);
+            }
+            for (int lo = 0; lo < n; lo += INSERTION_SORT_THRESHOLD) {
+                int hi = Math.min(lo + INSERTION_SORT_THRESHOLD, n);
+                for (int i = lo + 1; i < hi; i++) {
+                    int v = order[i];
+                    long key = keys[i];
+                    int j = i - 1;
+                    while (j >= lo && (keys[j] > key || keys[j] == key && compareOrder(order[j], v) > 0)) {
+                        order[j + 1] = order[j];
+                        keys[j + 1] = keys[j];
+                        j--;
+                    }
+                    order[j + 1] = v;
+                    keys[j + 1] = key;
+                }
+            }
+            int[] src = order;
+            long[] srcKeys = keys;
+            int[] dst = new int[n];
+            long[] dstKeys = new long[n];
+            for (int width = INSERTION_SORT_THRESHOLD; width < n; width *= 2) {
+                for (int lo = 0; lo < n; lo += 2 * width) {
+                    int mid = Math.min(lo + width, n);
+                    int hi = Math.min(lo + 2 * width, n);
+                    int i = lo;
+                    int j = mid;
+                    int k = lo;
+                    if (mid >= hi || compareSorted(srcKeys, src, mid - 1, mid) <= 0) {
+                        System.arraycopy(src, lo, dst, lo, hi - lo);
+                        System.arraycopy(srcKeys, lo, dstKeys, lo, hi - lo);
+                        continue;
+                    }
+                    while (i < mid && j < hi) {
+                        int from = compareSorted(srcKeys, src, i, j) <= 0 ? i++ : j++;
+                        dst[k] = src[from];
+                        dstKeys[k++] = srcKeys[from];
+                    }
+                    System.arraycopy(src, i, dst, k, mid - i);
+                    System.arraycopy(srcKeys, i, dstKeys, k, mid - i);
+                    System.arraycopy(src, j, dst, k + (mid - i), hi - j);
+                    System.arraycopy(srcKeys, j, dstKeys, k + (mid - i), hi - j);
+                }
+                int[] tmp = src;
+                src = dst;
+                dst = tmp;
+                long[] tmpKeys = srcKeys;
+                srcKeys = dstKeys;
+                dstKeys = tmpKeys;
+            }
+            if (src != order) {
+                System.arraycopy(src, 0, order, 0, n);
+            }
+            return srcKeys;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.dustintbrown.app.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * {@link OIDStore} split into independent shards by the first two arcs. Both generated and real OIDs draw those
+ * arcs from a small domain (0-2 and 0-39 under ASN.1), so a store holds at most a few hundred shards, each an
+ * ordinary sorted store in any layout. Shards are built in parallel, and a query that names the first two arcs
+ * searches only its shard; positions are the concatenation of the shards in order.
+ *
+ * An OID with a single arc gets a shard of its own, which sorts before every shard sharing that first arc.
+ *
+ * @author  Dustin Brown
+ */
+public final class ShardedOIDStore extends OIDStore {
+    private final OIDStorageMode storageMode;
+    // Shard keys in sort order: one or two leading arcs each
+    private final int[][] keys;
+    private final OIDStore[] shards;
+    // Position of the first OID of each shard, plus the total size
+    private final int[] starts;
+    private final int maxLength;
+
+    private ShardedOIDStore(OIDStorageMode storageMode, int[][] keys, OIDStore[] shards) {
+        this.storageMode = storageMode;
+        this.keys = keys;
+        this.shards = shards;
+        this.starts = new int[shards.length + 1];
+        int max = 0;
+        for (int s = 0; s < shards.length; s++) {
+            starts[s + 1] = starts[s] + shards[s].size();
+            max = Math.max(max, shards[s].maxLength());
+        }
+        this.maxLength = max;
+    }
+
+    /**
+     * Cuts a sorted store at every change of its first two arcs and converts every shard on its own task.
+     *
+     * @param sorted            sorted OIDs in any layout
+     * @param storageMode       layout of every shard
+     * @param pool              pool to build shards on, or null to build them on the calling thread
+     * @return                  store holding the same OIDs
+     */
+    public static ShardedOIDStore build(OIDStore sorted, OIDStorageMode storageMode, ForkJoinPool pool) {
+        // Shard boundaries take a binary search each, so finding them does not touch every OID
+        List<int[]> keys = new ArrayList<>();
+        List<int[]> bounds = new ArrayList<>();
+        int[] scratch = new int[Math.max(2, sorted.maxLength())];
+        for (int from = 0; from < sorted.size(); ) {
+            int len = sorted.copyArcs(from, scratch);
+            int[] key = Arrays.copyOf(scratch, Math.min(2, len));
+            int to = key.length < 2 ? from + 1 : sorted.prefixEnd(key, 0, key.length);
+            keys.add(key);
+            bounds.add(new int[]{from, to});
+            from = to;
+        }
+        OIDStore[] shards = new OIDStore[keys.size()];
+        if (pool == null) {
+            for (int s = 0; s < shards.length; s++) {
+                shards[s] = storageMode.convert(sorted.subList(bounds.get(s)[0], bounds.get(s)[1]));
+            }
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(shards.length);
+            for (int s = 0; s < shards.length; s++) {
+                final int shard = s;
+                final int[] range = bounds.get(s);
+                tasks.add(pool.submit(() -> {
+                    shards[shard] = storageMode.convert(sorted.subList(range[0], range[1]));
+                }));
+            }
+            tasks.forEach(ForkJoinTask::join);
+        }
+        return new ShardedOIDStore(storageMode, keys.toArray(new int[0][]), shards);
+    }
+
+    /**
+     * @return                  layout of the shards
+     */
+    public OIDStorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * @return                  number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param shard             shard index
+     * @return                  OIDs of the shard, positioned from {@link #getShardStart(int)} on in this store
+     */
+    public OIDStore getShard(int shard) {
+        return shards[shard];
+    }
+
+    /**
+     * @param shard             shard index, or the shard count for the total size
+     * @return                  position in this store of the first OID of the shard
+     */
+    public int getShardStart(int shard) {
+        return starts[shard];
+    }
+
+    /**
+     * @return                  shard holding the position
+     */
+    private int shardOf(int index) {
+        checkIndex(index);
+        int lo = 0;
+        int hi = shards.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return                  first shard whose key does not sort before the first min(2, len) arcs of the key,
+     *                          considering only the first keyLen arcs of each shard key
+     */
+    private int firstShard(int[] key, int off, int len, int keyLen, boolean pastPrefix) {
+        int lo = 0;
+        int hi = shards.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int[] shardKey = keys[mid];
+            int cmp = OIDComp.compare(shardKey, 0, Math.min(keyLen, shardKey.length), key, off, Math.min(keyLen, len));
+            if (cmp < 0 || (pastPrefix && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return                  shard whose key is exactly the leading arcs of the OID, or -1 if there is none
+     */
+    private int exactShard(int[] oid, int off, int len) {
+        int keyLen = Math.min(2, len);
+        int s = firstShard(oid, off, len, 2, false);
+        if (s < shards.length && keys[s].length == keyLen
+                && OIDComp.compare(keys[s], 0, keyLen, oid, off, keyLen) == 0) {
+            return s;
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return starts[shards.length];
+    }
+
+    @Override
+    public int length(int index) {
+        int s = shardOf(index);
+        return shards[s].length(index - starts[s]);
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        int s = shardOf(index);
+        return shards[s].copyArcs(index - starts[s], dst);
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        int s = shardOf(index);
+        return shards[s].compareAt(index - starts[s], key, off, len);
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        int s = shardOf(index);
+        return shards[s].startsWith(index - starts[s], prefix, off, len);
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public long memoryUsage() {
+        long returnMe = 4L * starts.length + 24L * keys.length;
+        for (OIDStore shard : shards) {
+            returnMe += shard.memoryUsage();
+        }
+        return returnMe;
+    }
+
+    @Override
+    public int lowerBound(int[] key, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int s = exactShard(key, off, len);
+        if (s >= 0) {
+            return starts[s] + shards[s].lowerBound(key, off, len);
+        }
+        return starts[firstShard(key, off, len, 2, false)];
+    }
+
+    @Override
+    public int prefixEnd(int[] prefix, int off, int len) {
+        if (len == 0) {
+            return size();
+        }
+        if (len == 1) {
+            // Every shard starting with the arc, including the single arc OID itself
+            return starts[firstShard(prefix, off, len, 1, true)];
+        }
+        int s = exactShard(prefix, off, len);
+        if (s >= 0) {
+            return starts[s] + shards[s].prefixEnd(prefix, off, len);
+        }
+        return starts[firstShard(prefix, off, len, 2, false)];
+    }
+
+    @Override
+    public int search(int[] key, int off, int len) {
+        int s = len == 0 ? -1 : exactShard(key, off, len);
+        if (s < 0) {
+            return -lowerBound(key, off, len) - 1;
+        }
+        int index = shards[s].search(key, off, len);
+        return index >= 0 ? starts[s] + index : index - starts[s];
+    }
+
+    @Override
+    public boolean containsArcs(int[] oid, int off, int len) {
+        int s = len == 0 ? -1 : exactShard(oid, off, len);
+        return s >= 0 && shards[s].containsArcs(oid, off, len);
+    }
+
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        if (from >= to) {
+            return;
+        }
+        for (int s = shardOf(from); s < shards.length && starts[s] < to; s++) {
+            shards[s].scan(Math.max(from, starts[s]) - starts[s], Math.min(to, starts[s + 1]) - starts[s], consumer);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.dustintbrown.app.util;
+
+/**
+ * {@link OIDStore} that keeps short OIDs as 128-bit keys in sorted primitive arrays and only the rest as arcs.
+ * Each arc of a short OID is encoded in one to five bytes so that the unsigned order of the keys is the order of
+ * {@link OIDComp}; real and generated OIDs mostly fit, and when every key fits in 64 bits the low words are not
+ * kept at all. Exact lookups of short OIDs are a binary search of one or two unsigned compares per step.
+ *
+ * OIDs that need more than 16 bytes, or have a negative arc, go to a {@link PackedOIDStore}. A bitmap marks which
+ * positions belong to it, so both tiers together read as one sorted sequence and bounds add up across them.
+ *
+ * @author  Dustin Brown
+ */
+public final class TieredOIDStore extends OIDStore {
+    /** Largest encoded OID, in bytes, kept as a key */
+    static final int KEY_BYTES = 16;
+    // Smallest arc encoded in 2, 3, 4 and 5 bytes
+    private static final long BASE2 = 0x7F;
+    private static final long BASE3 = BASE2 + (1 << 14);
+    private static final long BASE4 = BASE3 + (1 << 21);
+    private static final long BASE5 = BASE4 + (1 << 28);
+
+    // High and low 64 bits of the key of each short OID, in order; low is null if every key fits in 64 bits
+    private final long[] high;
+    private final long[] low;
+    // OIDs too long for a key
+    private final PackedOIDStore rest;
+    // One bit per position, set where the OID is in rest, and the number of rest OIDs before each word;
+    // both null if rest is empty
+    private final long[] restBits;
+    private final int[] restRanks;
+    private final int maxLength;
+
+    private TieredOIDStore(long[] high, long[] low, PackedOIDStore rest, long[] restBits, int maxLength) {
+        this.high = high;
+        this.low = low;
+        this.rest = rest;
+        this.restBits = restBits;
+        this.maxLength = maxLength;
+        if (restBits == null) {
+            this.restRanks = null;
+        } else {
+            this.restRanks = new int[restBits.length];
+            for (int w = 1; w < restBits.length; w++) {
+                restRanks[w] = restRanks[w - 1] + Long.bitCount(restBits[w - 1]);
+            }
+        }
+    }
+
+    /**
+     * Splits a sorted store into keys and long OIDs in two passes, the first of which only sizes the arrays.
+     *
+     * @param sorted            sorted OIDs in any layout
+     * @return                  store holding the same OIDs
+     */
+    public static TieredOIDStore build(OIDStore sorted) {
+        int n = sorted.size();
+        long[] key = new long[2];
+        // short count, rest count, whether any key needs its low word
+        int[] counts = new int[3];
+        sorted.scan(0, n, (arcs, off, len) -> {
+            int bytes = encode(arcs, off, len, key);
+            if (bytes < 0) {
+                counts[1]++;
+            } else {
+                counts[0]++;
+                if (bytes > 8) {
+                    counts[2] = 1;
+                }
+            }
+        });
+        long[] high = new long[counts[0]];
+        long[] low = counts[2] == 0 ? null : new long[counts[0]];
+        long[] restBits = counts[1] == 0 ? null : new long[(n >>> 6) + 1];
+        PackedOIDStore.Builder rest = new PackedOIDStore.Builder(counts[1]);
+        int[] positions = new int[2];
+        sorted.scan(0, n, (arcs, off, len) -> {
+            int position = positions[0]++;
+            if (encode(arcs, off, len, key) < 0) {
+                restBits[position >>> 6] |= 1L << position;
+                rest.add(arcs, off, len);
+            } else {
+                int s = positions[1]++;
+                high[s] = key[0];
+                if (low != null) {
+                    low[s] = key[1];
+                }
+            }
+        });
+        return new TieredOIDStore(high, low, rest.build(), restBits, sorted.maxLength());
+    }
+
+    /**
+     * Encodes an OID as a 128-bit key whose unsigned order is the order of {@link OIDComp}. Arcs below 127 take
+     * one byte and larger arcs take up to five, with a first byte that grows with the encoded length and is never
+     * 0. The key is padded with zero bytes, so an OID sorts before every OID it is a prefix of.
+     *
+     * @param arcs              array holding the OID
+     * @param off               index of the first arc
+     * @param len               number of arcs
+     * @param dst               receives the high and low 64 bits of the key
+     * @return                  number of key bytes used, or -1 if the OID has a negative arc or needs more than 16
+     */
+    static int encode(int[] arcs, int off, int len, long[] dst) {
+        long hi = 0;
+        long lo = 0;
+        int pos = 0;
+        for (int i = 0; i < len; i++) {
+            long value = arcs[off + i];
+            int bytes;
+            long code;
+            if (value < 0) {
+                return -1;
+            } else if (value < BASE2) {
+                bytes = 1;
+                code = value + 1;
+            } else if (value < BASE3) {
+                bytes = 2;
+                code = 0x8000L | (value - BASE2);
+            } else if (value < BASE4) {
+                bytes = 3;
+                code = 0xC00000L | (value - BASE3);
+            } else if (value < BASE5) {
+                bytes = 4;
+                code = 0xE0000000L | (value - BASE4);
+            } else {
+                bytes = 5;
+                code = 0xF000000000L | (value - BASE5);
+            }
+            if (pos + bytes > KEY_BYTES) {
+                return -1;
+            }
+            for (int b = bytes - 1; b >= 0; b--, pos++) {
+                long next = (code >>> (8 * b)) & 0xFF;
+                if (pos < 8) {
+                    hi |= next << (56 - 8 * pos);
+                } else {
+                    lo |= next << (120 - 8 * pos);
+                }
+            }
+        }
+        dst[0] = hi;
+        dst[1] = lo;
+        return pos;
+    }
+
+    /**
+     * @param dst               receives the arcs, or null to only count them
+     * @return                  number of arcs in the key
+     */
+    static int decode(long hi, long lo, int[] dst) {
+        int returnMe = 0;
+        for (int pos = 0; pos < KEY_BYTES; ) {
+            int first = byteAt(hi, lo, pos);
+            int bytes;
+            long value;
+            long base;
+            if (first == 0) {
+                break;
+            } else if (first < 0x80) {
+                bytes = 1;
+                value = first;
+                base = -1;
+            } else if (first < 0xC0) {
+                bytes = 2;
+                value = first & 0x3F;
+                base = BASE2;
+            } else if (first < 0xE0) {
+                bytes = 3;
+                value = first & 0x1F;
+                base = BASE3;
+            } else if (first < 0xF0) {
+                bytes = 4;
+                value = first & 0x0F;
+                base = BASE4;
+            } else {
+                bytes = 5;
+                value = 0;
+                base = BASE5;
+            }
+            for (int b = 1; b < bytes; b++) {
+                value = (value << 8) | byteAt(hi, lo, pos + b);
+            }
+            if (dst != null) {
+                dst[returnMe] = (int) (value + base);
+            }
+            returnMe++;
+            pos += bytes;
+        }
+        return returnMe;
+    }
+
+    private static int byteAt(long hi, long lo, int pos) {
+        return (int) ((pos < 8 ? hi >>> (56 - 8 * pos) : lo >>> (120 - 8 * pos)) & 0xFF);
+    }
+
+    /**
+     * @return                  number of OIDs held as keys
+     */
+    public int getKeyCount() {
+        return high.length;
+    }
+
+    /**
+     * @return                  true if keys take two 64-bit words each rather than one
+     */
+    public boolean isWideKeys() {
+        return low != null;
+    }
+
+    /**
+     * @return                  OIDs too long to be held as keys, in order
+     */
+    public PackedOIDStore getRest() {
+        return rest;
+    }
+
+    private long lowAt(int s) {
+        return low == null ? 0 : low[s];
+    }
+
+    private boolean inRest(int index) {
+        return restBits != null && (restBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return                  number of positions before the index held in rest
+     */
+    private int restBefore(int index) {
+        if (restBits == null) {
+            return 0;
+        }
+        int word = index >>> 6;
+        return restRanks[word] + Long.bitCount(restBits[word] & ((1L << index) - 1));
+    }
+
+    private int compareKey(int s, long hi, long lo) {
+        int returnMe = Long.compareUnsigned(high[s], hi);
+        return returnMe != 0 ? returnMe : Long.compareUnsigned(lowAt(s), lo);
+    }
+
+    private int compareShort(int s, int[] key, int off, int len) {
+        long[] encoded = new long[2];
+        if (encode(key, off, len, encoded) >= 0) {
+            return compareKey(s, encoded[0], encoded[1]);
+        }
+        int[] arcs = new int[KEY_BYTES];
+        return OIDComp.compare(arcs, 0, decode(high[s], lowAt(s), arcs), key, off, len);
+    }
+
+    /**
+     * @return                  first key not below the given key, or above it if after is set
+     */
+    private int keyBound(long hi, long lo, boolean after) {
+        int left = 0;
+        int right = high.length;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            int cmp = compareKey(mid, hi, lo);
+            if (cmp < 0 || (after && cmp == 0)) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    private int keyLowerBound(int[] key, int off, int len) {
+        long[] encoded = new long[2];
+        if (encode(key, off, len, encoded) >= 0) {
+            return keyBound(encoded[0], encoded[1], false);
+        }
+        int left = 0;
+        int right = high.length;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (compareShort(mid, key, off, len) < 0) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    private int keyPrefixEnd(int[] prefix, int off, int len) {
+        long[] encoded = new long[2];
+        int bytes = encode(prefix, off, len, encoded);
+        if (bytes < 0) {
+            // A key starting with the prefix would need at least as many bytes, so none does
+            return keyLowerBound(prefix, off, len);
+        }
+        // Keys starting with the prefix share its bytes, so they sort no higher than the prefix padded with ones
+        long hi = bytes >= 8 ? encoded[0] : encoded[0] | (-1L >>> (8 * bytes));
+        long lo = bytes >= KEY_BYTES ? encoded[1] : encoded[1] | (-1L >>> (8 * Math.max(0, bytes - 8)));
+        return keyBound(hi, lo, true);
+    }
+
+    @Override
+    public int size() {
+        return high.length + rest.size();
+    }
+
+    @Override
+    public int length(int index) {
+        checkIndex(index);
+        int r = restBefore(index);
+        if (inRest(index)) {
+            return rest.length(r);
+        }
+        return decode(high[index - r], lowAt(index - r), null);
+    }
+
+    @Override
+    public int copyArcs(int index, int[] dst) {
+        checkIndex(index);
+        int r = restBefore(index);
+        if (inRest(index)) {
+            return rest.copyArcs(r, dst);
+        }
+        return decode(high[index - r], lowAt(index - r), dst);
+    }
+
+    @Override
+    public int compareAt(int index, int[] key, int off, int len) {
+        checkIndex(index);
+        int r = restBefore(index);
+        if (inRest(index)) {
+            return rest.compareAt(r, key, off, len);
+        }
+        return compareShort(index - r, key, off, len);
+    }
+
+    @Override
+    public boolean startsWith(int index, int[] prefix, int off, int len) {
+        checkIndex(index);
+        int r = restBefore(index);
+        if (inRest(index)) {
+            return rest.startsWith(r, prefix, off, len);
+        }
+        int[] arcs = new int[KEY_BYTES];
+        int count = decode(high[index - r], lowAt(index - r), arcs);
+        return len <= count && OIDComp.compare(arcs, 0, len, prefix, off, len) == 0;
+    }
+
+    @Override
+    public int maxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public long memoryUsage() {
+        long returnMe = 8L * high.length + rest.memoryUsage();
+        if (low != null) {
+            returnMe += 8L * low.length;
+        }
+        if (restBits != null) {
+            returnMe += 8L * restBits.length + 4L * restRanks.length;
+        }
+        return returnMe;
+    }
+
+    @Override
+    public int search(int[] key, int off, int len) {
+        long[] encoded = new long[2];
+        if (encode(key, off, len, encoded) < 0) {
+            int index = rest.search(key, off, len);
+            int before = keyLowerBound(key, off, len);
+            return index >= 0 ? index + before : index - before;
+        }
+        int s = keyBound(encoded[0], encoded[1], false);
+        int before = rest.size() == 0 ? 0 : rest.lowerBound(key, off, len);
+        if (s < high.length && compareKey(s, encoded[0], encoded[1]) == 0) {
+            return s + before;
+        }
+        return -(s + before) - 1;
+    }
+
+    @Override
+    public boolean containsArcs(int[] oid, int off, int len) {
+        long[] encoded = new long[2];
+        if (encode(oid, off, len, encoded) < 0) {
+            return rest.containsArcs(oid, off, len);
+        }
+        int s = keyBound(encoded[0], encoded[1], false);
+        return s < high.length && compareKey(s, encoded[0], encoded[1]) == 0;
+    }
+
+    @Override
+    public int lowerBound(int[] key, int off, int len) {
+        return keyLowerBound(key, off, len) + (rest.size() == 0 ? 0 : rest.lowerBound(key, off, len));
+    }
+
+    @Override
+    public int prefixEnd(int[] prefix, int off, int len) {
+        return keyPrefixEnd(prefix, off, len) + (rest.size() == 0 ? 0 : rest.prefixEnd(prefix, off, len));
+    }
+
+    @Override
+    public <E extends Exception> void scan(int from, int to, ArcConsumer<E> consumer) throws E {
+        int[] arcs = new int[KEY_BYTES];
+        int r = restBefore(from);
+        for (int index = from; index < to; ) {
+            if (inRest(index)) {
+                // Hand runs of long OIDs to rest in one call
+                int end = index + 1;
+                while (end < to && inRest(end)) {
+                    end++;
+                }
+                rest.scan(r, r + end - index, consumer);
+                r += end - index;
+                index = end;
+            } else {
+                int s = index - r;
+                consumer.accept(arcs, 0, decode(high[s], lowAt(s), arcs));
+                index++;
+            }
+        }
+    }
+}
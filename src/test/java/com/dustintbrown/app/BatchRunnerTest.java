@@ -0,0 +1,72 @@
+package com.dustintbrown.app;
+
+import com.dustintbrown.app.util.OIDService;
+import com.dustintbrown.app.util.OIDTextWriter;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public class BatchRunnerTest extends TestCase {
+
+    public void testRunsScript() throws Exception {
+        Path dir = Files.createTempDirectory("batch");
+        Path oids = dir.resolve("oids.txt");
+        Path other = dir.resolve("other.txt");
+        try {
+            Files.write(oids, Arrays.asList("1.3.6.1", "1.3.6.2", "1.3.7", "2.5"));
+            Files.write(other, Arrays.asList("1.3.6.1", "1.3.8", "2.5"));
+            String script = "# comment\n"
+                    + "load " + oids + "\n"
+                    + "exists 1.3.6.2\n"
+                    + "exists 1.3.6\n"
+                    + "\n"
+                    + "prefix-count 1.3\n"
+                    + "prefix 1.3.6 1\n"
+                    + "exists not.an.oid\n"
+                    + "frobnicate\n"
+                    + "diff " + oids + " " + other + "\n"
+                    + "quit\n"
+                    + "exists 2.5\n";
+            BatchRunner batch = new BatchRunner(new OIDService());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            long failures;
+            try (OIDTextWriter out = new OIDTextWriter(bytes)) {
+                failures = batch.run(new BufferedReader(new StringReader(script)), out);
+            }
+            assertEquals(2, failures);
+            assertEquals(2, batch.getFailures());
+            String[] lines = new String(bytes.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+            assertEquals("Loaded 4 OIDs from 4 lines.", lines[0]);
+            assertEquals("true", lines[1]);
+            assertEquals("false", lines[2]);
+            assertEquals("3", lines[3]);
+            assertEquals("1.3.6.1", lines[4]);
+            assertTrue(lines[5].startsWith("error: "));
+            assertEquals("error: Unknown command: frobnicate", lines[6]);
+            assertEquals("- 1.3.6.2", lines[7]);
+            assertEquals("- 1.3.7", lines[8]);
+            assertEquals("+ 1.3.8", lines[9]);
+            assertEquals("1 added, 2 removed, 2 unchanged", lines[10]);
+            assertEquals(11, lines.length);
+
+            // Failed and unknown commands are counted as errors rather than timed
+            String report = batch.report();
+            assertTrue(report, report.matches("(?s).*exists +2 commands.*"));
+            assertTrue(report, report.matches("(?s).*errors +2 commands.*"));
+            assertFalse(report, report.contains("quit"));
+            assertFalse(report, report.contains("frobnicate"));
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(f -> f.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.dustintbrown.app;
+
+import com.dustintbrown.app.util.OIDServer;
+import com.dustintbrown.app.util.OIDService;
+import junit.framework.TestCase;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class OIDLoadClientTest extends TestCase {
+
+    public void testBatches() {
+        byte[] text = "1.1\n1.2\n1.3\n1.4\n1.5".getBytes(StandardCharsets.US_ASCII);
+        List<byte[]> batches = OIDLoadClient.batches(text, 2);
+        assertEquals(3, batches.size());
+        assertEquals("1.1\n1.2\n", new String(batches.get(0), StandardCharsets.US_ASCII));
+        assertEquals("1.5", new String(batches.get(2), StandardCharsets.US_ASCII));
+    }
+
+    public void testRunAgainstServer() throws Exception {
+        OIDService service = new OIDService();
+        service.populateWithRandomOIDs(2000);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < service.getOids().size(); i++) {
+            text.append(OIDService.parseOID(service.getOids().get(i))).append('\n');
+        }
+        try (OIDServer server = new OIDServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, 8)) {
+            server.start();
+            URI endpoint = URI.create("http://localhost:" + server.getPort() + "/exists");
+            List<byte[]> batches = OIDLoadClient.batches(text.toString().getBytes(StandardCharsets.US_ASCII), 500);
+            OIDLoadClient.Report report = OIDLoadClient.run(endpoint, batches, 2, 500);
+            assertTrue(report.getRequests() > 0);
+            assertEquals(0, report.getErrors());
+            assertEquals(report.getRequests() * 500, report.getOids());
+            assertTrue(report.percentile(0.99) >= report.percentile(0.5));
+            assertTrue(report.percentile(1.0) >= report.percentile(0.99));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class BlockOIDStoreTest extends TestCase {
+    private PackedOIDStore packed;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        SplittableRandom random = new SplittableRandom(7);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 20000; i++) {
+            int[] oid = new int[random.nextInt(1, 9)];
+            for (int j = 0; j < oid.length; j++) {
+                // Large arcs take several varint bytes
+                oid[j] = random.nextInt(5) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(j < 2 ? 3 : 20);
+            }
+            builder.add(oid);
+        }
+        packed = builder.build();
+    }
+
+    public void testHeapBuildMatchesPackedStore() {
+        for (int blockSize : new int[]{1, 7, BlockOIDStore.DEFAULT_BLOCK_SIZE}) {
+            BlockOIDStore heap = BlockOIDStore.build(packed, blockSize);
+            assertEquals(packed, heap);
+            assertEquals(packed.maxLength(), heap.maxLength());
+            SplittableRandom random = new SplittableRandom(blockSize);
+            for (int i = 0; i < 2000; i++) {
+                int[] key = packed.get(random.nextInt(packed.size()));
+                key = Arrays.copyOf(key, random.nextInt(1, key.length + 1));
+                assertEquals(packed.search(key, 0, key.length), heap.search(key, 0, key.length));
+                assertEquals(packed.lowerBound(key, 0, key.length), heap.lowerBound(key, 0, key.length));
+                assertEquals(packed.prefixEnd(key, 0, key.length), heap.prefixEnd(key, 0, key.length));
+                int index = random.nextInt(packed.size());
+                assertEquals(Integer.signum(packed.compareAt(index, key, 0, key.length)),
+                        Integer.signum(heap.compareAt(index, key, 0, key.length)));
+                assertEquals(packed.startsWith(index, key, 0, key.length), heap.startsWith(index, key, 0, key.length));
+            }
+        }
+    }
+
+    public void testScanAcrossBlocks() {
+        BlockOIDStore heap = BlockOIDStore.build(packed, 10);
+        int[][] ranges = {{0, packed.size()}, {9, 11}, {25, 1234}, {packed.size() - 1, packed.size()}};
+        for (int[] range : ranges) {
+            List<int[]> seen = new ArrayList<>();
+            heap.scan(range[0], range[1], (arcs, off, len) -> seen.add(Arrays.copyOfRange(arcs, off, off + len)));
+            assertEquals(range[1] - range[0], seen.size());
+            for (int i = 0; i < seen.size(); i++) {
+                assertTrue(Arrays.equals(packed.get(range[0] + i), seen.get(i)));
+            }
+        }
+    }
+
+    public void testUsesLessMemoryThanPacked() {
+        BlockOIDStore heap = BlockOIDStore.build(packed, BlockOIDStore.DEFAULT_BLOCK_SIZE);
+        assertTrue(heap.memoryUsage() * 2 < packed.memoryUsage());
+    }
+
+    public void testEmpty() {
+        BlockOIDStore empty = BlockOIDStore.build(PackedOIDStore.EMPTY, 8);
+        assertEquals(0, empty.size());
+        assertFalse(empty.containsArcs(new int[]{1}, 0, 1));
+        assertEquals(0, empty.prefixEnd(new int[]{1}, 0, 1));
+    }
+
+    public void testRejectsBadBlockSize() {
+        try {
+            BlockOIDStore.build(packed, 0);
+            fail("Expected a block size of 0 to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testServiceBlockMode() {
+        OIDService service = new OIDService();
+        service.setStorageMode(OIDStorageMode.BLOCK);
+        service.populateWithOIDs(Arrays.asList("1.3.6.1.4.1.2", "1.3.6.1.4.1.1", "1.3.6.1.2"));
+        assertTrue(service.getOids() instanceof BlockOIDStore);
+        assertTrue(service.exists("1.3.6.1.4.1.2"));
+        assertFalse(service.exists("1.3.6.1.4"));
+        assertEquals(2, service.countOidsWithPrefix("1.3.6.1.4"));
+    }
+}
@@ -0,0 +1,173 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+public class DeltaOIDStoreTest extends TestCase {
+
+    private static OIDDelta delta(String text) throws Exception {
+        return OIDDelta.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Random changes to the expected set, half of them touching OIDs that are already there.
+     */
+    private static String randomDelta(SplittableRandom random, TreeSet<String> expected, int changes) {
+        StringBuilder text = new StringBuilder();
+        List<String> present = new ArrayList<>(expected);
+        for (int i = 0; i < changes; i++) {
+            String oid = random.nextBoolean() && !present.isEmpty() ? present.get(random.nextInt(present.size()))
+                    : OIDService.parseOID(TestOIDs.randomOID(random, 6, 3, 12));
+            if (random.nextInt(3) == 0) {
+                text.append("- ").append(oid).append('\n');
+                expected.remove(oid);
+            } else {
+                text.append("+ ").append(oid).append('\n');
+                expected.add(oid);
+            }
+        }
+        return text.toString();
+    }
+
+    private static void assertSameStore(OIDStore expected, OIDStore actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.size(); i++) {
+            int[] oid = expected.get(i);
+            assertEquals(expected.length(i), actual.length(i));
+            assertEquals(0, actual.compareAt(i, oid, 0, oid.length));
+            assertEquals(i, actual.search(oid, 0, oid.length));
+            assertTrue(actual.containsArcs(oid, 0, oid.length));
+        }
+        SplittableRandom random = new SplittableRandom(9);
+        for (int i = 0; i < 2000; i++) {
+            int[] key = TestOIDs.randomOID(random, 6, 3, 12);
+            assertEquals(expected.search(key, 0, key.length), actual.search(key, 0, key.length));
+            assertEquals(expected.lowerBound(key, 0, key.length), actual.lowerBound(key, 0, key.length));
+            assertEquals(expected.prefixEnd(key, 0, key.length), actual.prefixEnd(key, 0, key.length));
+            int from = random.nextInt(expected.size() + 1);
+            int to = from + random.nextInt(expected.size() - from + 1);
+            assertEquals(expected.subList(from, to), actual.subList(from, to));
+            PackedOIDStore.Builder scanned = new PackedOIDStore.Builder();
+            actual.scan(from, to, scanned::add);
+            assertEquals(to - from, scanned.size());
+            assertEquals(expected.subList(from, to), scanned.build());
+        }
+    }
+
+    private static PackedOIDStore build(TreeSet<String> oids) {
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        oids.forEach(oid -> builder.add(OIDService.parseOIDString(oid)));
+        return builder.build();
+    }
+
+    public void testReadKeepsLastChange() throws Exception {
+        OIDDelta delta = delta("+ 1.2.3\n- 1.2.4\n 1.2.5\n\n+ 1.2.4\n- 1.2.3\n+ 1..2\n-1.2\n- 1.2.6\n");
+        assertEquals(9, delta.getLines());
+        assertEquals(2, delta.getRejected());
+        assertEquals(Arrays.asList("1.2.4"), toStrings(delta.getAdded()));
+        assertEquals(Arrays.asList("1.2.3", "1.2.6"), toStrings(delta.getRemoved()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        delta.writeTo(out);
+        assertEquals("- 1.2.3\n- 1.2.6\n+ 1.2.4\n", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    private static List<String> toStrings(OIDStore store) {
+        List<String> returnMe = new ArrayList<>();
+        store.forEach(oid -> returnMe.add(OIDService.parseOID(oid)));
+        return returnMe;
+    }
+
+    public void testChainedDeltasMatchRebuiltStore() throws Exception {
+        SplittableRandom random = new SplittableRandom(5);
+        TreeSet<String> expected = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            expected.add(OIDService.parseOID(TestOIDs.randomOID(random, 6, 3, 12)));
+        }
+        PackedOIDStore base = build(expected);
+        OIDStore[] layouts = {base, OIDTrie.build(base)};
+        for (OIDStore layout : layouts) {
+            TreeSet<String> current = new TreeSet<>(expected);
+            OIDStore store = layout;
+            for (int round = 0; round < 4; round++) {
+                store = DeltaOIDStore.apply(store, delta(randomDelta(random, current, 400)));
+                assertSame(layout, ((DeltaOIDStore) store).getBase());
+                assertSameStore(build(current), store);
+            }
+        }
+    }
+
+    public void testReaddingRemovedOid() throws Exception {
+        PackedOIDStore base = build(new TreeSet<>(Arrays.asList("1.1", "1.2", "1.3")));
+        DeltaOIDStore removed = DeltaOIDStore.apply(base, delta("- 1.2\n- 1.9\n+ 1.3\n"));
+        assertEquals(Arrays.asList("1.1", "1.3"), toStrings(removed));
+        assertEquals(1, removed.getRemovedCount());
+        assertEquals(0, removed.getAddedCount());
+
+        DeltaOIDStore restored = DeltaOIDStore.apply(removed, delta("+ 1.2\n+ 1.0\n- 1.3\n"));
+        assertEquals(Arrays.asList("1.0", "1.1", "1.2"), toStrings(restored));
+        assertEquals(1, restored.getRemovedCount());
+        assertEquals(1, restored.getAddedCount());
+        assertEquals(Arrays.asList("1.1", "1.2"), toStrings(DeltaOIDStore.apply(restored, delta("- 1.0\n"))));
+    }
+
+    public void testServiceLogsDeltasAndReplaysThem() throws Exception {
+        Path dir = Files.createTempDirectory("oid-delta");
+        String snapshot = dir.resolve("oids.snap").toString();
+        File log = new File(snapshot + OIDService.DELTA_LOG_SUFFIX);
+        Path changes = dir.resolve("changes.txt");
+        try {
+            OIDService service = new OIDService();
+            service.setFilterFalsePositiveRate(0.01);
+            service.populateWithOIDs(Arrays.asList("1.1", "1.2", "1.3"));
+            Files.write(changes, "+ 1.4\n- 1.1\n".getBytes(StandardCharsets.US_ASCII));
+            service.applyDelta(changes.toString());
+            // Nothing to log against until a snapshot exists
+            assertFalse(log.exists());
+            assertTrue(service.exists("1.4"));
+            assertFalse(service.exists("1.1"));
+            assertEquals(0, service.getFilter().getFalsePositives());
+
+            service.saveSnapshot(snapshot);
+            assertFalse(log.exists());
+            Files.write(changes, "+ 1.5\n- 1.2\n 1.3\n".getBytes(StandardCharsets.US_ASCII));
+            OIDDelta applied = service.applyDelta(changes.toString());
+            assertEquals("+1 -1", applied.toString());
+            assertTrue(log.exists());
+            assertTrue(service.exists("1.5"));
+            assertFalse(service.exists("1.2"));
+            assertEquals(Arrays.asList("1.3", "1.4", "1.5"), toStrings(service.getOids()));
+
+            OIDService restarted = new OIDService();
+            restarted.openSnapshot(snapshot);
+            assertEquals(Arrays.asList("1.3", "1.4", "1.5"), toStrings(restarted.getOids()));
+            Files.write(changes, "+ 1.2\n".getBytes(StandardCharsets.US_ASCII));
+            restarted.applyDelta(changes.toString());
+
+            OIDService again = new OIDService();
+            again.openSnapshot(snapshot);
+            assertEquals(Arrays.asList("1.2", "1.3", "1.4", "1.5"), toStrings(again.getOids()));
+
+            // A new snapshot holds the changes, so its log starts over
+            again.saveSnapshot(snapshot + ".2");
+            assertFalse(new File(snapshot + ".2" + OIDService.DELTA_LOG_SUFFIX).exists());
+        } finally {
+            for (File file : dir.toFile().listFiles()) {
+                file.delete();
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+public class DiskOIDStoreTest extends TestCase {
+
+    public void testMatchesLoadedStore() throws Exception {
+        SplittableRandom random = new SplittableRandom(5);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 20000; i++) {
+            builder.add(TestOIDs.randomOID(random, 7, 3, 12));
+        }
+        PackedOIDStore packed = builder.build();
+        StringBuilder text = new StringBuilder("\n");
+        for (int i = 0; i < packed.size(); i++) {
+            text.append(OIDService.parseOID(packed.get(i))).append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 1000 == 0) {
+                text.append("not an oid\n");
+            }
+        }
+        Path path = File.createTempFile("disk", ".txt").toPath();
+        try {
+            Files.write(path, text.toString().getBytes(StandardCharsets.US_ASCII));
+            try (DiskOIDStore disk = DiskOIDStore.open(path, 7, 16)) {
+                assertEquals(packed.size(), disk.size());
+                assertEquals(packed.maxLength(), disk.maxLength());
+                assertEquals(1 + (packed.size() + 999) / 1000, disk.getRejected());
+                assertEquals(packed, disk);
+                for (int i = 0; i < 3000; i++) {
+                    int[] key = TestOIDs.randomOID(random, 7, 3, 12);
+                    int len = random.nextInt(key.length + 1);
+                    assertEquals(packed.search(key, 0, len), disk.search(key, 0, len));
+                    assertEquals(packed.lowerBound(key, 0, len), disk.lowerBound(key, 0, len));
+                    assertEquals(packed.prefixEnd(key, 0, len), disk.prefixEnd(key, 0, len));
+                    int from = random.nextInt(packed.size() + 1);
+                    int to = from + random.nextInt(Math.min(100, packed.size() - from) + 1);
+                    PackedOIDStore.Builder scanned = new PackedOIDStore.Builder();
+                    disk.scan(from, to, scanned::add);
+                    assertEquals(packed.subList(from, to), scanned.build());
+                }
+                assertTrue(disk.getCacheHits() > 0);
+                assertTrue(disk.getCacheMisses() > 0);
+                assertTrue(disk.memoryUsage() < packed.memoryUsage());
+            }
+
+            OIDService service = new OIDService();
+            service.openSortedFile(path.toString(), 64, 4);
+            assertTrue(service.getOids() instanceof DiskOIDStore);
+            assertTrue(service.exists(OIDService.parseOID(packed.get(1234))));
+            assertEquals(packed.prefixRange(new int[]{1, 2}).size(), service.countOidsWithPrefix("1.2"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    public void testRejectsUnsortedFile() throws Exception {
+        Path path = File.createTempFile("disk", ".txt").toPath();
+        try {
+            Files.write(path, "1.2\n1.3\n1.3\n".getBytes(StandardCharsets.US_ASCII));
+            try {
+                DiskOIDStore.open(path).close();
+                fail("Expected a duplicate to be rejected");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().endsWith("line 3"));
+            }
+            Files.write(path, new byte[0]);
+            try (DiskOIDStore disk = DiskOIDStore.open(path)) {
+                assertEquals(0, disk.size());
+                assertEquals(0, disk.lowerBound(new int[]{1}, 0, 1));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
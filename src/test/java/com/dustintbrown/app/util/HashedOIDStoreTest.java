@@ -0,0 +1,76 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+public class HashedOIDStoreTest extends TestCase {
+
+    public void testMatchesSortedLookups() {
+        SplittableRandom random = new SplittableRandom(23);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 200000; i++) {
+            builder.add(TestOIDs.randomOID(random, 7, 3, 20));
+        }
+        PackedOIDStore packed = builder.build();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        HashedOIDStore hashed = HashedOIDStore.build(packed, pool);
+        pool.shutdown();
+        assertTrue(hashed.hasHashIndex());
+        assertSame(hashed, HashedOIDStore.build(hashed, null));
+        assertEquals(HashedOIDStore.indexBytes(packed.size()), hashed.getIndexBytes());
+        assertEquals(packed, hashed);
+        for (int i = 0; i < packed.size(); i += 7) {
+            int[] oid = packed.get(i);
+            assertEquals(i, hashed.search(oid, 0, oid.length));
+        }
+        for (int i = 0; i < 20000; i++) {
+            int[] key = TestOIDs.randomOID(random, 7, 3, 20);
+            assertEquals(packed.search(key, 0, key.length), hashed.search(key, 0, key.length));
+            assertEquals(packed.containsArcs(key, 0, key.length), hashed.containsArcs(key, 0, key.length));
+        }
+        assertFalse(HashedOIDStore.build(PackedOIDStore.EMPTY, null).containsArcs(new int[]{1}, 0, 1));
+    }
+
+    public void testServiceLookupModes() throws Exception {
+        OIDService service = new OIDService();
+        service.setLookupMode(OIDLookupMode.HASHED);
+        service.populateWithOIDs(Arrays.asList("1.3.6.1", "1.3.6.2", "1.3.7", "2.5"));
+        assertTrue(service.getOids() instanceof HashedOIDStore);
+        assertTrue(service.exists("1.3.6.2"));
+        assertFalse(service.exists("1.3.6"));
+        assertEquals(3, service.countOidsWithPrefix("1.3"));
+
+        // Batch lookups probe the index line by line
+        OIDMembership.Result result = service.existsAll(new ByteArrayInputStream("2.5\nx\n1.3.7\n1.3.8\n2.5\n".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("{0, 2, 4}", result.getHits().toString());
+        assertEquals("{1}", result.getMalformed().toString());
+
+        // Deltas overlay the hashed store and keep using its index
+        service.applyDelta(OIDDelta.read(new ByteArrayInputStream("- 1.3.6.1\n+ 1.4\n".getBytes(StandardCharsets.US_ASCII))));
+        assertTrue(service.getOids() instanceof DeltaOIDStore);
+        assertTrue(service.getOids().hasHashIndex());
+        assertFalse(service.exists("1.3.6.1"));
+        assertTrue(service.exists("1.4"));
+        assertTrue(service.exists("1.3.7"));
+        assertFalse(service.exists("1.3.9"));
+
+        service.setLookupMode(OIDLookupMode.SORTED);
+        assertTrue(service.getOids() instanceof PackedOIDStore);
+        assertEquals(4, service.getOids().size());
+
+        service.setHashMemoryBudget(0);
+        service.setLookupMode(OIDLookupMode.AUTO);
+        assertFalse(service.getOids().hasHashIndex());
+        service.setHashMemoryBudget(1 << 20);
+        service.setLookupMode(OIDLookupMode.AUTO);
+        assertTrue(service.getOids().hasHashIndex());
+        service.setStorageMode(OIDStorageMode.TRIE);
+        assertTrue(((HashedOIDStore) service.getOids()).getBase() instanceof OIDTrie);
+        assertTrue(service.exists("1.4"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.util.SplittableRandom;
+
+public class NarrowIntArrayTest extends TestCase {
+
+    public void testEveryWidthReadsBack() {
+        SplittableRandom random = new SplittableRandom(5);
+        int[] ranges = {1, 200, 60000, 1 << 23, Integer.MAX_VALUE};
+        int[] values = new int[32 * ranges.length * 3 + 7];
+        for (int i = 0; i < values.length; i++) {
+            int block = i / 32;
+            values[i] = block % 3 == 0 ? 42 : random.nextInt(ranges[block % ranges.length]) - 1000;
+        }
+        values[values.length - 1] = Integer.MIN_VALUE;
+        values[values.length - 2] = Integer.MAX_VALUE;
+
+        NarrowIntArray narrow = new NarrowIntArray(values, values.length);
+        assertEquals(values.length, narrow.length());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], narrow.get(i));
+        }
+    }
+
+    public void testCloseValuesTakeOneBytePerValue() {
+        int[] values = new int[3200];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000000 + i * 3;
+        }
+        NarrowIntArray narrow = new NarrowIntArray(values, values.length);
+        assertEquals(values[1234], narrow.get(1234));
+        assertTrue(narrow.memoryUsage() < 2L * values.length);
+    }
+
+    public void testEmpty() {
+        assertEquals(0, new NarrowIntArray(new int[0], 0).memoryUsage());
+    }
+}
@@ -0,0 +1,74 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class OIDBloomFilterTest extends TestCase {
+
+    public void testNoFalseNegativesAndTargetRate() {
+        PackedOIDStore store = new OIDGenerator(5).generate(100000);
+        OIDBloomFilter filter = OIDBloomFilter.build(store, 0.01);
+        for (int i = 0; i < store.size(); i++) {
+            int[] oid = store.get(i);
+            assertTrue(filter.mightContain(oid, 0, oid.length));
+        }
+
+        OIDGenerator generator = new OIDGenerator(6);
+        int absent = 0;
+        int passed = 0;
+        while (absent < 100000) {
+            int[] oid = generator.next();
+            if (!store.containsArcs(oid, 0, oid.length)) {
+                absent++;
+                passed += filter.mightContain(oid, 0, oid.length) ? 1 : 0;
+            }
+        }
+        double rate = (double) passed / absent;
+        assertTrue("false positive rate " + rate, rate < 0.02);
+        assertEquals(store.size() + absent, filter.getQueries());
+        assertEquals(absent - passed, filter.getRejected());
+        // about 1.2 bytes per OID at 1%
+        assertTrue(filter.memoryUsage() < 2 * store.size());
+    }
+
+    public void testHashIgnoresPlacement() {
+        int[] a = {1, 3, 6, 1};
+        int[] b = {9, 9, 1, 3, 6, 1, 9};
+        assertEquals(OIDHash.hash(a, 0, 4), OIDHash.hash(b, 2, 4));
+        assertTrue(OIDHash.hash(a, 0, 4) != OIDHash.hash(a, 0, 3));
+        assertTrue(OIDHash.hash(new int[]{1, 3}, 0, 2) != OIDHash.hash(new int[]{3, 1}, 0, 2));
+    }
+
+    public void testServiceUsesFilter() {
+        OIDService service = new OIDService();
+        service.setFilterFalsePositiveRate(0.001);
+        List<String> oids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            oids.add("1.3.6." + i);
+        }
+        service.populateWithOIDs(oids);
+        OIDBloomFilter filter = service.getFilter();
+        assertNotNull(filter);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(i < 5000, service.exists("1.3.6." + i));
+        }
+        assertEquals(10000, filter.getQueries());
+        assertEquals(5000, filter.getRejected() + filter.getFalsePositives());
+        assertTrue(filter.getRejectRate() > 0.45);
+
+        // Each load gets a filter of its own
+        service.populateWithOIDs(Arrays.asList("2.5.4.3"));
+        assertNotSame(filter, service.getFilter());
+        assertTrue(service.exists("2.5.4.3"));
+        assertFalse(service.exists("1.3.6.1"));
+
+        service.setStorageMode(OIDStorageMode.TRIE);
+        assertTrue(service.exists("2.5.4.3"));
+        service.setFilterFalsePositiveRate(0);
+        assertNull(service.getFilter());
+        assertTrue(service.exists("2.5.4.3"));
+    }
+}
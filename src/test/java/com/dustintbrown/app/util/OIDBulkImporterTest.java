@@ -0,0 +1,186 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+public class OIDBulkImporterTest extends TestCase {
+    private File file;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("oids", ".txt");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testImportCountsRejectedLines() throws Exception {
+        String content = "1.3.6.1.4.1\r\n"
+                + "0.9\n"
+                + "\n"
+                + "1..3\n"
+                + "1.3.x\n"
+                + "4294967296.1\n"
+                + "2.0.2147483647\n"
+                + "1.3.6.1.4.1\n"
+                + "2.5";
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        OIDBulkImporter.Result result = new OIDBulkImporter().importFile(file.getPath());
+
+        assertEquals(9, result.getLines());
+        assertEquals(4, result.getRejected());
+        assertEquals(4, result.getStore().size());
+        assertTrue(result.getStore().contains(new int[]{2, 0, Integer.MAX_VALUE}));
+        assertTrue(result.getStore().contains(new int[]{2, 5}));
+    }
+
+    public void testSmallChunksMatchSequentialBuild() throws Exception {
+        SplittableRandom random = new SplittableRandom(7);
+        StringBuilder content = new StringBuilder();
+        PackedOIDStore.Builder expected = new PackedOIDStore.Builder();
+        for (int i = 0; i < 50000; i++) {
+            int[] oid = new int[random.nextInt(2, 8)];
+            for (int j = 0; j < oid.length; j++) {
+                oid[j] = random.nextInt(j < 2 ? 4 : 300);
+            }
+            expected.add(oid);
+            content.append(OIDService.parseOID(oid)).append('\n');
+        }
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            OIDBulkImporter.Result result = new OIDBulkImporter(pool, 16 * 1024).importFile(file.getPath());
+            assertEquals(50000, result.getLines());
+            assertEquals(0, result.getRejected());
+            assertEquals(expected.build(), result.getStore());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testGzipMatchesPlainImport() throws Exception {
+        SplittableRandom random = new SplittableRandom(11);
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (int i = 0; i < 400000; i++) {
+            if (i % 1000 == 0) {
+                text.writeBytes("not an oid\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            int[] oid = new int[random.nextInt(2, 8)];
+            for (int j = 0; j < oid.length; j++) {
+                oid[j] = random.nextInt(j < 2 ? 4 : 300);
+            }
+            text.writeBytes((OIDService.parseOID(oid) + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        // A line that looks like a member header inside a stored block, and a last line without a newline
+        text.writeBytes(new byte[]{0x1f, (byte) 0x8b, 8, 0, '\n'});
+        text.writeBytes("2.5".getBytes(StandardCharsets.US_ASCII));
+        byte[] content = text.toByteArray();
+        Files.write(file.toPath(), content);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        File gz = File.createTempFile("oids", ".txt.gz");
+        try {
+            OIDBulkImporter importer = new OIDBulkImporter(pool, 0);
+            OIDBulkImporter.Result plain = importer.importFile(file.getPath());
+
+            // One member larger than a buffer
+            ByteArrayOutputStream single = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(single)) {
+                out.write(content);
+            }
+            assertSameImport(plain, importer, gz, single.toByteArray(), content.length);
+
+            // Members cut mid-line, with optional header fields, the last one stored
+            ByteArrayOutputStream members = new ByteArrayOutputStream();
+            int[] cuts = {0, 7, content.length / 4, content.length / 2 + 3, content.length - 40, content.length};
+            for (int c = 0; c + 1 < cuts.length; c++) {
+                members.writeBytes(member(content, cuts[c], cuts[c + 1], c == cuts.length - 2));
+            }
+            assertSameImport(plain, importer, gz, members.toByteArray(), content.length);
+
+            byte[] corrupt = single.toByteArray();
+            corrupt[corrupt.length - 6] ^= 1;
+            Files.write(gz.toPath(), corrupt);
+            try {
+                importer.importFile(gz.getPath());
+                fail("Expected a checksum failure");
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("Corrupt"));
+            }
+            Files.write(gz.toPath(), Arrays.copyOf(single.toByteArray(), single.size() - 100));
+            try {
+                importer.importFile(gz.getPath());
+                fail("Expected a truncated file to fail");
+            } catch (IOException expected) {
+                // expected
+            }
+        } finally {
+            gz.delete();
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSameImport(OIDBulkImporter.Result plain, OIDBulkImporter importer, File gz,
+                                         byte[] compressed, int textLength) throws IOException {
+        Files.write(gz.toPath(), compressed);
+        OIDBulkImporter.Result result = importer.importFile(gz.getPath());
+        assertEquals(plain.getLines(), result.getLines());
+        assertEquals(plain.getRejected(), result.getRejected());
+        assertEquals(textLength, result.getBytes());
+        assertEquals(plain.getStore(), result.getStore());
+    }
+
+    /**
+     * @return                  gzip member of text[from, to) with every optional header field set
+     */
+    private static byte[] member(byte[] text, int from, int to, boolean stored) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, (byte) 255});
+        out.writeBytes(new byte[]{3, 0, 'a', 'b', 'c'});
+        out.writeBytes("part.txt\0comment\0".getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(new byte[]{0, 0});
+        Deflater deflater = new Deflater(stored ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(text, from, to - from);
+        deflater.finish();
+        byte[] buffer = new byte[1 << 16];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(text, from, to - from);
+        for (long value : new long[]{crc.getValue(), to - from}) {
+            for (int b = 0; b < 4; b++) {
+                out.write((int) (value >>> (8 * b)));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public void testMissingFile() throws Exception {
+        try {
+            new OIDBulkImporter().importFile(file.getPath() + ".missing");
+            fail("Expected FileNotFoundException");
+        } catch (FileNotFoundException expected) {
+            // expected
+        }
+    }
+}
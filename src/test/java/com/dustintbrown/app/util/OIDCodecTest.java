@@ -0,0 +1,98 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class OIDCodecTest extends TestCase {
+    private final int[] arcs = new int[8];
+
+    private int parseAll(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        int fromBytes = OIDCodec.parse(bytes, 0, bytes.length, arcs);
+        int fromDirect = OIDCodec.parse(ByteBuffer.allocateDirect(bytes.length).put(bytes), 0, bytes.length, new int[8]);
+        int fromChars = OIDCodec.parse(text, 0, text.length(), new int[8]);
+        assertEquals(fromBytes, fromDirect);
+        assertEquals(fromBytes, fromChars);
+        return fromBytes;
+    }
+
+    public void testParse() {
+        assertEquals(6, parseAll("1.3.6.1.4.1"));
+        assertTrue(Arrays.equals(new int[]{1, 3, 6, 1, 4, 1}, Arrays.copyOf(arcs, 6)));
+        assertEquals(1, parseAll("0"));
+        assertEquals(2, parseAll("007.10"));
+        assertTrue(Arrays.equals(new int[]{7, 10}, Arrays.copyOf(arcs, 2)));
+    }
+
+    public void testParseLimits() {
+        assertEquals(2, parseAll("2147483647.0"));
+        assertEquals(Integer.MAX_VALUE, arcs[0]);
+        assertEquals(OIDCodec.MALFORMED, parseAll("2147483648.0"));
+        assertEquals(OIDCodec.MALFORMED, parseAll("1.99999999999999999999999"));
+    }
+
+    public void testParseRejectsMalformedDots() {
+        assertEquals(OIDCodec.MALFORMED, parseAll(""));
+        assertEquals(OIDCodec.MALFORMED, parseAll("."));
+        assertEquals(OIDCodec.MALFORMED, parseAll(".1.3"));
+        assertEquals(OIDCodec.MALFORMED, parseAll("1.3."));
+        assertEquals(OIDCodec.MALFORMED, parseAll("1..3"));
+    }
+
+    public void testParseRejectsOtherCharacters() {
+        assertEquals(OIDCodec.MALFORMED, parseAll("1.3 "));
+        assertEquals(OIDCodec.MALFORMED, parseAll("-1.3"));
+        assertEquals(OIDCodec.MALFORMED, parseAll("1.+3"));
+        assertEquals(OIDCodec.MALFORMED, parseAll("1.3a"));
+    }
+
+    public void testParseTooManyArcs() {
+        assertEquals(OIDCodec.TOO_MANY_ARCS, parseAll("1.2.3.4.5.6.7.8.9"));
+        assertEquals(8, parseAll("1.2.3.4.5.6.7.8"));
+    }
+
+    public void testParseRange() {
+        byte[] bytes = "xx1.3.6yy".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(3, OIDCodec.parse(bytes, 2, 7, arcs));
+        assertEquals(2, OIDCodec.parse("1.3.6", 2, 5, arcs));
+        assertEquals(3, arcs[0]);
+    }
+
+    public void testFormat() {
+        int[] oid = {1, 3, 6, 0, 10, 99, 100, Integer.MAX_VALUE};
+        byte[] dst = new byte[OIDCodec.maxFormattedLength(oid.length) + 1];
+        dst[0] = '>';
+        int end = OIDCodec.format(oid, 0, oid.length, dst, 1);
+        assertEquals(">1.3.6.0.10.99.100.2147483647", new String(dst, 0, end, StandardCharsets.US_ASCII));
+        assertEquals("6.0", OIDCodec.format(oid, 2, 2, new StringBuilder()).toString());
+        assertEquals(0, OIDCodec.format(oid, 0, 0, dst, 0));
+    }
+
+    public void testTextWriter() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OIDTextWriter writer = new OIDTextWriter(out, 64, true)) {
+            for (int i = 0; i < 20; i++) {
+                writer.writeLine(new int[]{1, 3, 6, 1, 4, 1, 311, i}, 0, 8);
+            }
+            writer.writeLine("+ ", new int[]{2, 5}, 0, 2);
+        }
+        String[] lines = new String(out.toByteArray(), StandardCharsets.US_ASCII).split("\n");
+        assertEquals(21, lines.length);
+        assertEquals("1.3.6.1.4.1.311.19", lines[19]);
+        assertEquals("+ 2.5", lines[20]);
+    }
+
+    public void testParseOIDStringRoundTrip() {
+        assertEquals("1.3.6.1.4.1.311.21.20", OIDService.parseOID(OIDService.parseOIDString("1.3.6.1.4.1.311.21.20")));
+        try {
+            OIDService.parseOIDString("1..3");
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException expected) {
+            // expected
+        }
+    }
+}
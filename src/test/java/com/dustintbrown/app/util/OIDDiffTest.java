@@ -0,0 +1,103 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+public class OIDDiffTest extends TestCase {
+    private Path dir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("oid-diff");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> f.toFile().delete());
+        }
+        Files.delete(dir);
+        super.tearDown();
+    }
+
+    private Path write(String name, List<String> lines) throws Exception {
+        Path path = dir.resolve(name);
+        Files.write(path, lines, StandardCharsets.UTF_8);
+        return path;
+    }
+
+    public void testExternalSortSpillsAndCleansUp() throws Exception {
+        SplittableRandom random = new SplittableRandom(5);
+        List<String> lines = new ArrayList<>();
+        TreeSet<int[]> expected = new TreeSet<>(new OIDComp());
+        for (int i = 0; i < 20000; i++) {
+            int[] oid = {random.nextInt(3), random.nextInt(40), random.nextInt(500)};
+            lines.add(OIDService.parseOID(oid));
+            expected.add(oid);
+        }
+        lines.add("not an oid");
+        Path input = write("input.txt", lines);
+
+        OIDExternalSorter sorter = new OIDExternalSorter(64 * 1024, dir);
+        try (OIDExternalSorter.Sorted sorted = sorter.sort(input.toString())) {
+            assertTrue(sorted.getRunCount() > 1);
+            assertEquals(1, sorted.getRejected());
+            for (int[] oid : expected) {
+                assertTrue(sorted.next());
+                assertTrue(Arrays.equals(oid, Arrays.copyOf(sorted.arcs(), sorted.length())));
+            }
+            assertFalse(sorted.next());
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    public void testStreamingDiff() throws Exception {
+        Path a = write("a.txt", Arrays.asList("1.3.6.1", "2.5", "1.3.6", "0.9.1", "2.5"));
+        Path b = write("b.txt", Arrays.asList("2.5", "1.3.6.1", "1.3.7", "3"));
+
+        OIDService oidService = new OIDService();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OIDDiff.Stats stats;
+        try (OIDTextWriter writer = new OIDTextWriter(out)) {
+            stats = oidService.diffFiles(a.toString(), b.toString(), OIDDiff.textSink(writer), false);
+        }
+
+        assertEquals("- 0.9.1\n- 1.3.6\n+ 1.3.7\n+ 3\n", new String(out.toByteArray(), StandardCharsets.US_ASCII));
+        assertEquals(2, stats.getAdded());
+        assertEquals(2, stats.getRemoved());
+        assertEquals(2, stats.getUnchanged());
+
+        List<String> all = new ArrayList<>(oidService.diffFiles(a.toString(), b.toString()));
+        assertEquals(Arrays.asList("- 0.9.1", "- 1.3.6", "1.3.6.1", "+ 1.3.7", "2.5", "+ 3"), all);
+    }
+
+    public void testMergeSourceReportsMatches() throws Exception {
+        PackedOIDStore x = new PackedOIDStore.Builder().add(new int[]{1}).add(new int[]{2}).build();
+        PackedOIDStore y = new PackedOIDStore.Builder().add(new int[]{2}).add(new int[]{3}).build();
+        try (OIDMergeSource merged = new OIDMergeSource(Arrays.asList(OIDSource.of(x), OIDSource.of(y)))) {
+            assertTrue(merged.next());
+            assertEquals(1, merged.matchCount());
+            assertTrue(merged.contains(0));
+            assertTrue(merged.next());
+            assertEquals(2, merged.arcs()[0]);
+            assertEquals(2, merged.matchCount());
+            assertTrue(merged.next());
+            assertTrue(merged.contains(1));
+            assertFalse(merged.contains(0));
+            assertFalse(merged.next());
+        }
+    }
+}
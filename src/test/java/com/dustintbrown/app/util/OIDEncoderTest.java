@@ -0,0 +1,101 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+public class OIDEncoderTest extends TestCase {
+
+    private static byte[] bytes(int... values) {
+        byte[] returnMe = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            returnMe[i] = (byte) values[i];
+        }
+        return returnMe;
+    }
+
+    public void testKnownVector() {
+        byte[] expected = bytes(0x06, 0x09, 0x2B, 0x06, 0x01, 0x04, 0x01, 0x82, 0x37, 0x15, 0x14);
+        assertTrue(Arrays.equals(expected, OIDEncoder.encode(new int[]{1, 3, 6, 1, 4, 1, 311, 21, 20})));
+    }
+
+    public void testLargeArcs() {
+        assertTrue(Arrays.equals(bytes(0x06, 0x05, 0x2B, 0x81, 0x80, 0x80, 0x00),
+                OIDEncoder.encode(new int[]{1, 3, 2097152})));
+        assertTrue(Arrays.equals(bytes(0x06, 0x06, 0x2B, 0x87, 0xFF, 0xFF, 0xFF, 0x7F),
+                OIDEncoder.encode(new int[]{1, 3, Integer.MAX_VALUE})));
+        // 128 needs two groups; the old encoder wrote it as a single byte
+        assertTrue(Arrays.equals(bytes(0x06, 0x03, 0x2B, 0x81, 0x00), OIDEncoder.encode(new int[]{1, 3, 128})));
+    }
+
+    public void testFirstSubidentifierPastOneByte() {
+        // 2 * 40 + 999 = 1079
+        assertTrue(Arrays.equals(bytes(0x06, 0x02, 0x88, 0x37), OIDEncoder.encode(new int[]{2, 999})));
+    }
+
+    public void testLongFormLength() {
+        int[] oid = new int[132];
+        Arrays.fill(oid, 1);
+        byte[] encoded = OIDEncoder.encode(oid);
+        assertEquals(OIDEncoder.encodedLength(oid, 0, oid.length), encoded.length);
+        assertEquals(0x06, encoded[0]);
+        assertEquals((byte) 0x81, encoded[1]);
+        assertEquals(131, encoded[2] & 0xFF);
+        assertEquals(134, encoded.length);
+    }
+
+    public void testEncodeAllKeepsOrder() {
+        PackedOIDStore store = randomStore(150000);
+        OIDEncoder.Encoded encoded = OIDEncoder.encodeAll(store, new ForkJoinPool(4));
+        assertEquals(store.size(), encoded.size());
+        int total = 0;
+        for (int i = 0; i < store.size(); i++) {
+            int[] oid = store.get(i);
+            assertEquals(total, encoded.offset(i));
+            assertTrue(Arrays.equals(OIDEncoder.encode(oid), encoded.get(i)));
+            total += encoded.length(i);
+        }
+        assertEquals(total, encoded.byteSize());
+        assertEquals(total, encoded.buffer().remaining());
+    }
+
+    public void testWriteAllMatchesEncodeAll() throws Exception {
+        PackedOIDStore store = randomStore(150000);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        File file = File.createTempFile("oids", ".ber");
+        try {
+            long written;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                written = OIDEncoder.writeAll(store, channel, pool);
+            }
+            OIDEncoder.Encoded encoded = OIDEncoder.encodeAll(store, pool);
+            assertEquals(encoded.byteSize(), written);
+            byte[] expected = new byte[encoded.byteSize()];
+            encoded.buffer().get(expected);
+            assertTrue(Arrays.equals(expected, Files.readAllBytes(file.toPath())));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static PackedOIDStore randomStore(int count) {
+        SplittableRandom random = new SplittableRandom(5);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < count; i++) {
+            int[] oid = new int[random.nextInt(2, 10)];
+            oid[0] = random.nextInt(3);
+            oid[1] = random.nextInt(40);
+            for (int j = 2; j < oid.length; j++) {
+                oid[j] = random.nextInt(4) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(200);
+            }
+            builder.add(oid);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+public class OIDExporterTest extends TestCase {
+
+    public void testMatchesSequentialWriter() throws Exception {
+        SplittableRandom random = new SplittableRandom(9);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 150000; i++) {
+            int[] oid = new int[random.nextInt(1, 7)];
+            for (int j = 0; j < oid.length; j++) {
+                oid[j] = random.nextInt(j < 2 ? 3 : Integer.MAX_VALUE);
+            }
+            builder.add(oid);
+        }
+        // OIDs of up to 6 arcs make ranges of about 62K OIDs, so this writes three ranges in order
+        PackedOIDStore packed = builder.build();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (OIDTextWriter writer = new OIDTextWriter(expected)) {
+            packed.scan(0, packed.size(), writer::writeLine);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        Path path = File.createTempFile("export", ".txt").toPath();
+        try {
+            long bytes = OIDExporter.write(packed, path, false, OIDExporter.Sync.PERIODIC, pool);
+            assertEquals(expected.size(), bytes);
+            assertTrue(Arrays.equals(expected.toByteArray(), Files.readAllBytes(path)));
+
+            bytes = OIDExporter.write(packed, path, true, OIDExporter.Sync.ON_CLOSE, pool);
+            assertEquals(Files.size(path), bytes);
+            assertTrue(bytes < expected.size());
+            ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+                byte[] buffer = new byte[1 << 16];
+                for (int read; (read = in.read(buffer)) > 0; ) {
+                    unzipped.write(buffer, 0, read);
+                }
+            }
+            assertTrue(Arrays.equals(expected.toByteArray(), unzipped.toByteArray()));
+
+            assertEquals(0, OIDExporter.write(PackedOIDStore.EMPTY, path, false, OIDExporter.Sync.NONE, pool));
+            assertEquals(0, Files.size(path));
+        } finally {
+            pool.shutdown();
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class OIDGeneratorTest extends TestCase {
+
+    public void testSameSeedSameOIDs() {
+        assertEquals(new OIDGenerator(99).generate(5000), new OIDGenerator(99).generate(5000));
+        assertFalse(new OIDGenerator(99).generate(5000).equals(new OIDGenerator(100).generate(5000)));
+    }
+
+    public void testDistribution() {
+        PackedOIDStore store = new OIDGenerator(1).generate(20000);
+        assertEquals(20000, store.size());
+        assertTrue(store.maxLength() <= OIDGenerator.MAX_LENGTH);
+        store.scan(0, store.size(), (arcs, off, len) -> {
+            assertTrue(len >= 2);
+            assertTrue(arcs[off] < 16 && arcs[off + 1] < 16);
+            for (int i = off; i < off + len; i++) {
+                assertTrue(arcs[i] >= 0 && arcs[i] < 65000);
+            }
+        });
+    }
+
+    public void testParallelMatchesSequential() {
+        PackedOIDStore sequential = new OIDGenerator(5).generate(600000);
+        PackedOIDStore parallel = new OIDGenerator(5).generate(600000, new ForkJoinPool(3));
+        assertEquals(600000, parallel.size());
+        assertEquals(sequential, parallel);
+    }
+
+    public void testWriteSortedInBoundedMemory() throws Exception {
+        Path dir = Files.createTempDirectory("oid-generator");
+        try {
+            Path first = dir.resolve("first.txt");
+            Path second = dir.resolve("second.txt");
+            // A tiny budget forces many spilled batches and a merge
+            new OIDGenerator(11).writeSorted(30000, first, 200000, dir, new ForkJoinPool(2));
+            new OIDGenerator(11).writeSorted(30000, second, 200000, dir, null);
+            assertTrue(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(second)));
+
+            OIDBulkImporter.Result result = new OIDBulkImporter().importFile(first.toString());
+            assertEquals(30000, result.getLines());
+            assertEquals(0, result.getRejected());
+            assertEquals(30000, result.getStore().size());
+            // Sorted output: lines in the file are already in store order
+            List<String> lines = Files.readAllLines(first);
+            for (int i = 0; i < lines.size(); i += 101) {
+                assertEquals(OIDService.parseOID(result.getStore().get(i)), lines.get(i));
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals("run files should be deleted", 2, files.count());
+            }
+        } finally {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(f -> f.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+}
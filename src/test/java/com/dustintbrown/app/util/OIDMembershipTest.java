@@ -0,0 +1,87 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+public class OIDMembershipTest extends TestCase {
+
+    private static PackedOIDStore randomStore(long seed, int count) {
+        SplittableRandom random = new SplittableRandom(seed);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < count; i++) {
+            builder.add(TestOIDs.randomOID(random, 8, 3, 40));
+        }
+        return builder.build();
+    }
+
+    public void testSortedProbesMatchLookups() throws Exception {
+        PackedOIDStore store = randomStore(1, 30000);
+        // Half of the store plus random OIDs, enough distinct probes to be split into parallel ranges
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder().addAll(randomStore(2, 80000));
+        for (int i = 0; i < store.size(); i += 2) {
+            builder.add(store.get(i));
+        }
+        PackedOIDStore probes = builder.build();
+        assertTrue(probes.size() > 3 * 16384);
+        Path file = Files.createTempFile("membership", ".snap");
+        try {
+            OIDSnapshot.write(store, file, 8);
+            OIDStore[] layouts = {store, OIDTrie.build(store), OIDSnapshot.open(file), PackedOIDStore.EMPTY};
+            ForkJoinPool pool = new ForkJoinPool(4);
+            for (OIDStore layout : layouts) {
+                BitSet expected = new BitSet();
+                for (int i = 0; i < probes.size(); i++) {
+                    int[] probe = probes.get(i);
+                    if (layout.containsArcs(probe, 0, probe.length)) {
+                        expected.set(i);
+                    }
+                }
+                assertEquals(expected, OIDMembership.existsAll(layout, probes, null));
+                assertEquals(expected, OIDMembership.existsAll(layout, probes, pool));
+            }
+            pool.shutdown();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public void testStreamKeepsInputOrder() throws Exception {
+        PackedOIDStore store = randomStore(3, 5000);
+        SplittableRandom random = new SplittableRandom(4);
+        StringBuilder text = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            if (i % 997 == 0) {
+                text.append("1..").append(i).append('\n');
+                expected.add("?");
+                continue;
+            }
+            int[] oid = random.nextBoolean() ? store.get(random.nextInt(store.size())) : TestOIDs.randomOID(random, 8, 3, 40);
+            text.append(OIDService.parseOID(oid)).append(i % 3 == 0 ? "\r\n" : "\n");
+            expected.add(store.containsArcs(oid, 0, oid.length) ? "1" : "0");
+        }
+
+        OIDMembership.Result result = OIDMembership.existsAll(store,
+                new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.US_ASCII)), ForkJoinPool.commonPool());
+        assertEquals(20000, result.getProbes());
+        assertEquals(21, result.getMalformed().cardinality());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.writeTo(out);
+        assertEquals(String.join("\n", expected) + "\n", out.toString(StandardCharsets.US_ASCII));
+        int hits = 0;
+        for (String answer : expected) {
+            hits += "1".equals(answer) ? 1 : 0;
+        }
+        assertEquals(hits, result.getHitCount());
+    }
+}
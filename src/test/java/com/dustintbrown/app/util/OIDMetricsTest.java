@@ -0,0 +1,80 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class OIDMetricsTest extends TestCase {
+
+    public void testHistogramBucketsStayWithinASixteenth() {
+        for (long value = 0; value < 1 << 20; value = value * 3 / 2 + 1) {
+            int bucket = OIDMetrics.Histogram.bucket(value);
+            long highest = OIDMetrics.Histogram.highestInBucket(bucket);
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / OIDMetrics.Histogram.SUB_BUCKETS);
+            assertEquals(bucket, OIDMetrics.Histogram.bucket(highest));
+        }
+        assertEquals(OIDMetrics.Histogram.bucket(Long.MAX_VALUE),
+                OIDMetrics.Histogram.bucket(OIDMetrics.Histogram.highestInBucket(OIDMetrics.Histogram.bucket(Long.MAX_VALUE))));
+
+        OIDMetrics.Histogram histogram = new OIDMetrics.Histogram();
+        long[] values = new long[100000];
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong(1, 10_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        for (double fraction : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long reported = histogram.percentile(fraction);
+            assertTrue(reported >= exact && reported - exact <= exact / 16);
+        }
+        assertEquals(histogram.getMax(), histogram.percentile(1.0));
+    }
+
+    public void testServiceRecordsOperations() throws Exception {
+        OIDService service = new OIDService();
+        service.populateWithOIDs(Arrays.asList("1.3.6.1", "1.3.6.2", "1.3.7"));
+        assertTrue(service.exists("1.3.6.1"));
+        assertFalse(service.exists("1.3.6.3"));
+        try {
+            service.exists("1..3");
+            fail("Expected a malformed OID to be rejected");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+        assertEquals(2, service.countOidsWithPrefix("1.3.6"));
+        assertEquals(2, service.getOidsWithPrefix("1.3.6").size());
+
+        OIDMetrics metrics = service.getMetrics();
+        assertEquals(1, metrics.get(OIDMetrics.Operation.LOAD).getCount());
+        assertEquals(3, metrics.get(OIDMetrics.Operation.LOAD).getRecords());
+        assertEquals(2, metrics.get(OIDMetrics.Operation.EXISTS).getCount());
+        assertEquals(1, metrics.get(OIDMetrics.Operation.EXISTS).getFailures());
+        assertEquals(2, metrics.get(OIDMetrics.Operation.PREFIX).getCount());
+        assertEquals(1, metrics.getParseFailures());
+        assertEquals(0, metrics.get(OIDMetrics.Operation.DIFF).getCount());
+        assertTrue(metrics.get(OIDMetrics.Operation.EXISTS).getLatency().getSum() > 0);
+
+        String report = metrics.report(service.getOids());
+        assertTrue(report, report.contains("\nexists "));
+        assertFalse(report, report.contains("\ndiff "));
+        assertTrue(report, report.contains("parse failures 1, 3 OIDs loaded"));
+
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.register(server, "test", service);
+        // Registering again replaces the beans instead of failing
+        metrics.register(server, "test", service);
+        ObjectName name = new ObjectName("com.dustintbrown.app:type=OIDService,name=\"test\"");
+        assertEquals(3, server.getAttribute(name, "LoadedOids"));
+        assertEquals("PACKED", server.getAttribute(name, "StorageMode"));
+        assertEquals(2L, server.getAttribute(new ObjectName(name + ",operation=exists"), "Count"));
+    }
+}
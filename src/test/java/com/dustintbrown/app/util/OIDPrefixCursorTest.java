@@ -0,0 +1,49 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class OIDPrefixCursorTest extends TestCase {
+
+    public void testPagesCoverTheMatchesOnce() throws Exception {
+        OIDService service = new OIDService();
+        service.populateWithOIDs(Arrays.asList("1.3.6.1", "1.3.6.1.4", "1.3.6.2", "1.3.6.10", "1.3.7", "1.3", "2.1"));
+        OIDPrefixCursor cursor = service.prefixCursor("1.3.6");
+        assertEquals(4, cursor.count());
+
+        PackedOIDStore.Builder paged = new PackedOIDStore.Builder();
+        while (cursor.hasNext()) {
+            OIDStore page = cursor.next(3);
+            assertTrue(page.size() > 0 && page.size() <= 3);
+            page.scan(0, page.size(), paged::add);
+        }
+        assertEquals(4, cursor.offset());
+        assertEquals(0, cursor.next(3).size());
+        assertEquals(service.getOidsWithPrefix("1.3.6"), paged.build());
+
+        // Resuming after an OID works even if that OID is gone
+        assertEquals(2, cursor.after(new int[]{1, 3, 6, 1, 4}).remaining());
+        assertEquals(2, cursor.after(new int[]{1, 3, 6, 1, 5}).remaining());
+        assertEquals(4, cursor.after(new int[]{1, 3}).remaining());
+        assertEquals(0, cursor.after(new int[]{1, 3, 7}).remaining());
+        assertEquals(1, cursor.seek(3).remaining());
+        assertEquals(0, cursor.seek(100).remaining());
+        assertEquals(0, service.prefixCursor("1.4").count());
+    }
+
+    public void testWritesALimitedPage() throws Exception {
+        OIDService service = new OIDService();
+        service.populateWithOIDs(Arrays.asList("1.3.6.1", "1.3.6.2", "1.3.6.3", "1.3.7"));
+        OIDPrefixCursor cursor = service.prefixCursor("1.3.6").seek(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OIDTextWriter writer = new OIDTextWriter(out, 64, false)) {
+            assertEquals(1, cursor.writeTo(writer, 1));
+            assertEquals(1, cursor.writeTo(writer, Long.MAX_VALUE));
+            assertEquals(0, cursor.writeTo(writer, 5));
+        }
+        assertEquals("1.3.6.2\n1.3.6.3\n", new String(out.toByteArray(), StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,118 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+public class OIDServerTest extends TestCase {
+    private OIDService service;
+    private OIDServer server;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        service = new OIDService();
+        service.populateWithOIDs(Arrays.asList("1.3.6.1", "1.3.6.1.4", "1.3.6.1.4.1", "1.3.6.2", "1.3.7", "2.5.4.3"));
+        server = new OIDServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2, 4);
+        server.start();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        server.close();
+        super.tearDown();
+    }
+
+    private String request(String method, String path, String body, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        assertEquals(expectedStatus, connection.getResponseCode());
+        ByteArrayOutputStream returnMe = new ByteArrayOutputStream();
+        try (InputStream in = expectedStatus == 200 ? connection.getInputStream() : connection.getErrorStream()) {
+            in.transferTo(returnMe);
+        }
+        return returnMe.toString(StandardCharsets.US_ASCII);
+    }
+
+    public void testExistsBatch() throws Exception {
+        assertEquals("1\n0\n?\n1\n0\n", request("POST", "/exists", "1.3.6.1\n1.3.6\nnot.an.oid\n2.5.4.3\r\n9.9", 200));
+        assertEquals("", request("POST", "/exists", "", 200));
+    }
+
+    public void testLargeExistsBatch() throws Exception {
+        StringBuilder body = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            body.append(i % 2 == 0 ? "1.3.6.1.4\n" : "1.3.6.1." + i + "\n");
+            expected.append(i % 2 == 0 || i == 4 ? "1\n" : "0\n");
+        }
+        assertEquals(expected.toString(), request("POST", "/exists", body.toString(), 200));
+    }
+
+    public void testPrefixCount() throws Exception {
+        assertEquals("5\n3\n1\n0\n?\n", request("POST", "/prefix/count", "1.3\n1.3.6.1\n2\n3.1\n1..3\n", 200));
+    }
+
+    public void testRequestsAreRecordedInMetrics() throws Exception {
+        request("POST", "/exists", "1.3.6.1\n1.3.6\nnot.an.oid\n", 200);
+        request("POST", "/prefix/count", "1.3\n2\n", 200);
+        request("GET", "/prefix/list?prefix=1.3", null, 200);
+        request("POST", "/encode", "1.3.6.1\n", 200);
+
+        OIDMetrics metrics = service.getMetrics();
+        assertEquals(1, metrics.get(OIDMetrics.Operation.EXISTS_ALL).getCount());
+        assertEquals(3, metrics.get(OIDMetrics.Operation.EXISTS_ALL).getRecords());
+        assertEquals(2, metrics.get(OIDMetrics.Operation.PREFIX).getCount());
+        assertEquals(2, metrics.get(OIDMetrics.Operation.PREFIX).getRecords());
+        assertEquals(1, metrics.get(OIDMetrics.Operation.ENCODE).getCount());
+        assertEquals(5, metrics.get(OIDMetrics.Operation.ENCODE).getBytes());
+        assertEquals(1, metrics.getParseFailures());
+    }
+
+    public void testPrefixList() throws Exception {
+        assertEquals("1.3.6.1\n1.3.6.1.4\n1.3.6.1.4.1\n", request("GET", "/prefix/list?prefix=1.3.6.1", null, 200));
+        assertEquals("1.3.6.1\n1.3.6.1.4\n", request("GET", "/prefix/list?prefix=1.3&limit=2", null, 200));
+        assertEquals("", request("GET", "/prefix/list?prefix=4", null, 200));
+        assertEquals("1.3.6.1\n1.3.6.1.4\n1.3.6.1.4.1\n1.3.6.2\n1.3.7\n2.5.4.3\n", request("GET", "/prefix/list", null, 200));
+        assertEquals("1.3.6.1\n1.3.6.1.4\n", request("GET", "/prefix/list?limit=2", null, 200));
+        request("GET", "/prefix/list?prefix=1..3", null, 400);
+        request("POST", "/prefix/list?prefix=1", "", 405);
+    }
+
+    public void testEncode() throws Exception {
+        assertEquals("06032b8100\n?\n", request("POST", "/encode", "1.3.128\nx\n", 200));
+        request("GET", "/encode", null, 405);
+    }
+
+    public void testStatsFollowReloads() throws Exception {
+        assertEquals("size 6\nstorage PACKED\n", request("GET", "/stats", null, 200));
+        service.setStorageMode(OIDStorageMode.TRIE);
+        service.populateWithOIDs(Arrays.asList("1.2", "1.3"));
+        assertEquals("size 2\nstorage TRIE\n", request("GET", "/stats", null, 200));
+        assertEquals("0\n1\n", request("POST", "/exists", "1.3.6.1\n1.3\n", 200));
+    }
+
+    public void testParseQuery() {
+        Map<String, String> query = OIDServer.parseQuery("prefix=1.3%2E6&limit=10&flag");
+        assertEquals("1.3.6", query.get("prefix"));
+        assertEquals("10", query.get("limit"));
+        assertEquals("", query.get("flag"));
+        assertTrue(OIDServer.parseQuery(null).isEmpty());
+    }
+}
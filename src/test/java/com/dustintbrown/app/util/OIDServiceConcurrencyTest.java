@@ -0,0 +1,146 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Readers hammer exists and prefix queries while a writer keeps reloading one of two datasets through every load
+ * path. Dataset n holds 1.3.i and 2.3.i for i below SIZES[n], so each answer has to match one dataset exactly; a
+ * query that mixed two loads would see counts or bounds from both.
+ */
+public class OIDServiceConcurrencyTest extends TestCase {
+    private static final int[] SIZES = {3000, 7000};
+    private static final long TARGET_CALLS = 2_000_000;
+
+    private Path dir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("oid-concurrency");
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> f.toFile().delete());
+        }
+        Files.delete(dir);
+        super.tearDown();
+    }
+
+    private static List<String> dataset(int n) {
+        List<String> returnMe = new ArrayList<>();
+        for (int i = 0; i < SIZES[n]; i++) {
+            returnMe.add("1.3." + i);
+            returnMe.add("2.3." + i);
+        }
+        return returnMe;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public void testReadsDuringReloads() throws Exception {
+        OIDService service = new OIDService();
+        String[] text = new String[2];
+        String[] snapshots = new String[2];
+        for (int n = 0; n < 2; n++) {
+            service.populateWithOIDs(dataset(n));
+            text[n] = dir.resolve("oids" + n + ".txt").toString();
+            try (OIDTextWriter writer = new OIDTextWriter(new FileOutputStream(text[n]))) {
+                OIDStore store = service.getOids();
+                store.scan(0, store.size(), writer::writeLine);
+            }
+            snapshots[n] = dir.resolve("oids" + n + ".snap").toString();
+            service.saveSnapshot(snapshots[n]);
+        }
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicLong calls = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            readers.add(new Thread(() -> {
+                int i = seed;
+                try {
+                    while (!done.get()) {
+                        for (int k = 0; k < 1000; k++, i++) {
+                            int count = service.countOidsWithPrefix("2.3");
+                            check(count == SIZES[0] || count == SIZES[1], "torn prefix count " + count);
+                            check(service.exists("2.3." + (i % SIZES[0])), "lost an OID present in every load");
+                            check(!service.exists("3.3.1"), "found an OID never loaded");
+                            if (k % 100 == 0) {
+                                Collection<int[]> matches = service.getOidsWithPrefix("1.3");
+                                int size = matches.size();
+                                check(size == SIZES[0] || size == SIZES[1], "torn prefix list " + size);
+                                int last = 0;
+                                for (int[] oid : matches) {
+                                    check(oid[0] == 1 && oid[1] == 3, "prefix list escaped its range");
+                                    last = oid[2];
+                                }
+                                check(last == size - 1, "prefix list mixed two loads");
+                                OIDStore store = service.getOids();
+                                check(store.size() == 2 * SIZES[0] || store.size() == 2 * SIZES[1], "torn size");
+                                check(store.get(store.size() - 1)[2] == store.size() / 2 - 1, "torn store");
+                                check(store.containsArcs(new int[]{1, 3, 5000}, 0, 3) == (store.size() == 2 * SIZES[1]), "torn exists");
+                            }
+                        }
+                        calls.addAndGet(3000);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    done.set(true);
+                }
+            }));
+        }
+        readers.forEach(Thread::start);
+
+        long deadline = System.currentTimeMillis() + 60_000;
+        int reloads = 0;
+        try {
+            while ((calls.get() < TARGET_CALLS || reloads < 40) && failure.get() == null && System.currentTimeMillis() < deadline) {
+                int n = reloads % 2;
+                switch (reloads % 4) {
+                    case 0:
+                        service.importOIDsFromFile(text[n]);
+                        break;
+                    case 1:
+                        service.openSnapshot(snapshots[n]);
+                        break;
+                    case 2:
+                        service.populateWithOIDs(dataset(n));
+                        break;
+                    default:
+                        service.setStorageMode(service.getStorageMode() == OIDStorageMode.TRIE ? OIDStorageMode.PACKED : OIDStorageMode.TRIE);
+                        service.importOIDsFromFile(text[n]);
+                }
+                reloads++;
+            }
+        } finally {
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Reader failed after " + reloads + " reloads", failure.get());
+        }
+        assertTrue("only " + calls.get() + " calls in time", calls.get() >= TARGET_CALLS);
+        assertTrue(reloads >= 40);
+    }
+}
@@ -61,6 +61,7 @@ public class OIDServiceTest extends TestCase {
 
         assertEquals(results.size(), expectedResults.size());
         assertTrue(results.containsAll(expectedResults));
+        assertEquals(9, collectionB.size());
 
     }
 
@@ -0,0 +1,110 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class OIDSetAlgebraTest extends TestCase {
+
+    private static PackedOIDStore combine(List<PackedOIDStore> stores, OIDSetAlgebra.Operation operation, int k) throws IOException {
+        List<OIDSource> inputs = new ArrayList<>();
+        for (PackedOIDStore store : stores) {
+            inputs.add(OIDSource.of(store));
+        }
+        PackedOIDStore.Builder result = new PackedOIDStore.Builder();
+        OIDSetAlgebra.Result counts = OIDSetAlgebra.combine(inputs, operation, k, result::add);
+        assertEquals(result.size(), counts.getEmitted());
+        return result.build();
+    }
+
+    public void testMatchesMembershipCounts() throws Exception {
+        SplittableRandom random = new SplittableRandom(17);
+        List<PackedOIDStore> stores = new ArrayList<>();
+        for (int s = 0; s < 12; s++) {
+            PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+            for (int i = 0; i < 3000; i++) {
+                builder.add(new int[]{1, 3, random.nextInt(4), random.nextInt(40)});
+            }
+            stores.add(builder.build());
+        }
+        PackedOIDStore.Builder all = new PackedOIDStore.Builder();
+        stores.forEach(all::addAll);
+        PackedOIDStore union = all.build();
+
+        PackedOIDStore.Builder atLeastFour = new PackedOIDStore.Builder();
+        PackedOIDStore.Builder inAll = new PackedOIDStore.Builder();
+        PackedOIDStore.Builder onlyFirst = new PackedOIDStore.Builder();
+        for (int[] oid : union) {
+            int count = 0;
+            for (PackedOIDStore store : stores) {
+                count += store.contains(oid) ? 1 : 0;
+            }
+            if (count >= 4) {
+                atLeastFour.add(oid);
+            }
+            if (count == stores.size()) {
+                inAll.add(oid);
+            }
+            if (count == 1 && stores.get(0).contains(oid)) {
+                onlyFirst.add(oid);
+            }
+        }
+        assertEquals(union, combine(stores, OIDSetAlgebra.Operation.UNION, 0));
+        assertEquals(atLeastFour.build(), combine(stores, OIDSetAlgebra.Operation.AT_LEAST, 4));
+        assertEquals(inAll.build(), combine(stores, OIDSetAlgebra.Operation.INTERSECTION, 0));
+        assertEquals(onlyFirst.build(), combine(stores, OIDSetAlgebra.Operation.DIFFERENCE, 0));
+        assertEquals(0, combine(new ArrayList<>(), OIDSetAlgebra.Operation.UNION, 0).size());
+    }
+
+    public void testCombinesFiles() throws Exception {
+        List<String> filenames = new ArrayList<>();
+        String[] contents = {"1.3.6\n1.3.7\n1.4\n", "1.4\n1.3.6\n2.1\n", "1.3.6\n1.4\nbad\n2.2\n"};
+        try {
+            for (String content : contents) {
+                Path path = File.createTempFile("combine", ".txt").toPath();
+                Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+                filenames.add(path.toString());
+            }
+            OIDService service = new OIDService();
+            List<String> lines = new ArrayList<>();
+            OIDSetAlgebra.Result result = service.combineFiles(filenames, OIDSetAlgebra.Operation.AT_LEAST, 2, false,
+                    (arcs, off, len) -> lines.add(OIDService.parseOID(Arrays.copyOfRange(arcs, off, off + len))));
+            assertEquals(Arrays.asList("1.3.6", "1.4"), lines);
+            assertEquals(5, result.getDistinct());
+            assertEquals(2, result.getPresence(3));
+            assertEquals(3, result.getPresence(1));
+            assertEquals(1, service.getMetrics().get(OIDMetrics.Operation.COMBINE).getCount());
+
+            // The second file is not sorted
+            try {
+                service.combineFiles(filenames, OIDSetAlgebra.Operation.UNION, 0, true, (arcs, off, len) -> { });
+                fail("Expected an unsorted file to be rejected");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("line 2"));
+            }
+        } finally {
+            for (String filename : filenames) {
+                Files.delete(new File(filename).toPath());
+            }
+        }
+    }
+
+    public void testSortedLinesSkipRepeatsAndMalformedLines() throws Exception {
+        OIDSource source = OIDSource.ofSortedLines(new ByteArrayInputStream("1.2\n1.2\n\nx\n1.2.0\n".getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(source.next());
+        assertEquals(2, source.length());
+        assertTrue(source.next());
+        assertEquals(3, source.length());
+        assertFalse(source.next());
+        source.close();
+    }
+}
@@ -0,0 +1,137 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+public class OIDSnapshotTest extends TestCase {
+    private Path dir;
+    private PackedOIDStore packed;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        dir = Files.createTempDirectory("oid-snapshot");
+        SplittableRandom random = new SplittableRandom(7);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 20000; i++) {
+            int[] oid = new int[random.nextInt(1, 9)];
+            for (int j = 0; j < oid.length; j++) {
+                oid[j] = random.nextInt(5) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(j < 2 ? 3 : 20);
+            }
+            builder.add(oid);
+        }
+        packed = builder.build();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> f.toFile().delete());
+        }
+        Files.delete(dir);
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Path file = dir.resolve("oids.snap");
+        long bytes = OIDSnapshot.write(packed, file);
+        assertEquals(Files.size(file), bytes);
+        assertTrue(OIDSnapshot.isSnapshot(file));
+
+        BlockOIDStore mapped = OIDSnapshot.open(file);
+        assertEquals(packed.size(), mapped.size());
+        assertEquals(packed.maxLength(), mapped.maxLength());
+        assertEquals(packed, mapped);
+        for (int i = 0; i < packed.size(); i += 37) {
+            assertTrue(Arrays.equals(packed.get(i), mapped.get(i)));
+            assertEquals(packed.length(i), mapped.length(i));
+        }
+    }
+
+    public void testSearchesMatchPackedStore() throws Exception {
+        Path file = dir.resolve("oids.snap");
+        OIDSnapshot.write(packed, file, 16);
+        // Tiny segments force blocks to be spread over many mappings
+        BlockOIDStore mapped = OIDSnapshot.open(file, 4096);
+        SplittableRandom random = new SplittableRandom(13);
+        for (int i = 0; i < 5000; i++) {
+            int[] key = i % 3 == 0 ? packed.get(random.nextInt(packed.size())) : new int[random.nextInt(1, 6)];
+            if (i % 3 != 0) {
+                for (int j = 0; j < key.length; j++) {
+                    key[j] = random.nextInt(j < 2 ? 4 : 21);
+                }
+            }
+            assertEquals(packed.search(key, 0, key.length), mapped.search(key, 0, key.length));
+            assertEquals(packed.lowerBound(key, 0, key.length), mapped.lowerBound(key, 0, key.length));
+            assertEquals(packed.prefixEnd(key, 0, key.length), mapped.prefixEnd(key, 0, key.length));
+            assertEquals(packed.containsArcs(key, 0, key.length), mapped.containsArcs(key, 0, key.length));
+        }
+        assertEquals(packed.size(), mapped.lowerBound(new int[]{Integer.MAX_VALUE}, 0, 1));
+        assertEquals(0, mapped.lowerBound(new int[]{0}, 0, 1));
+    }
+
+    public void testScanAcrossBlocks() throws Exception {
+        Path file = dir.resolve("oids.snap");
+        OIDSnapshot.write(packed, file, 10);
+        BlockOIDStore mapped = OIDSnapshot.open(file, 2048);
+        int[][] ranges = {{0, packed.size()}, {9, 11}, {25, 1234}, {packed.size() - 1, packed.size()}};
+        for (int[] range : ranges) {
+            List<int[]> seen = new ArrayList<>();
+            mapped.scan(range[0], range[1], (arcs, off, len) -> seen.add(Arrays.copyOfRange(arcs, off, off + len)));
+            assertEquals(range[1] - range[0], seen.size());
+            for (int i = 0; i < seen.size(); i++) {
+                assertTrue(Arrays.equals(packed.get(range[0] + i), seen.get(i)));
+            }
+        }
+    }
+
+    public void testEmptyStore() throws Exception {
+        Path file = dir.resolve("empty.snap");
+        OIDSnapshot.write(PackedOIDStore.EMPTY, file);
+        BlockOIDStore mapped = OIDSnapshot.open(file);
+        assertEquals(0, mapped.size());
+        assertFalse(mapped.containsArcs(new int[]{1, 3}, 0, 2));
+        assertEquals(0, mapped.prefixEnd(new int[]{1}, 0, 1));
+    }
+
+    public void testRejectsText() throws Exception {
+        Path file = dir.resolve("oids.txt");
+        Files.write(file, "1.3.6.1.4.1\n1.3.6.1.4.2\n".getBytes());
+        assertFalse(OIDSnapshot.isSnapshot(file));
+        try {
+            OIDSnapshot.open(file);
+            fail("Expected a text file to be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testServiceSaveAndOpen() throws Exception {
+        OIDService service = new OIDService();
+        service.populateWithRandomOIDs(5000);
+        String file = dir.resolve("service.snap").toString();
+        service.saveSnapshot(file);
+        OIDStore loaded = service.getOids();
+
+        OIDService reopened = new OIDService();
+        assertTrue(OIDService.isSnapshot(file));
+        reopened.openSnapshot(file);
+        assertEquals(loaded, reopened.getOids());
+        String oid = OIDService.parseOID(loaded.get(1234));
+        assertTrue(reopened.exists(oid));
+        String prefix = OIDService.parseOID(Arrays.copyOf(loaded.get(10), 2));
+        assertEquals(service.countOidsWithPrefix(prefix), reopened.countOidsWithPrefix(prefix));
+
+        // Saving over the snapshot that is currently mapped must not disturb the open store
+        reopened.saveSnapshot(file);
+        assertEquals(loaded, reopened.getOids());
+    }
+}
@@ -0,0 +1,96 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class OIDTrieTest extends TestCase {
+    private PackedOIDStore packed;
+    private OIDTrie trie;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        SplittableRandom random = new SplittableRandom(3);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 5000; i++) {
+            int[] oid = new int[random.nextInt(1, 7)];
+            for (int j = 0; j < oid.length; j++) {
+                oid[j] = random.nextInt(j < 2 ? 3 : 12);
+            }
+            builder.add(oid);
+        }
+        packed = builder.build();
+        trie = OIDTrie.build(packed);
+    }
+
+    public void testSameContentAsSource() {
+        assertEquals(packed.size(), trie.size());
+        for (int i = 0; i < packed.size(); i++) {
+            assertTrue(Arrays.equals(packed.get(i), trie.get(i)));
+            assertEquals(packed.length(i), trie.length(i));
+        }
+        assertEquals(packed, trie);
+    }
+
+    public void testScanRanges() {
+        int[][] ranges = {{0, packed.size()}, {17, 18}, {100, packed.size() / 2}, {packed.size() - 3, packed.size()}};
+        for (int[] range : ranges) {
+            List<int[]> seen = new ArrayList<>();
+            trie.scan(range[0], range[1], (arcs, off, len) -> seen.add(Arrays.copyOfRange(arcs, off, off + len)));
+            assertEquals(range[1] - range[0], seen.size());
+            for (int i = 0; i < seen.size(); i++) {
+                assertTrue(Arrays.equals(packed.get(range[0] + i), seen.get(i)));
+            }
+        }
+    }
+
+    public void testSearchesMatchBinarySearch() {
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 3000; i++) {
+            int[] key = new int[random.nextInt(1, 8)];
+            for (int j = 0; j < key.length; j++) {
+                key[j] = random.nextInt(j < 2 ? 4 : 13);
+            }
+            assertEquals(packed.search(key, 0, key.length), trie.search(key, 0, key.length));
+            assertEquals(packed.lowerBound(key, 0, key.length), trie.lowerBound(key, 0, key.length));
+            assertEquals(packed.prefixEnd(key, 0, key.length), trie.prefixEnd(key, 0, key.length));
+            assertEquals(packed.prefixRange(key).size(), trie.countPrefix(key, 0, key.length));
+            int index = random.nextInt(packed.size());
+            assertEquals(Integer.signum(packed.compareAt(index, key, 0, key.length)),
+                    Integer.signum(trie.compareAt(index, key, 0, key.length)));
+            assertEquals(packed.startsWith(index, key, 0, key.length), trie.startsWith(index, key, 0, key.length));
+        }
+    }
+
+    public void testSharedPrefixesUseLessMemory() {
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 10000; i++) {
+            builder.add(new int[]{1, 3, 6, 1, 4, 1, 311, 21, i / 100, i % 100});
+        }
+        PackedOIDStore shared = builder.build();
+        OIDTrie sharedTrie = OIDTrie.build(shared);
+
+        assertEquals(10000, sharedTrie.countPrefix(new int[]{1, 3, 6, 1, 4, 1}, 0, 6));
+        assertEquals(100, sharedTrie.countPrefix(new int[]{1, 3, 6, 1, 4, 1, 311, 21, 42}, 0, 9));
+        assertTrue(sharedTrie.memoryUsage() < shared.memoryUsage() / 2);
+    }
+
+    public void testGeneratedOIDsUseLessMemoryThanPacked() {
+        PackedOIDStore generated = new OIDGenerator(42).generate(50000);
+        OIDTrie generatedTrie = OIDTrie.build(generated);
+
+        assertEquals(generated, generatedTrie);
+        assertTrue(generatedTrie.memoryUsage() < generated.memoryUsage());
+    }
+
+    public void testEmpty() {
+        OIDTrie empty = OIDTrie.build(PackedOIDStore.EMPTY);
+        assertEquals(0, empty.size());
+        assertFalse(empty.contains(new int[]{1}));
+        assertEquals(0, empty.countPrefix(new int[]{1}, 0, 1));
+    }
+}
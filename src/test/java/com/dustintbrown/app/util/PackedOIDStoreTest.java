@@ -0,0 +1,114 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+public class PackedOIDStoreTest extends TestCase {
+
+    public void testBuildSortsAndRemovesDuplicates() {
+        PackedOIDStore store = new PackedOIDStore.Builder()
+                .add(new int[]{1, 3, 6, 1, 4, 1})
+                .add(new int[]{1, 3})
+                .add(new int[]{0, 9})
+                .add(new int[]{1, 3, 6, 1, 4, 1})
+                .add(new int[]{1, 3, 6})
+                .build();
+
+        assertEquals(4, store.size());
+        assertTrue(Arrays.equals(new int[]{0, 9}, store.get(0)));
+        assertTrue(Arrays.equals(new int[]{1, 3}, store.get(1)));
+        assertTrue(Arrays.equals(new int[]{1, 3, 6}, store.get(2)));
+        assertTrue(Arrays.equals(new int[]{1, 3, 6, 1, 4, 1}, store.get(3)));
+        assertEquals(6, store.maxLength());
+    }
+
+    public void testBuildReportsPositions() {
+        int[][] added = {{1, 3, 6}, {0, 9}, {1, 3}, {0, 9}, {2}};
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int[] oid : added) {
+            builder.add(oid);
+        }
+        int[] positions = new int[added.length];
+        PackedOIDStore store = builder.build(positions);
+
+        assertEquals(4, store.size());
+        assertTrue(Arrays.equals(new int[]{2, 0, 1, 0, 3}, positions));
+        for (int i = 0; i < added.length; i++) {
+            assertTrue(Arrays.equals(added[i], store.get(positions[i])));
+        }
+    }
+
+    public void testOrderingMatchesTreeSet() {
+        SplittableRandom random = new SplittableRandom(42);
+        TreeSet<int[]> expected = new TreeSet<>(new OIDComp());
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 20000; i++) {
+            int[] oid = new int[random.nextInt(1, 6)];
+            for (int j = 0; j < oid.length; j++) {
+                oid[j] = random.nextInt(8);
+            }
+            expected.add(oid);
+            builder.add(oid);
+        }
+        PackedOIDStore store = builder.build();
+
+        assertEquals(expected.size(), store.size());
+        int i = 0;
+        for (int[] oid : expected) {
+            assertTrue(Arrays.equals(oid, store.get(i++)));
+        }
+    }
+
+    public void testSearch() {
+        PackedOIDStore store = new PackedOIDStore.Builder()
+                .add(new int[]{1, 3, 6, 1})
+                .add(new int[]{1, 3, 6, 2})
+                .add(new int[]{2, 0})
+                .build();
+
+        assertTrue(store.contains(new int[]{1, 3, 6, 2}));
+        assertFalse(store.contains(new int[]{1, 3, 6}));
+        assertFalse(store.contains(new int[]{2, 0, 0}));
+        assertEquals(-1, store.search(new int[]{0}, 0, 1));
+        assertEquals(-3, store.search(new int[]{1, 3, 7}, 0, 3));
+        assertEquals(2, store.search(new int[]{9, 2, 0, 9}, 1, 2));
+    }
+
+    public void testPrefixRange() {
+        PackedOIDStore store = new PackedOIDStore.Builder()
+                .add(new int[]{1, 3})
+                .add(new int[]{1, 3, 6})
+                .add(new int[]{1, 3, 6, 1, Integer.MAX_VALUE})
+                .add(new int[]{1, 3, 7})
+                .add(new int[]{1, 4})
+                .add(new int[]{2})
+                .build();
+
+        assertEquals(4, store.prefixRange(new int[]{1, 3}).size());
+        assertEquals(2, store.prefixRange(new int[]{1, 3, 6}).size());
+        assertEquals(5, store.prefixRange(new int[]{1}).size());
+        assertEquals(0, store.prefixRange(new int[]{1, 5}).size());
+        assertEquals(0, store.prefixRange(new int[]{3}).size());
+        assertTrue(Arrays.equals(new int[]{1, 3, 7}, store.prefixRange(new int[]{1, 3}).get(3)));
+    }
+
+    public void testMergeDropsDuplicatesAcrossParts() {
+        List<PackedOIDStore> parts = new ArrayList<>();
+        parts.add(new PackedOIDStore.Builder().add(new int[]{1, 1}).add(new int[]{1, 3}).build());
+        parts.add(new PackedOIDStore.Builder().add(new int[]{1, 2}).add(new int[]{1, 3}).build());
+        parts.add(PackedOIDStore.EMPTY);
+        parts.add(new PackedOIDStore.Builder().add(new int[]{0, 5}).add(new int[]{1, 3}).build());
+
+        PackedOIDStore merged = PackedOIDStore.merge(parts);
+
+        PackedOIDStore expected = new PackedOIDStore.Builder()
+                .add(new int[]{0, 5}).add(new int[]{1, 1}).add(new int[]{1, 2}).add(new int[]{1, 3})
+                .build();
+        assertEquals(expected, merged);
+    }
+}
@@ -0,0 +1,63 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+public class ShardedOIDStoreTest extends TestCase {
+
+    public void testMatchesUnshardedStore() {
+        SplittableRandom random = new SplittableRandom(11);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 20000; i++) {
+            builder.add(TestOIDs.randomOID(random, 7, 4, 15));
+        }
+        PackedOIDStore packed = builder.build();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (OIDStorageMode mode : OIDStorageMode.values()) {
+            ShardedOIDStore sharded = ShardedOIDStore.build(packed, mode, mode == OIDStorageMode.TRIE ? null : pool);
+            assertEquals(mode, sharded.getStorageMode());
+            // 4 single arc OIDs plus 4 x 4 pairs
+            assertEquals(20, sharded.getShardCount());
+            assertEquals(packed.size(), sharded.getShardStart(sharded.getShardCount()));
+            assertEquals(packed, sharded);
+            for (int i = 0; i < 3000; i++) {
+                int[] key = TestOIDs.randomOID(random, 7, 4, 15);
+                int len = random.nextInt(key.length + 1);
+                assertEquals(packed.search(key, 0, len), sharded.search(key, 0, len));
+                assertEquals(packed.lowerBound(key, 0, len), sharded.lowerBound(key, 0, len));
+                assertEquals(packed.prefixEnd(key, 0, len), sharded.prefixEnd(key, 0, len));
+                assertEquals(packed.containsArcs(key, 0, len), sharded.containsArcs(key, 0, len));
+                int from = random.nextInt(packed.size() + 1);
+                int to = from + random.nextInt(Math.min(3000, packed.size() - from) + 1);
+                PackedOIDStore.Builder scanned = new PackedOIDStore.Builder();
+                sharded.scan(from, to, scanned::add);
+                assertEquals(packed.subList(from, to), scanned.build());
+            }
+            int[] missing = {7, 1, 2};
+            assertEquals(packed.size(), sharded.lowerBound(missing, 0, missing.length));
+            assertEquals(-packed.size() - 1, sharded.search(missing, 0, missing.length));
+        }
+        pool.shutdown();
+        assertEquals(0, ShardedOIDStore.build(PackedOIDStore.EMPTY, OIDStorageMode.PACKED, null).size());
+    }
+
+    public void testServiceShardsLoads() {
+        OIDService service = new OIDService();
+        service.setSharded(true);
+        service.setStorageMode(OIDStorageMode.TRIE);
+        service.populateWithOIDs(Arrays.asList("2.5.4.3", "1.3.6.1.4.1", "1.3.6.1.2", "1", "1.2"));
+        assertTrue(service.getOids() instanceof ShardedOIDStore);
+        assertEquals(4, ((ShardedOIDStore) service.getOids()).getShardCount());
+        assertEquals(4, service.countOidsWithPrefix("1"));
+        assertEquals(2, service.countOidsWithPrefix("1.3.6"));
+        assertTrue(service.exists("2.5.4.3"));
+        assertFalse(service.exists("2.5"));
+
+        service.setSharded(false);
+        assertTrue(service.getOids() instanceof OIDTrie);
+        assertEquals(5, service.getOids().size());
+    }
+}
@@ -0,0 +1,39 @@
+package com.dustintbrown.app.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random OIDs for tests. Small arc ranges make shared prefixes, prefixes of other OIDs and duplicates common.
+ */
+final class TestOIDs {
+
+    private TestOIDs() {
+    }
+
+    /**
+     * @param random            source of the arcs
+     * @param maxLength         one more than the longest OID
+     * @param headBound         bound of the first two arcs
+     * @param tailBound         bound of the other arcs
+     * @return                  OID of 1 to maxLength - 1 arcs
+     */
+    static int[] randomOID(SplittableRandom random, int maxLength, int headBound, int tailBound) {
+        return randomOID(random, maxLength, headBound, tailBound, null);
+    }
+
+    /**
+     * @param edges             arcs picked for about one arc in ten, or null
+     * @see #randomOID(SplittableRandom, int, int, int)
+     */
+    static int[] randomOID(SplittableRandom random, int maxLength, int headBound, int tailBound, int[] edges) {
+        int[] returnMe = new int[random.nextInt(1, maxLength)];
+        for (int j = 0; j < returnMe.length; j++) {
+            if (edges != null && random.nextInt(10) == 0) {
+                returnMe[j] = edges[random.nextInt(edges.length)];
+            } else {
+                returnMe[j] = random.nextInt(j < 2 ? headBound : tailBound);
+            }
+        }
+        return returnMe;
+    }
+}
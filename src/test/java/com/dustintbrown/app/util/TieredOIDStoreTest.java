@@ -0,0 +1,90 @@
+package com.dustintbrown.app.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class TieredOIDStoreTest extends TestCase {
+    // Arcs on either side of every change of encoded length
+    private static final int[] EDGES = {0, 1, 126, 127, 128, 16510, 16511, 2113662, 2113663, 270549118, 270549119,
+            Integer.MAX_VALUE};
+
+    public void testKeysFollowOIDOrder() {
+        SplittableRandom random = new SplittableRandom(5);
+        OIDComp comp = new OIDComp();
+        long[] left = new long[2];
+        long[] right = new long[2];
+        int[] decoded = new int[TieredOIDStore.KEY_BYTES];
+        for (int i = 0; i < 100000; i++) {
+            int[] a = TestOIDs.randomOID(random, 12, 3, 6, EDGES);
+            int[] b = TestOIDs.randomOID(random, 12, 3, 6, EDGES);
+            if (TieredOIDStore.encode(a, 0, a.length, left) < 0 || TieredOIDStore.encode(b, 0, b.length, right) < 0) {
+                continue;
+            }
+            int keyCmp = Long.compareUnsigned(left[0], right[0]);
+            if (keyCmp == 0) {
+                keyCmp = Long.compareUnsigned(left[1], right[1]);
+            }
+            assertEquals(Integer.signum(comp.compare(a, b)), keyCmp);
+            assertEquals(a.length, TieredOIDStore.decode(left[0], left[1], decoded));
+            assertEquals(0, OIDComp.compare(a, 0, a.length, decoded, 0, a.length));
+        }
+        assertEquals(-1, TieredOIDStore.encode(new int[]{1, -1}, 0, 2, left));
+    }
+
+    public void testMatchesPackedStore() {
+        SplittableRandom random = new SplittableRandom(41);
+        PackedOIDStore.Builder builder = new PackedOIDStore.Builder();
+        for (int i = 0; i < 50000; i++) {
+            builder.add(TestOIDs.randomOID(random, 12, 3, 6, EDGES));
+        }
+        PackedOIDStore packed = builder.build();
+        TieredOIDStore tiered = TieredOIDStore.build(packed);
+        assertTrue(tiered.getKeyCount() > 0);
+        assertTrue(tiered.getRest().size() > 0);
+        assertTrue(tiered.isWideKeys());
+        assertEquals(packed, tiered);
+        assertEquals(packed.maxLength(), tiered.maxLength());
+
+        List<int[]> scanned = new ArrayList<>();
+        tiered.scan(1000, 3000, (arcs, off, len) -> scanned.add(Arrays.copyOfRange(arcs, off, off + len)));
+        assertEquals(2000, scanned.size());
+        for (int i = 0; i < scanned.size(); i++) {
+            assertTrue(Arrays.equals(packed.get(1000 + i), scanned.get(i)));
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            int[] key = random.nextInt(4) == 0 ? packed.get(random.nextInt(packed.size())) : TestOIDs.randomOID(random, 12, 3, 6, EDGES);
+            int prefixLen = random.nextInt(key.length + 1);
+            assertEquals(packed.search(key, 0, key.length), tiered.search(key, 0, key.length));
+            assertEquals(packed.containsArcs(key, 0, key.length), tiered.containsArcs(key, 0, key.length));
+            assertEquals(packed.lowerBound(key, 0, key.length), tiered.lowerBound(key, 0, key.length));
+            assertEquals(packed.prefixEnd(key, 0, prefixLen), tiered.prefixEnd(key, 0, prefixLen));
+            int index = random.nextInt(packed.size());
+            assertEquals(Integer.signum(packed.compareAt(index, key, 0, key.length)),
+                    Integer.signum(tiered.compareAt(index, key, 0, key.length)));
+            assertEquals(packed.startsWith(index, key, 0, prefixLen), tiered.startsWith(index, key, 0, prefixLen));
+        }
+    }
+
+    public void testNarrowKeysAndService() throws Exception {
+        TieredOIDStore narrow = TieredOIDStore.build(new PackedOIDStore.Builder()
+                .add(new int[]{1, 3, 6}).add(new int[]{1, 3, 6, 1}).add(new int[]{2, 5}).build());
+        assertFalse(narrow.isWideKeys());
+        assertEquals(0, narrow.getRest().size());
+        assertEquals(3, narrow.size());
+
+        OIDService service = new OIDService();
+        service.setStorageMode(OIDStorageMode.TIERED);
+        service.populateWithOIDs(Arrays.asList("1.3.6.1.4.1.9.9.9.9.9.9.9.9.9.9.9", "1.3.6.1", "1.3.7", "2.5"));
+        assertTrue(service.getOids() instanceof TieredOIDStore);
+        assertEquals(1, ((TieredOIDStore) service.getOids()).getRest().size());
+        assertTrue(service.exists("1.3.6.1.4.1.9.9.9.9.9.9.9.9.9.9.9"));
+        assertTrue(service.exists("1.3.7"));
+        assertFalse(service.exists("1.3.6"));
+        assertEquals(3, service.countOidsWithPrefix("1.3"));
+    }
+}